@@ -76,6 +76,8 @@ public class ApocConfig extends LifecycleAdapter {
     public static final String APOC_CONFIG_JOBS_SCHEDULED_NUM_THREADS = "apoc.jobs.scheduled.num_threads";
     public static final String APOC_CONFIG_JOBS_POOL_NUM_THREADS = "apoc.jobs.pool.num_threads";
     public static final String APOC_CONFIG_JOBS_QUEUE_SIZE = "apoc.jobs.queue.size";
+    public static final String APOC_CONFIG_JOBS_POOL_VIRTUAL = "apoc.jobs.pool.virtual";
+    public static final String APOC_CONFIG_JOBS_POOL_VIRTUAL_MAX_CONCURRENCY = "apoc.jobs.pool.virtual.max_concurrency";
     public static final String APOC_CONFIG_INITIALIZER = "apoc.initializer";
     public static final String LOAD_FROM_FILE_ERROR =
             "Import from files not enabled, please set apoc.import.file.enabled=true in your apoc.conf";
@@ -363,6 +365,10 @@ public class ApocConfig extends LifecycleAdapter {
         return getConfig().getBoolean(key);
     }
 
+    public boolean getBoolean(String key, boolean defaultValue) {
+        return getConfig().getBoolean(key, defaultValue);
+    }
+
     public boolean isImportFolderConfigured() {
         // in case we're test database import path is TestDatabaseManagementServiceBuilder.EPHEMERAL_PATH
 
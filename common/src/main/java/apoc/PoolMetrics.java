@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc;
+
+import apoc.util.Util;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Counters and task latency histogram of one of the {@link Pools} executors.
+ * The latency of a task is measured from its submission to its completion, so it includes the time spent in the queue.
+ */
+public class PoolMetrics {
+    private final String name;
+    private final String threads;
+    private final IntSupplier queueDepth;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final Histogram latencyMicros = new ConcurrentHistogram(3);
+
+    public PoolMetrics(String name, String threads, IntSupplier queueDepth) {
+        this.name = name;
+        this.threads = threads;
+        this.queueDepth = queueDepth;
+    }
+
+    public Runnable wrap(Runnable task) {
+        long submittedAt = System.nanoTime();
+        submitted.increment();
+        return () -> {
+            active.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                active.decrementAndGet();
+                completed.increment();
+                latencyMicros.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - submittedAt));
+            }
+        };
+    }
+
+    public void incrementBlocked() {
+        blocked.increment();
+    }
+
+    public void incrementRejected() {
+        rejected.increment();
+    }
+
+    public PoolInfo info() {
+        Histogram snapshot = latencyMicros.copy();
+        Map<String, Object> latency = Util.map(
+                "min", toMillis(snapshot.getMinValue()),
+                "mean", snapshot.getMean() / 1000d,
+                "p50", toMillis(snapshot.getValueAtPercentile(50)),
+                "p95", toMillis(snapshot.getValueAtPercentile(95)),
+                "p99", toMillis(snapshot.getValueAtPercentile(99)),
+                "max", toMillis(snapshot.getMaxValue()));
+        return new PoolInfo(
+                name,
+                threads,
+                queueDepth.getAsInt(),
+                active.get(),
+                submitted.sum(),
+                completed.sum(),
+                blocked.sum(),
+                rejected.sum(),
+                latency);
+    }
+
+    private static double toMillis(long micros) {
+        return micros / 1000d;
+    }
+
+    public static class PoolInfo {
+        public final String name;
+        public final String threads;
+        public final long queueDepth;
+        public final long activeCount;
+        public final long submitted;
+        public final long completed;
+        public final long blocked;
+        public final long rejected;
+        public final Map<String, Object> latencyMillis;
+
+        public PoolInfo(
+                String name,
+                String threads,
+                long queueDepth,
+                long activeCount,
+                long submitted,
+                long completed,
+                long blocked,
+                long rejected,
+                Map<String, Object> latencyMillis) {
+            this.name = name;
+            this.threads = threads;
+            this.queueDepth = queueDepth;
+            this.activeCount = activeCount;
+            this.submitted = submitted;
+            this.completed = completed;
+            this.blocked = blocked;
+            this.rejected = rejected;
+            this.latencyMillis = latencyMillis;
+        }
+    }
+}
@@ -22,6 +22,7 @@ import apoc.periodic.PeriodicUtils;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
@@ -30,8 +31,10 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -49,12 +52,15 @@ public class Pools extends LifecycleAdapter {
 
     public static final int DEFAULT_SCHEDULED_THREADS = Runtime.getRuntime().availableProcessors() / 4;
     public static final int DEFAULT_POOL_THREADS = Runtime.getRuntime().availableProcessors() * 2;
+    public static final int DEFAULT_VIRTUAL_CONCURRENCY = DEFAULT_POOL_THREADS * 16;
     private final Log log;
     private final ApocConfig apocConfig;
 
     private ExecutorService singleExecutorService;
     private ScheduledExecutorService scheduledExecutorService;
     private ExecutorService defaultExecutorService;
+    private ExecutorService cpuExecutorService;
+    private int cpuThreads;
 
     private final Map<PeriodicUtils.JobInfo, Future> jobList = new ConcurrentHashMap<>();
 
@@ -73,6 +79,7 @@ public class Pools extends LifecycleAdapter {
 
         int threads =
                 Math.max(1, apocConfig.getInt(ApocConfig.APOC_CONFIG_JOBS_POOL_NUM_THREADS, DEFAULT_POOL_THREADS));
+        this.cpuThreads = threads;
 
         int queueSize = Math.max(1, apocConfig.getInt(ApocConfig.APOC_CONFIG_JOBS_QUEUE_SIZE, threads * 5));
 
@@ -82,23 +89,36 @@ public class Pools extends LifecycleAdapter {
             t.setDaemon(true);
             return t;
         };
-        this.singleExecutorService = new ThreadPoolExecutor(
-                1,
-                1,
-                0L,
-                TimeUnit.SECONDS,
-                new ArrayBlockingQueue<>(queueSize),
-                threadFactory,
-                new CallerBlocksPolicy());
+        this.singleExecutorService = new MeteredThreadPoolExecutor(
+                "single", 1, 1, 0L, new ArrayBlockingQueue<>(queueSize), threadFactory);
 
-        this.defaultExecutorService = new ThreadPoolExecutor(
+        boolean virtual = apocConfig.getBoolean(ApocConfig.APOC_CONFIG_JOBS_POOL_VIRTUAL, false);
+        // next to a virtual default pool, the platform pool only takes the CPU bound batches
+        ExecutorService platformExecutorService = new MeteredThreadPoolExecutor(
+                virtual ? "cpu" : "default",
                 threads / 2,
                 threads,
                 30L,
-                TimeUnit.SECONDS,
                 new ArrayBlockingQueue<>(queueSize),
-                threadFactory,
-                new CallerBlocksPolicy());
+                threadFactory);
+
+        if (virtual) {
+            // I/O bound jobs go to (virtual) threads bounded by a semaphore, CPU bound batches keep the platform pool
+            int maxConcurrency = Math.max(
+                    1,
+                    apocConfig.getInt(
+                            ApocConfig.APOC_CONFIG_JOBS_POOL_VIRTUAL_MAX_CONCURRENCY, DEFAULT_VIRTUAL_CONCURRENCY));
+            BoundedExecutorService boundedExecutorService =
+                    BoundedExecutorService.virtual("default", maxConcurrency, threadFactory);
+            this.log.info(
+                    "using %s threads for the default APOC pool, up to %d concurrent tasks",
+                    boundedExecutorService.getMetrics().info().threads, maxConcurrency);
+            this.defaultExecutorService = boundedExecutorService;
+            this.cpuExecutorService = platformExecutorService;
+        } else {
+            this.defaultExecutorService = platformExecutorService;
+            this.cpuExecutorService = platformExecutorService;
+        }
 
         this.scheduledExecutorService = Executors.newScheduledThreadPool(
                 Math.max(
@@ -123,7 +143,8 @@ public class Pools extends LifecycleAdapter {
 
     @Override
     public void shutdown() {
-        Stream.of(singleExecutorService, defaultExecutorService, scheduledExecutorService)
+        Stream.of(singleExecutorService, defaultExecutorService, cpuExecutorService, scheduledExecutorService)
+                .distinct()
                 .forEach(service -> {
                     try {
                         service.shutdown();
@@ -146,13 +167,162 @@ public class Pools extends LifecycleAdapter {
         return defaultExecutorService;
     }
 
+    /**
+     * Platform-thread pool for CPU bound batches.
+     * It's the same as the {@link #getDefaultExecutorService()} unless `apoc.jobs.pool.virtual` is enabled.
+     */
+    public ExecutorService getCpuExecutorService() {
+        return cpuExecutorService;
+    }
+
+    /**
+     * The maximum number of threads of the {@link #getCpuExecutorService()}, as set by `apoc.jobs.pool.num_threads`.
+     */
+    public int getCpuThreads() {
+        return cpuThreads;
+    }
+
+    public Stream<PoolMetrics.PoolInfo> getMetrics() {
+        return Stream.of(singleExecutorService, defaultExecutorService, cpuExecutorService)
+                .distinct()
+                .map(service -> service instanceof MeteredThreadPoolExecutor metered
+                        ? metered.getMetrics()
+                        : ((BoundedExecutorService) service).getMetrics())
+                .map(PoolMetrics::info);
+    }
+
     public Map<PeriodicUtils.JobInfo, Future> getJobList() {
         return jobList;
     }
 
+    static class MeteredThreadPoolExecutor extends ThreadPoolExecutor {
+        private final PoolMetrics metrics;
+
+        MeteredThreadPoolExecutor(
+                String name,
+                int corePoolSize,
+                int maximumPoolSize,
+                long keepAliveSeconds,
+                BlockingQueue<Runnable> workQueue,
+                ThreadFactory threadFactory) {
+            super(
+                    corePoolSize,
+                    maximumPoolSize,
+                    keepAliveSeconds,
+                    TimeUnit.SECONDS,
+                    workQueue,
+                    threadFactory,
+                    new CallerBlocksPolicy());
+            this.metrics = new PoolMetrics(name, "platform", workQueue::size);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            super.execute(metrics.wrap(command));
+        }
+
+        PoolMetrics getMetrics() {
+            return metrics;
+        }
+    }
+
+    /**
+     * Runs every task in its own thread, with at most `maxConcurrency` tasks running at the same time.
+     * Submitters block while all the permits are taken, as with the {@link CallerBlocksPolicy}.
+     */
+    static class BoundedExecutorService extends AbstractExecutorService {
+        private final ExecutorService delegate;
+        private final Semaphore permits;
+        private final PoolMetrics metrics;
+
+        BoundedExecutorService(String name, String threads, ExecutorService delegate, int maxConcurrency) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(maxConcurrency);
+            this.metrics = new PoolMetrics(name, threads, permits::getQueueLength);
+        }
+
+        /**
+         * Uses virtual threads when the JVM supports them (Java 21+), a cached pool of daemon threads otherwise.
+         */
+        static BoundedExecutorService virtual(String name, int maxConcurrency, ThreadFactory fallbackThreadFactory) {
+            try {
+                ExecutorService virtualThreads = (ExecutorService)
+                        Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                return new BoundedExecutorService(name, "virtual", virtualThreads, maxConcurrency);
+            } catch (ReflectiveOperationException e) {
+                return new BoundedExecutorService(
+                        name, "platform", Executors.newCachedThreadPool(fallbackThreadFactory), maxConcurrency);
+            }
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (delegate.isShutdown()) {
+                metrics.incrementRejected();
+                throw new RejectedExecutionException("The pool has been shut down");
+            }
+            if (!permits.tryAcquire()) {
+                metrics.incrementBlocked();
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    metrics.incrementRejected();
+                    throw new RejectedExecutionException("Interrupted while waiting for a free slot", e);
+                }
+            }
+            Runnable task = metrics.wrap(command);
+            try {
+                delegate.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                metrics.incrementRejected();
+                throw e;
+            }
+        }
+
+        PoolMetrics getMetrics() {
+            return metrics;
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+
     static class CallerBlocksPolicy implements RejectedExecutionHandler {
         @Override
         public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (executor instanceof MeteredThreadPoolExecutor metered) {
+                metered.getMetrics().incrementBlocked();
+            }
             // Submit again by directly injecting the task into the work queue, waiting if necessary, but also
             // periodically checking if the pool has been
             // shut down.
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.cypher;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of the statements rewritten by the procedures and functions running dynamic Cypher,
+ * keyed by the original statement and the names of its parameters.
+ *
+ * The rewritten statements are normalized, i.e. the parameters are declared in name order
+ * and the whitespace outside literals and comments is collapsed,
+ * so that the calls differing only in those share the same plan in the query cache of Neo4j.
+ */
+public class CypherStatementCache {
+    public static final int MAX_SIZE = 10_000;
+
+    private static final Map<Key, String> statements = new ConcurrentHashMap<>();
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+
+    public static class Stats {
+        public final long hits;
+        public final long misses;
+        public final long size;
+        public final long maxSize;
+
+        public Stats(long hits, long misses, long size, long maxSize) {
+            this.hits = hits;
+            this.misses = misses;
+            this.size = size;
+            this.maxSize = maxSize;
+        }
+    }
+
+    private static class Key {
+        private final String statement;
+        private final Set<String> params;
+        private final boolean slotted;
+        private final int hash;
+
+        Key(String statement, Set<String> params, boolean slotted) {
+            this.statement = statement;
+            this.params = params;
+            this.slotted = slotted;
+            this.hash = Objects.hash(statement, params, slotted);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return slotted == key.slotted && statement.equals(key.statement) && params.equals(key.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private CypherStatementCache() {}
+
+    /**
+     * The statement preceded by a `WITH` declaring the parameters as variables
+     */
+    public static String withParamMapping(String statement, Collection<String> params) {
+        return rewrite(statement, params, false);
+    }
+
+    /**
+     * As {@link #withParamMapping(String, Collection)}, on the slotted runtime unless the statement picks one
+     */
+    public static String withParamMappingOnSlottedRuntime(String statement, Collection<String> params) {
+        return rewrite(statement, params, true);
+    }
+
+    public static Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), statements.size(), MAX_SIZE);
+    }
+
+    public static void clear() {
+        statements.clear();
+        hits.reset();
+        misses.reset();
+    }
+
+    private static String rewrite(String statement, Collection<String> params, boolean slotted) {
+        Key key = new Key(statement, Set.copyOf(params), slotted);
+        String rewritten = statements.get(key);
+        if (rewritten != null) {
+            hits.increment();
+            return rewritten;
+        }
+        misses.increment();
+        List<String> names = new ArrayList<>(key.params);
+        Collections.sort(names);
+        rewritten = CypherUtils.withParamMapping(normalize(statement), names);
+        if (slotted && !rewritten.contains(" runtime")) {
+            rewritten = "cypher runtime=slotted " + rewritten;
+        }
+        if (statements.size() >= MAX_SIZE) {
+            // the statements built from values instead of parameters would fill it up
+            statements.clear();
+        }
+        statements.put(key, rewritten);
+        return rewritten;
+    }
+
+    /**
+     * Collapses the whitespace outside the string literals, escaped names and comments into single spaces
+     */
+    static String normalize(String statement) {
+        int length = statement.length();
+        StringBuilder normalized = new StringBuilder(length);
+        // the quote, '/' in a line comment, '*' in a block comment
+        char quote = 0;
+        boolean space = false;
+        for (int i = 0; i < length; i++) {
+            char ch = statement.charAt(i);
+            char next = i + 1 < length ? statement.charAt(i + 1) : 0;
+            if (quote == 0) {
+                if (Character.isWhitespace(ch)) {
+                    space = true;
+                    continue;
+                }
+                if (space) {
+                    normalized.append(' ');
+                    space = false;
+                }
+                if (ch == '\'' || ch == '"' || ch == '`') {
+                    quote = ch;
+                } else if (ch == '/' && (next == '/' || next == '*')) {
+                    quote = next;
+                    normalized.append(ch);
+                    ch = next;
+                    i++;
+                }
+            } else if (quote == '/') {
+                if (ch == '\n') quote = 0;
+            } else if (quote == '*') {
+                if (ch == '*' && next == '/') {
+                    normalized.append(ch);
+                    ch = next;
+                    i++;
+                    quote = 0;
+                }
+            } else if (ch == '\\' && quote != '`' && i + 1 < length) {
+                normalized.append(ch);
+                ch = next;
+                i++;
+            } else if (ch == quote) {
+                quote = 0;
+            }
+            normalized.append(ch);
+        }
+        if (space) {
+            normalized.append(' ');
+        }
+        return normalized.toString();
+    }
+}
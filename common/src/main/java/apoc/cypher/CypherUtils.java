@@ -34,7 +34,7 @@ public class CypherUtils {
     public static Stream<MapResult> runCypherQuery(
             Transaction tx, @Name("cypher") String statement, @Name("params") Map<String, Object> params) {
         if (params == null) params = Collections.emptyMap();
-        return tx.execute(withParamMapping(statement, params.keySet()), params).stream()
+        return tx.execute(CypherStatementCache.withParamMapping(statement, params.keySet()), params).stream()
                 .map(MapResult::new);
     }
 
@@ -29,8 +29,10 @@ import apoc.export.util.Reporter;
 import apoc.util.Util;
 import java.io.PrintWriter;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
+import java.util.function.ToLongBiFunction;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 import org.apache.commons.lang3.StringUtils;
@@ -40,7 +42,6 @@ import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
-import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.schema.ConstraintType;
 
 /**
@@ -236,84 +237,98 @@ abstract class AbstractCypherFormatter implements CypherFormatter {
             PrintWriter out,
             Reporter reporter,
             GraphDatabaseService db) {
-        // Batch stream results, process BATCH_COUNT nodes at a time
-        boolean shouldContinue = true;
-        AtomicInteger totalNodeCount = new AtomicInteger(0);
-        while (shouldContinue) {
-            AtomicInteger nodesInBatch = new AtomicInteger(0);
-            Function<Node, Map.Entry<Set<String>, Set<String>>> keyMapper = (node) -> {
-                try (Transaction tx = db.beginTx()) {
-                    totalNodeCount.incrementAndGet();
-                    nodesInBatch.incrementAndGet();
-                    node = tx.getNodeByElementId(node.getElementId());
-                    Set<String> idProperties = CypherFormatterUtils.getNodeIdProperties(node, uniqueConstraints)
-                            .keySet();
-                    Set<String> labels = getLabels(node);
-                    tx.commit();
-                    return new AbstractMap.SimpleImmutableEntry<>(labels, idProperties);
+        Function<Node, Map.Entry<Set<String>, Set<String>>> keyMapper = node -> {
+            Set<String> idProperties = CypherFormatterUtils.getNodeIdProperties(node, uniqueConstraints).keySet();
+            return new AbstractMap.SimpleImmutableEntry<>(getLabels(node), idProperties);
+        };
+        buildUnwindStatements(
+                nodes,
+                keyMapper,
+                (key, rows) -> writeUnwindNodes(nodeClause, setClause, uniqueConstraints, exportConfig, out, key, rows),
+                exportConfig,
+                out,
+                (count, propertiesCount) -> reporter.update(count, 0, propertiesCount));
+    }
+
+    /**
+     * Writes the entities in a single pass over them, in transactions of `batchSize` entities.
+     * Within a transaction the entities are grouped by `keyMapper`, a group is written as an UNWIND statement
+     * as soon as it has `unwindBatchSize` rows and the incomplete groups are written before the commit,
+     * so that at most `unwindBatchSize` entities per group are buffered.
+     */
+    private <K, T> void buildUnwindStatements(
+            Iterable<T> entities,
+            Function<T, K> keyMapper,
+            ToLongBiFunction<K, List<T>> unwindWriter,
+            ExportConfig exportConfig,
+            PrintWriter out,
+            BiConsumer<Long, Long> progress) {
+        int batchSize = exportConfig.getBatchSize();
+        int unwindBatchSize = exportConfig.getUnwindBatchSize();
+        Iterator<T> iterator = entities.iterator();
+        while (iterator.hasNext()) {
+            // a ConcurrentHashMap, as the grouping this replaces, so the incomplete groups keep their order
+            Map<K, List<T>> groups = new ConcurrentHashMap<>();
+            long count = 0;
+            long propertiesCount = 0;
+            out.append(exportConfig.getFormat().begin());
+            while (count < batchSize && iterator.hasNext()) {
+                T entity = iterator.next();
+                count++;
+                K key = keyMapper.apply(entity);
+                List<T> rows = groups.computeIfAbsent(key, k -> new ArrayList<>());
+                rows.add(entity);
+                if (rows.size() == unwindBatchSize) {
+                    propertiesCount += unwindWriter.applyAsLong(key, rows);
+                    rows.clear();
                 }
-            };
-            Map<Map.Entry<Set<String>, Set<String>>, List<Node>> groupedData = StreamSupport.stream(
-                            com.google.common.collect.Iterables.limit(
-                                            com.google.common.collect.Iterables.skip(nodes, totalNodeCount.get()),
-                                            exportConfig.getBatchSize())
-                                    .spliterator(),
-                            true)
-                    .collect(Collectors.groupingByConcurrent(keyMapper));
-
-            // Each loop will collect at most the batch size in nodes to process
-            // This is done using a limit on the stream. If the limit returns less than
-            // the batch size, this means we have no more nodes to process after this round and
-            // can stop.
-            if (nodesInBatch.get() < exportConfig.getBatchSize()) shouldContinue = false;
-
-            AtomicInteger propertiesCount = new AtomicInteger(0);
-
-            AtomicInteger batchCount = new AtomicInteger(0);
-            AtomicInteger nodeCount = new AtomicInteger(0);
-            groupedData.forEach((key, nodeList) -> {
-                AtomicInteger unwindCount = new AtomicInteger(0);
-                final int nodeListSize = nodeList.size();
-                final Node last = nodeList.get(nodeListSize - 1);
-                nodeCount.addAndGet(nodeListSize);
-                for (Node node : nodeList) {
-                    writeBatchBegin(exportConfig, out, batchCount);
-                    writeUnwindStart(exportConfig, out, unwindCount);
-                    batchCount.incrementAndGet();
-                    unwindCount.incrementAndGet();
-                    Map<String, Object> props = node.getAllProperties();
-                    // start element
-                    out.append("{");
-
-                    // id
-                    Map<String, Object> idMap = CypherFormatterUtils.getNodeIdProperties(node, uniqueConstraints);
-                    writeNodeIds(out, idMap);
-
-                    // properties
-                    out.append(", ");
-                    out.append("properties:");
-
-                    propertiesCount.addAndGet(props.size());
-                    props.keySet().removeAll(idMap.keySet());
-                    writeProperties(out, props);
-
-                    // end element
-                    out.append("}");
-                    if (last.equals(node)
-                            || isBatchMatch(exportConfig, batchCount)
-                            || isUnwindBatchMatch(exportConfig, unwindCount)) {
-                        closeUnwindNodes(nodeClause, setClause, uniqueConstraints, exportConfig, out, key, last);
-                        writeBatchEnd(exportConfig, out, batchCount);
-                        unwindCount.set(0);
-                    } else {
-                        out.append(", ");
-                    }
+            }
+            for (Map.Entry<K, List<T>> group : groups.entrySet()) {
+                if (!group.getValue().isEmpty()) {
+                    propertiesCount += unwindWriter.applyAsLong(group.getKey(), group.getValue());
                 }
-            });
-            addCommitToEnd(exportConfig, out, batchCount);
+            }
+            out.append(exportConfig.getFormat().commit());
+            progress.accept(count, propertiesCount);
+        }
+    }
+
+    private long writeUnwindNodes(
+            String nodeClause,
+            String setClause,
+            Map<String, Set<String>> uniqueConstraints,
+            ExportConfig exportConfig,
+            PrintWriter out,
+            Map.Entry<Set<String>, Set<String>> key,
+            List<Node> rows) {
+        long propertiesCount = 0;
+        writeUnwindStart(exportConfig, out);
+        for (int i = 0; i < rows.size(); i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            Node node = rows.get(i);
+            Map<String, Object> props = node.getAllProperties();
+            // start element
+            out.append("{");
+
+            // id
+            Map<String, Object> idMap = CypherFormatterUtils.getNodeIdProperties(node, uniqueConstraints);
+            writeNodeIds(out, idMap);
+
+            // properties
+            out.append(", ");
+            out.append("properties:");
 
-            reporter.update(nodeCount.get(), 0, propertiesCount.longValue());
+            propertiesCount += props.size();
+            props.keySet().removeAll(idMap.keySet());
+            writeProperties(out, props);
+
+            // end element
+            out.append("}");
         }
+        closeUnwindNodes(nodeClause, setClause, uniqueConstraints, exportConfig, out, key, rows.get(rows.size() - 1));
+        return propertiesCount;
     }
 
     private void closeUnwindNodes(
@@ -364,10 +379,6 @@ abstract class AbstractCypherFormatter implements CypherFormatter {
         }
     }
 
-    private boolean isBatchMatch(ExportConfig exportConfig, AtomicInteger batchCount) {
-        return batchCount.get() % exportConfig.getBatchSize() == 0;
-    }
-
     public void buildStatementForRelationships(
             String relationshipClause,
             String setClause,
@@ -377,128 +388,90 @@ abstract class AbstractCypherFormatter implements CypherFormatter {
             PrintWriter out,
             Reporter reporter,
             GraphDatabaseService db) {
-        boolean shouldContinue = true;
-        AtomicInteger totalRelCount = new AtomicInteger(0);
-        while (shouldContinue) {
-            AtomicInteger relsInBatch = new AtomicInteger(0);
-
-            Function<Relationship, Map<String, Object>> keyMapper = (rel) -> {
-                totalRelCount.incrementAndGet();
-                relsInBatch.incrementAndGet();
-                try (Transaction tx = db.beginTx()) {
-                    rel = tx.getRelationshipByElementId(rel.getElementId());
-                    Node start = rel.getStartNode();
-                    Set<String> startLabels = getLabels(start);
-
-                    // define the end labels
-                    Node end = rel.getEndNode();
-                    Set<String> endLabels = getLabels(end);
-
-                    // define the type
-                    String type = rel.getType().name();
-
-                    // create the path
-                    Map<String, Object> key = Util.map(
-                            "type",
-                            type,
-                            "start",
-                            new AbstractMap.SimpleImmutableEntry<>(
-                                    startLabels,
-                                    CypherFormatterUtils.getNodeIdProperties(start, uniqueConstraints)
-                                            .keySet()),
-                            "end",
-                            new AbstractMap.SimpleImmutableEntry<>(
-                                    endLabels,
-                                    CypherFormatterUtils.getNodeIdProperties(end, uniqueConstraints)
-                                            .keySet()));
-
-                    tx.commit();
-                    return key;
-                }
-            };
-            Map<Map<String, Object>, List<Relationship>> groupedData = StreamSupport.stream(
-                            com.google.common.collect.Iterables.limit(
-                                            com.google.common.collect.Iterables.skip(relationship, totalRelCount.get()),
-                                            exportConfig.getBatchSize())
-                                    .spliterator(),
-                            true)
-                    .collect(Collectors.groupingByConcurrent(keyMapper));
-
-            // Each loop will collect at most the batch size in rels to process
-            // This is done using a limit on the stream. If the limit returns less than
-            // the batch size, this means we have no more rels to process after this round and
-            // can stop.
-            if (relsInBatch.get() < exportConfig.getBatchSize()) shouldContinue = false;
-
-            AtomicInteger propertiesCount = new AtomicInteger(0);
-            AtomicInteger batchCount = new AtomicInteger(0);
-
-            String start = "start";
-            String end = "end";
-            AtomicInteger relCount = new AtomicInteger(0);
-            groupedData.forEach((path, relationshipList) -> {
-                AtomicInteger unwindCount = new AtomicInteger(0);
-                final int relSize = relationshipList.size();
-                relCount.addAndGet(relSize);
-                final Relationship last = relationshipList.get(relSize - 1);
-                for (Relationship rel : relationshipList) {
-                    writeBatchBegin(exportConfig, out, batchCount);
-                    writeUnwindStart(exportConfig, out, unwindCount);
-                    batchCount.incrementAndGet();
-                    unwindCount.incrementAndGet();
-                    Map<String, Object> props = rel.getAllProperties();
-                    // start element
-                    out.append("{");
-
-                    // start node
-                    Node startNode = rel.getStartNode();
-                    writeRelationshipNodeIds(uniqueConstraints, out, start, startNode);
-
-                    Node endNode = rel.getEndNode();
-                    final boolean withMultipleRels = exportConfig.isMultipleRelationshipsWithType();
-                    out.append(", ");
-                    if (withMultipleRels) {
-                        String uniqueId = String.format("%s: %s, ", ID_REL_KEY, rel.getId());
-                        out.append(uniqueId);
-                    }
+        Function<Relationship, Map<String, Object>> keyMapper = rel -> {
+            Node start = rel.getStartNode();
+            Node end = rel.getEndNode();
+            return Util.map(
+                    "type",
+                    rel.getType().name(),
+                    "start",
+                    new AbstractMap.SimpleImmutableEntry<>(
+                            getLabels(start),
+                            CypherFormatterUtils.getNodeIdProperties(start, uniqueConstraints)
+                                    .keySet()),
+                    "end",
+                    new AbstractMap.SimpleImmutableEntry<>(
+                            getLabels(end),
+                            CypherFormatterUtils.getNodeIdProperties(end, uniqueConstraints)
+                                    .keySet()));
+        };
+        buildUnwindStatements(
+                relationship,
+                keyMapper,
+                (path, rows) -> writeUnwindRelationships(
+                        relationshipClause, setClause, uniqueConstraints, exportConfig, out, path, rows),
+                exportConfig,
+                out,
+                (count, propertiesCount) -> reporter.update(0, count, propertiesCount));
+    }
+
+    private long writeUnwindRelationships(
+            String relationshipClause,
+            String setClause,
+            Map<String, Set<String>> uniqueConstraints,
+            ExportConfig exportConfig,
+            PrintWriter out,
+            Map<String, Object> path,
+            List<Relationship> rows) {
+        String start = "start";
+        String end = "end";
+        final boolean withMultipleRels = exportConfig.isMultipleRelationshipsWithType();
+        long propertiesCount = 0;
+        writeUnwindStart(exportConfig, out);
+        for (int i = 0; i < rows.size(); i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            Relationship rel = rows.get(i);
+            Map<String, Object> props = rel.getAllProperties();
+            // start element
+            out.append("{");
+
+            // start node
+            Node startNode = rel.getStartNode();
+            writeRelationshipNodeIds(uniqueConstraints, out, start, startNode);
+
+            Node endNode = rel.getEndNode();
+            out.append(", ");
+            if (withMultipleRels) {
+                String uniqueId = String.format("%s: %s, ", ID_REL_KEY, rel.getId());
+                out.append(uniqueId);
+            }
 
-                    // end node
-                    writeRelationshipNodeIds(uniqueConstraints, out, end, endNode);
+            // end node
+            writeRelationshipNodeIds(uniqueConstraints, out, end, endNode);
 
-                    // properties
-                    out.append(", ");
-                    out.append("properties:");
-                    writeProperties(out, props);
-                    propertiesCount.addAndGet(props.size());
-
-                    // end element
-                    out.append("}");
-
-                    if (last.equals(rel)
-                            || isBatchMatch(exportConfig, batchCount)
-                            || isUnwindBatchMatch(exportConfig, unwindCount)) {
-                        closeUnwindRelationships(
-                                relationshipClause,
-                                setClause,
-                                uniqueConstraints,
-                                exportConfig,
-                                out,
-                                start,
-                                end,
-                                path,
-                                last,
-                                withMultipleRels);
-                        writeBatchEnd(exportConfig, out, batchCount);
-                        unwindCount.set(0);
-                    } else {
-                        out.append(", ");
-                    }
-                }
-            });
-            addCommitToEnd(exportConfig, out, batchCount);
+            // properties
+            out.append(", ");
+            out.append("properties:");
+            writeProperties(out, props);
+            propertiesCount += props.size();
 
-            reporter.update(0, relCount.get(), propertiesCount.longValue());
+            // end element
+            out.append("}");
         }
+        closeUnwindRelationships(
+                relationshipClause,
+                setClause,
+                uniqueConstraints,
+                exportConfig,
+                out,
+                start,
+                end,
+                path,
+                rows.get(rows.size() - 1),
+                withMultipleRels);
+        return propertiesCount;
     }
 
     private void closeUnwindRelationships(
@@ -530,16 +503,6 @@ abstract class AbstractCypherFormatter implements CypherFormatter {
         out.append(StringUtils.LF);
     }
 
-    private boolean isUnwindBatchMatch(ExportConfig exportConfig, AtomicInteger batchCount) {
-        return batchCount.get() % exportConfig.getUnwindBatchSize() == 0;
-    }
-
-    private void writeBatchEnd(ExportConfig exportConfig, PrintWriter out, AtomicInteger batchCount) {
-        if (isBatchMatch(exportConfig, batchCount)) {
-            out.append(exportConfig.getFormat().commit());
-        }
-    }
-
     public void writeProperties(PrintWriter out, Map<String, Object> props) {
         out.append("{");
         if (!props.isEmpty()) {
@@ -564,26 +527,12 @@ abstract class AbstractCypherFormatter implements CypherFormatter {
         return Util.quote(key);
     }
 
-    private void addCommitToEnd(ExportConfig exportConfig, PrintWriter out, AtomicInteger batchCount) {
-        if (batchCount.get() % exportConfig.getBatchSize() != 0) {
-            out.append(exportConfig.getFormat().commit());
-        }
-    }
-
-    private void writeBatchBegin(ExportConfig exportConfig, PrintWriter out, AtomicInteger batchCount) {
-        if (isBatchMatch(exportConfig, batchCount)) {
-            out.append(exportConfig.getFormat().begin());
-        }
-    }
-
-    private void writeUnwindStart(ExportConfig exportConfig, PrintWriter out, AtomicInteger batchCount) {
-        if (isUnwindBatchMatch(exportConfig, batchCount)) {
-            String start = (exportConfig.getFormat() == ExportFormat.CYPHER_SHELL
-                            && exportConfig.getOptimizationType() == ExportConfig.OptimizationType.UNWIND_BATCH_PARAMS)
-                    ? ":param rows => ["
-                    : "UNWIND [";
-            out.append(start);
-        }
+    private void writeUnwindStart(ExportConfig exportConfig, PrintWriter out) {
+        String start = (exportConfig.getFormat() == ExportFormat.CYPHER_SHELL
+                        && exportConfig.getOptimizationType() == ExportConfig.OptimizationType.UNWIND_BATCH_PARAMS)
+                ? ":param rows => ["
+                : "UNWIND [";
+        out.append(start);
     }
 
     private void writeUnwindEnd(ExportConfig exportConfig, PrintWriter out) {
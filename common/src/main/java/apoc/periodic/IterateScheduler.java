@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.periodic;
+
+import apoc.util.Util;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.neo4j.procedure.TerminationGuard;
+
+/**
+ * Decides how many batches of an `apoc.periodic.iterate` can be in flight at the same time and how big the next batch is.
+ * The driver thread blocks in {@link #acquire(TerminationGuard)} until a running batch completes.
+ *
+ * With `adaptive: true` the batch size and the concurrency are tuned from the completed batches:
+ * retries (i.e. lock conflicts and deadlocks) halve both of them, the commit latency compared with `targetBatchMillis`
+ * grows or shrinks the batch size, and the concurrency is increased again as long as the throughput keeps improving.
+ */
+public class IterateScheduler {
+    static final long TERMINATION_CHECK_MILLIS = 100;
+    static final long DEFAULT_TARGET_BATCH_MILLIS = 1000;
+
+    private final boolean parallel;
+    private final boolean adaptive;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final int maxConcurrency;
+    private final long targetBatchNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition capacity = lock.newCondition();
+    private int inFlight;
+    private int concurrency;
+    private int batchSize;
+
+    // throughput of the last window of completed batches, used to decide if more concurrency pays off
+    private long windowStart = System.nanoTime();
+    private long windowRows;
+    private int windowBatches;
+    private double lastWindowThroughput;
+    private boolean grewConcurrency;
+
+    public IterateScheduler(int batchSize, int concurrency, boolean parallel) {
+        this(batchSize, concurrency, parallel, false, batchSize, batchSize, DEFAULT_TARGET_BATCH_MILLIS);
+    }
+
+    public IterateScheduler(
+            int batchSize,
+            int concurrency,
+            boolean parallel,
+            boolean adaptive,
+            int minBatchSize,
+            int maxBatchSize,
+            long targetBatchMillis) {
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+        this.maxConcurrency = concurrency;
+        this.parallel = parallel;
+        this.adaptive = adaptive;
+        this.minBatchSize = Math.min(minBatchSize, batchSize);
+        this.maxBatchSize = Math.max(maxBatchSize, batchSize);
+        this.targetBatchNanos = TimeUnit.MILLISECONDS.toNanos(targetBatchMillis);
+    }
+
+    public static IterateScheduler fromConfig(
+            Map<String, Object> config, int batchSize, int concurrency, boolean parallel) {
+        boolean adaptive = Util.toBoolean(config.getOrDefault("adaptive", false));
+        if (!adaptive) {
+            return new IterateScheduler(batchSize, concurrency, parallel);
+        }
+        int minBatchSize = Util.toInteger(config.getOrDefault("minBatchSize", Math.max(1, batchSize / 100)));
+        int maxBatchSize = Util.toInteger(config.getOrDefault("maxBatchSize", batchSize * 10));
+        long targetBatchMillis = Util.toLong(config.getOrDefault("targetBatchMillis", DEFAULT_TARGET_BATCH_MILLIS));
+        if (minBatchSize < 1 || maxBatchSize < minBatchSize) {
+            throw new IllegalArgumentException("minBatchSize must be > 0 and maxBatchSize must be >= minBatchSize");
+        }
+        if (targetBatchMillis < 1) {
+            throw new IllegalArgumentException("targetBatchMillis parameter must be > 0");
+        }
+        return new IterateScheduler(
+                batchSize, concurrency, parallel, true, minBatchSize, maxBatchSize, targetBatchMillis);
+    }
+
+    /**
+     * Blocks until there is room for another batch in flight.
+     * Returns false if the transaction has been terminated (or the thread interrupted) while waiting.
+     */
+    public boolean acquire(TerminationGuard terminationGuard) {
+        lock.lock();
+        try {
+            // sequential runs are throttled by the single executor queue, so they never wait here
+            while (parallel && inFlight >= concurrency) {
+                if (Util.transactionIsTerminated(terminationGuard)) {
+                    return false;
+                }
+                // wake up once in a while to check for termination, completed batches signal us directly
+                capacity.await(TERMINATION_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            inFlight++;
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases the slot taken by a batch, reporting its number of rows, elapsed time and number of retries.
+     */
+    public void release(long rows, long elapsedNanos, long retries) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (adaptive) {
+                adapt(rows, elapsedNanos, retries);
+            }
+            capacity.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void adapt(long rows, long elapsedNanos, long retries) {
+        if (retries > 0) {
+            // lock conflicts: back off multiplicatively and start measuring the throughput again
+            concurrency = Math.max(1, concurrency / 2);
+            batchSize = Math.max(minBatchSize, batchSize / 2);
+            grewConcurrency = false;
+            lastWindowThroughput = 0;
+            resetWindow();
+            return;
+        }
+
+        if (elapsedNanos > targetBatchNanos) {
+            batchSize = Math.max(minBatchSize, batchSize - batchSize / 4);
+        } else if (elapsedNanos < targetBatchNanos / 2) {
+            batchSize = Math.min(maxBatchSize, batchSize + Math.max(1, batchSize / 4));
+        }
+
+        windowRows += rows;
+        windowBatches++;
+        if (windowBatches < concurrency) {
+            return;
+        }
+        double throughput = (double) windowRows / Math.max(1, System.nanoTime() - windowStart);
+        if (grewConcurrency && throughput < lastWindowThroughput) {
+            // the last increase didn't pay off, so undo it
+            concurrency = Math.max(1, concurrency - 1);
+            grewConcurrency = false;
+        } else if (concurrency < maxConcurrency) {
+            concurrency++;
+            grewConcurrency = true;
+        } else {
+            grewConcurrency = false;
+        }
+        lastWindowThroughput = throughput;
+        resetWindow();
+    }
+
+    private void resetWindow() {
+        windowStart = System.nanoTime();
+        windowRows = 0;
+        windowBatches = 0;
+    }
+
+    public int nextBatchSize() {
+        lock.lock();
+        try {
+            return batchSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getConcurrency() {
+        lock.lock();
+        try {
+            return concurrency;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+}
@@ -21,17 +21,20 @@ package apoc.periodic;
 import static apoc.util.Util.merge;
 
 import apoc.Pools;
+import apoc.util.RetryPolicy;
 import apoc.util.Util;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.LockSupport;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.function.ToLongFunction;
@@ -40,6 +43,7 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.lang3.tuple.Pair;
+import org.neo4j.graphdb.Entity;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.QueryStatistics;
 import org.neo4j.graphdb.Result;
@@ -237,53 +241,249 @@ public class PeriodicUtils {
             int concurrency,
             int failedParams,
             String periodicId) {
+        return iterateAndExecuteBatchedInSeparateThread(
+                db,
+                terminationGuard,
+                log,
+                pools,
+                new IterateScheduler(batchsize, concurrency, parallel),
+                iterateList,
+                RetryPolicy.retries(retries),
+                iterator,
+                consumer,
+                failedParams,
+                periodicId);
+    }
+
+    public static Stream<BatchAndTotalResult> iterateAndExecuteBatchedInSeparateThread(
+            GraphDatabaseService db,
+            TerminationGuard terminationGuard,
+            Log log,
+            Pools pools,
+            IterateScheduler scheduler,
+            boolean iterateList,
+            RetryPolicy retryPolicy,
+            Iterator<Map<String, Object>> iterator,
+            BiFunction<Transaction, Map<String, Object>, QueryStatistics> consumer,
+            int failedParams,
+            String periodicId) {
 
-        ExecutorService pool = parallel ? pools.getDefaultExecutorService() : pools.getSingleExecutorService();
-        List<Future<Long>> futures = new ArrayList<>(concurrency);
+        ExecutorService pool =
+                scheduler.isParallel() ? pools.getCpuExecutorService() : pools.getSingleExecutorService();
+        List<Future<Long>> futures = new ArrayList<>();
         BatchAndTotalCollector collector = new BatchAndTotalCollector(terminationGuard, failedParams);
-        AtomicInteger activeFutures = new AtomicInteger(0);
 
         do {
             if (Util.transactionIsTerminated(terminationGuard)) break;
 
-            if (activeFutures.get() < concurrency || !parallel) {
-                // we have capacity, add a new Future to the list
-                activeFutures.incrementAndGet();
+            // blocks until a running batch completes if the in-flight window is full
+            if (!scheduler.acquire(terminationGuard)) break;
 
-                if (log.isDebugEnabled())
-                    log.debug("Execute, in periodic iteration with id %s, no %d batch size ", periodicId, batchsize);
-                List<Map<String, Object>> batch = Util.take(iterator, batchsize);
-                final long currentBatchSize = batch.size();
-                ExecuteBatch executeBatch = iterateList
-                        ? new ListExecuteBatch(terminationGuard, collector, batch, consumer)
-                        : new OneByOneExecuteBatch(terminationGuard, collector, batch, consumer);
+            int batchsize = scheduler.nextBatchSize();
+            if (log.isDebugEnabled())
+                log.debug("Execute, in periodic iteration with id %s, no %d batch size ", periodicId, batchsize);
+            List<Map<String, Object>> batch = Util.take(iterator, batchsize);
+            final long currentBatchSize = batch.size();
+            ExecuteBatch executeBatch = iterateList
+                    ? new ListExecuteBatch(terminationGuard, collector, batch, consumer)
+                    : new OneByOneExecuteBatch(terminationGuard, collector, batch, consumer);
 
+            AtomicLong batchRetries = new AtomicLong();
+            AtomicLong batchStart = new AtomicLong();
+            try {
                 futures.add(Util.inTxFuture(
                         log,
                         pool,
                         db,
-                        executeBatch,
-                        retries,
-                        retryCount -> collector.incrementRetried(),
+                        txInThread -> {
+                            batchStart.compareAndSet(0, System.nanoTime());
+                            return executeBatch.apply(txInThread);
+                        },
+                        retryPolicy,
+                        retryCount -> {
+                            batchRetries.incrementAndGet();
+                            collector.incrementRetried();
+                        },
                         onComplete -> {
                             collector.incrementBatches();
                             executeBatch.release();
-                            activeFutures.decrementAndGet();
+                            long elapsed = batchStart.get() == 0 ? 0 : System.nanoTime() - batchStart.get();
+                            scheduler.release(currentBatchSize, elapsed, batchRetries.get());
                         }));
-                collector.incrementCount(currentBatchSize);
-                if (log.isDebugEnabled()) {
-                    log.debug(
-                            "Processed in periodic iteration with id %s, %d iterations of %d total",
-                            periodicId, batchsize, collector.getCount());
-                }
-            } else {
-                // we can't block until the counter decrease as we might miss a cancellation, so
-                // let this thread be preempted for a bit before we check for cancellation or
-                // capacity.
-                LockSupport.parkNanos(1000);
+            } catch (RuntimeException e) {
+                scheduler.release(currentBatchSize, 0, 0);
+                throw e;
+            }
+            collector.incrementCount(currentBatchSize);
+            if (log.isDebugEnabled()) {
+                log.debug(
+                        "Processed in periodic iteration with id %s, %d iterations of %d total",
+                        periodicId, batchsize, collector.getCount());
             }
         } while (iterator.hasNext());
 
+        if (scheduler.isAdaptive() && log.isDebugEnabled()) {
+            log.debug(
+                    "Adaptive periodic iteration with id %s ended with batch size %d and concurrency %d",
+                    periodicId, scheduler.nextBatchSize(), scheduler.getConcurrency());
+        }
+
+        return collectResults(terminationGuard, log, futures, collector, periodicId);
+    }
+
+    /**
+     * Routes the rows of the driving statement to `concurrency` lanes by the hash of their partition key.
+     * Each lane commits its batches serially, different lanes run in parallel on the CPU pool,
+     * so rows sharing a partition key (e.g. the same hub node) are never written by two concurrent transactions.
+     */
+    public static Stream<BatchAndTotalResult> iterateAndExecutePartitionedInSeparateThread(
+            GraphDatabaseService db,
+            TerminationGuard terminationGuard,
+            Log log,
+            Pools pools,
+            int batchsize,
+            boolean iterateList,
+            RetryPolicy retryPolicy,
+            Iterator<Map<String, Object>> iterator,
+            BiFunction<Transaction, Map<String, Object>, QueryStatistics> consumer,
+            int concurrency,
+            int failedParams,
+            String periodicId,
+            Function<Map<String, Object>, Object> partitionKey) {
+
+        ExecutorService pool = pools.getCpuExecutorService();
+        List<Future<Long>> futures = new ArrayList<>();
+        BatchAndTotalCollector collector = new BatchAndTotalCollector(terminationGuard, failedParams);
+        List<List<Map<String, Object>>> lanes = new ArrayList<>(concurrency);
+        List<Future<Long>> lanesInFlight = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            lanes.add(new ArrayList<>(batchsize));
+            lanesInFlight.add(null);
+        }
+
+        boolean terminated = false;
+        while (iterator.hasNext()) {
+            if (Util.transactionIsTerminated(terminationGuard)) {
+                terminated = true;
+                break;
+            }
+            Map<String, Object> row = iterator.next();
+            int lane = Math.floorMod(partitionHash(partitionKey.apply(row)), concurrency);
+            List<Map<String, Object>> batch = lanes.get(lane);
+            batch.add(row);
+            if (batch.size() < batchsize) continue;
+
+            // a lane commits serially, so wait for its previous batch before submitting the next one
+            if (!awaitLane(lanesInFlight.get(lane), terminationGuard)) {
+                terminated = true;
+                break;
+            }
+            Future<Long> future =
+                    submitBatch(log, pool, db, terminationGuard, collector, batch, iterateList, retryPolicy, consumer);
+            lanesInFlight.set(lane, future);
+            futures.add(future);
+            lanes.set(lane, new ArrayList<>(batchsize));
+            if (log.isDebugEnabled()) {
+                log.debug(
+                        "Processed in partitioned periodic iteration with id %s, lane %d, %d iterations of %d total",
+                        periodicId, lane, batchsize, collector.getCount());
+            }
+        }
+
+        // flush the partially filled lanes
+        for (int lane = 0; lane < concurrency && !terminated; lane++) {
+            List<Map<String, Object>> batch = lanes.get(lane);
+            if (batch.isEmpty()) continue;
+            if (!awaitLane(lanesInFlight.get(lane), terminationGuard)) break;
+            futures.add(
+                    submitBatch(log, pool, db, terminationGuard, collector, batch, iterateList, retryPolicy, consumer));
+        }
+
+        return collectResults(terminationGuard, log, futures, collector, periodicId);
+    }
+
+    /**
+     * Returns a function extracting the partition key of a row of the driving statement.
+     * The `partitionBy` value is either one of its columns or a `column.property` access on a node, relationship or map column.
+     */
+    public static Function<Map<String, Object>, Object> partitionKey(String partitionBy, List<String> columns) {
+        if (columns.contains(partitionBy)) {
+            return row -> row.get(partitionBy);
+        }
+        int dot = partitionBy.indexOf('.');
+        String column = dot > 0 ? partitionBy.substring(0, dot) : partitionBy;
+        if (!columns.contains(column)) {
+            throw new IllegalArgumentException(
+                    "partitionBy must be a column of the first statement, or a property of one, but got `" + partitionBy
+                            + "`. Available columns are: " + columns);
+        }
+        String property = partitionBy.substring(dot + 1);
+        return row -> {
+            Object value = row.get(column);
+            if (value instanceof Entity entity) return entity.getProperty(property, null);
+            if (value instanceof Map<?, ?> map) return map.get(property);
+            return null;
+        };
+    }
+
+    static int partitionHash(Object key) {
+        if (key instanceof Entity entity) return entity.getElementId().hashCode();
+        return Objects.hashCode(key);
+    }
+
+    private static boolean awaitLane(Future<Long> future, TerminationGuard terminationGuard) {
+        if (future == null) return true;
+        while (!Util.transactionIsTerminated(terminationGuard)) {
+            try {
+                future.get(IterateScheduler.TERMINATION_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+                return true;
+            } catch (TimeoutException e) {
+                // still running, check for termination again
+            } catch (ExecutionException e) {
+                // failures are collected with the other futures at the end
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static Future<Long> submitBatch(
+            Log log,
+            ExecutorService pool,
+            GraphDatabaseService db,
+            TerminationGuard terminationGuard,
+            BatchAndTotalCollector collector,
+            List<Map<String, Object>> batch,
+            boolean iterateList,
+            RetryPolicy retryPolicy,
+            BiFunction<Transaction, Map<String, Object>, QueryStatistics> consumer) {
+        ExecuteBatch executeBatch = iterateList
+                ? new ListExecuteBatch(terminationGuard, collector, batch, consumer)
+                : new OneByOneExecuteBatch(terminationGuard, collector, batch, consumer);
+        Future<Long> future = Util.inTxFuture(
+                log,
+                pool,
+                db,
+                executeBatch,
+                retryPolicy,
+                retryCount -> collector.incrementRetried(),
+                onComplete -> {
+                    collector.incrementBatches();
+                    executeBatch.release();
+                });
+        collector.incrementCount(batch.size());
+        return future;
+    }
+
+    private static Stream<BatchAndTotalResult> collectResults(
+            TerminationGuard terminationGuard,
+            Log log,
+            List<Future<Long>> futures,
+            BatchAndTotalCollector collector,
+            String periodicId) {
         boolean wasTerminated = Util.transactionIsTerminated(terminationGuard);
         ToLongFunction<Future<Long>> toLongFunction = wasTerminated
                 ? f -> Util.getFutureOrCancel(f, collector.getBatchErrors(), collector.getFailedBatches(), 0L)
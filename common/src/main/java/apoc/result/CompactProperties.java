@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.result;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Properties of the virtual entities kept in two parallel arrays of keys and values,
+ * instead of a {@link java.util.HashMap}.
+ *
+ * The key arrays are shared by the entities with the same keys in the same order (e.g. the nodes of a grouping),
+ * so that each entity only pays for the array of its values. The lookups scan the keys,
+ * which for the few properties of a virtual entity is about as fast as hashing.
+ */
+class CompactProperties extends AbstractMap<String, Object> {
+    private static final int MAX_SHARED_KEYS = 1024;
+    private static final Map<List<String>, String[]> SHARED_KEYS = new ConcurrentHashMap<>();
+
+    private String[] keys;
+    private Object[] values;
+
+    CompactProperties(Map<String, Object> props) {
+        String[] keys = new String[props.size()];
+        Object[] values = new Object[props.size()];
+        int i = 0;
+        for (Map.Entry<String, Object> entry : props.entrySet()) {
+            keys[i] = entry.getKey();
+            values[i++] = entry.getValue();
+        }
+        this.keys = share(keys);
+        this.values = values;
+    }
+
+    private static String[] share(String[] keys) {
+        if (SHARED_KEYS.size() >= MAX_SHARED_KEYS) {
+            // too many distinct key sets to be worth sharing, start over
+            SHARED_KEYS.clear();
+        }
+        // the shared arrays are never modified, a change of the keys makes a copy
+        return SHARED_KEYS.computeIfAbsent(Arrays.asList(keys), k -> keys);
+    }
+
+    private int indexOf(Object key) {
+        for (int i = 0; i < keys.length; i++) {
+            if (Objects.equals(keys[i], key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : values[index];
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            Object previous = values[index];
+            values[index] = value;
+            return previous;
+        }
+        String[] newKeys = Arrays.copyOf(keys, keys.length + 1);
+        newKeys[keys.length] = key;
+        values = Arrays.copyOf(values, values.length + 1);
+        values[values.length - 1] = value;
+        keys = share(newKeys);
+        return null;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        Object previous = values[index];
+        removeAt(index);
+        return previous;
+    }
+
+    private void removeAt(int index) {
+        String[] newKeys = new String[keys.length - 1];
+        Object[] newValues = new Object[values.length - 1];
+        System.arraycopy(keys, 0, newKeys, 0, index);
+        System.arraycopy(keys, index + 1, newKeys, index, newKeys.length - index);
+        System.arraycopy(values, 0, newValues, 0, index);
+        System.arraycopy(values, index + 1, newValues, index, newValues.length - index);
+        keys = share(newKeys);
+        values = newValues;
+    }
+
+    @Override
+    public void clear() {
+        keys = share(new String[0]);
+        values = new Object[0];
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public int size() {
+                return keys.length;
+            }
+
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<>() {
+                    private int next;
+                    private int last = -1;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < keys.length;
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        last = next++;
+                        return new PropertyEntry(last);
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (last < 0) {
+                            throw new IllegalStateException();
+                        }
+                        removeAt(last);
+                        next = last;
+                        last = -1;
+                    }
+                };
+            }
+        };
+    }
+
+    private class PropertyEntry extends SimpleEntry<String, Object> {
+        private final int index;
+
+        PropertyEntry(int index) {
+            super(keys[index], values[index]);
+            this.index = index;
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            // write through, as long as the property is still at the same position
+            if (index < keys.length && Objects.equals(keys[index], getKey())) {
+                values[index] = value;
+            }
+            return super.setValue(value);
+        }
+    }
+}
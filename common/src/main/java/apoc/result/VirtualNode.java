@@ -21,7 +21,6 @@ package apoc.result;
 import static java.util.Arrays.asList;
 
 import apoc.util.Util;
-import apoc.util.collection.FilteringIterable;
 import apoc.util.collection.Iterables;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
@@ -37,8 +36,12 @@ public class VirtualNode implements Node {
 
     private static AtomicLong MIN_ID = new AtomicLong(-1);
     private final Set<String> labels = new LinkedHashSet<>();
-    private final Map<String, Object> props = new HashMap<>();
-    private final List<Relationship> rels = new ArrayList<>();
+    private Map<String, Object> props = new HashMap<>();
+    private final Set<Relationship> rels = new LinkedHashSet<>();
+    // the relationships by direction and by type name, so the lookups and degrees don't scan all the relationships
+    private final Set<Relationship> outgoingRels = new LinkedHashSet<>();
+    private final Set<Relationship> incomingRels = new LinkedHashSet<>();
+    private final Map<String, RelationshipBucket> relsByType = new LinkedHashMap<>();
     private final long id;
     private final String elementId;
 
@@ -92,14 +95,16 @@ public class VirtualNode implements Node {
 
     @Override
     public void delete() {
-        for (Relationship rel : rels) {
+        // each relationship unregisters itself from its nodes
+        for (Relationship rel : new ArrayList<>(rels)) {
             rel.delete();
         }
     }
 
     @Override
     public ResourceIterable<Relationship> getRelationships() {
-        return Iterables.asResourceIterable(rels);
+        // a copy, so that the relationships can be deleted while iterating
+        return Iterables.asResourceIterable(new ArrayList<>(rels));
     }
 
     @Override
@@ -109,20 +114,30 @@ public class VirtualNode implements Node {
 
     @Override
     public ResourceIterable<Relationship> getRelationships(RelationshipType... relationshipTypes) {
-        return Iterables.asResourceIterable(new FilteringIterable<>(rels, (r) -> isType(r, relationshipTypes)));
-    }
-
-    private boolean isType(Relationship r, RelationshipType... relationshipTypes) {
-        for (RelationshipType type : relationshipTypes) {
-            if (r.isType(type)) return true;
-        }
-        return false;
+        return getRelationships(Direction.BOTH, relationshipTypes);
     }
 
     @Override
     public ResourceIterable<Relationship> getRelationships(Direction direction, RelationshipType... relationshipTypes) {
-        return Iterables.asResourceIterable(
-                new FilteringIterable<>(rels, (r) -> isType(r, relationshipTypes) && isDirection(r, direction)));
+        if (relationshipTypes.length == 1) {
+            RelationshipBucket bucket = relsByType.get(relationshipTypes[0].name());
+            // a copy, so that the relationships can be deleted while iterating
+            return Iterables.asResourceIterable(
+                    bucket == null ? Collections.emptyList() : new ArrayList<>(bucket.get(direction)));
+        }
+        // the buckets of the distinct types, one after the other
+        Set<String> typeNames = new LinkedHashSet<>();
+        for (RelationshipType type : relationshipTypes) {
+            typeNames.add(type.name());
+        }
+        List<Relationship> result = new ArrayList<>();
+        for (String typeName : typeNames) {
+            RelationshipBucket bucket = relsByType.get(typeName);
+            if (bucket != null) {
+                result.addAll(bucket.get(direction));
+            }
+        }
+        return Iterables.asResourceIterable(result);
     }
 
     private boolean isDirection(Relationship r, Direction direction) {
@@ -133,22 +148,29 @@ public class VirtualNode implements Node {
 
     @Override
     public boolean hasRelationship(RelationshipType... relationshipTypes) {
-        return getRelationships(relationshipTypes).iterator().hasNext();
+        return hasRelationship(Direction.BOTH, relationshipTypes);
     }
 
     @Override
     public boolean hasRelationship(Direction direction, RelationshipType... relationshipTypes) {
-        return getRelationships(direction, relationshipTypes).iterator().hasNext();
+        for (RelationshipType type : relationshipTypes) {
+            if (getDegree(type, direction) > 0) return true;
+        }
+        return false;
     }
 
     @Override
     public ResourceIterable<Relationship> getRelationships(Direction direction) {
-        return Iterables.asResourceIterable(new FilteringIterable<>(rels, (r) -> isDirection(r, direction)));
+        if (direction == Direction.BOTH) {
+            return getRelationships();
+        }
+        return Iterables.asResourceIterable(
+                new ArrayList<>(direction == Direction.OUTGOING ? outgoingRels : incomingRels));
     }
 
     @Override
     public boolean hasRelationship(Direction direction) {
-        return getRelationships(direction).iterator().hasNext();
+        return getDegree(direction) > 0;
     }
 
     @Override
@@ -159,37 +181,44 @@ public class VirtualNode implements Node {
     @Override
     public VirtualRelationship createRelationshipTo(Node node, RelationshipType relationshipType) {
         VirtualRelationship rel = new VirtualRelationship(this, node, relationshipType);
-        rels.add(rel);
-        if (node
-                instanceof
-                VirtualNode) { // register the inverse relationship into the target virtual node only if it is not a
-            // self relationship
-            VirtualNode target = (VirtualNode) node;
-            if (!target.rels.contains(rel)) {
-                target.rels.add(rel);
-            }
+        addRelationship(rel);
+        if (node instanceof VirtualNode target) {
+            // register the inverse relationship into the target virtual node, a self relationship is only added once
+            target.addRelationship(rel);
         }
         return rel;
     }
 
     public VirtualRelationship createRelationshipFrom(Node start, RelationshipType relationshipType) {
         VirtualRelationship rel = new VirtualRelationship(start, this, relationshipType);
-        rels.add(rel);
-        if (start
-                instanceof
-                VirtualNode) { // register the inverse relationship into the start virtual node only if it is not a self
-            // relationship
-            VirtualNode startVirtual = (VirtualNode) start;
-            if (!startVirtual.rels.contains(rel)) {
-                startVirtual.rels.add(rel);
-            }
+        addRelationship(rel);
+        if (start instanceof VirtualNode startVirtual) {
+            // register the inverse relationship into the start virtual node, a self relationship is only added once
+            startVirtual.addRelationship(rel);
         }
         return rel;
     }
 
+    private void addRelationship(Relationship rel) {
+        if (!rels.add(rel)) {
+            return;
+        }
+        RelationshipBucket bucket =
+                relsByType.computeIfAbsent(rel.getType().name(), k -> new RelationshipBucket());
+        bucket.all.add(rel);
+        if (isDirection(rel, Direction.OUTGOING)) {
+            bucket.outgoing.add(rel);
+            outgoingRels.add(rel);
+        }
+        if (isDirection(rel, Direction.INCOMING)) {
+            bucket.incoming.add(rel);
+            incomingRels.add(rel);
+        }
+    }
+
     @Override
     public Iterable<RelationshipType> getRelationshipTypes() {
-        return rels.stream().map(Relationship::getType).collect(Collectors.toList());
+        return relsByType.keySet().stream().map(RelationshipType::withName).collect(Collectors.toList());
     }
 
     @Override
@@ -199,17 +228,22 @@ public class VirtualNode implements Node {
 
     @Override
     public int getDegree(RelationshipType relationshipType) {
-        return (int) Iterables.count(getRelationships(relationshipType));
+        return getDegree(relationshipType, Direction.BOTH);
     }
 
     @Override
     public int getDegree(Direction direction) {
-        return (int) Iterables.count(getRelationships(direction));
+        return switch (direction) {
+            case OUTGOING -> outgoingRels.size();
+            case INCOMING -> incomingRels.size();
+            case BOTH -> rels.size();
+        };
     }
 
     @Override
     public int getDegree(RelationshipType relationshipType, Direction direction) {
-        return (int) Iterables.count(getRelationships(direction, relationshipType));
+        RelationshipBucket bucket = relsByType.get(relationshipType.name());
+        return bucket == null ? 0 : bucket.get(direction).size();
     }
 
     @Override
@@ -282,7 +316,30 @@ public class VirtualNode implements Node {
     }
 
     void delete(Relationship rel) {
-        rels.remove(rel);
+        if (!rels.remove(rel)) {
+            return;
+        }
+        String typeName = rel.getType().name();
+        RelationshipBucket bucket = relsByType.get(typeName);
+        bucket.all.remove(rel);
+        bucket.outgoing.remove(rel);
+        bucket.incoming.remove(rel);
+        outgoingRels.remove(rel);
+        incomingRels.remove(rel);
+        if (bucket.all.isEmpty()) {
+            relsByType.remove(typeName);
+        }
+    }
+
+    /**
+     * Switches the properties to the compact layout of {@link CompactProperties},
+     * for the virtual graphs with many nodes sharing the same property keys
+     */
+    public VirtualNode compactProperties() {
+        if (!(props instanceof CompactProperties)) {
+            props = new CompactProperties(props);
+        }
+        return this;
     }
 
     @Override
@@ -299,4 +356,19 @@ public class VirtualNode implements Node {
     public String toString() {
         return "VirtualNode{" + "id=" + id + ", labels=" + labels + ", props=" + props + ", rels=" + rels + '}';
     }
+
+    private static class RelationshipBucket {
+        // a self relationship is both outgoing and incoming
+        final Set<Relationship> all = new LinkedHashSet<>();
+        final Set<Relationship> outgoing = new LinkedHashSet<>();
+        final Set<Relationship> incoming = new LinkedHashSet<>();
+
+        Set<Relationship> get(Direction direction) {
+            return switch (direction) {
+                case OUTGOING -> outgoing;
+                case INCOMING -> incoming;
+                case BOTH -> all;
+            };
+        }
+    }
 }
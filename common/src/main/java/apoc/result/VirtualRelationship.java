@@ -43,7 +43,7 @@ public class VirtualRelationship implements Relationship {
     private final Node endNode;
     private final RelationshipType type;
     private final long id;
-    private final Map<String, Object> props = new HashMap<>();
+    private Map<String, Object> props = new HashMap<>();
 
     public VirtualRelationship(Node startNode, Node endNode, RelationshipType type, Map<String, Object> props) {
         this(startNode, endNode, type);
@@ -183,6 +183,17 @@ public class VirtualRelationship implements Relationship {
         return this;
     }
 
+    /**
+     * Switches the properties to the compact layout of {@link CompactProperties},
+     * for the virtual graphs with many relationships sharing the same property keys
+     */
+    public VirtualRelationship compactProperties() {
+        if (!(props instanceof CompactProperties)) {
+            props = new CompactProperties(props);
+        }
+        return this;
+    }
+
     @Override
     public String toString() {
         return "VirtualRelationship{" + "startNode=" + startNode.getLabels() + ", endNode=" + endNode.getLabels() + ", "
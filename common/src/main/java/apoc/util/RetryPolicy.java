@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.util;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.neo4j.graphdb.ConstraintViolationException;
+import org.neo4j.graphdb.QueryExecutionException;
+import org.neo4j.graphdb.TransientFailureException;
+import org.neo4j.kernel.api.exceptions.Status;
+
+/**
+ * Decides whether a failed transaction is retried by {@link Util#retryInTx} and how long to wait before the next attempt.
+ *
+ * Only transient errors (deadlocks, lock timeouts, ...) are retried, constraint violations and the other errors
+ * give up straight away. The wait grows exponentially from `retryBackoff` up to {@link #DEFAULT_MAX_BACKOFF_MILLIS}
+ * with a random jitter, so that concurrent workers failing together don't retry in lockstep.
+ * Retries stop after `retries` attempts or once `retryTimeout` milliseconds have passed since the first attempt.
+ */
+public class RetryPolicy {
+    public static final long DEFAULT_BACKOFF_MILLIS = 100;
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 10_000;
+
+    public static final RetryPolicy NONE = new RetryPolicy(0, 0, DEFAULT_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS);
+    public static final RetryPolicy DEFAULT =
+            new RetryPolicy(5, 0, DEFAULT_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS);
+
+    private static final String TRANSIENT_ERROR_PREFIX = "Neo.TransientError.";
+
+    private final long maxRetries;
+    private final long timeoutNanos;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+
+    public RetryPolicy(long maxRetries, long timeoutMillis, long backoffMillis, long maxBackoffMillis) {
+        this.maxRetries = maxRetries;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.backoffMillis = backoffMillis;
+        this.maxBackoffMillis = Math.max(backoffMillis, maxBackoffMillis);
+    }
+
+    public static RetryPolicy retries(long maxRetries) {
+        return maxRetries <= 0
+                ? NONE
+                : new RetryPolicy(maxRetries, 0, DEFAULT_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS);
+    }
+
+    /**
+     * Reads the `retries`, `retryTimeout` (ms) and `retryBackoff` (ms) config keys.
+     * If only `retryTimeout` is set, retries continue until the deadline.
+     */
+    public static RetryPolicy fromConfig(Map<String, Object> config) {
+        long retryTimeout = Util.toLong(config.getOrDefault("retryTimeout", 0));
+        long defaultRetries = retryTimeout > 0 ? Long.MAX_VALUE : 0;
+        long retries = Util.toLong(config.getOrDefault("retries", defaultRetries));
+        long retryBackoff = Util.toLong(config.getOrDefault("retryBackoff", DEFAULT_BACKOFF_MILLIS));
+        if (retries < 0 || retryTimeout < 0 || retryBackoff < 0) {
+            throw new IllegalArgumentException("retries, retryTimeout and retryBackoff parameters must be >= 0");
+        }
+        return new RetryPolicy(retries, retryTimeout, retryBackoff, DEFAULT_MAX_BACKOFF_MILLIS);
+    }
+
+    public long getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * @param error the failure of the last attempt
+     * @param retry the number of retries already made
+     * @param startNanos the {@link System#nanoTime()} of the first attempt
+     * @param nextBackoffMillis the wait before the next attempt
+     */
+    public boolean shouldRetry(Throwable error, long retry, long startNanos, long nextBackoffMillis) {
+        if (retry >= maxRetries || !isRetryable(error)) {
+            return false;
+        }
+        if (timeoutNanos <= 0) {
+            return true;
+        }
+        long elapsed = System.nanoTime() - startNanos + TimeUnit.MILLISECONDS.toNanos(nextBackoffMillis);
+        return elapsed < timeoutNanos;
+    }
+
+    /**
+     * Exponential backoff with "equal jitter": half of the wait is fixed, the other half random.
+     */
+    public long backoffMillis(long retry) {
+        long cap = backoffMillis << Math.min(retry, 20);
+        if (cap <= 0 || cap > maxBackoffMillis) {
+            cap = maxBackoffMillis;
+        }
+        long half = cap / 2;
+        return half + ThreadLocalRandom.current().nextLong(cap - half + 1);
+    }
+
+    public static boolean isRetryable(Throwable error) {
+        boolean transientError = false;
+        for (Throwable t : ExceptionUtils.getThrowableList(error)) {
+            if (isConstraintViolation(t)) {
+                return false;
+            }
+            transientError |= isTransient(t);
+        }
+        return transientError;
+    }
+
+    private static boolean isTransient(Throwable t) {
+        if (t instanceof TransientFailureException) {
+            return true;
+        }
+        if (t instanceof QueryExecutionException queryException) {
+            String statusCode = queryException.getStatusCode();
+            return statusCode != null && statusCode.startsWith(TRANSIENT_ERROR_PREFIX);
+        }
+        return t instanceof Status.HasStatus hasStatus
+                && hasStatus.status().code().classification() == Status.Classification.TransientError;
+    }
+
+    private static boolean isConstraintViolation(Throwable t) {
+        if (t instanceof ConstraintViolationException) {
+            return true;
+        }
+        if (t instanceof QueryExecutionException queryException) {
+            return Status.Schema.ConstraintValidationFailed.code()
+                    .serialize()
+                    .equals(queryException.getStatusCode());
+        }
+        return t instanceof Status.HasStatus hasStatus
+                && hasStatus.status() == Status.Schema.ConstraintValidationFailed;
+    }
+}
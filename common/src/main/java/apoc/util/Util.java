@@ -208,18 +208,42 @@ public class Util {
             long retry,
             long maxRetries,
             Consumer<Long> callbackForRetry) {
-        try (Transaction tx = db.beginTx()) {
-            T result = function.apply(tx);
-            tx.commit();
-            return result;
-        } catch (Exception e) {
-            if (retry >= maxRetries) throw e;
-            if (log != null) {
-                log.warn("Retrying operation %d of %d", retry, maxRetries);
+        return retryInTx(log, db, function, RetryPolicy.retries(maxRetries), retry, callbackForRetry);
+    }
+
+    public static <T> T retryInTx(
+            Log log,
+            GraphDatabaseService db,
+            Function<Transaction, T> function,
+            RetryPolicy retryPolicy,
+            Consumer<Long> callbackForRetry) {
+        return retryInTx(log, db, function, retryPolicy, 0, callbackForRetry);
+    }
+
+    private static <T> T retryInTx(
+            Log log,
+            GraphDatabaseService db,
+            Function<Transaction, T> function,
+            RetryPolicy retryPolicy,
+            long firstRetry,
+            Consumer<Long> callbackForRetry) {
+        long start = System.nanoTime();
+        for (long retry = firstRetry; ; retry++) {
+            try (Transaction tx = db.beginTx()) {
+                T result = function.apply(tx);
+                tx.commit();
+                return result;
+            } catch (Exception e) {
+                long backoff = retryPolicy.backoffMillis(retry);
+                if (!retryPolicy.shouldRetry(e, retry, start, backoff)) throw e;
+                if (log != null) {
+                    log.warn(
+                            "Retrying operation %d of %d in %d ms because of: %s",
+                            retry, retryPolicy.getMaxRetries(), backoff, e.getMessage());
+                }
+                callbackForRetry.accept(retry);
+                Util.sleep((int) backoff);
             }
-            callbackForRetry.accept(retry);
-            Util.sleep(100);
-            return retryInTx(log, db, function, retry + 1, maxRetries, callbackForRetry);
         }
     }
 
@@ -231,10 +255,22 @@ public class Util {
             long maxRetries,
             Consumer<Long> callbackForRetry,
             Consumer<Void> callbackAction) {
+        return inTxFuture(
+                log, pool, db, function, RetryPolicy.retries(maxRetries), callbackForRetry, callbackAction);
+    }
+
+    public static <T> Future<T> inTxFuture(
+            Log log,
+            ExecutorService pool,
+            GraphDatabaseService db,
+            Function<Transaction, T> function,
+            RetryPolicy retryPolicy,
+            Consumer<Long> callbackForRetry,
+            Consumer<Void> callbackAction) {
         try {
             return pool.submit(() -> {
                 try {
-                    return retryInTx(log, db, function, 0, maxRetries, callbackForRetry);
+                    return retryInTx(log, db, function, retryPolicy, callbackForRetry);
                 } finally {
                     callbackAction.accept(null);
                 }
@@ -246,7 +282,7 @@ public class Util {
 
     public static <T> Future<T> inTxFuture(
             ExecutorService pool, GraphDatabaseService db, Function<Transaction, T> function) {
-        return inTxFuture(null, pool, db, function, 0, _ignored -> {}, _ignored -> {});
+        return inTxFuture(null, pool, db, function, RetryPolicy.NONE, _ignored -> {}, _ignored -> {});
     }
 
     public static <T> T inTx(GraphDatabaseService db, Pools pools, Function<Transaction, T> function) {
@@ -648,7 +684,7 @@ public class Util {
         try {
             Thread.sleep(millis);
         } catch (InterruptedException e) {
-            /* ignore */
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -1106,7 +1142,7 @@ public class Util {
 
     public static <T extends Entity> T withTransactionAndRebind(
             GraphDatabaseService db, Transaction transaction, Function<Transaction, T> action) {
-        T result = retryInTx(NullLog.getInstance(), db, action, 0, 0, r -> {});
+        T result = retryInTx(NullLog.getInstance(), db, action, RetryPolicy.NONE, r -> {});
         return rebind(transaction, result);
     }
 
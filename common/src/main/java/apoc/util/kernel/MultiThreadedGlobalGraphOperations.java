@@ -18,44 +18,118 @@
  */
 package apoc.util.kernel;
 
-import java.util.concurrent.Callable;
+import apoc.Pools;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import org.neo4j.exceptions.KernelException;
+import org.neo4j.graphdb.Resource;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.internal.kernel.api.Cursor;
 import org.neo4j.internal.kernel.api.NodeCursor;
 import org.neo4j.internal.kernel.api.PartitionedScan;
-import org.neo4j.internal.kernel.api.Read;
+import org.neo4j.internal.kernel.api.RelationshipScanCursor;
 import org.neo4j.internal.kernel.api.security.LoginContext;
 import org.neo4j.kernel.api.ExecutionContext;
 import org.neo4j.kernel.api.KernelTransaction;
 import org.neo4j.kernel.impl.coreapi.InternalTransaction;
 import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.procedure.TerminationGuard;
 
+/**
+ * Parallel scans of the graph, split in partitions by the kernel.
+ *
+ * A scan is created by its own transaction, which stays open until the scan is over.
+ * A fixed number of workers, each one with its own transaction and cursor, reserve partitions
+ * until there are none left, the last worker to finish completes the scan.
+ * The consumer is called on the worker threads, with the transaction of the worker and the cursor on the entity.
+ */
 public class MultiThreadedGlobalGraphOperations {
+    private static final int TERMINATION_CHECK_INTERVAL = 10_000;
 
     public static BatchJobResult forAllNodes(
             GraphDatabaseAPI db, ExecutorService executorService, int batchSize, Consumer<NodeCursor> consumer) {
+        return forAllNodes(db, executorService, batchSize, (tx, cursor) -> consumer.accept(cursor));
+    }
+
+    /**
+     * As {@link #forAllNodes(GraphDatabaseAPI, ExecutorService, int, Consumer)},
+     * the consumer also gets the transaction of the worker, e.g. to read the node through the core API
+     */
+    public static BatchJobResult forAllNodes(
+            GraphDatabaseAPI db,
+            ExecutorService executorService,
+            int batchSize,
+            BiConsumer<Transaction, NodeCursor> consumer) {
+        return scan(db, executorService, ScanSource.allNodes(), new ScanOptions().batchSize(batchSize), consumer);
+    }
+
+    public static BatchJobResult forAllRelationships(
+            GraphDatabaseAPI db,
+            ExecutorService executorService,
+            int batchSize,
+            BiConsumer<Transaction, RelationshipScanCursor> consumer) {
+        return scan(
+                db, executorService, ScanSource.allRelationships(), new ScanOptions().batchSize(batchSize), consumer);
+    }
+
+    /**
+     * Runs the consumer on every entity of the source and waits for the end of the scan.
+     * The failures of the consumer are counted in the result, a termination of the scan is rethrown.
+     */
+    public static <C extends Cursor> BatchJobResult scan(
+            GraphDatabaseAPI db,
+            ExecutorService executorService,
+            ScanSource<C> source,
+            ScanOptions options,
+            BiConsumer<Transaction, C> consumer) {
+        return scanPerWorker(db, executorService, source, options, tx -> cursor -> consumer.accept(tx, cursor));
+    }
+
+    /**
+     * As {@link #scan(GraphDatabaseAPI, ExecutorService, ScanSource, ScanOptions, BiConsumer)},
+     * each worker creates its own {@link ScanWorker} with its transaction, e.g. to allocate its cursors once
+     */
+    public static <C extends Cursor> BatchJobResult scanPerWorker(
+            GraphDatabaseAPI db,
+            ExecutorService executorService,
+            ScanSource<C> source,
+            ScanOptions options,
+            Function<InternalTransaction, ScanWorker<C>> workerFactory) {
         BatchJobResult result = new BatchJobResult();
-        AtomicInteger processing = new AtomicInteger();
         try (InternalTransaction tx =
                 db.beginTransaction(KernelTransaction.Type.EXPLICIT, LoginContext.AUTH_DISABLED)) {
             KernelTransaction ktx = tx.kernelTransaction();
-            Read dataRead = ktx.dataRead();
-            PartitionedScan<NodeCursor> scan = dataRead.allNodesScan(1, ktx.cursorContext());
-            Function<KernelTransaction, NodeCursor> cursorAllocator =
-                    ktx2 -> ktx2.cursors().allocateNodeCursor(ktx2.cursorContext());
-            executorService.submit(
-                    new BatchJob(scan, batchSize, db, consumer, result, cursorAllocator, executorService, processing));
-        }
-
-        try {
-            while (processing.get() > 0) {
-                Thread.sleep(10);
+            PartitionedScan<C> scan;
+            try {
+                scan = source.partitionedScan(ktx, options.getBatchSize());
+            } catch (KernelException e) {
+                throw new RuntimeException(e);
+            }
+            if (scan == null) {
+                return result;
             }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+            result.partitions = scan.getNumberOfPartitions();
+            int workers = Math.max(1, Math.min(result.partitions, options.getConcurrency()));
+            ScanState<C> state = new ScanState<>(db, scan, source, options, workerFactory, result, workers);
+            for (int i = 0; i < workers; i++) {
+                try {
+                    executorService.submit(state::work);
+                } catch (RejectedExecutionException e) {
+                    // the submitted workers stop at their next check, the scan is closed once they are done
+                    state.rejected(workers - i, e);
+                    break;
+                }
+            }
+            state.await();
+            tx.commit();
         }
         return result;
     }
@@ -64,6 +138,7 @@ public class MultiThreadedGlobalGraphOperations {
         final AtomicInteger batches = new AtomicInteger();
         final AtomicLong succeeded = new AtomicLong();
         final AtomicLong failures = new AtomicLong();
+        volatile int partitions;
 
         public void incrementSuceeded() {
             succeeded.incrementAndGet();
@@ -80,78 +155,198 @@ public class MultiThreadedGlobalGraphOperations {
         public long getFailures() {
             return failures.get();
         }
+
+        /**
+         * @return the number of partitions scanned so far
+         */
+        public int getBatches() {
+            return batches.get();
+        }
+
+        public int getPartitions() {
+            return partitions;
+        }
+    }
+
+    /**
+     * Called by the workers after each partition
+     */
+    @FunctionalInterface
+    public interface PartitionListener {
+        void partitionDone(int partitionsDone, int partitions, long entities);
     }
 
-    private static class BatchJob implements Callable<Void> {
-        private final PartitionedScan<NodeCursor> scan;
-        private final int batchSize;
+    /**
+     * What a worker does with the entities of its partitions, closed by the worker once they are scanned
+     */
+    @FunctionalInterface
+    public interface ScanWorker<C extends Cursor> extends Resource {
+        void accept(C cursor);
+
+        @Override
+        default void close() {}
+    }
+
+    public static class ScanOptions {
+        private int batchSize = 10_000;
+        private int concurrency = Pools.DEFAULT_POOL_THREADS;
+        private TerminationGuard terminationGuard;
+        private PartitionListener listener;
+
+        /**
+         * The wished number of entities per partition
+         */
+        public ScanOptions batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * The maximum number of workers
+         */
+        public ScanOptions concurrency(int concurrency) {
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        /**
+         * The guard of the calling procedure, the scan stops once it is terminated
+         */
+        public ScanOptions terminationGuard(TerminationGuard terminationGuard) {
+            this.terminationGuard = terminationGuard;
+            return this;
+        }
+
+        public ScanOptions listener(PartitionListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+    }
+
+    private static class ScanState<C extends Cursor> {
         private final GraphDatabaseAPI db;
-        private final Consumer<NodeCursor> consumer;
+        private final PartitionedScan<C> scan;
+        private final ScanSource<C> source;
+        private final ScanOptions options;
+        private final Function<InternalTransaction, ScanWorker<C>> workerFactory;
         private final BatchJobResult result;
-        private final Function<KernelTransaction, NodeCursor> cursorAllocator;
-        private final ExecutorService executorService;
-        private final AtomicInteger processing;
+        private final AtomicInteger running;
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
 
-        public BatchJob(
-                PartitionedScan<NodeCursor> scan,
-                int batchSize,
+        ScanState(
                 GraphDatabaseAPI db,
-                Consumer<NodeCursor> consumer,
+                PartitionedScan<C> scan,
+                ScanSource<C> source,
+                ScanOptions options,
+                Function<InternalTransaction, ScanWorker<C>> workerFactory,
                 BatchJobResult result,
-                Function<KernelTransaction, NodeCursor> cursorAllocator,
-                ExecutorService executorService,
-                AtomicInteger processing) {
-            this.scan = scan;
-            this.batchSize = batchSize;
+                int workers) {
             this.db = db;
-            this.consumer = consumer;
+            this.scan = scan;
+            this.source = source;
+            this.options = options;
+            this.workerFactory = workerFactory;
             this.result = result;
-            this.cursorAllocator = cursorAllocator;
-            this.executorService = executorService;
-            this.processing = processing;
-            processing.incrementAndGet();
+            this.running = new AtomicInteger(workers);
         }
 
-        @Override
-        public Void call() {
+        void work() {
             try (InternalTransaction tx =
                     db.beginTransaction(KernelTransaction.Type.EXPLICIT, LoginContext.AUTH_DISABLED)) {
                 KernelTransaction ktx = tx.kernelTransaction();
-                ktx.acquireStatement();
-                ExecutionContext executionContext = ktx.createExecutionContext();
-                try (NodeCursor cursor = cursorAllocator.apply(ktx)) {
-                    while (scan.reservePartition(cursor, executionContext)) {
-                        // Branch out so that all available threads will get saturated
-                        executorService.submit(new BatchJob(
-                                scan, batchSize, db, consumer, result, cursorAllocator, executorService, processing));
-                        executorService.submit(new BatchJob(
-                                scan, batchSize, db, consumer, result, cursorAllocator, executorService, processing));
-                        while (processAndReport(cursor)) {
-                            // just continue processing...
+                try (ExecutionContext executionContext = ktx.createExecutionContext();
+                        C cursor = source.allocateCursor(ktx);
+                        ScanWorker<C> worker = workerFactory.apply(tx)) {
+                    try {
+                        while (!isStopped() && scan.reservePartition(cursor, executionContext)) {
+                            long entities = scanPartition(worker, cursor);
+                            int partitionsDone = result.batches.incrementAndGet();
+                            if (options.listener != null) {
+                                options.listener.partitionDone(partitionsDone, result.partitions, entities);
+                            }
                         }
+                    } finally {
+                        executionContext.complete();
                     }
                 }
                 tx.commit();
-                executionContext.complete();
-                executionContext.close();
-                return null;
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
             } finally {
-                result.batches.incrementAndGet();
-                processing.decrementAndGet();
+                if (running.decrementAndGet() == 0) {
+                    done.complete(null);
+                }
             }
         }
 
-        private boolean processAndReport(NodeCursor cursor) {
-            if (cursor.next()) {
+        private long scanPartition(ScanWorker<C> worker, C cursor) {
+            long entities = 0;
+            while (cursor.next()) {
+                if (++entities % TERMINATION_CHECK_INTERVAL == 0 && isStopped()) {
+                    break;
+                }
                 try {
-                    consumer.accept(cursor);
+                    worker.accept(cursor);
                     result.incrementSuceeded();
                 } catch (Exception e) {
                     result.incrementFailures();
                 }
+            }
+            return entities;
+        }
+
+        /**
+         * A worker failed or the calling procedure was terminated, which is then reported by {@link #await()}
+         */
+        private boolean isStopped() {
+            if (failure.get() != null) {
                 return true;
             }
+            if (options.terminationGuard != null) {
+                try {
+                    options.terminationGuard.check();
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                    return true;
+                }
+            }
             return false;
         }
+
+        /**
+         * The pool refused the remaining workers, the failure is rethrown by {@link #await()}
+         */
+        void rejected(int workers, RejectedExecutionException e) {
+            failure.compareAndSet(null, e);
+            if (running.addAndGet(-workers) == 0) {
+                done.complete(null);
+            }
+        }
+
+        void await() {
+            try {
+                done.get();
+            } catch (InterruptedException e) {
+                // the workers stop at their next check, the scan must not be closed under them
+                failure.compareAndSet(null, new RuntimeException(e));
+                done.join();
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                failure.compareAndSet(null, new RuntimeException(e.getCause()));
+            }
+            RuntimeException e = failure.get();
+            if (e != null) {
+                throw e;
+            }
+        }
     }
 }
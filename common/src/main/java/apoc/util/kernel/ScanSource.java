@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.util.kernel;
+
+import java.util.Iterator;
+import org.neo4j.common.EntityType;
+import org.neo4j.exceptions.KernelException;
+import org.neo4j.internal.kernel.api.Cursor;
+import org.neo4j.internal.kernel.api.IndexReadSession;
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.NodeLabelIndexCursor;
+import org.neo4j.internal.kernel.api.NodeValueIndexCursor;
+import org.neo4j.internal.kernel.api.PartitionedScan;
+import org.neo4j.internal.kernel.api.PropertyIndexQuery;
+import org.neo4j.internal.kernel.api.Read;
+import org.neo4j.internal.kernel.api.RelationshipScanCursor;
+import org.neo4j.internal.kernel.api.RelationshipTypeIndexCursor;
+import org.neo4j.internal.kernel.api.SchemaRead;
+import org.neo4j.internal.kernel.api.TokenPredicate;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.internal.kernel.api.TokenReadSession;
+import org.neo4j.internal.schema.IndexDescriptor;
+import org.neo4j.internal.schema.SchemaDescriptors;
+import org.neo4j.kernel.api.KernelTransaction;
+
+/**
+ * What a {@link MultiThreadedGlobalGraphOperations#scan} goes through: the partitioned scan, created once
+ * by the scanning transaction, and the cursor each worker allocates once and reuses for all its partitions.
+ *
+ * @param <C> the cursor positioned on each entity of the scan
+ */
+public interface ScanSource<C extends Cursor> {
+
+    /**
+     * @param batchSize the wished number of entities per partition
+     * @return the scan, or null if there is nothing to scan, e.g. the label doesn't exist
+     */
+    PartitionedScan<C> partitionedScan(KernelTransaction ktx, int batchSize) throws KernelException;
+
+    C allocateCursor(KernelTransaction ktx);
+
+    static ScanSource<NodeCursor> allNodes() {
+        return new ScanSource<>() {
+            @Override
+            public PartitionedScan<NodeCursor> partitionedScan(KernelTransaction ktx, int batchSize) {
+                Read read = ktx.dataRead();
+                return read.allNodesScan(
+                        partitions(read.countsForNode(TokenRead.ANY_LABEL), batchSize), ktx.cursorContext());
+            }
+
+            @Override
+            public NodeCursor allocateCursor(KernelTransaction ktx) {
+                return ktx.cursors().allocateNodeCursor(ktx.cursorContext());
+            }
+        };
+    }
+
+    static ScanSource<RelationshipScanCursor> allRelationships() {
+        return new ScanSource<>() {
+            @Override
+            public PartitionedScan<RelationshipScanCursor> partitionedScan(KernelTransaction ktx, int batchSize) {
+                Read read = ktx.dataRead();
+                long count = read.countsForRelationship(
+                        TokenRead.ANY_LABEL, TokenRead.ANY_RELATIONSHIP_TYPE, TokenRead.ANY_LABEL);
+                return read.allRelationshipsScan(partitions(count, batchSize), ktx.cursorContext());
+            }
+
+            @Override
+            public RelationshipScanCursor allocateCursor(KernelTransaction ktx) {
+                return ktx.cursors().allocateRelationshipScanCursor(ktx.cursorContext());
+            }
+        };
+    }
+
+    /**
+     * The nodes with the label, through the node label lookup index
+     */
+    static ScanSource<NodeLabelIndexCursor> nodesByLabel(String label) {
+        return new ScanSource<>() {
+            @Override
+            public PartitionedScan<NodeLabelIndexCursor> partitionedScan(KernelTransaction ktx, int batchSize)
+                    throws KernelException {
+                int labelId = ktx.tokenRead().nodeLabel(label);
+                if (labelId == TokenRead.NO_TOKEN) {
+                    return null;
+                }
+                Read read = ktx.dataRead();
+                TokenReadSession session = read.tokenReadSession(lookupIndex(ktx, EntityType.NODE));
+                return read.nodeLabelScan(
+                        session,
+                        partitions(read.countsForNode(labelId), batchSize),
+                        ktx.cursorContext(),
+                        new TokenPredicate(labelId));
+            }
+
+            @Override
+            public NodeLabelIndexCursor allocateCursor(KernelTransaction ktx) {
+                return ktx.cursors().allocateNodeLabelIndexCursor(ktx.cursorContext());
+            }
+        };
+    }
+
+    /**
+     * The relationships of the type, through the relationship type lookup index
+     */
+    static ScanSource<RelationshipTypeIndexCursor> relationshipsByType(String type) {
+        return new ScanSource<>() {
+            @Override
+            public PartitionedScan<RelationshipTypeIndexCursor> partitionedScan(KernelTransaction ktx, int batchSize)
+                    throws KernelException {
+                int typeId = ktx.tokenRead().relationshipType(type);
+                if (typeId == TokenRead.NO_TOKEN) {
+                    return null;
+                }
+                Read read = ktx.dataRead();
+                TokenReadSession session = read.tokenReadSession(lookupIndex(ktx, EntityType.RELATIONSHIP));
+                long count = read.countsForRelationship(TokenRead.ANY_LABEL, typeId, TokenRead.ANY_LABEL);
+                return read.relationshipTypeScan(
+                        session, partitions(count, batchSize), ktx.cursorContext(), new TokenPredicate(typeId));
+            }
+
+            @Override
+            public RelationshipTypeIndexCursor allocateCursor(KernelTransaction ktx) {
+                return ktx.cursors().allocateRelationshipTypeIndexCursor(ktx.cursorContext());
+            }
+        };
+    }
+
+    /**
+     * The nodes of the named index matching all the queries, or all the nodes of the index without queries
+     */
+    static ScanSource<NodeValueIndexCursor> nodeIndexSeek(String indexName, PropertyIndexQuery... query) {
+        return new ScanSource<>() {
+            @Override
+            public PartitionedScan<NodeValueIndexCursor> partitionedScan(KernelTransaction ktx, int batchSize)
+                    throws KernelException {
+                SchemaRead schemaRead = ktx.schemaRead();
+                IndexDescriptor index = schemaRead.indexGetForName(indexName);
+                if (index == IndexDescriptor.NO_INDEX) {
+                    throw new IllegalArgumentException("There is no index named " + indexName);
+                }
+                Read read = ktx.dataRead();
+                IndexReadSession session = read.indexReadSession(index);
+                int partitions = partitions(schemaRead.indexSize(index), batchSize);
+                return query.length == 0
+                        ? read.nodeIndexScan(session, partitions, ktx.queryContext())
+                        : read.nodeIndexSeek(session, partitions, ktx.queryContext(), query);
+            }
+
+            @Override
+            public NodeValueIndexCursor allocateCursor(KernelTransaction ktx) {
+                return ktx.cursors().allocateNodeValueIndexCursor(ktx.cursorContext(), ktx.memoryTracker());
+            }
+        };
+    }
+
+    static int partitions(long count, int batchSize) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1, count / Math.max(1, batchSize)));
+    }
+
+    private static IndexDescriptor lookupIndex(KernelTransaction ktx, EntityType entityType) {
+        Iterator<IndexDescriptor> indexes = ktx.schemaRead().index(SchemaDescriptors.forAnyEntityTokens(entityType));
+        if (!indexes.hasNext()) {
+            throw new IllegalStateException("There is no " + entityType.name().toLowerCase() + " lookup index");
+        }
+        return indexes.next();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class PoolsTest {
+
+    @Test
+    public void boundedExecutorLimitsConcurrencyAndRecordsMetrics() throws Exception {
+        Pools.BoundedExecutorService executor =
+                Pools.BoundedExecutorService.virtual("test", 1, Executors.defaultThreadFactory());
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            Future<?> first = executor.submit(() -> {
+                release.await();
+                return null;
+            });
+
+            Future<?> second = Executors.newSingleThreadExecutor().submit(() -> executor.submit(() -> {}));
+            Thread.sleep(200);
+            PoolMetrics.PoolInfo whileBlocked = executor.getMetrics().info();
+            assertEquals(1, whileBlocked.activeCount);
+            assertEquals(1, whileBlocked.blocked);
+            assertEquals(1, whileBlocked.queueDepth);
+
+            release.countDown();
+            first.get(5, TimeUnit.SECONDS);
+            ((Future<?>) second.get(5, TimeUnit.SECONDS)).get(5, TimeUnit.SECONDS);
+
+            PoolMetrics.PoolInfo info = executor.getMetrics().info();
+            assertEquals(2, info.submitted);
+            assertEquals(2, info.completed);
+            assertEquals(0, info.activeCount);
+            assertTrue((double) info.latencyMillis.get("max") >= 150);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
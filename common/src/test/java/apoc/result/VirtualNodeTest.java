@@ -23,6 +23,7 @@ import static org.junit.Assert.*;
 import apoc.util.Util;
 import apoc.util.collection.Iterables;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import org.junit.AfterClass;
 import org.junit.ClassRule;
@@ -132,6 +133,55 @@ public class VirtualNodeTest {
         assertEquals(start, end.getRelationships().iterator().next().getOtherNode(end));
     }
 
+    @Test
+    public void shouldKeepTheDegreesAndPropertiesOfVirtualNodes() {
+        RelationshipType knows = RelationshipType.withName("KNOWS");
+        RelationshipType likes = RelationshipType.withName("LIKES");
+        VirtualNode start = new VirtualNode(new Label[] {Label.label("Test")}, Util.map("key", "value", "count", 1L))
+                .compactProperties();
+        VirtualNode end = new VirtualNode(new Label[] {Label.label("Test")}, Map.of());
+        Relationship first = start.createRelationshipTo(end, knows);
+        Relationship second = start.createRelationshipTo(end, likes);
+        Relationship self = start.createRelationshipTo(start, knows);
+
+        assertEquals(3, start.getDegree());
+        assertEquals(3, start.getDegree(Direction.OUTGOING));
+        assertEquals(1, start.getDegree(Direction.INCOMING));
+        assertEquals(2, start.getDegree(knows));
+        assertEquals(1, start.getDegree(likes, Direction.OUTGOING));
+        assertEquals(2, Iterables.count(start.getRelationshipTypes()));
+        assertEquals(3, Iterables.count(start.getRelationships(Direction.BOTH, knows, likes, knows)));
+        assertEquals(List.of(first, second, self), Iterables.asList(start.getRelationships(Direction.OUTGOING)));
+        assertEquals(List.of(self), Iterables.asList(start.getRelationships(Direction.INCOMING)));
+        assertEquals(2, end.getDegree(Direction.INCOMING));
+        assertFalse(end.hasRelationship(Direction.OUTGOING));
+
+        // the lookups return copies, the relationships can be deleted while iterating
+        for (Relationship rel : end.getRelationships(Direction.INCOMING, knows)) {
+            rel.delete();
+        }
+        assertEquals(2, start.getDegree());
+        assertEquals(1, start.getDegree(knows, Direction.OUTGOING));
+        assertEquals(List.of(second, self), Iterables.asList(start.getRelationships(Direction.OUTGOING)));
+        assertEquals(1, end.getDegree());
+        assertFalse(end.hasRelationship(knows));
+        for (Relationship rel : end.getRelationships()) {
+            rel.delete();
+        }
+        assertEquals(0, end.getDegree());
+        assertEquals(List.of(self), Iterables.asList(start.getRelationships(Direction.BOTH)));
+
+        start.delete();
+        assertEquals(0, start.getDegree());
+        assertEquals(0, end.getDegree());
+
+        assertEquals(Map.of("key", "value", "count", 1L), start.getAllProperties());
+        start.setProperty("name", "foo");
+        start.removeProperty("key");
+        start.getAllProperties().entrySet().forEach(entry -> entry.setValue(entry.getValue() + "!"));
+        assertEquals(Map.of("count", "1!", "name", "foo!"), start.getAllProperties());
+    }
+
     @Test
     public void testVirtualNodesEqualEachother() {
         VirtualNode node1 = new VirtualNode(1L);
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import org.junit.Test;
+import org.neo4j.graphdb.ConstraintViolationException;
+import org.neo4j.kernel.DeadlockDetectedException;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void retriesOnlyTransientErrors() {
+        assertTrue(RetryPolicy.isRetryable(new DeadlockDetectedException("deadlock")));
+        assertTrue(RetryPolicy.isRetryable(new RuntimeException(new DeadlockDetectedException("deadlock"))));
+        assertFalse(RetryPolicy.isRetryable(new ConstraintViolationException("already exists")));
+        assertFalse(RetryPolicy.isRetryable(new IllegalArgumentException("wrong")));
+        assertFalse(RetryPolicy.isRetryable(
+                new ConstraintViolationException("already exists", new DeadlockDetectedException("deadlock"))));
+    }
+
+    @Test
+    public void backoffGrowsExponentiallyUpToTheMax() {
+        RetryPolicy policy = new RetryPolicy(10, 0, 100, 1000);
+        for (int i = 0; i < 100; i++) {
+            long first = policy.backoffMillis(0);
+            assertTrue(first >= 50 && first <= 100);
+            long third = policy.backoffMillis(2);
+            assertTrue(third >= 200 && third <= 400);
+            long last = policy.backoffMillis(50);
+            assertTrue(last >= 500 && last <= 1000);
+        }
+    }
+
+    @Test
+    public void stopsAtMaxRetriesOrDeadline() {
+        DeadlockDetectedException deadlock = new DeadlockDetectedException("deadlock");
+        RetryPolicy policy = RetryPolicy.retries(2);
+        long now = System.nanoTime();
+        assertTrue(policy.shouldRetry(deadlock, 1, now, 0));
+        assertFalse(policy.shouldRetry(deadlock, 2, now, 0));
+
+        RetryPolicy withDeadline = RetryPolicy.fromConfig(Map.of("retryTimeout", 1000));
+        assertEquals(Long.MAX_VALUE, withDeadline.getMaxRetries());
+        assertTrue(withDeadline.shouldRetry(deadlock, 100, now, 10));
+        assertFalse(withDeadline.shouldRetry(deadlock, 100, now, 2000));
+        assertFalse(RetryPolicy.NONE.shouldRetry(deadlock, 0, now, 0));
+    }
+}
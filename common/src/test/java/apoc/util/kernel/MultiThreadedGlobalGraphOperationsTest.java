@@ -21,13 +21,23 @@ package apoc.util.kernel;
 import static apoc.util.kernel.MultiThreadedGlobalGraphOperations.BatchJobResult;
 import static apoc.util.kernel.MultiThreadedGlobalGraphOperations.forAllNodes;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
 
+import apoc.util.kernel.MultiThreadedGlobalGraphOperations.ScanOptions;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
 import org.junit.Test;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.internal.kernel.api.Cursor;
 import org.neo4j.test.rule.DbmsRule;
 import org.neo4j.test.rule.ImpermanentDbmsRule;
 
@@ -36,28 +46,117 @@ public class MultiThreadedGlobalGraphOperationsTest {
     @ClassRule
     public static DbmsRule db = new ImpermanentDbmsRule();
 
+    private static ExecutorService executor;
+
     @BeforeClass
     public static void beforeClass() {
+        executor = Executors.newFixedThreadPool(4);
         createData();
     }
 
     @AfterClass
     public static void teardown() {
+        executor.shutdown();
         db.shutdown();
     }
 
     private static void createData() {
         db.executeTransactionally(
                 "UNWIND range(1,1000) as x MERGE (s{id:x}) MERGE (e{id:x+1}) merge (s)-[:REL{id:x}]->(e)");
+        db.executeTransactionally("MATCH (n) WHERE n.id % 2 = 0 SET n:Even");
+        db.executeTransactionally("MATCH (s)-[r:REL]->() WHERE s.id <= 100 CREATE (s)-[:FIRST]->(s)");
+        db.executeTransactionally("CREATE INDEX evenIds FOR (n:Even) ON (n.id)");
+        db.executeTransactionally("CALL db.awaitIndexes()");
     }
 
     @Test
     public void shouldforAllNodesWork() {
         AtomicInteger counter = new AtomicInteger();
-        BatchJobResult result =
-                forAllNodes(db, Executors.newFixedThreadPool(4), 10, (nodeCursor) -> counter.incrementAndGet());
+        BatchJobResult result = forAllNodes(db, executor, 10, (nodeCursor) -> counter.incrementAndGet());
         assertEquals(1001, counter.get());
         assertEquals(1001, result.getSucceeded());
         assertEquals(0, result.getFailures());
     }
+
+    @Test
+    public void shouldScanAllRelationships() {
+        AtomicInteger counter = new AtomicInteger();
+        BatchJobResult result = MultiThreadedGlobalGraphOperations.forAllRelationships(
+                db, executor, 10, (tx, cursor) -> counter.incrementAndGet());
+        assertEquals(1100, counter.get());
+        assertEquals(1100, result.getSucceeded());
+        assertEquals(result.getPartitions(), result.getBatches());
+    }
+
+    @Test
+    public void shouldScanNodesByLabelAndRelationshipsByType() {
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        scan(ScanSource.nodesByLabel("Even"), (tx, cursor) -> ids.add(cursor.nodeReference()));
+        assertEquals(500, ids.size());
+
+        AtomicInteger counter = new AtomicInteger();
+        scan(ScanSource.relationshipsByType("FIRST"), (tx, cursor) -> counter.incrementAndGet());
+        assertEquals(100, counter.get());
+
+        BatchJobResult result =
+                scan(ScanSource.nodesByLabel("Unknown"), (tx, cursor) -> counter.incrementAndGet());
+        assertEquals(0, result.getSucceeded());
+    }
+
+    @Test
+    public void shouldScanAnIndex() {
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        BatchJobResult result =
+                scan(ScanSource.nodeIndexSeek("evenIds"), (tx, cursor) -> ids.add(cursor.nodeReference()));
+        assertEquals(500, ids.size());
+        assertEquals(0, result.getFailures());
+    }
+
+    @Test
+    public void shouldReportEachPartition() {
+        AtomicLong entities = new AtomicLong();
+        AtomicInteger partitions = new AtomicInteger();
+        ScanOptions options = new ScanOptions().batchSize(100).listener((done, total, count) -> {
+            partitions.incrementAndGet();
+            entities.addAndGet(count);
+        });
+        BatchJobResult result = MultiThreadedGlobalGraphOperations.scan(
+                db, executor, ScanSource.allNodes(), options, (tx, cursor) -> {});
+        assertEquals(1001, entities.get());
+        assertEquals(result.getPartitions(), partitions.get());
+    }
+
+    @Test
+    public void shouldStopWhenTerminated() {
+        AtomicInteger counter = new AtomicInteger();
+        ScanOptions options = new ScanOptions().batchSize(10).terminationGuard(() -> {
+            throw new RuntimeException("terminated");
+        });
+        RuntimeException e = assertThrows(
+                RuntimeException.class,
+                () -> MultiThreadedGlobalGraphOperations.scan(
+                        db, executor, ScanSource.allNodes(), options, (tx, cursor) -> counter.incrementAndGet()));
+        assertEquals("terminated", e.getMessage());
+        assertEquals(0, counter.get());
+    }
+
+    @Test
+    public void shouldRethrowWhenThePoolRejectsTheWorkers() {
+        ExecutorService shutdownExecutor = Executors.newFixedThreadPool(1);
+        shutdownExecutor.shutdown();
+        AtomicInteger counter = new AtomicInteger();
+        assertThrows(
+                RejectedExecutionException.class,
+                () -> MultiThreadedGlobalGraphOperations.scan(
+                        db,
+                        shutdownExecutor,
+                        ScanSource.allNodes(),
+                        new ScanOptions().batchSize(10),
+                        (tx, cursor) -> counter.incrementAndGet()));
+        assertEquals(0, counter.get());
+    }
+
+    private static <C extends Cursor> BatchJobResult scan(ScanSource<C> source, BiConsumer<Transaction, C> consumer) {
+        return MultiThreadedGlobalGraphOperations.scan(db, executor, source, new ScanOptions().batchSize(10), consumer);
+    }
 }
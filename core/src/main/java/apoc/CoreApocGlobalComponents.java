@@ -19,9 +19,11 @@
 package apoc;
 
 import apoc.cypher.CypherInitializer;
+import apoc.meta.MetaCache;
 import apoc.trigger.TriggerHandler;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import org.neo4j.annotations.service.ServiceProvider;
 import org.neo4j.kernel.availability.AvailabilityListener;
@@ -34,7 +36,7 @@ public class CoreApocGlobalComponents implements ApocGlobalComponents {
 
     @Override
     public Map<String, Lifecycle> getServices(GraphDatabaseAPI db, ApocExtensionFactory.Dependencies dependencies) {
-        return Collections.singletonMap(
+        return Map.of(
                 "trigger",
                 new TriggerHandler(
                         db,
@@ -42,12 +44,17 @@ public class CoreApocGlobalComponents implements ApocGlobalComponents {
                         dependencies.apocConfig(),
                         dependencies.log().getUserLog(TriggerHandler.class),
                         dependencies.pools(),
-                        dependencies.scheduler()));
+                        dependencies.scheduler()),
+                "metaCache",
+                new MetaCache(
+                        db,
+                        dependencies.databaseManagementService(),
+                        dependencies.log().getUserLog(MetaCache.class)));
     }
 
     @Override
     public Collection<Class> getContextClasses() {
-        return Collections.singleton(TriggerHandler.class);
+        return List.of(TriggerHandler.class, MetaCache.class);
     }
 
     @Override
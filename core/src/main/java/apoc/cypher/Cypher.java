@@ -18,27 +18,28 @@
  */
 package apoc.cypher;
 
+import static apoc.cypher.CypherStatementCache.withParamMapping;
 import static apoc.cypher.CypherUtils.runCypherQuery;
-import static apoc.cypher.CypherUtils.withParamMapping;
 import static apoc.util.MapUtil.map;
 import static org.neo4j.procedure.Mode.READ;
 import static org.neo4j.procedure.Mode.SCHEMA;
 import static org.neo4j.procedure.Mode.WRITE;
 
-import apoc.Pools;
 import apoc.result.MapResult;
 import apoc.util.EntityUtil;
 import apoc.util.QueueBasedSpliterator;
 import apoc.util.Util;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
+import java.util.Spliterator;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -62,6 +63,9 @@ import org.neo4j.procedure.TerminationGuard;
  */
 public class Cypher {
 
+    // the rows of a batch of statements kept until its commit
+    private static final int MAX_BUFFERED_ROWS = 10_000;
+
     @Context
     public Transaction tx;
 
@@ -71,9 +75,6 @@ public class Cypher {
     @Context
     public TerminationGuard terminationGuard;
 
-    @Context
-    public Pools pools;
-
     @NotThreadSafe
     @Procedure("apoc.cypher.run")
     @Description("Runs a dynamically constructed read-only statement with the given parameters.")
@@ -86,19 +87,43 @@ public class Cypher {
             Map<String, Object> params,
             boolean schemaOperation,
             boolean addStatistics,
+            boolean statisticsOnly,
+            int batchSize,
             int queueCapacity) {
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
         BlockingQueue<RowResult> queue = runInSeparateThreadAndSendTombstone(
                 queueCapacity,
                 internalQueue -> {
-                    if (schemaOperation) {
-                        runSchemaStatementsInTx(reader, internalQueue, params, addStatistics);
-                    } else {
-                        runDataStatementsInTx(reader, internalQueue, params, addStatistics);
+                    try {
+                        if (schemaOperation) {
+                            runSchemaStatementsInTx(reader, internalQueue, params, addStatistics, statisticsOnly);
+                        } else {
+                            runDataStatementsInTx(
+                                    reader, internalQueue, params, addStatistics, statisticsOnly, batchSize);
+                        }
+                    } catch (RuntimeException e) {
+                        // the remaining statements are skipped
+                        failure.set(e);
                     }
                 },
                 RowResult.TOMBSTONE);
-        return StreamSupport.stream(
-                new QueueBasedSpliterator<>(queue, RowResult.TOMBSTONE, terminationGuard, Integer.MAX_VALUE), false);
+
+        // once the rows sent before the failure are consumed, it is rethrown to the caller
+        Spliterator<RowResult> spliterator =
+                new QueueBasedSpliterator<>(queue, RowResult.TOMBSTONE, terminationGuard, Integer.MAX_VALUE) {
+                    @Override
+                    public boolean tryAdvance(Consumer<? super RowResult> action) {
+                        if (super.tryAdvance(action)) {
+                            return true;
+                        }
+                        RuntimeException e = failure.get();
+                        if (e != null) {
+                            throw new RuntimeException("Error running the statements: " + e.getMessage(), e);
+                        }
+                        return false;
+                    }
+                };
+        return StreamSupport.stream(spliterator, false);
     }
 
     private <T> BlockingQueue<T> runInSeparateThreadAndSendTombstone(
@@ -126,43 +151,95 @@ public class Cypher {
         return queue;
     }
 
+    /**
+     * Runs up to `batchSize` consecutive data statements in the same transaction, in this thread,
+     * so the rows of a statement are queued while the next ones are read.
+     */
     private void runDataStatementsInTx(
-            Reader reader, BlockingQueue<RowResult> queue, Map<String, Object> params, boolean addStatistics) {
-        Scanner scanner = new Scanner(reader);
-        scanner.useDelimiter(";\r?\n");
-        while (scanner.hasNext()) {
-            String stmt = removeShellControlCommands(scanner.next());
-            if (stmt.trim().isEmpty()) continue;
-            if (!isSchemaOperation(stmt)) {
-                if (isPeriodicOperation(stmt)) {
-                    Util.inThread(
-                            pools,
-                            () -> db.executeTransactionally(
-                                    stmt, params, result -> consumeResult(result, queue, addStatistics)));
-                } else {
-                    Util.inTx(db, pools, threadTx -> {
-                        try (Result result = threadTx.execute(stmt, params)) {
-                            return consumeResult(result, queue, addStatistics);
-                        }
-                    });
+            Reader reader,
+            BlockingQueue<RowResult> queue,
+            Map<String, Object> params,
+            boolean addStatistics,
+            boolean statisticsOnly,
+            int batchSize) {
+        List<String> batch = new ArrayList<>(batchSize);
+        CypherStatementTokenizer statements = new CypherStatementTokenizer(reader);
+        while (statements.hasNext()) {
+            String stmt = removeShellControlCommands(statements.next());
+            if (stmt.trim().isEmpty() || isSchemaOperation(stmt)) continue;
+            if (isPeriodicOperation(stmt)) {
+                runBatchInTx(batch, queue, params, addStatistics, statisticsOnly);
+                batch.clear();
+                db.executeTransactionally(
+                        stmt,
+                        params,
+                        result -> consumeResult(result, putInto(queue), addStatistics, statisticsOnly));
+            } else {
+                batch.add(stmt);
+                if (batch.size() >= batchSize) {
+                    runBatchInTx(batch, queue, params, addStatistics, statisticsOnly);
+                    batch.clear();
                 }
             }
         }
+        runBatchInTx(batch, queue, params, addStatistics, statisticsOnly);
+    }
+
+    private void runBatchInTx(
+            List<String> batch,
+            BlockingQueue<RowResult> queue,
+            Map<String, Object> params,
+            boolean addStatistics,
+            boolean statisticsOnly) {
+        if (batch.isEmpty()) return;
+        // the rows of several statements are only sent once they are committed, as a later one can roll them back,
+        // except beyond MAX_BUFFERED_ROWS: those are sent before the commit, and a failure still fails the call
+        List<RowResult> buffer = batch.size() > 1 ? new ArrayList<>() : null;
+        Consumer<RowResult> sink = buffer == null
+                ? putInto(queue)
+                : rowResult -> {
+                    if (buffer.size() >= MAX_BUFFERED_ROWS) {
+                        buffer.forEach(putInto(queue));
+                        buffer.clear();
+                    }
+                    buffer.add(rowResult);
+                };
+        try (Transaction threadTx = db.beginTx()) {
+            for (String stmt : batch) {
+                try (Result result = threadTx.execute(stmt, params)) {
+                    consumeResult(result, sink, addStatistics, statisticsOnly);
+                }
+            }
+            threadTx.commit();
+        }
+        if (buffer != null) {
+            buffer.forEach(putInto(queue));
+        }
+    }
+
+    private static Consumer<RowResult> putInto(BlockingQueue<RowResult> queue) {
+        return rowResult -> {
+            try {
+                queue.put(rowResult);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        };
     }
 
     private void runSchemaStatementsInTx(
-            Reader reader, BlockingQueue<RowResult> queue, Map<String, Object> params, boolean addStatistics) {
-        Scanner scanner = new Scanner(reader);
-        scanner.useDelimiter(";\r?\n");
-        while (scanner.hasNext()) {
-            String stmt = removeShellControlCommands(scanner.next());
+            Reader reader,
+            BlockingQueue<RowResult> queue,
+            Map<String, Object> params,
+            boolean addStatistics,
+            boolean statisticsOnly) {
+        CypherStatementTokenizer statements = new CypherStatementTokenizer(reader);
+        while (statements.hasNext()) {
+            String stmt = removeShellControlCommands(statements.next());
             if (stmt.trim().isEmpty()) continue;
             if (isSchemaOperation(stmt)) {
-                Util.inTx(db, pools, txInThread -> {
-                    try (Result result = txInThread.execute(stmt, params)) {
-                        return consumeResult(result, queue, addStatistics);
-                    }
-                });
+                // the schema changes can't be mixed with other changes in a transaction
+                runBatchInTx(List.of(stmt), queue, params, addStatistics, statisticsOnly);
             }
         }
     }
@@ -173,11 +250,14 @@ public class Cypher {
             @Name("statement") String cypher,
             @Name("params") Map<String, Object> params,
             @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
-        boolean addStatistics = Util.toBoolean(config.getOrDefault("statistics", true));
+        boolean statisticsOnly = Util.toBoolean(config.getOrDefault("statisticsOnly", false));
+        boolean addStatistics = statisticsOnly || Util.toBoolean(config.getOrDefault("statistics", true));
+        int batchSize = Math.max(1, Util.toInteger(config.getOrDefault("batchSize", 1)));
         int queueCapacity = Util.toInteger(config.getOrDefault("queueCapacity", 100));
 
         StringReader stringReader = new StringReader(cypher);
-        return runManyStatements(stringReader, params, false, addStatistics, queueCapacity);
+        return runManyStatements(
+                stringReader, params, false, addStatistics, statisticsOnly, batchSize, queueCapacity);
     }
 
     @NotThreadSafe
@@ -192,24 +272,33 @@ public class Cypher {
 
     private static final Pattern shellControl =
             Pattern.compile("^:?\\b(begin|commit|rollback)\\b", Pattern.CASE_INSENSITIVE);
-
-    private Object consumeResult(Result result, BlockingQueue<RowResult> queue, boolean addStatistics) {
-        try {
-            long time = System.currentTimeMillis();
-            int row = 0;
+    private static final Pattern schemaOperation = Pattern.compile("(?is).*(create|drop)\\s+(index|constraint).*");
+    private static final Pattern periodicOperation = Pattern.compile("(?is).*using\\s+periodic.*");
+
+    private Object consumeResult(
+            Result result, Consumer<RowResult> sink, boolean addStatistics, boolean statisticsOnly) {
+        long time = System.currentTimeMillis();
+        int row = 0;
+        if (statisticsOnly) {
+            // the rows are only counted, without turning them into maps
+            int[] rows = {0};
+            result.accept(resultRow -> {
+                terminationGuard.check();
+                rows[0]++;
+                return true;
+            });
+            row = rows[0];
+        } else {
             while (result.hasNext()) {
                 terminationGuard.check();
                 Map<String, Object> mapResult = EntityUtil.anyRebind(tx, result.next());
-                queue.put(new RowResult(row++, mapResult));
+                sink.accept(new RowResult(row++, mapResult));
             }
-            if (addStatistics) {
-                queue.put(
-                        new RowResult(-1, toMap(result.getQueryStatistics(), System.currentTimeMillis() - time, row)));
-            }
-            return row;
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
         }
+        if (addStatistics) {
+            sink.accept(new RowResult(-1, toMap(result.getQueryStatistics(), System.currentTimeMillis() - time, row)));
+        }
+        return row;
     }
 
     private String removeShellControlCommands(String stmt) {
@@ -223,11 +312,11 @@ public class Cypher {
     }
 
     private boolean isSchemaOperation(String stmt) {
-        return stmt.matches("(?is).*(create|drop)\\s+(index|constraint).*");
+        return schemaOperation.matcher(stmt).matches();
     }
 
     private boolean isPeriodicOperation(String stmt) {
-        return stmt.matches("(?is).*using\\s+periodic.*");
+        return periodicOperation.matcher(stmt).matches();
     }
 
     private Map<String, Object> toMap(QueryStatistics stats, long time, long rows) {
@@ -264,6 +353,13 @@ public class Cypher {
         }
     }
 
+    @Procedure("apoc.cypher.statementCacheStats")
+    @Description("Returns the hits and misses of the cache of the statements rewritten by the `apoc.cypher.*`, "
+            + "`apoc.when` and `apoc.case` procedures and functions.")
+    public Stream<CypherStatementCache.Stats> statementCacheStats() {
+        return Stream.of(CypherStatementCache.stats());
+    }
+
     @Procedure(name = "apoc.cypher.doIt", mode = WRITE)
     @Description(
             "Runs a dynamically constructed statement with the given parameters. This procedure allows for both read and write statements.")
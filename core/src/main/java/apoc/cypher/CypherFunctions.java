@@ -18,7 +18,7 @@
  */
 package apoc.cypher;
 
-import static apoc.cypher.CypherUtils.withParamMapping;
+import static apoc.cypher.CypherStatementCache.withParamMappingOnSlottedRuntime;
 
 import java.util.Collections;
 import java.util.List;
@@ -42,8 +42,7 @@ public class CypherFunctions {
 
     public Object runFirstColumn(String statement, Map<String, Object> params, boolean expectMultipleValues) {
         if (params == null) params = Collections.emptyMap();
-        String resolvedStatement = withParamMapping(statement, params.keySet());
-        if (!resolvedStatement.contains(" runtime")) resolvedStatement = "cypher runtime=slotted " + resolvedStatement;
+        String resolvedStatement = withParamMappingOnSlottedRuntime(statement, params.keySet());
         try (Result result = tx.execute(resolvedStatement, params)) {
 
             String firstColumn = result.columns().get(0);
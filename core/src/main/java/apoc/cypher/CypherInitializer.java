@@ -24,6 +24,7 @@ import apoc.ApocConfig;
 import apoc.SystemLabels;
 import apoc.util.LogsUtil;
 import apoc.util.QueryUtil;
+import apoc.util.RetryPolicy;
 import apoc.util.Util;
 import apoc.util.collection.Iterators;
 import apoc.version.Version;
@@ -114,7 +115,11 @@ public class CypherInitializer implements AvailabilityListener {
                                     // with
                                     // creating constraints which could cause our query to fail with a transient error.
                                     Util.retryInTx(
-                                            userLog, db, tx -> Iterators.count(tx.execute(query)), 0, 5, retries -> {});
+                                            userLog,
+                                            db,
+                                            tx -> Iterators.count(tx.execute(query)),
+                                            RetryPolicy.DEFAULT,
+                                            retries -> {});
                                     userLog.info("successfully initialized: " + sanitizedQuery);
                                 } catch (Exception e) {
                                     userLog.error("error upon initialization, running: " + sanitizedQuery, e);
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.cypher;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Splits a Cypher script on the semicolons, reading it as the statements are consumed.
+ *
+ * The semicolons in string literals, escaped names and comments don't end a statement,
+ * and the statements with only whitespace and comments are skipped.
+ */
+public class CypherStatementTokenizer implements Iterator<String> {
+    private enum State {
+        CODE,
+        LINE_COMMENT,
+        BLOCK_COMMENT,
+        SINGLE_QUOTED,
+        DOUBLE_QUOTED,
+        BACKTICKED
+    }
+
+    private final Reader reader;
+    private final StringBuilder statement = new StringBuilder();
+    private int lookahead = -2;
+    private String next;
+    private boolean done;
+
+    public CypherStatementTokenizer(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !done) {
+            next = readStatement();
+        }
+        return next != null;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String statement = next;
+        next = null;
+        return statement;
+    }
+
+    private String readStatement() {
+        statement.setLength(0);
+        State state = State.CODE;
+        boolean code = false;
+        int c;
+        while ((c = read()) != -1) {
+            char ch = (char) c;
+            switch (state) {
+                case CODE -> {
+                    if (ch == ';') {
+                        if (code) {
+                            return statement.toString().strip();
+                        }
+                        statement.setLength(0);
+                        continue;
+                    }
+                    if (ch == '/' && (peek() == '/' || peek() == '*')) {
+                        state = peek() == '/' ? State.LINE_COMMENT : State.BLOCK_COMMENT;
+                        statement.append(ch).append((char) read());
+                        continue;
+                    }
+                    if (ch == '\'') {
+                        state = State.SINGLE_QUOTED;
+                    } else if (ch == '"') {
+                        state = State.DOUBLE_QUOTED;
+                    } else if (ch == '`') {
+                        state = State.BACKTICKED;
+                    }
+                    code |= !Character.isWhitespace(ch);
+                }
+                case LINE_COMMENT -> {
+                    if (ch == '\n') {
+                        state = State.CODE;
+                    }
+                }
+                case BLOCK_COMMENT -> {
+                    if (ch == '*' && peek() == '/') {
+                        statement.append(ch).append((char) read());
+                        state = State.CODE;
+                        continue;
+                    }
+                }
+                case SINGLE_QUOTED, DOUBLE_QUOTED -> {
+                    if (ch == '\\' && peek() != -1) {
+                        statement.append(ch).append((char) read());
+                        continue;
+                    }
+                    if (ch == (state == State.SINGLE_QUOTED ? '\'' : '"')) {
+                        state = State.CODE;
+                    }
+                }
+                case BACKTICKED -> {
+                    // a doubled backtick closes the name and opens it again
+                    if (ch == '`') {
+                        state = State.CODE;
+                    }
+                }
+            }
+            statement.append(ch);
+        }
+        done = true;
+        return code ? statement.toString().strip() : null;
+    }
+
+    private int peek() {
+        if (lookahead == -2) {
+            lookahead = readChar();
+        }
+        return lookahead;
+    }
+
+    private int read() {
+        if (lookahead != -2) {
+            int c = lookahead;
+            lookahead = -2;
+            return c;
+        }
+        return readChar();
+    }
+
+    private int readChar() {
+        try {
+            return reader.read();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,462 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.export.arrow;
+
+import static apoc.export.arrow.ArrowUtils.FIELD_ID;
+import static apoc.export.arrow.ArrowUtils.FIELD_LABELS;
+import static apoc.export.arrow.ArrowUtils.FIELD_PROPERTIES;
+import static apoc.export.arrow.ArrowUtils.FIELD_SOURCE_ID;
+import static apoc.export.arrow.ArrowUtils.FIELD_TARGET_ID;
+import static apoc.export.arrow.ArrowUtils.FIELD_TYPE;
+import static apoc.export.arrow.ArrowUtils.POINT_CRS;
+import static apoc.export.arrow.ArrowUtils.POINT_X;
+import static apoc.export.arrow.ArrowUtils.POINT_Y;
+import static apoc.export.arrow.ArrowUtils.POINT_Z;
+import static apoc.export.arrow.ArrowUtils.VALUE_BOOLEAN;
+import static apoc.export.arrow.ArrowUtils.VALUE_DATE;
+import static apoc.export.arrow.ArrowUtils.VALUE_DATE_TIME;
+import static apoc.export.arrow.ArrowUtils.VALUE_DOUBLE;
+import static apoc.export.arrow.ArrowUtils.VALUE_DURATION;
+import static apoc.export.arrow.ArrowUtils.VALUE_LIST;
+import static apoc.export.arrow.ArrowUtils.VALUE_LONG;
+import static apoc.export.arrow.ArrowUtils.VALUE_MAP;
+import static apoc.export.arrow.ArrowUtils.VALUE_POINT;
+import static apoc.export.arrow.ArrowUtils.VALUE_STRING;
+
+import apoc.convert.Json;
+import apoc.util.JsonUtil;
+import apoc.util.Util;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.BaseVariableWidthVector;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.DateMilliVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntervalMonthDayNanoVector;
+import org.apache.arrow.vector.TimeStampMicroTZVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.VectorUnloader;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.complex.MapVector;
+import org.apache.arrow.vector.complex.StructVector;
+import org.apache.arrow.vector.complex.impl.UnionListWriter;
+import org.apache.arrow.vector.complex.writer.VarCharWriter;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.neo4j.graphdb.spatial.Point;
+import org.neo4j.values.storable.DurationValue;
+
+/**
+ * Encodes rows, whose values have already been converted by {@link ExportArrowStrategy#convertRow(Map)},
+ * into the vectors of its own {@link VectorSchemaRoot}.
+ * An encoder is used by one thread at a time, so that several record batches can be encoded in parallel.
+ */
+public class ArrowBatchEncoder implements AutoCloseable {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long MICROS_PER_SECOND = 1_000_000L;
+    private static final long NANOS_PER_MICRO = 1_000L;
+    private static final long SECONDS_PER_DAY = 86_400L;
+
+    private final BufferAllocator allocator;
+    private final VectorSchemaRoot root;
+    private final Map<ListVector, UnionListWriter> listWriters = new IdentityHashMap<>();
+
+    // reused for every string written through a list or map writer
+    private ArrowBuf scratch;
+
+    public ArrowBatchEncoder(Schema schema, BufferAllocator allocator) {
+        this.allocator = allocator;
+        this.root = VectorSchemaRoot.create(schema, allocator);
+    }
+
+    public VectorSchemaRoot getRoot() {
+        return root;
+    }
+
+    public VectorSchemaRoot encode(List<Map<String, Object>> rows) {
+        root.allocateNew();
+        listWriters.clear();
+        final List<FieldVector> fieldVectors = root.getFieldVectors();
+        int index = 0;
+        for (Map<String, Object> row : rows) {
+            for (FieldVector fieldVector : fieldVectors) {
+                write(index, row.get(fieldVector.getName()), fieldVector);
+            }
+            index++;
+        }
+        root.setRowCount(index);
+        return root;
+    }
+
+    /**
+     * Encodes the rows and detaches them from the root in a record batch, so that the encoder can be reused
+     * while the batch waits to be written
+     */
+    public ArrowRecordBatch encodeBatch(List<Map<String, Object>> rows) {
+        encode(rows);
+        final ArrowRecordBatch batch = new VectorUnloader(root).getRecordBatch();
+        root.clear();
+        return batch;
+    }
+
+    public void write(int index, Object value, FieldVector fieldVector) {
+        if (fieldVector instanceof BaseVariableWidthVector vector) {
+            writeBaseVariableWidthVector(index, value, vector);
+        } else if (fieldVector instanceof BigIntVector vector) {
+            writeBigIntVector(index, value, vector);
+        } else if (fieldVector instanceof Float8Vector vector) {
+            writeFloat8Vector(index, value, vector);
+        } else if (fieldVector instanceof BitVector vector) {
+            writeBitVector(index, value, vector);
+        } else if (fieldVector instanceof DateMilliVector vector) {
+            writeDateMilliVector(index, value, vector);
+        } else if (fieldVector instanceof DateDayVector vector) {
+            writeDateDayVector(index, value, vector);
+        } else if (fieldVector instanceof TimeStampMicroTZVector vector) {
+            writeTimeStampVector(index, value, vector);
+        } else if (fieldVector instanceof IntervalMonthDayNanoVector vector) {
+            writeIntervalVector(index, value, vector);
+        } else if (fieldVector instanceof MapVector vector) {
+            // before the ListVector, a MapVector is a list of entries
+            writeMapVector(index, value, vector);
+        } else if (fieldVector instanceof ListVector vector) {
+            writeListVector(index, value, vector);
+        } else if (fieldVector instanceof StructVector vector) {
+            writeStructVector(index, value, vector);
+        }
+    }
+
+    private UnionListWriter listWriter(ListVector vector) {
+        return listWriters.computeIfAbsent(vector, ListVector::getWriter);
+    }
+
+    private void writeListVector(int index, Object value, ListVector listVector) {
+        if (value == null) {
+            listVector.setNull(index);
+            return;
+        }
+        UnionListWriter listWriter = listWriter(listVector);
+        Object[] array;
+        if (value instanceof Collection) {
+            final Collection collection = (Collection) value;
+            array = collection.toArray(new Object[collection.size()]);
+        } else {
+            array = (Object[]) value;
+        }
+        listWriter.setPosition(index);
+        listWriter.startList();
+        FieldVector inner = listVector.getChildrenFromFields().get(0);
+        for (int i = 0; i < array.length; i++) {
+            Object val = array[i];
+            if (val == null) {
+                listWriter.writeNull();
+            } else if (inner instanceof ListVector) {
+                write(i, val, inner);
+            } else if (inner instanceof BaseVariableWidthVector) {
+                writeVarChar(listWriter.varChar(), toBytes(val));
+            } else if (inner instanceof BigIntVector) {
+                listWriter.bigInt().writeBigInt(((Number) val).longValue());
+            } else if (inner instanceof Float8Vector) {
+                listWriter.float8().writeFloat8(((Number) val).doubleValue());
+            } else if (inner instanceof BitVector) {
+                listWriter.bit().writeBit((boolean) val ? 1 : 0);
+            }
+        }
+        listWriter.endList();
+    }
+
+    /**
+     * Writes the entries through the vectors of the map, the value of each entry is written
+     * to the child of the value struct matching its type
+     */
+    private void writeMapVector(int index, Object value, MapVector mapVector) {
+        if (!(value instanceof Map<?, ?> map)) {
+            mapVector.setNull(index);
+            return;
+        }
+        final StructVector entries = (StructVector) mapVector.getDataVector();
+        final FieldVector keys = entries.getChild(MapVector.KEY_NAME);
+        final StructVector values = (StructVector) entries.getChild(MapVector.VALUE_NAME);
+        final int offset = mapVector.startNewValue(index);
+        int size = 0;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+            final int position = offset + size++;
+            entries.setIndexDefined(position);
+            write(position, String.valueOf(entry.getKey()), keys);
+            writeValue(position, entry.getValue(), values);
+        }
+        mapVector.endValue(index, size);
+    }
+
+    private void writeValue(int index, Object value, StructVector values) {
+        values.setIndexDefined(index);
+        FieldVector child = values.getChild(valueType(value));
+        if (child == null) {
+            // a list in a list
+            child = values.getChild(VALUE_MAP);
+        }
+        if (child instanceof ListVector list) {
+            writeValueList(index, value, list);
+        } else {
+            write(index, child.getName().equals(VALUE_STRING) ? value.toString() : value, child);
+        }
+    }
+
+    private void writeValueList(int index, Object value, ListVector listVector) {
+        final Object[] array =
+                value instanceof Collection<?> collection ? collection.toArray() : (Object[]) value;
+        final StructVector elements = (StructVector) listVector.getDataVector();
+        final int offset = listVector.startNewValue(index);
+        for (int i = 0; i < array.length; i++) {
+            if (array[i] == null) {
+                elements.setNull(offset + i);
+            } else {
+                writeValue(offset + i, array[i], elements);
+            }
+        }
+        listVector.endValue(index, array.length);
+    }
+
+    /**
+     * The child of the value struct created by {@link ArrowUtils#mapField(String)} holding the value
+     */
+    private static String valueType(Object value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return VALUE_LONG;
+        } else if (value instanceof Number) {
+            return VALUE_DOUBLE;
+        } else if (value instanceof Boolean) {
+            return VALUE_BOOLEAN;
+        } else if (value instanceof LocalDate) {
+            return VALUE_DATE;
+        } else if (toInstant(value) != null) {
+            return VALUE_DATE_TIME;
+        } else if (value instanceof DurationValue) {
+            return VALUE_DURATION;
+        } else if (value instanceof Point) {
+            return VALUE_POINT;
+        } else if (value instanceof Collection || value instanceof Object[]) {
+            return VALUE_LIST;
+        } else if (value instanceof Map) {
+            return VALUE_MAP;
+        } else {
+            // the strings, and the values with no child of their own (e.g. times) as text
+            return VALUE_STRING;
+        }
+    }
+
+    private void writeStructVector(int index, Object value, StructVector structVector) {
+        final Map<String, Object> fields = toStructFields(value);
+        if (fields == null) {
+            structVector.setNull(index);
+            return;
+        }
+        for (FieldVector child : structVector.getChildrenFromFields()) {
+            write(index, fields.get(child.getName()), child);
+        }
+        structVector.setIndexDefined(index);
+    }
+
+    /**
+     * Maps the value to the fields of the structs created by {@link ArrowUtils},
+     * nodes and relationships arrive here already converted by {@link Json#writeJsonResult(Object)}
+     */
+    private static Map<String, Object> toStructFields(Object value) {
+        if (value instanceof Point point) {
+            final double[] coordinate = point.getCoordinate().getCoordinate();
+            final Map<String, Object> fields = new HashMap<>();
+            fields.put(POINT_CRS, point.getCRS().getType());
+            fields.put(POINT_X, coordinate[0]);
+            fields.put(POINT_Y, coordinate[1]);
+            fields.put(POINT_Z, coordinate.length > 2 ? coordinate[2] : null);
+            return fields;
+        }
+        if (!(value instanceof Map)) {
+            return null;
+        }
+        final Map<String, Object> map = (Map<String, Object>) value;
+        final Object type = map.get("type");
+        if (Json.NODE.equals(type)) {
+            final Map<String, Object> fields = new HashMap<>();
+            fields.put(FIELD_ID.getName(), Util.toLong(map.get("id")));
+            fields.put(FIELD_LABELS.getName(), map.get("labels"));
+            fields.put(FIELD_PROPERTIES.getName(), map.get("properties"));
+            return fields;
+        }
+        if (Json.RELATIONSHIP.equals(type)) {
+            final Map<String, Object> fields = new HashMap<>();
+            fields.put(FIELD_ID.getName(), Util.toLong(map.get("id")));
+            fields.put(FIELD_TYPE.getName(), map.get("label"));
+            fields.put(FIELD_SOURCE_ID.getName(), Util.toLong(((Map<String, Object>) map.get("start")).get("id")));
+            fields.put(FIELD_TARGET_ID.getName(), Util.toLong(((Map<String, Object>) map.get("end")).get("id")));
+            fields.put(FIELD_PROPERTIES.getName(), map.get("properties"));
+            return fields;
+        }
+        return map;
+    }
+
+    private void writeVarChar(VarCharWriter writer, byte[] bytes) {
+        if (scratch == null || scratch.capacity() < bytes.length) {
+            Util.close(scratch);
+            scratch = allocator.buffer(Math.max(bytes.length, 1024));
+        }
+        scratch.setBytes(0, bytes);
+        writer.writeVarChar(0, bytes.length, scratch);
+    }
+
+    private static byte[] toBytes(Object value) {
+        if (value instanceof DurationValue) {
+            value = value.toString();
+        }
+        return value instanceof String
+                ? ((String) value).getBytes(StandardCharsets.UTF_8)
+                : JsonUtil.writeValueAsBytes(value);
+    }
+
+    private void writeBitVector(int index, Object value, BitVector fieldVector) {
+        if (value == null) {
+            fieldVector.setNull(index);
+        } else {
+            fieldVector.setSafe(index, (boolean) value ? 1 : 0);
+        }
+    }
+
+    private void writeFloat8Vector(int index, Object value, Float8Vector fieldVector) {
+        if (value == null) {
+            fieldVector.setNull(index);
+        } else {
+            fieldVector.setSafe(index, ((Number) value).doubleValue());
+        }
+    }
+
+    private void writeDateMilliVector(int index, Object value, DateMilliVector fieldVector) {
+        final Instant instant = toInstant(value);
+        if (instant == null) {
+            fieldVector.setNull(index);
+        } else {
+            fieldVector.setSafe(index, instant.toEpochMilli());
+        }
+    }
+
+    private void writeDateDayVector(int index, Object value, DateDayVector fieldVector) {
+        if (value instanceof LocalDate date) {
+            fieldVector.setSafe(index, Math.toIntExact(date.toEpochDay()));
+        } else {
+            fieldVector.setNull(index);
+        }
+    }
+
+    private void writeTimeStampVector(int index, Object value, TimeStampMicroTZVector fieldVector) {
+        final Instant instant = toInstant(value);
+        if (instant == null) {
+            fieldVector.setNull(index);
+            return;
+        }
+        try {
+            fieldVector.setSafe(
+                    index,
+                    Math.addExact(
+                            Math.multiplyExact(instant.getEpochSecond(), MICROS_PER_SECOND),
+                            instant.getNano() / NANOS_PER_MICRO));
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(
+                    "The value " + value + " is out of the range of an Arrow timestamp in microseconds", e);
+        }
+    }
+
+    private static Instant toInstant(Object value) {
+        if (value instanceof Date) {
+            return ((Date) value).toInstant();
+        } else if (value instanceof LocalDateTime) {
+            return ((LocalDateTime) value).toInstant(ZoneOffset.UTC);
+        } else if (value instanceof ZonedDateTime) {
+            return ((ZonedDateTime) value).toInstant();
+        } else if (value instanceof OffsetDateTime) {
+            return ((OffsetDateTime) value).toInstant();
+        } else {
+            return null;
+        }
+    }
+
+    private void writeIntervalVector(int index, Object value, IntervalMonthDayNanoVector fieldVector) {
+        if (!(value instanceof DurationValue duration)) {
+            fieldVector.setNull(index);
+            return;
+        }
+        long days = duration.get(ChronoUnit.DAYS);
+        long seconds = duration.get(ChronoUnit.SECONDS);
+        if (Math.abs(seconds) >= Long.MAX_VALUE / NANOS_PER_SECOND) {
+            // the nanoseconds of an interval only hold about 292 years, the whole days beyond are carried to the days
+            days += seconds / SECONDS_PER_DAY;
+            seconds %= SECONDS_PER_DAY;
+        }
+        try {
+            fieldVector.setSafe(
+                    index,
+                    Math.toIntExact(duration.get(ChronoUnit.MONTHS)),
+                    Math.toIntExact(days),
+                    seconds * NANOS_PER_SECOND + duration.get(ChronoUnit.NANOS));
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(
+                    "The duration " + duration + " is out of the range of an Arrow interval", e);
+        }
+    }
+
+    private void writeBigIntVector(int index, Object value, BigIntVector fieldVector) {
+        if (value == null) {
+            fieldVector.setNull(index);
+        } else {
+            fieldVector.setSafe(index, ((Number) value).longValue());
+        }
+    }
+
+    private void writeBaseVariableWidthVector(int index, Object value, BaseVariableWidthVector fieldVector) {
+        if (value == null) {
+            fieldVector.setNull(index);
+        } else {
+            fieldVector.setSafe(index, toBytes(value));
+        }
+    }
+
+    @Override
+    public void close() {
+        Util.close(scratch);
+        Util.close(root);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.export.arrow;
+
+import apoc.util.Util;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.VectorLoader;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowWriter;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+/**
+ * Writes record batches through a pipeline: the caller (i.e. the transaction thread) fetches and converts the rows,
+ * up to `concurrency` batches are encoded in parallel on the executor, each one by its own {@link ArrowBatchEncoder},
+ * and the caller appends the encoded batches to the {@link ArrowWriter} in submission order.
+ */
+public class ArrowBatchPipeline implements AutoCloseable {
+    private final Schema schema;
+    private final BufferAllocator allocator;
+    private final ExecutorService executorService;
+    private final int concurrency;
+
+    private final VectorSchemaRoot root;
+    private final VectorLoader loader;
+    private final ArrowWriter writer;
+
+    private final Deque<Future<ArrowRecordBatch>> pending = new ArrayDeque<>();
+    private final ConcurrentLinkedQueue<ArrowBatchEncoder> idleEncoders = new ConcurrentLinkedQueue<>();
+    private final List<ArrowBatchEncoder> encoders = new ArrayList<>();
+
+    public ArrowBatchPipeline(
+            Schema schema,
+            BufferAllocator allocator,
+            Function<VectorSchemaRoot, ArrowWriter> writerFactory,
+            ExecutorService executorService,
+            int concurrency) {
+        this.schema = schema;
+        this.allocator = allocator;
+        this.executorService = executorService;
+        this.concurrency = Math.max(1, concurrency);
+        this.root = VectorSchemaRoot.create(schema, allocator);
+        this.loader = new VectorLoader(root);
+        this.writer = writerFactory.apply(root);
+    }
+
+    /**
+     * Submits a batch of already converted rows, blocks if `concurrency` batches are still waiting to be written
+     */
+    public void submit(List<Map<String, Object>> rows) {
+        while (pending.size() >= concurrency) {
+            writeNext();
+        }
+        final ArrowBatchEncoder encoder = acquireEncoder();
+        if (concurrency == 1) {
+            pending.add(CompletableFuture.completedFuture(encode(encoder, rows)));
+        } else {
+            pending.add(executorService.submit(() -> encode(encoder, rows)));
+        }
+        // append whatever is already encoded, without waiting
+        while (!pending.isEmpty() && pending.peekFirst().isDone()) {
+            writeNext();
+        }
+    }
+
+    /**
+     * Writes all the pending batches
+     */
+    public void finish() {
+        while (!pending.isEmpty()) {
+            writeNext();
+        }
+    }
+
+    private ArrowBatchEncoder acquireEncoder() {
+        ArrowBatchEncoder encoder = idleEncoders.poll();
+        if (encoder == null) {
+            // at most `concurrency` encoders are created, as every pending batch holds one until it's encoded
+            encoder = new ArrowBatchEncoder(schema, allocator);
+            encoders.add(encoder);
+        }
+        return encoder;
+    }
+
+    private ArrowRecordBatch encode(ArrowBatchEncoder encoder, List<Map<String, Object>> rows) {
+        try {
+            return encoder.encodeBatch(rows);
+        } finally {
+            idleEncoders.add(encoder);
+        }
+    }
+
+    private void writeNext() {
+        try (ArrowRecordBatch batch = pending.removeFirst().get()) {
+            loader.load(batch);
+            writer.writeBatch();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error while encoding an Arrow record batch", e.getCause());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            root.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        // release the batches that won't be written because of an error or a termination,
+        // waiting for the running ones as they still use their encoder
+        for (Future<ArrowRecordBatch> future : pending) {
+            try {
+                Util.close(future.get());
+            } catch (Exception ignored) {
+                // the error has already been reported by the batch that failed first
+            }
+        }
+        pending.clear();
+        Util.close(writer);
+        Util.close(root);
+        encoders.forEach(Util::close);
+    }
+}
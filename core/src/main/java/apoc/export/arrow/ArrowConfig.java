@@ -23,20 +23,33 @@ import java.util.Collections;
 import java.util.Map;
 
 public class ArrowConfig {
+    public static final int DEFAULT_CONCURRENCY = Math.min(4, Runtime.getRuntime().availableProcessors());
 
     private final int batchSize;
+    private final int concurrency;
 
     private final Map<String, Object> config;
 
     public ArrowConfig(Map<String, Object> config) {
         this.config = config == null ? Collections.emptyMap() : config;
         this.batchSize = Util.toInteger(this.config.getOrDefault("batchSize", 2000));
+        this.concurrency = Util.toInteger(this.config.getOrDefault("concurrency", DEFAULT_CONCURRENCY));
+        if (batchSize < 1 || concurrency < 1) {
+            throw new IllegalArgumentException("batchSize and concurrency parameters must be > 0");
+        }
     }
 
     public int getBatchSize() {
         return batchSize;
     }
 
+    /**
+     * The number of record batches encoded in parallel by the file export
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
     public Map<String, Object> getConfig() {
         return config;
     }
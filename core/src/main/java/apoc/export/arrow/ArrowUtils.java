@@ -18,8 +18,14 @@
  */
 package apoc.export.arrow;
 
+import java.util.ArrayList;
 import java.util.List;
+import org.apache.arrow.vector.complex.MapVector;
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.IntervalUnit;
+import org.apache.arrow.vector.types.TimeUnit;
 import org.apache.arrow.vector.types.Types;
+import org.apache.arrow.vector.types.pojo.ArrowType;
 import org.apache.arrow.vector.types.pojo.Field;
 import org.apache.arrow.vector.types.pojo.FieldType;
 
@@ -37,4 +43,93 @@ public class ArrowUtils {
     public static Field FIELD_TARGET_ID =
             new Field("<target.id>", FieldType.nullable(Types.MinorType.BIGINT.getType()), null);
     public static Field FIELD_TYPE = new Field("<type>", FieldType.nullable(Types.MinorType.VARCHAR.getType()), null);
+    public static Field FIELD_PROPERTIES = mapField("properties");
+
+    public static final String POINT_CRS = "crs";
+    public static final String POINT_X = "x";
+    public static final String POINT_Y = "y";
+    public static final String POINT_Z = "z";
+
+    // the children of a map value, only the one matching the type of the value is set
+    public static final String VALUE_STRING = "string";
+    public static final String VALUE_LONG = "long";
+    public static final String VALUE_DOUBLE = "double";
+    public static final String VALUE_BOOLEAN = "boolean";
+    public static final String VALUE_DATE_TIME = "datetime";
+    public static final String VALUE_DATE = "date";
+    public static final String VALUE_DURATION = "duration";
+    public static final String VALUE_POINT = "point";
+    public static final String VALUE_LIST = "list";
+    public static final String VALUE_MAP = "map";
+
+    /**
+     * An Arrow map with string keys, the values are a struct with a child per value type (see {@link #valueField}),
+     * as the values of a map, e.g. the properties of an entity, have no single type
+     */
+    public static Field mapField(String name) {
+        Field entries = new Field(
+                MapVector.DATA_VECTOR_NAME,
+                FieldType.notNullable(ArrowType.Struct.INSTANCE),
+                List.of(
+                        new Field(MapVector.KEY_NAME, FieldType.notNullable(new ArrowType.Utf8()), null),
+                        valueField(MapVector.VALUE_NAME, true)));
+        return new Field(name, FieldType.nullable(new ArrowType.Map(false)), List.of(entries));
+    }
+
+    /**
+     * A value of any type: the property types have their own child, and the elements of a list are values too.
+     * The nested lists and maps, which a property can't hold, are written as JSON in the {@link #VALUE_MAP} child.
+     */
+    private static Field valueField(String name, boolean withList) {
+        final List<Field> children = new ArrayList<>();
+        children.add(new Field(VALUE_STRING, FieldType.nullable(Types.MinorType.VARCHAR.getType()), null));
+        children.add(new Field(VALUE_LONG, FieldType.nullable(Types.MinorType.BIGINT.getType()), null));
+        children.add(new Field(VALUE_DOUBLE, FieldType.nullable(Types.MinorType.FLOAT8.getType()), null));
+        children.add(new Field(VALUE_BOOLEAN, FieldType.nullable(Types.MinorType.BIT.getType()), null));
+        children.add(new Field(VALUE_DATE_TIME, FieldType.nullable(timestampType()), null));
+        children.add(new Field(VALUE_DATE, FieldType.nullable(new ArrowType.Date(DateUnit.DAY)), null));
+        children.add(new Field(
+                VALUE_DURATION, FieldType.nullable(new ArrowType.Interval(IntervalUnit.MONTH_DAY_NANO)), null));
+        children.add(pointField(VALUE_POINT));
+        if (withList) {
+            children.add(new Field(
+                    VALUE_LIST,
+                    FieldType.nullable(Types.MinorType.LIST.getType()),
+                    List.of(valueField("$data$", false))));
+        }
+        children.add(new Field(VALUE_MAP, FieldType.nullable(Types.MinorType.VARCHAR.getType()), null));
+        return structField(name, children);
+    }
+
+    /**
+     * The timestamps are in microseconds, which cover about ±290,000 years from the epoch,
+     * nanoseconds would only cover the years 1677 to 2262
+     */
+    public static ArrowType timestampType() {
+        return new ArrowType.Timestamp(TimeUnit.MICROSECOND, "UTC");
+    }
+
+    public static Field structField(String name, List<Field> children) {
+        return new Field(name, FieldType.nullable(ArrowType.Struct.INSTANCE), children);
+    }
+
+    public static Field nodeField(String name) {
+        return structField(name, List.of(FIELD_ID, FIELD_LABELS, FIELD_PROPERTIES));
+    }
+
+    public static Field relationshipField(String name) {
+        return structField(
+                name, List.of(FIELD_ID, FIELD_TYPE, FIELD_SOURCE_ID, FIELD_TARGET_ID, FIELD_PROPERTIES));
+    }
+
+    public static Field pointField(String name) {
+        final FieldType coordinate = FieldType.nullable(Types.MinorType.FLOAT8.getType());
+        return structField(
+                name,
+                List.of(
+                        new Field(POINT_CRS, FieldType.nullable(Types.MinorType.VARCHAR.getType()), null),
+                        new Field(POINT_X, coordinate, null),
+                        new Field(POINT_Y, coordinate, null),
+                        new Field(POINT_Z, coordinate, null)));
+    }
 }
@@ -23,7 +23,6 @@ import apoc.export.util.ProgressReporter;
 import apoc.result.ProgressInfo;
 import apoc.util.FileUtils;
 import apoc.util.Util;
-import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.channels.Channels;
 import java.util.ArrayList;
@@ -31,7 +30,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 import org.apache.arrow.memory.BufferAllocator;
 import org.apache.arrow.vector.VectorSchemaRoot;
@@ -52,63 +50,53 @@ public interface ExportArrowFileStrategy<IN> extends ExportArrowStrategy<IN, Str
         ProgressInfo progressInfo = new ProgressInfo(getFileName(), getSource(data), "arrow");
         progressInfo.batchSize = config.getBatchSize();
         ProgressReporter reporter = new ProgressReporter(null, null, progressInfo);
-        int batchCount = 0;
         List<Map<String, Object>> rows = new ArrayList<>(config.getBatchSize());
-        VectorSchemaRoot root = null;
-        ArrowWriter writer = null;
+        ArrowBatchPipeline pipeline = null;
         try {
             Iterator<Map<String, Object>> it = toIterator(reporter, data);
             while (!Util.transactionIsTerminated(getTerminationGuard()) && it.hasNext()) {
                 rows.add(it.next());
-                if (batchCount > 0 && batchCount % config.getBatchSize() == 0) {
-                    if (root == null) {
-                        root = VectorSchemaRoot.create(schemaFor(rows), getBufferAllocator());
-                        writer = newArrowWriter(root, out);
+                if (rows.size() == config.getBatchSize()) {
+                    if (pipeline == null) {
+                        pipeline = newPipeline(rows, out, config);
                     }
-                    writeBatch(root, writer, rows);
-                    rows.clear();
+                    // the rows are converted here, as the entities can't be read outside the transaction thread
+                    pipeline.submit(convertRows(rows));
+                    rows = new ArrayList<>(config.getBatchSize());
                 }
-                ++batchCount;
             }
             if (!rows.isEmpty()) {
-                if (root == null) {
-                    root = VectorSchemaRoot.create(schemaFor(rows), getBufferAllocator());
-                    writer = newArrowWriter(root, out);
+                if (pipeline == null) {
+                    pipeline = newPipeline(rows, out, config);
                 }
-                writeBatch(root, writer, rows);
+                pipeline.submit(convertRows(rows));
+            }
+            if (pipeline != null) {
+                pipeline.finish();
             }
         } catch (Exception e) {
             getLogger().error("Exception while extracting Arrow data:", e);
+            // the file is incomplete, the caller must not take it for a successful export
+            throw new RuntimeException("Error while exporting Arrow data to " + getFileName(), e);
         } finally {
             reporter.done();
-            Util.close(root);
-            Util.close(writer);
+            Util.close(pipeline);
         }
 
         return Stream.of(progressInfo);
     }
 
-    String getSource(IN data);
-
-    default void writeBatch(VectorSchemaRoot root, ArrowWriter writer, List<Map<String, Object>> rows) {
-        AtomicInteger counter = new AtomicInteger();
-        root.allocateNew();
-        rows.forEach(row -> {
-            final int index = counter.getAndIncrement();
-            root.getFieldVectors().forEach(fe -> {
-                Object value = convertValue(row.get(fe.getName()));
-                write(index, value, fe);
-            });
-        });
-        root.setRowCount(counter.get());
-        try {
-            writer.writeBatch();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-        root.clear();
+    private ArrowBatchPipeline newPipeline(List<Map<String, Object>> rows, OutputStream out, ArrowConfig config) {
+        return new ArrowBatchPipeline(
+                schemaFor(rows),
+                getBufferAllocator(),
+                root -> newArrowWriter(root, out),
+                getExecutorService(),
+                config.getConcurrency());
     }
 
+    String getSource(IN data);
+
     String getFileName();
 
     TerminationGuard getTerminationGuard();
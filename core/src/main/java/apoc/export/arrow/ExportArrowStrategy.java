@@ -18,31 +18,17 @@
  */
 package apoc.export.arrow;
 
-import apoc.util.JsonUtil;
 import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
-import java.time.LocalDateTime;
-import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
-import java.time.ZonedDateTime;
-import java.util.Collection;
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
-import org.apache.arrow.memory.ArrowBuf;
 import org.apache.arrow.memory.BufferAllocator;
-import org.apache.arrow.vector.BaseVariableWidthVector;
-import org.apache.arrow.vector.BigIntVector;
-import org.apache.arrow.vector.BitVector;
-import org.apache.arrow.vector.DateMilliVector;
-import org.apache.arrow.vector.FieldVector;
-import org.apache.arrow.vector.Float8Vector;
 import org.apache.arrow.vector.VectorSchemaRoot;
-import org.apache.arrow.vector.complex.ListVector;
-import org.apache.arrow.vector.complex.impl.UnionListWriter;
 import org.apache.arrow.vector.ipc.ArrowWriter;
+import org.apache.arrow.vector.types.IntervalUnit;
 import org.apache.arrow.vector.types.Types;
 import org.apache.arrow.vector.types.pojo.ArrowType;
 import org.apache.arrow.vector.types.pojo.Field;
@@ -51,7 +37,6 @@ import org.apache.arrow.vector.types.pojo.Schema;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.TerminationGuard;
-import org.neo4j.values.storable.DurationValue;
 
 public interface ExportArrowStrategy<IN, OUT> {
 
@@ -129,162 +114,58 @@ public interface ExportArrowStrategy<IN, OUT> {
                     return new Field(fieldName, FieldType.nullable(Types.MinorType.FLOAT8.getType()), null);
                 case "DateTime":
                 case "LocalDateTime":
+                    return new Field(fieldName, FieldType.nullable(ArrowUtils.timestampType()), null);
                 case "Date":
                     return new Field(fieldName, FieldType.nullable(Types.MinorType.DATEMILLI.getType()), null);
                 case "Duration":
+                    return new Field(
+                            fieldName, FieldType.nullable(new ArrowType.Interval(IntervalUnit.MONTH_DAY_NANO)), null);
                 case "Node":
+                    return ArrowUtils.nodeField(fieldName);
                 case "Relationship":
-                    //                    return new Field(fieldName,
-                    // FieldType.nullable(Types.MinorType.STRUCT.getType()), null);
+                    return ArrowUtils.relationshipField(fieldName);
                 case "Point":
+                    return ArrowUtils.pointField(fieldName);
                 case "Map":
-                    //                    return new Field(fieldName, FieldType.nullable(Types.MinorType.MAP.getType()),
-                    // null);
-                case "DateTimeArray":
-                case "DateArray":
-                case "BooleanArray":
-                case "LongArray":
-                case "DoubleArray":
-                case "StringArray":
-                case "PointArray":
+                    return ArrowUtils.mapField(fieldName);
                 default:
                     return (type.endsWith("Array"))
                             ? new Field(
                                     fieldName,
                                     FieldType.nullable(Types.MinorType.LIST.getType()),
-                                    List.of(toField("$data$", Set.of(type.replace("Array", "")))))
+                                    List.of(toListElementField(type.replace("Array", ""))))
                             : new Field(fieldName, FieldType.nullable(Types.MinorType.VARCHAR.getType()), null);
             }
         }
     }
 
-    default void write(int index, Object value, FieldVector fieldVector) {
-        if (fieldVector instanceof BaseVariableWidthVector) {
-            writeBaseVariableWidthVector(index, value, (BaseVariableWidthVector) fieldVector);
-        } else if (fieldVector instanceof BigIntVector) {
-            writeBigIntVector(index, value, (BigIntVector) fieldVector);
-        } else if (fieldVector instanceof DateMilliVector) {
-            writeDateMilliVector(index, value, (DateMilliVector) fieldVector);
-        } else if (fieldVector instanceof Float8Vector) {
-            writeFloat8Vector(index, value, (Float8Vector) fieldVector);
-        } else if (fieldVector instanceof BitVector) {
-            writeBitVector(index, value, (BitVector) fieldVector);
-        } else if (fieldVector instanceof ListVector) {
-            writeListVector(index, value, fieldVector);
-        }
-    }
-
-    private void writeListVector(int index, Object value, FieldVector fieldVector) {
-        ListVector listVector = (ListVector) fieldVector;
-        if (value == null) {
-            listVector.setNull(index);
-            return;
-        }
-        UnionListWriter listWriter = listVector.getWriter();
-        Object[] array;
-        if (value instanceof Collection) {
-            final Collection collection = (Collection) value;
-            array = collection.toArray(new Object[collection.size()]);
-        } else {
-            array = (Object[]) value;
-        }
-        listWriter.setPosition(index);
-        listWriter.startList();
-        FieldVector inner = listVector.getChildrenFromFields().get(0);
-        for (int i = 0; i < array.length; i++) {
-            Object val = convertValue(array[i]);
-            if (val == null) {
-                listWriter.writeNull();
-            } else if (inner instanceof ListVector) {
-                write(i, val, inner);
-            } else if (inner instanceof BaseVariableWidthVector) {
-                final byte[] bytes;
-                if (val instanceof String) {
-                    bytes = val.toString().getBytes(StandardCharsets.UTF_8);
-                } else {
-                    bytes = JsonUtil.writeValueAsBytes(val);
-                }
-                ArrowBuf tempBuf = fieldVector.getAllocator().buffer(bytes.length);
-                tempBuf.setBytes(0, bytes);
-                listWriter.varChar().writeVarChar(0, bytes.length, tempBuf);
-                tempBuf.close();
-            } else if (inner instanceof BigIntVector) {
-                long lng = (long) val;
-                listWriter.bigInt().writeBigInt(lng);
-            } else if (inner instanceof Float8Vector) {
-                double dbl = (double) val;
-                listWriter.float8().writeFloat8(dbl);
-            } else if (inner instanceof BitVector) {
-                boolean bool = (boolean) val;
-                listWriter.bit().writeBit(bool ? 1 : 0);
-            } // TODO datemilli
-        }
-        listWriter.endList();
-    }
-
-    private void writeBitVector(int index, Object value, BitVector fieldVector) {
-        BitVector baseVector = fieldVector;
-        if (value == null) {
-            baseVector.setNull(index);
-        } else {
-            baseVector.setSafe(index, (boolean) value ? 1 : 0);
-        }
-    }
-
-    private void writeFloat8Vector(int index, Object value, Float8Vector fieldVector) {
-        Float8Vector baseVector = fieldVector;
-        if (value == null) {
-            baseVector.setNull(index);
-        } else {
-            baseVector.setSafe(index, (double) value);
-        }
-    }
-
-    private void writeDateMilliVector(int index, Object value, DateMilliVector fieldVector) {
-        DateMilliVector baseVector = fieldVector;
-        final Long dateInMillis;
-        if (value == null) {
-            dateInMillis = null;
-        } else if (value instanceof Date) {
-            dateInMillis = ((Date) value).getTime();
-        } else if (value instanceof LocalDateTime) {
-            dateInMillis = ((LocalDateTime) value).toInstant(ZoneOffset.UTC).toEpochMilli();
-        } else if (value instanceof ZonedDateTime) {
-            dateInMillis = ((ZonedDateTime) value).toInstant().toEpochMilli();
-        } else if (value instanceof OffsetDateTime) {
-            dateInMillis = ((OffsetDateTime) value).toInstant().toEpochMilli();
-        } else {
-            dateInMillis = null;
-        }
-        if (dateInMillis == null) {
-            baseVector.setNull(index);
-        } else {
-            baseVector.setSafe(index, dateInMillis);
+    private static Field toListElementField(String type) {
+        switch (type) {
+            case "Boolean":
+            case "Long":
+            case "Double":
+                return toField("$data$", Set.of(type));
+            default:
+                // the other list elements (temporal values, points, ...) are written as strings
+                return new Field("$data$", FieldType.nullable(Types.MinorType.VARCHAR.getType()), null);
         }
     }
 
-    private void writeBigIntVector(int index, Object value, BigIntVector fieldVector) {
-        BigIntVector baseVector = fieldVector;
-        if (value == null) {
-            baseVector.setNull(index);
-        } else {
-            baseVector.setSafe(index, (long) value);
-        }
+    /**
+     * Converts the values of a row before they are encoded,
+     * this must run in the thread that owns the transaction as the entities are read here
+     */
+    default Map<String, Object> convertRow(Map<String, Object> row) {
+        final Map<String, Object> converted = new HashMap<>(row.size() * 4 / 3 + 1);
+        row.forEach((key, value) -> converted.put(key, convertValue(value)));
+        return converted;
     }
 
-    private void writeBaseVariableWidthVector(int index, Object value, BaseVariableWidthVector fieldVector) {
-        final BaseVariableWidthVector baseVector = fieldVector;
-        if (value == null) {
-            baseVector.setNull(index);
-            return;
-        }
-        if (value instanceof DurationValue) {
-            value = ((DurationValue) value).toString();
-        }
-        if (value instanceof String) {
-            baseVector.setSafe(index, value.toString().getBytes(StandardCharsets.UTF_8));
-        } else {
-            baseVector.setSafe(index, JsonUtil.writeValueAsBytes(value));
+    default List<Map<String, Object>> convertRows(List<Map<String, Object>> rows) {
+        final List<Map<String, Object>> converted = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            converted.add(convertRow(row));
         }
+        return converted;
     }
 }
@@ -29,7 +29,6 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import org.apache.arrow.memory.BufferAllocator;
@@ -44,21 +43,12 @@ public interface ExportArrowStreamStrategy<IN> extends ExportArrowStrategy<IN, S
     Iterator<Map<String, Object>> toIterator(IN data);
 
     default byte[] writeBatch(BufferAllocator bufferAllocator, List<Map<String, Object>> rows) {
-        try (final VectorSchemaRoot root = VectorSchemaRoot.create(schemaFor(rows), bufferAllocator);
+        try (final ArrowBatchEncoder encoder = new ArrowBatchEncoder(schemaFor(rows), bufferAllocator);
                 final ByteArrayOutputStream out = new ByteArrayOutputStream();
-                final ArrowWriter writer = newArrowWriter(root, out)) {
-            AtomicInteger counter = new AtomicInteger();
-            root.allocateNew();
-            rows.forEach(row -> {
-                final int index = counter.getAndIncrement();
-                root.getFieldVectors().forEach(fe -> {
-                    Object value = convertValue(row.get(fe.getName()));
-                    write(index, value, fe);
-                });
-            });
-            root.setRowCount(counter.get());
+                final ArrowWriter writer = newArrowWriter(encoder.getRoot(), out)) {
+            encoder.encode(convertRows(rows));
             writer.writeBatch();
-            root.clear();
+            encoder.getRoot().clear();
             return out.toByteArray();
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -68,7 +58,6 @@ public interface ExportArrowStreamStrategy<IN> extends ExportArrowStrategy<IN, S
     default Stream<ByteArrayResult> export(IN data, ArrowConfig config) {
         class ExportIterator implements Iterator<ByteArrayResult> {
             ByteArrayResult current;
-            int batchCount = 0;
             Iterator<Map<String, Object>> it;
 
             public ExportIterator(IN data) {
@@ -96,15 +85,14 @@ public interface ExportArrowStreamStrategy<IN> extends ExportArrowStrategy<IN, S
 
                 while (!Util.transactionIsTerminated(getTerminationGuard()) && it.hasNext() && keepIterating) {
                     rows.add(it.next());
-                    if (batchCount > 0 && batchCount % config.getBatchSize() == 0) {
+                    if (rows.size() == config.getBatchSize()) {
                         final byte[] bytes = writeBatch(getBufferAllocator(), rows);
                         current = new ByteArrayResult(bytes);
                         keepIterating = false;
                     }
-                    ++batchCount;
                 }
 
-                if (!rows.isEmpty()) {
+                if (keepIterating && !rows.isEmpty()) {
                     final byte[] bytes = writeBatch(getBufferAllocator(), rows);
                     current = new ByteArrayResult(bytes);
                 }
@@ -104,7 +104,7 @@ public class ExportGraphFileStrategy implements ExportArrowFileStrategy<SubGraph
 
     @Override
     public ExecutorService getExecutorService() {
-        return pools.getDefaultExecutorService();
+        return pools.getCpuExecutorService();
     }
 
     @Override
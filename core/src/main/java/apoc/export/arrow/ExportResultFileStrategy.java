@@ -102,7 +102,7 @@ public class ExportResultFileStrategy implements ExportArrowFileStrategy<Result>
 
     @Override
     public ExecutorService getExecutorService() {
-        return pools.getDefaultExecutorService();
+        return pools.getCpuExecutorService();
     }
 
     @Override
@@ -25,12 +25,19 @@ import apoc.load.CSVResult;
 import apoc.load.Mapping;
 import apoc.load.util.Results;
 import apoc.util.FileUtils;
+import apoc.util.RetryPolicy;
+import apoc.util.Util;
+import apoc.util.collection.Iterators;
 import com.opencsv.CSVParserBuilder;
 import com.opencsv.CSVReader;
 import com.opencsv.CSVReaderBuilder;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntBiFunction;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.neo4j.graphdb.*;
@@ -41,20 +48,35 @@ public class CsvEntityLoader {
     private final CsvLoaderConfig clc;
     private final ProgressReporter reporter;
     private final Log log;
+    private final ExecutorService executorService;
 
     /**
      * @param clc configuration object
      * @param reporter
      */
     public CsvEntityLoader(CsvLoaderConfig clc, ProgressReporter reporter, Log log) {
+        this(clc, reporter, log, null);
+    }
+
+    /**
+     * @param clc configuration object
+     * @param reporter
+     * @param executorService pool of the batches when {@link CsvLoaderConfig#isParallel()} is true
+     */
+    public CsvEntityLoader(CsvLoaderConfig clc, ProgressReporter reporter, Log log, ExecutorService executorService) {
         this.clc = clc;
         this.reporter = reporter;
         this.log = log;
+        this.executorService = executorService;
+    }
+
+    private boolean isParallel() {
+        return clc.isParallel() && executorService != null;
     }
 
     /**
      * Loads nodes from a CSV file with given labels to an online database, and fills the {@code idMapping},
-     * which will be used by the {@link #loadRelationships(Object, String, GraphDatabaseService, Map)}
+     * which will be used by the {@link #loadRelationships(Object, String, GraphDatabaseService, CsvIdMapping)}
      * method.
      *
      * @param fileName URI/Binary of the CSV file representing the node
@@ -67,7 +89,7 @@ public class CsvEntityLoader {
             final Object fileName,
             final List<String> labels,
             final GraphDatabaseService db,
-            final Map<String, Map<String, String>> idMapping)
+            final CsvIdMapping idMapping)
             throws IOException {
 
         try (final CountingReader reader = FileUtils.readerFor(fileName, clc.getCompressionAlgo())) {
@@ -84,15 +106,14 @@ public class CsvEntityLoader {
                         "Please note that if no ID is specified, the node will be imported but it will not be able to be connected by any relationships during the import");
             }
 
-            final Optional<String> idAttribute =
-                    idField.isPresent() ? Optional.of(idField.get().getName()) : Optional.empty();
             final String idSpace =
                     idField.isPresent() ? idField.get().getIdSpace() : CsvLoaderConstants.DEFAULT_IDSPACE;
-
-            idMapping.putIfAbsent(idSpace, new HashMap<>());
-            final Map<String, String> idspaceIdMapping = idMapping.get(idSpace);
+            final CsvIdMapping.IdSpace idspaceIdMapping = idMapping.idSpace(idSpace);
 
             final Map<String, Mapping> mapping = getMapping(fields);
+            // the id is converted by the reading thread, to check the duplicates in the order of the file
+            final int idIndex = idField.map(fields::indexOf).orElse(-1);
+            final Mapping idMapper = idField.map(f -> mapping.get(f.getName())).orElse(null);
 
             final CSVReader csv = new CSVReaderBuilder(reader)
                     .withCSVParser(new CSVParserBuilder()
@@ -104,91 +125,117 @@ public class CsvEntityLoader {
 
             final String[] loadCsvCompatibleHeader =
                     fields.stream().map(f -> f.getName()).toArray(String[]::new);
-            AtomicInteger lineNo = new AtomicInteger();
-            BatchTransaction btx = new BatchTransaction(db, clc.getBatchSize(), reporter);
-            try {
-                csv.forEach(line -> {
-                    lineNo.getAndIncrement();
-
-                    final EnumSet<Results> results = EnumSet.of(Results.map);
-                    final CSVResult result = new CSVResult(
-                            loadCsvCompatibleHeader,
-                            line,
-                            lineNo.get(),
-                            false,
-                            mapping,
-                            Collections.emptyList(),
-                            results);
-
-                    final String nodeCsvId =
-                            (String) idAttribute.map(result.map::get).orElse(null);
-
-                    // if 'ignore duplicate nodes' is false, there is an id field and the mapping already has the
-                    // current id,
-                    // we either fail the loading process or skip it depending on the 'ignore duplicate nodes' setting
-                    if (idField.isPresent() && idspaceIdMapping.containsKey(nodeCsvId)) {
-                        if (clc.getIgnoreDuplicateNodes()) {
-                            return;
-                        } else {
-                            throw new IllegalStateException("Duplicate node with id " + nodeCsvId + " found on line "
-                                    + lineNo + "\n" + Arrays.toString(line));
+            final ToIntBiFunction<Transaction, CsvLine> createNode = (tx, line) ->
+                    createNode(tx, line, labels, fields, loadCsvCompatibleHeader, mapping, idspaceIdMapping);
+
+            final Iterator<CsvLine> lines = new Iterator<>() {
+                final Iterator<String[]> rows = csv.iterator();
+                long lineNo = 0;
+                CsvLine next;
+
+                @Override
+                public boolean hasNext() {
+                    while (next == null && rows.hasNext()) {
+                        final String[] line = rows.next();
+                        lineNo++;
+                        int ordinal = -1;
+                        if (idIndex >= 0) {
+                            final String nodeCsvId = (String) idMapper.convert(line[idIndex]);
+                            // if 'ignore duplicate nodes' is false, there is an id field and the mapping already has
+                            // the current id, we either fail the loading process or skip it depending on the
+                            // 'ignore duplicate nodes' setting
+                            ordinal = nodeCsvId == null ? -1 : idspaceIdMapping.reserve(nodeCsvId);
+                            if (nodeCsvId != null && ordinal < 0) {
+                                if (clc.getIgnoreDuplicateNodes()) {
+                                    continue;
+                                }
+                                throw new IllegalStateException("Duplicate node with id " + nodeCsvId
+                                        + " found on line " + lineNo + "\n" + Arrays.toString(line));
+                            }
                         }
+                        next = new CsvLine(line, lineNo, ordinal);
                     }
+                    return next != null;
+                }
 
-                    // create node and add its id to the mapping
-                    final Node node = btx.getTransaction().createNode();
-                    if (idField.isPresent()) {
-                        idspaceIdMapping.put(nodeCsvId, node.getElementId());
-                    }
+                @Override
+                public CsvLine next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    CsvLine line = next;
+                    next = null;
+                    return line;
+                }
+            };
 
-                    // add labels
-                    for (String label : labels) {
-                        node.addLabel(Label.label(label));
-                    }
+            if (isParallel()) {
+                loadInParallel(db, lines, createNode, true);
+            } else {
+                loadInBatchTransaction(db, lines, createNode, true);
+            }
+        }
+    }
 
-                    // add properties
-                    int props = 0;
-                    for (CsvHeaderField field : fields) {
-                        final String name = field.getName();
-                        Object value = result.map.get(name);
+    private int createNode(
+            Transaction tx,
+            CsvLine line,
+            List<String> labels,
+            List<CsvHeaderField> fields,
+            String[] loadCsvCompatibleHeader,
+            Map<String, Mapping> mapping,
+            CsvIdMapping.IdSpace idspaceIdMapping) {
+        final EnumSet<Results> results = EnumSet.of(Results.map);
+        final CSVResult result = new CSVResult(
+                loadCsvCompatibleHeader,
+                line.values,
+                line.lineNo,
+                false,
+                mapping,
+                Collections.emptyList(),
+                results);
+
+        // create node and add its id to the mapping
+        final Node node = tx.createNode();
+        if (line.ordinal >= 0) {
+            idspaceIdMapping.set(line.ordinal, node.getId());
+        }
 
-                        if (field.isMeta()) {
-                            final List<String> customLabels = (List<String>) value;
-                            for (String customLabel : customLabels) {
-                                node.addLabel(Label.label(customLabel));
-                            }
-                        } else if (field.isId()) {
-                            final Object idValue;
-                            if (clc.getStringIds()) {
-                                idValue = value;
-                            } else {
-                                idValue = Long.valueOf((String) value);
-                            }
-                            node.setProperty(field.getName(), idValue);
-                            props++;
-                        } else {
-                            boolean propertyAdded =
-                                    CsvPropertyConverter.addPropertyToGraphEntity(node, field, value, clc);
-                            props += propertyAdded ? 1 : 0;
-                        }
-                    }
-                    btx.increment();
-                    reporter.update(1, 0, props++);
-                });
-                btx.doCommit();
-            } catch (RuntimeException e) {
-                btx.rollback();
-                throw e;
-            } finally {
-                btx.close();
+        // add labels
+        for (String label : labels) {
+            node.addLabel(Label.label(label));
+        }
+
+        // add properties
+        int props = 0;
+        for (CsvHeaderField field : fields) {
+            final String name = field.getName();
+            Object value = result.map.get(name);
+
+            if (field.isMeta()) {
+                final List<String> customLabels = (List<String>) value;
+                for (String customLabel : customLabels) {
+                    node.addLabel(Label.label(customLabel));
+                }
+            } else if (field.isId()) {
+                final Object idValue;
+                if (clc.getStringIds()) {
+                    idValue = value;
+                } else {
+                    idValue = Long.valueOf((String) value);
+                }
+                node.setProperty(field.getName(), idValue);
+                props++;
+            } else {
+                boolean propertyAdded = CsvPropertyConverter.addPropertyToGraphEntity(node, field, value, clc);
+                props += propertyAdded ? 1 : 0;
             }
         }
+        return props;
     }
 
     /**
      * Loads relationships from a CSV file with given relationship types to an online database,
      * using the {@code idMapping} created by the
-     * {@link #loadNodes(Object, List, GraphDatabaseService, Map)} method.
+     * {@link #loadNodes(Object, List, GraphDatabaseService, CsvIdMapping)} method.
      *
      * @param data URI / Binary of the CSV file representing the relationship
      * @param type relationship type to be applied to each relationships
@@ -198,10 +245,7 @@ public class CsvEntityLoader {
      * @throws IOException
      */
     public void loadRelationships(
-            final Object data,
-            final String type,
-            final GraphDatabaseService db,
-            final Map<String, Map<String, String>> idMapping)
+            final Object data, final String type, final GraphDatabaseService db, final CsvIdMapping idMapping)
             throws IOException {
 
         try (final CountingReader reader = FileUtils.readerFor(data, clc.getCompressionAlgo())) {
@@ -234,69 +278,159 @@ public class CsvEntityLoader {
                         fields.stream().map(f -> f.getName()).toArray(String[]::new);
 
                 AtomicInteger lineNo = new AtomicInteger();
-                BatchTransaction btx = new BatchTransaction(db, clc.getBatchSize(), reporter);
-                try {
-                    csv.forEach(line -> {
-                        lineNo.getAndIncrement();
-
-                        final EnumSet<Results> results = EnumSet.of(Results.map);
-                        final CSVResult result = new CSVResult(
-                                loadCsvCompatibleHeader,
-                                line,
-                                lineNo.get(),
-                                false,
-                                mapping,
-                                Collections.emptyList(),
-                                results);
-
-                        final Object startId = result.map.get(CsvLoaderConstants.START_ID_ATTR);
-                        final Object startInternalId =
-                                idMapping.get(startIdField.getIdSpace()).get(startId.toString());
-                        if (startInternalId == null) {
-                            throw new IllegalStateException("Node for id space " + endIdField.getIdSpace() + " and id "
-                                    + startId + " not found");
-                        }
-                        final Node source = btx.getTransaction().getNodeByElementId(startInternalId.toString());
-
-                        final Object endId = result.map.get(CsvLoaderConstants.END_ID_ATTR);
-                        final Object endInternalId =
-                                idMapping.get(endIdField.getIdSpace()).get(endId.toString());
-                        if (endInternalId == null) {
-                            throw new IllegalStateException(
-                                    "Node for id space " + endIdField.getIdSpace() + " and id " + endId + " not found");
-                        }
-                        final Node target = btx.getTransaction().getNodeByElementId(endInternalId.toString());
-
-                        final String currentType;
-                        final Object overridingType = result.map.get(CsvLoaderConstants.TYPE_ATTR);
-                        if (overridingType != null && !((String) overridingType).isEmpty()) {
-                            currentType = (String) overridingType;
-                        } else {
-                            currentType = type;
-                        }
-                        final Relationship rel =
-                                source.createRelationshipTo(target, RelationshipType.withName(currentType));
-
-                        // add properties
-                        int props = 0;
-                        for (CsvHeaderField field : edgePropertiesFields) {
-                            final String name = field.getName();
-                            Object value = result.map.get(name);
-                            boolean propertyAdded =
-                                    CsvPropertyConverter.addPropertyToGraphEntity(rel, field, value, clc);
-                            props += propertyAdded ? 1 : 0;
-                        }
-                        btx.increment();
-                        reporter.update(0, 1, props);
-                    });
-                    btx.doCommit();
-                } catch (RuntimeException e) {
-                    btx.rollback();
-                    throw e;
-                } finally {
-                    btx.close();
+                final Iterator<CsvLine> lines = Iterators.stream(csv.iterator())
+                        .map(line -> new CsvLine(line, lineNo.incrementAndGet(), -1))
+                        .iterator();
+                final ToIntBiFunction<Transaction, CsvLine> createRelationship = (tx, line) -> {
+                    final EnumSet<Results> results = EnumSet.of(Results.map);
+                    final CSVResult result = new CSVResult(
+                            loadCsvCompatibleHeader,
+                            line.values,
+                            line.lineNo,
+                            false,
+                            mapping,
+                            Collections.emptyList(),
+                            results);
+
+                    final Node source = getNode(
+                            tx, idMapping, startIdField, result.map.get(CsvLoaderConstants.START_ID_ATTR));
+                    final Node target =
+                            getNode(tx, idMapping, endIdField, result.map.get(CsvLoaderConstants.END_ID_ATTR));
+
+                    final String currentType;
+                    final Object overridingType = result.map.get(CsvLoaderConstants.TYPE_ATTR);
+                    if (overridingType != null && !((String) overridingType).isEmpty()) {
+                        currentType = (String) overridingType;
+                    } else {
+                        currentType = type;
+                    }
+                    final Relationship rel =
+                            source.createRelationshipTo(target, RelationshipType.withName(currentType));
+
+                    // add properties
+                    int props = 0;
+                    for (CsvHeaderField field : edgePropertiesFields) {
+                        final String name = field.getName();
+                        Object value = result.map.get(name);
+                        boolean propertyAdded = CsvPropertyConverter.addPropertyToGraphEntity(rel, field, value, clc);
+                        props += propertyAdded ? 1 : 0;
+                    }
+                    return props;
+                };
+
+                if (isParallel()) {
+                    loadInParallel(db, lines, createRelationship, false);
+                } else {
+                    loadInBatchTransaction(db, lines, createRelationship, false);
+                }
+            }
+        }
+    }
+
+    private static Node getNode(Transaction tx, CsvIdMapping idMapping, CsvHeaderField idField, Object csvId) {
+        final long internalId = idMapping.get(idField.getIdSpace(), csvId.toString());
+        if (internalId == CsvIdMapping.NOT_FOUND) {
+            throw new IllegalStateException(
+                    "Node for id space " + idField.getIdSpace() + " and id " + csvId + " not found");
+        }
+        return tx.getNodeById(internalId);
+    }
+
+    private void loadInBatchTransaction(
+            GraphDatabaseService db,
+            Iterator<CsvLine> lines,
+            ToIntBiFunction<Transaction, CsvLine> createEntity,
+            boolean nodes) {
+        BatchTransaction btx = new BatchTransaction(db, clc.getBatchSize(), reporter);
+        try {
+            lines.forEachRemaining(line -> {
+                int props = createEntity.applyAsInt(btx.getTransaction(), line);
+                btx.increment();
+                reporter.update(nodes ? 1 : 0, nodes ? 0 : 1, props);
+            });
+            btx.doCommit();
+        } catch (RuntimeException e) {
+            btx.rollback();
+            throw e;
+        } finally {
+            btx.close();
+        }
+    }
+
+    /**
+     * The calling thread reads the file and hands batches of `batchSize` lines to the executor,
+     * each one committed by its own transaction (retried in case of transient errors, e.g. deadlocks
+     * between relationships of the same nodes), at most `concurrency` at a time.
+     */
+    private void loadInParallel(
+            GraphDatabaseService db,
+            Iterator<CsvLine> lines,
+            ToIntBiFunction<Transaction, CsvLine> createEntity,
+            boolean nodes) {
+        final int batchSize = Math.max(1, clc.getBatchSize());
+        final Deque<FutureTask<long[]>> pending = new ArrayDeque<>();
+        try {
+            while (lines.hasNext()) {
+                final List<CsvLine> batch = new ArrayList<>(batchSize);
+                while (batch.size() < batchSize && lines.hasNext()) {
+                    batch.add(lines.next());
+                }
+                while (pending.size() >= clc.getConcurrency()) {
+                    awaitBatch(pending.removeFirst(), nodes);
                 }
+                final FutureTask<long[]> task = new FutureTask<>(() -> Util.retryInTx(
+                        log,
+                        db,
+                        tx -> {
+                            long props = 0;
+                            for (CsvLine line : batch) {
+                                props += createEntity.applyAsInt(tx, line);
+                            }
+                            return new long[] {batch.size(), props};
+                        },
+                        RetryPolicy.DEFAULT,
+                        retry -> {}));
+                pending.add(task);
+                executorService.execute(task);
+            }
+            while (!pending.isEmpty()) {
+                awaitBatch(pending.removeFirst(), nodes);
+            }
+        } finally {
+            // the batches not started yet are skipped when a batch fails
+            pending.forEach(task -> task.cancel(false));
+        }
+    }
+
+    private void awaitBatch(FutureTask<long[]> task, boolean nodes) {
+        // runs the batch on the current thread if no worker took it yet,
+        // so that the import can't starve when it's itself running on a busy pool
+        task.run();
+        try {
+            final long[] counts = task.get();
+            reporter.update(nodes ? counts[0] : 0, nodes ? 0 : counts[0], counts[1]);
+            reporter.progress("commit after " + counts[0] + " row(s) ");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
             }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static class CsvLine {
+        private final String[] values;
+        private final long lineNo;
+        // ordinal of the node id in the id space, -1 if the node has no id
+        private final int ordinal;
+
+        CsvLine(String[] values, long lineNo, int ordinal) {
+            this.values = values;
+            this.lineNo = lineNo;
+            this.ordinal = ordinal;
         }
     }
 
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.export.csv;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Mapping between the CSV ids and the internal node ids, one {@link IdSpace} per id space.
+ *
+ * The ids are kept in primitive arrays instead of a map of strings: the UTF-8 bytes of the CSV ids are appended
+ * to byte pages and indexed by an open addressing table of ordinals, and the node ids are stored by ordinal
+ * in pages of longs, so that an id costs its length plus about 32 bytes.
+ */
+public class CsvIdMapping {
+    public static final long NOT_FOUND = -1L;
+
+    private final Map<String, IdSpace> idSpaces = new HashMap<>();
+
+    public IdSpace idSpace(String name) {
+        return idSpaces.computeIfAbsent(name, k -> new IdSpace());
+    }
+
+    public long get(String idSpace, String id) {
+        IdSpace space = idSpaces.get(idSpace);
+        return space == null ? NOT_FOUND : space.get(id);
+    }
+
+    /**
+     * The ids of an id space. Only one thread adds ids (i.e. the one reading the CSV),
+     * the node ids of the reserved ordinals can be set by other threads, as each ordinal is written once,
+     * and once the nodes are loaded the lookups are safe from any thread.
+     */
+    public static class IdSpace {
+        private static final int KEY_PAGE_SIZE = 1 << 20;
+        private static final int NODE_PAGE_SHIFT = 16;
+        private static final int NODE_PAGE_SIZE = 1 << NODE_PAGE_SHIFT;
+        private static final int NODE_PAGE_MASK = NODE_PAGE_SIZE - 1;
+        // the largest table an int can size, kept at most half full
+        private static final int MAX_TABLE_SIZE = 1 << 30;
+        private static final int MAX_IDS = MAX_TABLE_SIZE / 2;
+
+        private int size;
+        // ordinal + 1 of the key in each slot, 0 is a free slot
+        private int[] table = new int[1 << 10];
+        private int[] hashes = new int[1 << 10];
+        private int[] keyLengths = new int[1 << 10];
+        // page << 32 | position of the key bytes
+        private long[] keyOffsets = new long[1 << 10];
+        private byte[][] keyPages = new byte[0][];
+        private int keyPosition;
+        private volatile long[][] nodePages = new long[0][];
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Adds a CSV id and returns its ordinal, or -1 if the id is already there
+         */
+        public int reserve(String id) {
+            byte[] key = id.getBytes(UTF_8);
+            int hash = hash(key);
+            int mask = table.length - 1;
+            int slot = hash & mask;
+            while (table[slot] != 0) {
+                if (matches(table[slot] - 1, key, hash)) {
+                    return -1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (size >= MAX_IDS) {
+                throw new IllegalStateException(
+                        "An id space can't have more than " + MAX_IDS + " ids, use several id spaces instead");
+            }
+            int ordinal = size++;
+            ensureCapacity(ordinal);
+            hashes[ordinal] = hash;
+            keyLengths[ordinal] = key.length;
+            keyOffsets[ordinal] = appendKey(key);
+            table[slot] = ordinal + 1;
+            if (size * 2 > table.length) {
+                rehash(table.length * 2);
+            }
+            return ordinal;
+        }
+
+        public void set(int ordinal, long nodeId) {
+            nodePages[ordinal >>> NODE_PAGE_SHIFT][ordinal & NODE_PAGE_MASK] = nodeId;
+        }
+
+        public void put(String id, long nodeId) {
+            int ordinal = reserve(id);
+            if (ordinal >= 0) {
+                set(ordinal, nodeId);
+            }
+        }
+
+        /**
+         * @return the node id of the CSV id,
+         * or {@link CsvIdMapping#NOT_FOUND} if the id is unknown or its node hasn't been created
+         */
+        public long get(String id) {
+            byte[] key = id.getBytes(UTF_8);
+            int hash = hash(key);
+            int[] table = this.table;
+            int mask = table.length - 1;
+            int slot = hash & mask;
+            while (table[slot] != 0) {
+                int ordinal = table[slot] - 1;
+                if (matches(ordinal, key, hash)) {
+                    return nodePages[ordinal >>> NODE_PAGE_SHIFT][ordinal & NODE_PAGE_MASK];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return NOT_FOUND;
+        }
+
+        private boolean matches(int ordinal, byte[] key, int hash) {
+            if (hashes[ordinal] != hash || keyLengths[ordinal] != key.length) {
+                return false;
+            }
+            long offset = keyOffsets[ordinal];
+            byte[] page = keyPages[(int) (offset >>> 32)];
+            int position = (int) offset;
+            return Arrays.equals(page, position, position + key.length, key, 0, key.length);
+        }
+
+        private long appendKey(byte[] key) {
+            if (keyPages.length == 0 || keyPosition + key.length > keyPages[keyPages.length - 1].length) {
+                keyPages = Arrays.copyOf(keyPages, keyPages.length + 1);
+                keyPages[keyPages.length - 1] = new byte[Math.max(KEY_PAGE_SIZE, key.length)];
+                keyPosition = 0;
+            }
+            int page = keyPages.length - 1;
+            System.arraycopy(key, 0, keyPages[page], keyPosition, key.length);
+            long offset = ((long) page << 32) | keyPosition;
+            keyPosition += key.length;
+            return offset;
+        }
+
+        private void ensureCapacity(int ordinal) {
+            if (ordinal >= hashes.length) {
+                int capacity = hashes.length * 2;
+                hashes = Arrays.copyOf(hashes, capacity);
+                keyLengths = Arrays.copyOf(keyLengths, capacity);
+                keyOffsets = Arrays.copyOf(keyOffsets, capacity);
+            }
+            int page = ordinal >>> NODE_PAGE_SHIFT;
+            if (page >= nodePages.length) {
+                // the existing pages are shared by the new array, so concurrent writers never lose a value
+                long[][] pages = Arrays.copyOf(nodePages, page + 1);
+                pages[page] = new long[NODE_PAGE_SIZE];
+                Arrays.fill(pages[page], NOT_FOUND);
+                nodePages = pages;
+            }
+        }
+
+        private void rehash(int capacity) {
+            int[] newTable = new int[capacity];
+            int mask = capacity - 1;
+            for (int ordinal = 0; ordinal < size; ordinal++) {
+                int slot = hashes[ordinal] & mask;
+                while (newTable[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                newTable[slot] = ordinal + 1;
+            }
+            table = newTable;
+        }
+
+        private static int hash(byte[] key) {
+            // spread the bits, the low ones pick the slot
+            int hash = Arrays.hashCode(key) * 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
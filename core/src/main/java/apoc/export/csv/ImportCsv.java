@@ -22,7 +22,6 @@ import apoc.Pools;
 import apoc.export.util.ProgressReporter;
 import apoc.result.ProgressInfo;
 import apoc.util.Util;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Stream;
@@ -55,9 +54,9 @@ public class ImportCsv {
             }
             final CsvLoaderConfig clc = CsvLoaderConfig.from(config);
             final ProgressReporter reporter = new ProgressReporter(null, null, new ProgressInfo(file, source, "csv"));
-            final CsvEntityLoader loader = new CsvEntityLoader(clc, reporter, log);
+            final CsvEntityLoader loader = new CsvEntityLoader(clc, reporter, log, pools.getDefaultExecutorService());
 
-            final Map<String, Map<String, String>> idMapping = new HashMap<>();
+            final CsvIdMapping idMapping = new CsvIdMapping();
             for (Map<String, Object> node : nodes) {
                 final Object data = node.getOrDefault("fileName", node.get("data"));
                 final List<String> labels = (List<String>) node.get("labels");
@@ -20,7 +20,7 @@ package apoc.graph;
 
 import static apoc.graph.GraphsUtils.extract;
 
-import apoc.cypher.CypherUtils;
+import apoc.cypher.CypherStatementCache;
 import apoc.graph.document.builder.DocumentToGraph;
 import apoc.graph.util.GraphsConfig;
 import apoc.result.RowResult;
@@ -109,7 +109,7 @@ public class Graphs {
         Set<Node> nodes = new HashSet<>(1000);
         Set<Relationship> rels = new HashSet<>(1000);
         Map<String, Object> props = new HashMap<>(properties);
-        tx.execute(CypherUtils.withParamMapping(statement, params.keySet()), params).stream()
+        tx.execute(CypherStatementCache.withParamMapping(statement, params.keySet()), params).stream()
                 .forEach(row -> {
                     row.forEach((k, v) -> {
                         if (!extract(v, nodes, rels)) {
@@ -18,7 +18,12 @@
  */
 package apoc.hashing;
 
+import apoc.Pools;
 import apoc.util.Util;
+import apoc.util.kernel.MultiThreadedGlobalGraphOperations;
+import apoc.util.kernel.MultiThreadedGlobalGraphOperations.ScanOptions;
+import apoc.util.kernel.ScanSource;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
@@ -26,7 +31,7 @@ import java.util.Collections;
 import java.util.Formatter;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
@@ -36,18 +41,34 @@ import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.ResourceIterable;
 import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Description;
 import org.neo4j.procedure.Name;
+import org.neo4j.procedure.TerminationGuard;
 import org.neo4j.procedure.UserFunction;
 
 public class Fingerprinting {
 
+    private static final int BATCH_SIZE = 10_000;
+
     @Context
     public Transaction tx;
 
+    @Context
+    public GraphDatabaseAPI db;
+
+    @Context
+    public Pools pools;
+
+    @Context
+    public TerminationGuard terminationGuard;
+
     @Context
     public Log log;
 
@@ -132,7 +153,7 @@ public class Fingerprinting {
     @Description(
             """
             Calculates a MD5 checksum over the full graph.
-            This function uses in-memory data structures.
+            The node and relationship checksums are computed in parallel and combined regardless of their order.
             Unsuitable for cryptographic use-cases.""")
     public String fingerprintGraph(
             @Name(value = "propertyExcludes", defaultValue = "[]") List<String> excludedPropertyKeys) {
@@ -145,92 +166,75 @@ public class Fingerprinting {
                 excludedPropertyKeys,
                 "strategy",
                 FingerprintingConfig.FingerprintStrategy.EAGER.toString()));
-        return withMessageDigest(config, messageDigest -> {
-            // step 1: load all nodes, calc their hash and map them to id
-            Map<Long, String> idToNodeHash = tx.getAllNodes().stream()
-                    .collect(Collectors.toMap(
-                            Node::getId,
-                            node -> fingerprint(node, config),
-                            (aLong, aLong2) -> {
-                                throw new RuntimeException();
-                            },
-                            () -> new TreeMap<>()));
-
-            // step 2: build inverse map
-            final Map<String, List<Long>> nodeHashToId = idToNodeHash.entrySet().stream()
-                    .collect(Collectors.groupingBy(
-                            Map.Entry::getValue,
-                            TreeMap::new,
-                            Collectors.mapping(Map.Entry::getKey, Collectors.toList())));
-
-            // step 3: iterate nodes in order of their hash (we cannot rely on internal ids)
-            nodeHashToId.forEach((hash, ids) -> ids.forEach(id -> {
-                messageDigest.update(hash.getBytes());
-                Node node = tx.getNodeById(id);
-                List<EndNodeRelationshipHashTuple> endNodeRelationshipHashTuples = StreamSupport.stream(
-                                node.getRelationships(Direction.OUTGOING).spliterator(), false)
-                        .map(relationship -> {
-                            String endNodeHash = idToNodeHash.get(relationship.getEndNodeId());
-                            String relationshipHash = fingerprint(relationship, excludedPropertyKeys);
-                            return new EndNodeRelationshipHashTuple(endNodeHash, relationshipHash);
-                        })
-                        .collect(Collectors.toList());
-
-                endNodeRelationshipHashTuples.stream().sorted().forEach(endNodeRelationshipHashTuple -> {
-                    messageDigest.update(
-                            endNodeRelationshipHashTuple.getEndNodeHash().getBytes());
-                    messageDigest.update(
-                            endNodeRelationshipHashTuple.getRelationshipHash().getBytes());
-                });
-            }));
-        });
-    }
-
-    private static class EndNodeRelationshipHashTuple implements Comparable {
-        private final String endNodeHash;
-        private final String relationshipHash;
-
-        public EndNodeRelationshipHashTuple(String endNodeHash, String relationshipHash) {
-            this.endNodeHash = endNodeHash;
-            this.relationshipHash = relationshipHash;
-        }
+        int digestLength = newMessageDigest(config).getDigestLength();
+        DigestSum nodeDigests = new DigestSum(digestLength);
+        DigestSum relationshipDigests = new DigestSum(digestLength);
+        // each relationship is fingerprinted once, from its start node
+        Consumer<Node> fingerprintNode = node -> {
+            nodeDigests.add(digest(node, config));
+            try (ResourceIterable<Relationship> relationships = node.getRelationships(Direction.OUTGOING)) {
+                for (Relationship relationship : relationships) {
+                    relationshipDigests.add(digest(relationship, config));
+                }
+            }
+        };
 
-        @Override
-        public int compareTo(Object o) {
-            EndNodeRelationshipHashTuple other = (EndNodeRelationshipHashTuple) o;
-            int res = endNodeHash.compareTo(other.endNodeHash);
-            if (res == 0) {
-                res = relationshipHash.compareTo(other.relationshipHash);
+        KernelTransaction ktx = ((InternalTransaction) tx).kernelTransaction();
+        if (ktx.dataRead().transactionStateHasChanges()) {
+            // the parallel scan runs in its own transactions, which don't see the changes of this one
+            try (ResourceIterable<Node> nodes = tx.getAllNodes()) {
+                nodes.forEach(fingerprintNode);
+            }
+        } else {
+            MultiThreadedGlobalGraphOperations.BatchJobResult result = MultiThreadedGlobalGraphOperations.scan(
+                    db,
+                    pools.getCpuExecutorService(),
+                    ScanSource.allNodes(),
+                    new ScanOptions().batchSize(BATCH_SIZE).terminationGuard(terminationGuard),
+                    (workerTx, cursor) -> fingerprintNode.accept(workerTx.getNodeById(cursor.nodeReference())));
+            if (result.getFailures() > 0) {
+                throw new RuntimeException(
+                        "Failed to calculate the checksum of " + result.getFailures() + " nodes of the graph");
             }
-            return res;
         }
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-
-            EndNodeRelationshipHashTuple that = (EndNodeRelationshipHashTuple) o;
-
-            if (endNodeHash != null ? !endNodeHash.equals(that.endNodeHash) : that.endNodeHash != null) return false;
-            return relationshipHash != null
-                    ? relationshipHash.equals(that.relationshipHash)
-                    : that.relationshipHash == null;
-        }
+        return withMessageDigest(config, md -> {
+            nodeDigests.update(md);
+            relationshipDigests.update(md);
+        });
+    }
 
-        @Override
-        public int hashCode() {
-            int result = endNodeHash != null ? endNodeHash.hashCode() : 0;
-            result = 31 * result + (relationshipHash != null ? relationshipHash.hashCode() : 0);
-            return result;
+    /**
+     * Commutative sum of the digests of a set of entities: each digest is split in 16-bit lanes,
+     * each lane is added to its own counter, so neither the order of the entities
+     * nor the thread computing them changes the result, while identical entities still count once each.
+     */
+    private static class DigestSum {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder[] lanes;
+
+        DigestSum(int digestLength) {
+            lanes = new LongAdder[(digestLength + 1) / 2];
+            for (int i = 0; i < lanes.length; i++) {
+                lanes[i] = new LongAdder();
+            }
         }
 
-        public String getEndNodeHash() {
-            return endNodeHash;
+        void add(byte[] digest) {
+            count.increment();
+            for (int i = 0; i < digest.length; i += 2) {
+                int lane = (digest[i] & 0xFF) << 8 | (i + 1 < digest.length ? digest[i + 1] & 0xFF : 0);
+                lanes[i / 2].add(lane);
+            }
         }
 
-        public String getRelationshipHash() {
-            return relationshipHash;
+        void update(DiagnosingMessageDigestDecorator md) {
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES * (lanes.length + 1));
+            buffer.putLong(count.sum());
+            for (LongAdder lane : lanes) {
+                buffer.putLong(lane.sum());
+            }
+            md.update(buffer.array());
         }
     }
 
@@ -321,11 +325,23 @@ public class Fingerprinting {
     }
 
     private String withMessageDigest(FingerprintingConfig conf, Consumer<DiagnosingMessageDigestDecorator> consumer) {
+        MessageDigest md = newMessageDigest(conf);
+        consumer.accept(new DiagnosingMessageDigestDecorator(md));
+        return renderAsHex(md.digest());
+    }
+
+    /**
+     * The binary digest of an entity, what {@link #fingerprint(Object, FingerprintingConfig)} renders as hex
+     */
+    private byte[] digest(Object thing, FingerprintingConfig conf) {
+        MessageDigest md = newMessageDigest(conf);
+        fingerprint(new DiagnosingMessageDigestDecorator(md), thing, conf);
+        return md.digest();
+    }
+
+    private static MessageDigest newMessageDigest(FingerprintingConfig conf) {
         try {
-            MessageDigest md = MessageDigest.getInstance(conf.getDigestAlgorithm());
-            DiagnosingMessageDigestDecorator dmd = new DiagnosingMessageDigestDecorator(md);
-            consumer.accept(dmd);
-            return renderAsHex(md.digest());
+            return MessageDigest.getInstance(conf.getDigestAlgorithm());
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException(e);
         }
@@ -18,49 +18,56 @@
  */
 package apoc.index;
 
+import apoc.Pools;
 import apoc.result.ListResult;
 import apoc.util.QueueBasedSpliterator;
 import apoc.util.Util;
-import apoc.util.collection.Iterables;
-import apoc.util.collection.Iterators;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
-import org.neo4j.common.EntityType;
 import org.neo4j.exceptions.KernelException;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.schema.IndexDefinition;
 import org.neo4j.graphdb.schema.IndexType;
-import org.neo4j.internal.kernel.api.CursorFactory;
 import org.neo4j.internal.kernel.api.IndexQueryConstraints;
 import org.neo4j.internal.kernel.api.IndexReadSession;
 import org.neo4j.internal.kernel.api.NodeValueIndexCursor;
 import org.neo4j.internal.kernel.api.PropertyIndexQuery;
 import org.neo4j.internal.kernel.api.Read;
-import org.neo4j.internal.kernel.api.SchemaRead;
-import org.neo4j.internal.kernel.api.TokenRead;
 import org.neo4j.internal.schema.IndexDescriptor;
-import org.neo4j.internal.schema.SchemaDescriptor;
-import org.neo4j.internal.schema.SchemaDescriptors;
+import org.neo4j.internal.schema.IndexOrder;
 import org.neo4j.kernel.api.KernelTransaction;
 import org.neo4j.kernel.impl.api.KernelStatement;
 import org.neo4j.kernel.impl.coreapi.InternalTransaction;
 import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.logging.Log;
 import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Description;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.NotThreadSafe;
 import org.neo4j.procedure.Procedure;
 import org.neo4j.procedure.TerminationGuard;
+import org.neo4j.values.storable.Value;
+import org.neo4j.values.storable.Values;
 
 /**
  * @author mh
@@ -69,6 +76,7 @@ import org.neo4j.procedure.TerminationGuard;
 public class SchemaIndex {
 
     private static final PropertyValueCount POISON = new PropertyValueCount("poison", "poison", "poison", -1);
+    private static final int QUEUE_CAPACITY = 100;
 
     @Context
     public GraphDatabaseAPI db;
@@ -79,181 +87,269 @@ public class SchemaIndex {
     @Context
     public TerminationGuard terminationGuard;
 
+    @Context
+    public Pools pools;
+
+    @Context
+    public Log log;
+
     @NotThreadSafe
     @Procedure("apoc.schema.properties.distinct")
     @Description("Returns all distinct `NODE` property values for the given key.")
     public Stream<ListResult> distinct(@Name("label") String label, @Name("key") String key) {
-        List<Object> values = distinctCount(label, key)
+        List<Object> values = distinctCount(label, key, Collections.emptyMap())
                 .map(propertyValueCount -> propertyValueCount.value)
                 .collect(Collectors.toList());
         return Stream.of(new ListResult(values));
     }
 
+    /**
+     * Each label and key is counted with a single index, the range indexes on the key are preferred
+     * as they return the values in order, so that a value is streamed with its count as soon as the next one is read.
+     * The indexes are scanned on the APOC pool, a scan stops as soon as the returned stream is closed.
+     */
     @NotThreadSafe
     @Procedure("apoc.schema.properties.distinctCount")
     @Description("Returns all distinct property values and counts for the given key.")
     public Stream<PropertyValueCount> distinctCount(
             @Name(value = "label", defaultValue = "") String labelName,
-            @Name(value = "key", defaultValue = "") String keyName) {
-
-        BlockingQueue<PropertyValueCount> queue = new LinkedBlockingDeque<>(100);
-        Iterable<IndexDefinition> indexDefinitions =
-                (labelName.isEmpty()) ? Util.getIndexes(tx) : Util.getIndexes(tx, Label.label(labelName));
+            @Name(value = "key", defaultValue = "") String keyName,
+            @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        DistinctCountConfig conf = new DistinctCountConfig(config);
+        Queue<ScanTarget> targets = new ConcurrentLinkedQueue<>(scanTargets(labelName, keyName));
+        if (targets.isEmpty() || conf.limit == 0) {
+            return Stream.empty();
+        }
 
-        Util.newDaemonThread(() -> StreamSupport.stream(indexDefinitions.spliterator(), true)
-                        .filter(IndexDefinition::isNodeIndex)
-                        .filter(indexDefinition -> isIndexCoveringProperty(indexDefinition, keyName))
-                        .map(indexDefinition -> scanIndexDefinitionForKeys(indexDefinition, keyName, queue, labelName))
-                        .collect(new QueuePoisoningCollector(queue, POISON)))
-                .start();
+        BlockingQueue<PropertyValueCount> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        AtomicBoolean closed = new AtomicBoolean();
+        Predicate<PropertyValueCount> sink = row -> offer(queue, row, closed);
+        int workers = Math.min(targets.size(), Pools.DEFAULT_POOL_THREADS);
+        AtomicInteger running = new AtomicInteger(workers);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        for (int i = 0; i < workers; i++) {
+            pools.getDefaultExecutorService().submit(() -> {
+                try {
+                    ScanTarget target;
+                    while (!closed.get() && failure.get() == null && (target = targets.poll()) != null) {
+                        scanTarget(target, conf, sink);
+                    }
+                } catch (Exception e) {
+                    log.error("Error while counting the distinct property values", e);
+                    failure.compareAndSet(null, e);
+                } finally {
+                    if (running.decrementAndGet() == 0) {
+                        offer(queue, POISON, closed);
+                    }
+                }
+            });
+        }
 
-        return StreamSupport.stream(
-                        new QueueBasedSpliterator<>(queue, POISON, terminationGuard, Integer.MAX_VALUE), false)
-                .distinct();
+        // once the workers are done, the failure of one of them is rethrown to the caller
+        Spliterator<PropertyValueCount> spliterator =
+                new QueueBasedSpliterator<>(queue, POISON, terminationGuard, Integer.MAX_VALUE) {
+                    @Override
+                    public boolean tryAdvance(Consumer<? super PropertyValueCount> action) {
+                        if (super.tryAdvance(action)) {
+                            return true;
+                        }
+                        Exception e = failure.get();
+                        if (e != null) {
+                            throw new RuntimeException(
+                                    "Error while counting the distinct property values: " + e.getMessage(), e);
+                        }
+                        return false;
+                    }
+                };
+        return StreamSupport.stream(spliterator, false).onClose(() -> closed.set(true));
     }
 
-    private Object scanIndexDefinitionForKeys(
-            IndexDefinition indexDefinition,
-            @Name(value = "key", defaultValue = "") String keyName,
-            BlockingQueue<PropertyValueCount> queue,
-            String labelName) {
-        try (Transaction threadTx = db.beginTx()) {
-            KernelTransaction ktx = ((InternalTransaction) threadTx).kernelTransaction();
+    /**
+     * The label and key pairs to count, each one with the index to scan
+     */
+    private List<ScanTarget> scanTargets(String labelName, String keyName) {
+        Iterable<IndexDefinition> indexDefinitions =
+                (labelName.isEmpty()) ? Util.getIndexes(tx) : Util.getIndexes(tx, Label.label(labelName));
+        Map<List<String>, ScanTarget> targets = new LinkedHashMap<>();
+        for (IndexDefinition indexDefinition : indexDefinitions) {
+            if (!indexDefinition.isNodeIndex() || !isIndexCoveringProperty(indexDefinition, keyName)) {
+                continue;
+            }
             Iterable<String> keys =
                     keyName.isEmpty() ? indexDefinition.getPropertyKeys() : Collections.singletonList(keyName);
             for (String key : keys) {
-                try (KernelStatement ignored = (KernelStatement) ktx.acquireStatement()) {
-                    SchemaRead schemaRead = ktx.schemaRead();
-                    TokenRead tokenRead = ktx.tokenRead();
-                    Read read = ktx.dataRead();
-                    CursorFactory cursors = ktx.cursors();
-
-                    int[] propertyKeyIds = StreamSupport.stream(
-                                    indexDefinition.getPropertyKeys().spliterator(), false)
-                            .mapToInt(tokenRead::propertyKey)
-                            .toArray();
-
-                    SchemaDescriptor schema;
-                    if (isFullText(indexDefinition)) {
-                        // since fullText idx are multi-label, we need to handle them differently
-                        int[] labelIds = Iterables.stream(indexDefinition.getLabels())
-                                .mapToInt(lbl -> tokenRead.nodeLabel(lbl.name()))
-                                .toArray();
-                        schema = SchemaDescriptors.fulltext(EntityType.NODE, labelIds, propertyKeyIds);
-                    } else {
-                        String label =
-                                Iterables.single(indexDefinition.getLabels()).name();
-                        schema = SchemaDescriptors.forLabel(tokenRead.nodeLabel(label), propertyKeyIds);
-                    }
+                Iterable<Label> labels = labelName.isEmpty()
+                        ? indexDefinition.getLabels()
+                        : Collections.singleton(Label.label(labelName));
+                for (Label label : labels) {
+                    ScanTarget target = new ScanTarget(label.name(), key, indexDefinition);
+                    targets.merge(
+                            List.of(label.name(), key),
+                            target,
+                            (existing, other) -> !existing.ordered && other.ordered ? other : existing);
+                }
+            }
+        }
+        return List.copyOf(targets.values());
+    }
 
-                    IndexDescriptor indexDescriptor = Iterators.firstOrNull(schemaRead.index(schema));
-                    if (indexDescriptor == null) {
-                        return null;
+    private void scanTarget(ScanTarget target, DistinctCountConfig conf, Predicate<PropertyValueCount> sink) {
+        try (Transaction threadTx = db.beginTx()) {
+            KernelTransaction ktx = ((InternalTransaction) threadTx).kernelTransaction();
+            try (KernelStatement ignored = (KernelStatement) ktx.acquireStatement()) {
+                IndexDescriptor indexDescriptor =
+                        ktx.schemaRead().indexGetForName(target.indexDefinition.getName());
+                if (indexDescriptor == IndexDescriptor.NO_INDEX) {
+                    return;
+                }
+                Read read = ktx.dataRead();
+                final IndexReadSession indexSession;
+                try {
+                    indexSession = read.indexReadSession(indexDescriptor);
+                } catch (Exception e) {
+                    // we skip indexScan if it's still populating
+                    if (e.getMessage().contains("Index is still populating")) {
+                        return;
+                    }
+                    throw e;
+                }
+                try (NodeValueIndexCursor cursor =
+                        ktx.cursors().allocateNodeValueIndexCursor(ktx.cursorContext(), ktx.memoryTracker())) {
+                    if (target.ordered
+                            && indexDescriptor.getCapability().supportsOrdering()
+                            && indexDescriptor.getCapability().supportsReturningValues()) {
+                        scanInOrder(target, conf, sink, ktx, indexDescriptor, indexSession, cursor);
+                    } else {
+                        scanAndCount(target, conf, sink, ktx, indexSession, cursor, threadTx);
                     }
-                    scanIndex(queue, indexDefinition, key, read, cursors, indexDescriptor, ktx, labelName, threadTx);
                 }
             }
             threadTx.commit();
-            return null;
+        } catch (KernelException e) {
+            throw new RuntimeException(e);
         }
     }
 
-    private void scanIndex(
-            BlockingQueue<PropertyValueCount> queue,
-            IndexDefinition indexDefinition,
-            String key,
-            Read read,
-            CursorFactory cursors,
-            IndexDescriptor indexDescriptor,
+    /**
+     * The key is the first property of a range index, whose values are returned in order,
+     * so the nodes of a value are next to each other and only the current value is counted.
+     */
+    private void scanInOrder(
+            ScanTarget target,
+            DistinctCountConfig conf,
+            Predicate<PropertyValueCount> sink,
             KernelTransaction ktx,
-            String lblName,
-            Transaction threadTx) {
-        try (NodeValueIndexCursor cursor =
-                cursors.allocateNodeValueIndexCursor(ktx.cursorContext(), ktx.memoryTracker())) {
-            // we need to using IndexOrder.NONE here to prevent an exception
-            // however the index guarantees to be scanned in order unless
-            // there are writes done in the same tx beforehand - which we don't do.
-
-            final IndexReadSession indexSession;
-            try {
-                indexSession = read.indexReadSession(indexDescriptor);
-            } catch (Exception e) {
-                // we skip indexScan if it's still populating
-                if (e.getMessage().contains("Index is still populating")) {
+            IndexDescriptor indexDescriptor,
+            IndexReadSession indexSession,
+            NodeValueIndexCursor cursor)
+            throws KernelException {
+        IndexQueryConstraints constraints = IndexQueryConstraints.ordered(IndexOrder.ASCENDING, true);
+        if (conf.prefix == null) {
+            ktx.dataRead().nodeIndexScan(indexSession, cursor, constraints);
+        } else {
+            // the other properties of a composite index are only required to exist
+            int[] propertyKeyIds = indexDescriptor.schema().getPropertyIds();
+            PropertyIndexQuery[] query = new PropertyIndexQuery[propertyKeyIds.length];
+            query[0] = PropertyIndexQuery.stringPrefix(propertyKeyIds[0], Values.stringValue(conf.prefix));
+            for (int i = 1; i < propertyKeyIds.length; i++) {
+                query[i] = PropertyIndexQuery.exists(propertyKeyIds[i]);
+            }
+            ktx.dataRead().nodeIndexSeek(ktx.queryContext(), indexSession, cursor, constraints, query);
+        }
+
+        Value current = null;
+        long count = 0;
+        long emitted = 0;
+        while (cursor.next()) {
+            Value value = cursor.propertyValue(0);
+            if (current != null && !current.equals(value)) {
+                if (!sink.test(new PropertyValueCount(target.label, target.key, current.asObjectCopy(), count))
+                        || ++emitted == conf.limit) {
                     return;
                 }
-                throw e;
-            }
-            if (isFullText(indexDefinition)) {
-                // similar to db.index.fulltext.queryNodes procedure
-                read.nodeIndexSeek(
-                        ktx.queryContext(),
-                        indexSession,
-                        cursor,
-                        IndexQueryConstraints.unconstrained(),
-                        PropertyIndexQuery.fulltextSearch("*"));
-            } else {
-                read.nodeIndexScan(indexSession, cursor, IndexQueryConstraints.unorderedValues());
+                count = 0;
             }
+            current = value;
+            count++;
+        }
+        if (current != null) {
+            sink.test(new PropertyValueCount(target.label, target.key, current.asObjectCopy(), count));
+        }
+    }
 
-            Map<String, Map<Object, Integer>> valueCountMap = new HashMap<>();
-
-            final Iterable<Label> labels =
-                    lblName.isEmpty() ? indexDefinition.getLabels() : Collections.singleton(Label.label(lblName));
-
-            while (cursor.next()) {
-                final Node node = threadTx.getNodeById(cursor.nodeReference());
+    /**
+     * Any other index, the values of the key are counted during the scan and streamed at the end.
+     */
+    private void scanAndCount(
+            ScanTarget target,
+            DistinctCountConfig conf,
+            Predicate<PropertyValueCount> sink,
+            KernelTransaction ktx,
+            IndexReadSession indexSession,
+            NodeValueIndexCursor cursor,
+            Transaction threadTx)
+            throws KernelException {
+        Read read = ktx.dataRead();
+        if (isFullText(target.indexDefinition)) {
+            // similar to db.index.fulltext.queryNodes procedure
+            read.nodeIndexSeek(
+                    ktx.queryContext(),
+                    indexSession,
+                    cursor,
+                    IndexQueryConstraints.unconstrained(),
+                    PropertyIndexQuery.fulltextSearch("*"));
+        } else {
+            read.nodeIndexScan(indexSession, cursor, IndexQueryConstraints.unorderedValues());
+        }
 
-                // we increment count only if corresponding prop is present
-                final Object property = node.getProperty(key, null);
-                if (property == null) continue;
+        Label label = Label.label(target.label);
+        Map<Object, Long> valueCounts = new HashMap<>();
+        while (cursor.next()) {
+            final Node node = threadTx.getNodeById(cursor.nodeReference());
 
-                labels.forEach(label -> {
-                    // we increment count only if corresponding label is present
-                    final boolean hasLabel = node.hasLabel(label);
-                    if (hasLabel) {
+            // we increment count only if corresponding prop and label are present
+            final Object property = node.getProperty(target.key, null);
+            if (property == null || !conf.matchesPrefix(property) || !node.hasLabel(label)) continue;
 
-                        final Map<Object, Integer> orDefault =
-                                valueCountMap.computeIfAbsent(label.name(), i -> new HashMap<>());
+            valueCounts.merge(property, 1L, Long::sum);
+        }
 
-                        // increment map count
-                        orDefault.merge(property, 1, Integer::sum);
-                    }
-                });
+        long emitted = 0;
+        for (Map.Entry<Object, Long> entry : valueCounts.entrySet()) {
+            if (!sink.test(new PropertyValueCount(target.label, target.key, entry.getKey(), entry.getValue()))
+                    || ++emitted == conf.limit) {
+                return;
             }
-
-            valueCountMap.forEach((label, propMap) -> {
-                propMap.forEach((k, v) -> {
-                    putIntoQueue(queue, indexDefinition, key, k, v, label);
-                });
-            });
-        } catch (KernelException e) {
-            throw new RuntimeException(e);
         }
     }
 
-    private static boolean isFullText(IndexDefinition indexDefinition) {
-        return indexDefinition.getIndexType().equals(IndexType.FULLTEXT);
-    }
-
-    private void putIntoQueue(
-            BlockingQueue<PropertyValueCount> queue,
-            IndexDefinition indexDefinition,
-            String key,
-            Object value,
-            long count,
-            String labelName) {
-        // if no value returned, like in testDistinctWithNoPreviousNodesShouldNotHangs
-        if (value == null) {
-            return;
-        }
+    /**
+     * Waits for room in the queue until the stream is closed or the calling transaction is terminated
+     *
+     * @return false if the row can't be streamed anymore
+     */
+    private boolean offer(BlockingQueue<PropertyValueCount> queue, PropertyValueCount row, AtomicBoolean closed) {
         try {
-            queue.put(new PropertyValueCount(labelName, key, value, count));
+            while (!closed.get()) {
+                if (queue.offer(row, 100, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+                if (Util.transactionIsTerminated(terminationGuard)) {
+                    closed.set(true);
+                }
+            }
+            return false;
         } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+            Thread.currentThread().interrupt();
+            closed.set(true);
+            return false;
         }
     }
 
+    private static boolean isFullText(IndexDefinition indexDefinition) {
+        return indexDefinition.getIndexType().equals(IndexType.FULLTEXT);
+    }
+
     private boolean isIndexCoveringProperty(IndexDefinition indexDefinition, String propertyKeyName) {
         return propertyKeyName.isEmpty() || contains(indexDefinition.getPropertyKeys(), propertyKeyName);
     }
@@ -267,6 +363,36 @@ public class SchemaIndex {
         return false;
     }
 
+    private static class ScanTarget {
+        final String label;
+        final String key;
+        final IndexDefinition indexDefinition;
+        final boolean ordered;
+
+        ScanTarget(String label, String key, IndexDefinition indexDefinition) {
+            this.label = label;
+            this.key = key;
+            this.indexDefinition = indexDefinition;
+            this.ordered = indexDefinition.getIndexType() == IndexType.RANGE
+                    && key.equals(indexDefinition.getPropertyKeys().iterator().next());
+        }
+    }
+
+    private static class DistinctCountConfig {
+        final long limit;
+        final String prefix;
+
+        DistinctCountConfig(Map<String, Object> config) {
+            config = config == null ? Collections.emptyMap() : config;
+            this.limit = Util.toLong(config.getOrDefault("limit", -1L));
+            this.prefix = (String) config.get("prefix");
+        }
+
+        boolean matchesPrefix(Object value) {
+            return prefix == null || (value instanceof String && ((String) value).startsWith(prefix));
+        }
+    }
+
     public static class PropertyValueCount {
         public String label;
         public String key;
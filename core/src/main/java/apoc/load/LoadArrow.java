@@ -18,30 +18,48 @@
  */
 package apoc.load;
 
+import apoc.export.arrow.ArrowUtils;
 import apoc.result.MapResult;
 import apoc.util.FileUtils;
 import apoc.util.JsonUtil;
 import apoc.util.Util;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Spliterator;
 import java.util.Spliterators;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.IntFunction;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
 import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
 import org.apache.arrow.vector.DateMilliVector;
 import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.IntervalMonthDayNanoVector;
+import org.apache.arrow.vector.TimeStampMicroTZVector;
+import org.apache.arrow.vector.VarCharVector;
 import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.complex.MapVector;
+import org.apache.arrow.vector.complex.StructVector;
+import org.apache.arrow.vector.holders.NullableIntervalMonthDayNanoHolder;
 import org.apache.arrow.vector.ipc.ArrowFileReader;
 import org.apache.arrow.vector.ipc.ArrowReader;
 import org.apache.arrow.vector.ipc.ArrowStreamReader;
@@ -49,44 +67,85 @@ import org.apache.arrow.vector.util.Text;
 import org.neo4j.procedure.Description;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
+import org.neo4j.values.storable.CoordinateReferenceSystem;
+import org.neo4j.values.storable.DurationValue;
 import org.neo4j.values.storable.Values;
 
 public class LoadArrow {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long MICROS_PER_SECOND = 1_000_000L;
+    private static final long NANOS_PER_MICRO = 1_000L;
 
     private static class ArrowSpliterator extends Spliterators.AbstractSpliterator<MapResult> {
 
         private final ArrowReader reader;
         private final VectorSchemaRoot schemaRoot;
-        private final AtomicInteger counter;
+        private final boolean batchRows;
+        private String[] keys;
+        private IntFunction<Object>[] columns;
+        private int rowCount;
+        private int index;
 
-        public ArrowSpliterator(ArrowReader reader, VectorSchemaRoot schemaRoot) throws IOException {
+        public ArrowSpliterator(ArrowReader reader, VectorSchemaRoot schemaRoot, boolean batchRows) throws IOException {
             super(Long.MAX_VALUE, Spliterator.ORDERED);
             this.reader = reader;
             this.schemaRoot = schemaRoot;
-            this.counter = new AtomicInteger();
-            this.reader.loadNextBatch();
+            this.batchRows = batchRows;
+            loadNextBatch();
+        }
+
+        /**
+         * Loads the next record batch and resolves the column accessors once for all of its rows
+         */
+        private boolean loadNextBatch() throws IOException {
+            if (!reader.loadNextBatch()) {
+                rowCount = 0;
+                return false;
+            }
+            List<FieldVector> fieldVectors = schemaRoot.getFieldVectors();
+            int size = fieldVectors.size();
+            if (keys == null || keys.length != size) {
+                keys = new String[size];
+                columns = new IntFunction[size];
+            }
+            for (int i = 0; i < size; i++) {
+                FieldVector fieldVector = fieldVectors.get(i);
+                keys[i] = fieldVector.getName();
+                columns[i] = columnReader(fieldVector);
+            }
+            rowCount = schemaRoot.getRowCount();
+            index = 0;
+            return true;
+        }
+
+        private Map<String, Object> readRow(int row) {
+            Map<String, Object> map = new HashMap<>(keys.length * 4 / 3 + 1);
+            for (int i = 0; i < keys.length; i++) {
+                map.put(keys[i], columns[i].apply(row));
+            }
+            return map;
         }
 
         @Override
-        public synchronized boolean tryAdvance(Consumer<? super MapResult> action) {
+        public boolean tryAdvance(Consumer<? super MapResult> action) {
             try {
-                if (counter.get() >= schemaRoot.getRowCount()) {
-                    if (reader.loadNextBatch()) {
-                        counter.set(0);
-                    } else {
+                while (index >= rowCount) {
+                    if (!loadNextBatch()) {
                         return false;
                     }
                 }
-                final Map<String, Object> row = schemaRoot.getFieldVectors().stream()
-                        .collect(
-                                HashMap::new,
-                                (map, fieldVector) -> map.put(fieldVector.getName(), read(fieldVector, counter.get())),
-                                HashMap::putAll); // please look at https://bugs.openjdk.java.net/browse/JDK-8148463
-                counter.incrementAndGet();
-                action.accept(new MapResult(row));
+                if (batchRows) {
+                    List<Map<String, Object>> rows = new ArrayList<>(rowCount - index);
+                    for (; index < rowCount; index++) {
+                        rows.add(readRow(index));
+                    }
+                    action.accept(new MapResult(Map.of("rows", rows)));
+                } else {
+                    action.accept(new MapResult(readRow(index++)));
+                }
                 return true;
-            } catch (Exception e) {
-                return false;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error while reading the next Arrow record batch", e);
             }
         }
     }
@@ -100,7 +159,7 @@ public class LoadArrow {
         ByteArrayInputStream inputStream = new ByteArrayInputStream(source);
         ArrowStreamReader streamReader = new ArrowStreamReader(inputStream, allocator);
         VectorSchemaRoot schemaRoot = streamReader.getVectorSchemaRoot();
-        return StreamSupport.stream(new ArrowSpliterator(streamReader, schemaRoot), false)
+        return StreamSupport.stream(new ArrowSpliterator(streamReader, schemaRoot, isBatchRows(config)), false)
                 .onClose(() -> {
                     Util.close(allocator);
                     Util.close(streamReader);
@@ -119,7 +178,7 @@ public class LoadArrow {
         RootAllocator allocator = new RootAllocator();
         ArrowFileReader streamReader = new ArrowFileReader(channel, allocator);
         VectorSchemaRoot schemaRoot = streamReader.getVectorSchemaRoot();
-        return StreamSupport.stream(new ArrowSpliterator(streamReader, schemaRoot), false)
+        return StreamSupport.stream(new ArrowSpliterator(streamReader, schemaRoot, isBatchRows(config)), false)
                 .onClose(() -> {
                     Util.close(allocator);
                     Util.close(streamReader);
@@ -128,6 +187,165 @@ public class LoadArrow {
                 });
     }
 
+    private static boolean isBatchRows(Map<String, Object> config) {
+        return config != null && Util.toBoolean(config.get("batchRows"));
+    }
+
+    /**
+     * Returns a reader specialized on the vector type, so that the common types are read without boxing through
+     * {@link FieldVector#getObject(int)}
+     */
+    private static IntFunction<Object> columnReader(FieldVector fieldVector) {
+        if (fieldVector instanceof BigIntVector vector) {
+            return index -> vector.isNull(index) ? null : vector.get(index);
+        } else if (fieldVector instanceof IntVector vector) {
+            return index -> vector.isNull(index) ? null : (long) vector.get(index);
+        } else if (fieldVector instanceof Float8Vector vector) {
+            return index -> vector.isNull(index) ? null : vector.get(index);
+        } else if (fieldVector instanceof VarCharVector vector) {
+            return index -> vector.isNull(index) ? null : new String(vector.get(index), StandardCharsets.UTF_8);
+        } else if (fieldVector instanceof TimeStampMicroTZVector vector) {
+            return index -> vector.isNull(index) ? null : readTimestamp(vector.get(index));
+        } else if (fieldVector instanceof DateDayVector vector) {
+            return index -> vector.isNull(index) ? null : LocalDate.ofEpochDay(vector.get(index));
+        } else if (fieldVector instanceof IntervalMonthDayNanoVector vector) {
+            return index -> readDuration(vector, index);
+        } else if (fieldVector instanceof MapVector vector) {
+            return mapReader(vector);
+        } else if (fieldVector instanceof StructVector vector) {
+            return structReader(vector);
+        } else {
+            return index -> read(fieldVector, index);
+        }
+    }
+
+    private static Object readTimestamp(long micros) {
+        return Instant.ofEpochSecond(
+                        Math.floorDiv(micros, MICROS_PER_SECOND),
+                        Math.floorMod(micros, MICROS_PER_SECOND) * NANOS_PER_MICRO)
+                .atOffset(ZoneOffset.UTC);
+    }
+
+    private static Object readDuration(IntervalMonthDayNanoVector vector, int index) {
+        if (vector.isNull(index)) {
+            return null;
+        }
+        final NullableIntervalMonthDayNanoHolder holder = new NullableIntervalMonthDayNanoHolder();
+        vector.get(index, holder);
+        return DurationValue.duration(
+                holder.months,
+                holder.days,
+                Math.floorDiv(holder.nanoseconds, NANOS_PER_SECOND),
+                Math.floorMod(holder.nanoseconds, NANOS_PER_SECOND));
+    }
+
+    /**
+     * Reads the string keyed maps written by the Arrow export,
+     * or by other writers if the values aren't the typed values of {@link ArrowUtils#mapField(String)}
+     */
+    private static IntFunction<Object> mapReader(MapVector vector) {
+        final List<FieldVector> entries = vector.getDataVector().getChildrenFromFields();
+        final IntFunction<Object> keys = columnReader(entries.get(0));
+        final IntFunction<Object> values = entries.get(1) instanceof StructVector struct && isValueStruct(struct)
+                ? valueReader(struct)
+                : columnReader(entries.get(1));
+        return index -> {
+            if (vector.isNull(index)) {
+                return null;
+            }
+            final int end = vector.getElementEndIndex(index);
+            final Map<String, Object> map = new HashMap<>();
+            for (int i = vector.getElementStartIndex(index); i < end; i++) {
+                map.put(String.valueOf(keys.apply(i)), values.apply(i));
+            }
+            return map;
+        };
+    }
+
+    private static boolean isValueStruct(StructVector vector) {
+        return vector.getChildFieldNames()
+                .containsAll(List.of(ArrowUtils.VALUE_STRING, ArrowUtils.VALUE_LONG, ArrowUtils.VALUE_MAP));
+    }
+
+    /**
+     * Reads a value written by the Arrow export to the child of its type, only one child is set
+     */
+    private static IntFunction<Object> valueReader(StructVector vector) {
+        final List<FieldVector> children = vector.getChildrenFromFields();
+        final IntFunction<Object>[] readers = new IntFunction[children.size()];
+        for (int i = 0; i < readers.length; i++) {
+            final FieldVector child = children.get(i);
+            if (child instanceof ListVector list && ArrowUtils.VALUE_LIST.equals(child.getName())) {
+                readers[i] = valueListReader(list);
+            } else if (child instanceof VarCharVector json && ArrowUtils.VALUE_MAP.equals(child.getName())) {
+                readers[i] = index -> json.isNull(index)
+                        ? null
+                        : JsonUtil.parse(new String(json.get(index), StandardCharsets.UTF_8), null, Object.class);
+            } else {
+                readers[i] = columnReader(child);
+            }
+        }
+        return index -> {
+            if (vector.isNull(index)) {
+                return null;
+            }
+            for (IntFunction<Object> reader : readers) {
+                final Object value = reader.apply(index);
+                if (value != null) {
+                    return value;
+                }
+            }
+            return null;
+        };
+    }
+
+    private static IntFunction<Object> valueListReader(ListVector vector) {
+        final IntFunction<Object> elements = valueReader((StructVector) vector.getDataVector());
+        return index -> {
+            if (vector.isNull(index)) {
+                return null;
+            }
+            final int end = vector.getElementEndIndex(index);
+            final List<Object> list = new ArrayList<>(end - vector.getElementStartIndex(index));
+            for (int i = vector.getElementStartIndex(index); i < end; i++) {
+                list.add(elements.apply(i));
+            }
+            return list;
+        };
+    }
+
+    /**
+     * Reads a struct as a map of its fields, or as a point if it has the fields written by the Arrow export
+     */
+    private static IntFunction<Object> structReader(StructVector vector) {
+        final List<FieldVector> children = vector.getChildrenFromFields();
+        final String[] names = new String[children.size()];
+        final IntFunction<Object>[] readers = new IntFunction[children.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = children.get(i).getName();
+            readers[i] = columnReader(children.get(i));
+        }
+        final boolean point = Arrays.asList(names).containsAll(List.of("crs", "x", "y", "z"));
+        return index -> {
+            if (vector.isNull(index)) {
+                return null;
+            }
+            final Map<String, Object> map = new HashMap<>(names.length * 4 / 3 + 1);
+            for (int i = 0; i < names.length; i++) {
+                map.put(names[i], readers[i].apply(index));
+            }
+            return point ? toPoint(map) : map;
+        };
+    }
+
+    private static Object toPoint(Map<String, Object> map) {
+        final CoordinateReferenceSystem crs = CoordinateReferenceSystem.byName((String) map.get("crs"));
+        final double x = (double) map.get("x");
+        final double y = (double) map.get("y");
+        final Object z = map.get("z");
+        return z == null ? Values.pointValue(crs, x, y) : Values.pointValue(crs, x, y, (double) z);
+    }
+
     private static Object read(FieldVector fieldVector, int index) {
         if (fieldVector.isNull(index)) {
             return null;
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.meta;
+
+import apoc.util.kernel.ScanSource;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import org.neo4j.common.EntityType;
+import org.neo4j.exceptions.KernelException;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.internal.kernel.api.NodeLabelIndexCursor;
+import org.neo4j.internal.kernel.api.PartitionedScan;
+import org.neo4j.internal.schema.SchemaDescriptors;
+import org.neo4j.kernel.api.ExecutionContext;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+
+/**
+ * Samples the nodes of a label through the partitions of the node label lookup index.
+ *
+ * With a skip up to the partition size every skip-th node is sampled, as `findNodes` with a modulo did,
+ * but with a bigger skip only one partition out of (skip / partition size) is read,
+ * and one node is picked at random in each of them,
+ * so that the index entries of the other partitions and their nodes are never touched.
+ */
+class LabelSampler {
+    static final int PARTITION_SIZE = 1000;
+
+    private LabelSampler() {}
+
+    /**
+     * @param skip as returned by {@link Meta#getSampleForLabelCount(long, long)}, -1 to sample all the nodes
+     */
+    static void sample(InternalTransaction tx, String label, long skip, Consumer<Node> consumer) {
+        KernelTransaction ktx = tx.kernelTransaction();
+        if (!ktx.schemaRead()
+                .index(SchemaDescriptors.forAnyEntityTokens(EntityType.NODE))
+                .hasNext()) {
+            sampleWithoutLookupIndex(tx, label, skip, consumer);
+            return;
+        }
+        ScanSource<NodeLabelIndexCursor> source = ScanSource.nodesByLabel(label);
+        PartitionedScan<NodeLabelIndexCursor> scan;
+        try {
+            scan = source.partitionedScan(ktx, PARTITION_SIZE);
+        } catch (KernelException e) {
+            throw new RuntimeException(e);
+        }
+        if (scan == null) {
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long period = skip <= PARTITION_SIZE ? 1 : Math.max(1, Math.round((double) skip / PARTITION_SIZE));
+        long first = random.nextLong(Math.max(1, Math.min(period, scan.getNumberOfPartitions())));
+        try (ExecutionContext executionContext = ktx.createExecutionContext();
+                NodeLabelIndexCursor cursor = source.allocateCursor(ktx)) {
+            try {
+                long position = 0;
+                for (long partition = 0; scan.reservePartition(cursor, executionContext); partition++) {
+                    if (period == 1) {
+                        while (cursor.next()) {
+                            if (skip <= 1 || ++position % skip == 0) {
+                                consumer.accept(tx.getNodeById(cursor.nodeReference()));
+                            }
+                        }
+                    } else if (partition % period == first) {
+                        // reservoir of one node
+                        long picked = -1;
+                        long seen = 0;
+                        while (cursor.next()) {
+                            if (random.nextLong(++seen) == 0) {
+                                picked = cursor.nodeReference();
+                            }
+                        }
+                        if (picked != -1) {
+                            consumer.accept(tx.getNodeById(picked));
+                        }
+                    }
+                }
+            } finally {
+                executionContext.complete();
+            }
+        }
+    }
+
+    private static void sampleWithoutLookupIndex(
+            InternalTransaction tx, String label, long skip, Consumer<Node> consumer) {
+        try (ResourceIterator<Node> nodes = tx.findNodes(Label.label(label))) {
+            long position = 0;
+            while (nodes.hasNext()) {
+                Node node = nodes.next();
+                if (skip <= 1 || ++position % skip == 0) {
+                    consumer.accept(node);
+                }
+            }
+        }
+    }
+}
@@ -23,6 +23,7 @@ import static java.lang.String.format;
 import static org.neo4j.internal.kernel.api.TokenRead.ANY_LABEL;
 import static org.neo4j.internal.kernel.api.TokenRead.ANY_RELATIONSHIP_TYPE;
 
+import apoc.Pools;
 import apoc.export.util.NodesAndRelsSubGraph;
 import apoc.result.GraphResult;
 import apoc.result.MapResult;
@@ -36,6 +37,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -46,6 +48,9 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -71,6 +76,8 @@ import org.neo4j.graphdb.schema.Schema;
 import org.neo4j.internal.kernel.api.Read;
 import org.neo4j.internal.kernel.api.TokenRead;
 import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Description;
@@ -97,6 +104,15 @@ public class Meta {
     @Context
     public Log log;
 
+    @Context
+    public GraphDatabaseAPI db;
+
+    @Context
+    public Pools pools;
+
+    @Context
+    public MetaCache metaCache;
+
     /**
      * Represents the result of a metadata operation.
      */
@@ -166,6 +182,25 @@ public class Meta {
             return this;
         }
 
+        public MetaItem copy() {
+            MetaItem copy = new MetaItem(label, property);
+            copy.count = count;
+            copy.unique = unique;
+            copy.index = index;
+            copy.existence = existence;
+            copy.type = type;
+            copy.array = array;
+            copy.sample = sample == null ? null : new ArrayList<>(sample);
+            copy.left = left;
+            copy.right = right;
+            copy.other = new ArrayList<>(other);
+            copy.otherLabels = new ArrayList<>(otherLabels);
+            copy.elementType = elementType;
+            copy.leftCount = leftCount;
+            copy.rightCount = rightCount;
+            return copy;
+        }
+
         public MetaItem elementType(String elementType) {
             switch (elementType) {
                 case "NODE":
@@ -179,6 +214,47 @@ public class Meta {
         }
     }
 
+    /**
+     * The metadata of the sampled nodes of a label: their properties and outgoing relationship types,
+     * and the entries they add to the metadata of each relationship type, keyed by type name
+     */
+    static class LabelMeta {
+        final Map<String, MetaItem> nodeMeta = new LinkedHashMap<>(50);
+        final Map<String, Map<String, MetaItem>> relMeta = new LinkedHashMap<>();
+
+        LabelMeta copy() {
+            LabelMeta copy = new LabelMeta();
+            nodeMeta.forEach((key, item) -> copy.nodeMeta.put(key, item.copy()));
+            relMeta.forEach((type, items) -> {
+                Map<String, MetaItem> typeMeta = new LinkedHashMap<>();
+                items.forEach((key, item) -> typeMeta.put(key, item.copy()));
+                copy.relMeta.put(type, typeMeta);
+            });
+            return copy;
+        }
+    }
+
+    /**
+     * The constraint types and indexed properties of a label or relationship type,
+     * read upfront so that the sampling doesn't go through the schema of the calling transaction
+     */
+    private static class EntitySchema {
+        final Map<String, Set<ConstraintType>> constraints = new HashMap<>();
+        final Set<String> indexed;
+
+        EntitySchema(Iterable<ConstraintDefinition> constraints, Set<String> indexed) {
+            this.indexed = indexed;
+            if (constraints == null) return;
+            for (ConstraintDefinition constraint : constraints) {
+                for (String key : constraint.getPropertyKeys()) {
+                    this.constraints
+                            .computeIfAbsent(key, k -> EnumSet.noneOf(ConstraintType.class))
+                            .add(constraint.getConstraintType());
+                }
+            }
+        }
+    }
+
     @UserFunction("apoc.meta.cypher.isType")
     @Description("Returns true if the given value matches the given type.")
     public boolean isTypeCypher(@Name("value") Object value, @Name("type") String type) {
@@ -477,8 +553,7 @@ public class Meta {
     @Description("Examines the full graph and returns a table of metadata.")
     public Stream<MetaResult> data(@Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
         SampleMetaConfig metaConfig = new SampleMetaConfig(config);
-        return collectMetaData(new DatabaseSubGraph(transaction), metaConfig).values().stream()
-                .flatMap(x -> x.values().stream());
+        return collectDatabaseMetaData(metaConfig).values().stream().flatMap(x -> x.values().stream());
     }
 
     @NotThreadSafe
@@ -487,8 +562,7 @@ public class Meta {
     public Stream<MapResult> schema(@Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
         MetaStats metaStats = collectStats();
         SampleMetaConfig metaConfig = new SampleMetaConfig(config);
-        Map<Set<String>, Map<String, MetaItem>> metaData =
-                collectMetaData(new DatabaseSubGraph(transaction), metaConfig);
+        Map<Set<String>, Map<String, MetaItem>> metaData = collectDatabaseMetaData(metaConfig);
 
         Map<String, Object> relationships = collectRelationshipsMetaData(metaStats, metaData);
         Map<String, Object> nodes = collectNodesMetaData(metaStats, metaData, relationships);
@@ -639,37 +713,140 @@ public class Meta {
      */
     private Map<Set<String>, Map<String, MetaItem>> collectMetaData(SubGraph graph, SampleMetaConfig config) {
         Map<Set<String>, Map<String, MetaItem>> metaData = new LinkedHashMap<>(100);
-
-        Set<RelationshipType> types = Iterables.asSet(graph.getAllRelationshipTypesInUse());
-        Map<String, Iterable<ConstraintDefinition>> relConstraints = new HashMap<>(20);
-        Map<String, Set<String>> relIndexes = new HashMap<>();
-        for (RelationshipType type : graph.getAllRelationshipTypesInUse()) {
-            metaData.put(Set.of(Types.RELATIONSHIP.name(), type.name()), new LinkedHashMap<>(10));
-            relConstraints.put(type.name(), graph.getConstraints(type));
-            relIndexes.put(type.name(), getIndexedProperties(graph.getIndexes(type)));
-        }
+        Map<String, EntitySchema> relSchemas = collectRelSchemas(graph, metaData);
         for (Label label : graph.getAllLabelsInUse()) {
-            Map<String, MetaItem> nodeMeta = new LinkedHashMap<>(50);
             String labelName = label.name();
-            // workaround in case of duplicated keys
-            metaData.put(Set.of(Types.NODE.name(), labelName), nodeMeta);
-            Iterable<ConstraintDefinition> constraints = graph.getConstraints(label);
-            Set<String> indexed = getIndexedProperties(graph.getIndexes(label));
+            EntitySchema labelSchema =
+                    new EntitySchema(graph.getConstraints(label), getIndexedProperties(graph.getIndexes(label)));
             long labelCount = graph.countsForNode(label);
             long sample = getSampleForLabelCount(labelCount, config.getSample());
+            LabelMeta labelMeta = new LabelMeta();
             Iterator<Node> nodes = graph.findNodes(label);
             int count = 1;
             while (nodes.hasNext()) {
                 Node node = nodes.next();
                 if (count++ % sample == 0) {
-                    addRelationships(metaData, nodeMeta, labelName, node, relConstraints, types, relIndexes);
-                    addProperties(nodeMeta, labelName, constraints, indexed, node, node);
+                    addNode(labelMeta, labelName, node, labelSchema, relSchemas);
                 }
             }
+            addLabelMeta(metaData, labelName, labelMeta);
         }
         return metaData;
     }
 
+    /**
+     * Like {@link #collectMetaData(SubGraph, SampleMetaConfig)} for the whole database,
+     * but the labels are sampled in parallel, each one in its own transaction,
+     * and the labels without committed changes since their last sampling are taken from the {@link MetaCache}.
+     * A transaction with pending changes is sampled sequentially, as the other transactions can't see them.
+     */
+    private Map<Set<String>, Map<String, MetaItem>> collectDatabaseMetaData(SampleMetaConfig config) {
+        SubGraph graph = new DatabaseSubGraph(transaction);
+        if (db == null || pools == null || kernelTx.dataRead().transactionStateHasChanges()) {
+            return collectMetaData(graph, config);
+        }
+        Map<Set<String>, Map<String, MetaItem>> metaData = new LinkedHashMap<>(100);
+        Map<String, EntitySchema> relSchemas = collectRelSchemas(graph, metaData);
+        MetaCache cache = config.isUseCache() ? metaCache : null;
+        String cacheKey = config.getSample() + "|" + schemaSignature();
+        if (cache != null) {
+            cache.validate(cacheKey);
+        }
+        Map<String, Future<LabelMeta>> labelMetas = new LinkedHashMap<>();
+        for (Label label : graph.getAllLabelsInUse()) {
+            String labelName = label.name();
+            LabelMeta cached = cache == null ? null : cache.get(labelName);
+            if (cached != null) {
+                labelMetas.put(labelName, CompletableFuture.completedFuture(cached));
+                continue;
+            }
+            EntitySchema labelSchema =
+                    new EntitySchema(graph.getConstraints(label), getIndexedProperties(graph.getIndexes(label)));
+            long sample = getSampleForLabelCount(graph.countsForNode(label), config.getSample());
+            if (cache != null) {
+                cache.sampling(labelName);
+            }
+            labelMetas.put(
+                    labelName,
+                    pools.getDefaultExecutorService()
+                            .submit(() -> sampleLabel(labelName, sample, labelSchema, relSchemas)));
+        }
+        try {
+            for (Map.Entry<String, Future<LabelMeta>> entry : labelMetas.entrySet()) {
+                LabelMeta labelMeta = entry.getValue().get();
+                if (cache != null) {
+                    cache.put(entry.getKey(), cacheKey, labelMeta);
+                }
+                addLabelMeta(metaData, entry.getKey(), labelMeta);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            labelMetas.values().forEach(future -> future.cancel(true));
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            labelMetas.values().forEach(future -> future.cancel(true));
+            throw new RuntimeException("Error while sampling the nodes", e.getCause());
+        }
+        return metaData;
+    }
+
+    private LabelMeta sampleLabel(
+            String labelName, long sample, EntitySchema labelSchema, Map<String, EntitySchema> relSchemas) {
+        LabelMeta labelMeta = new LabelMeta();
+        try (Transaction workerTx = db.beginTx()) {
+            LabelSampler.sample(
+                    (InternalTransaction) workerTx,
+                    labelName,
+                    sample,
+                    node -> addNode(labelMeta, labelName, node, labelSchema, relSchemas));
+            workerTx.commit();
+        }
+        return labelMeta;
+    }
+
+    /**
+     * Adds an empty entry to the metadata for each relationship type in use, and returns their schema by type name
+     */
+    private Map<String, EntitySchema> collectRelSchemas(
+            SubGraph graph, Map<Set<String>, Map<String, MetaItem>> metaData) {
+        Map<String, EntitySchema> relSchemas = new HashMap<>();
+        for (RelationshipType type : graph.getAllRelationshipTypesInUse()) {
+            metaData.put(Set.of(Types.RELATIONSHIP.name(), type.name()), new LinkedHashMap<>(10));
+            relSchemas.put(
+                    type.name(),
+                    new EntitySchema(graph.getConstraints(type), getIndexedProperties(graph.getIndexes(type))));
+        }
+        return relSchemas;
+    }
+
+    /**
+     * The metadata of a label goes after the one of the labels before it,
+     * so the first label to add a property to a relationship type describes it, as with a sequential sampling
+     */
+    private static void addLabelMeta(
+            Map<Set<String>, Map<String, MetaItem>> metaData, String labelName, LabelMeta labelMeta) {
+        // workaround in case of duplicated keys
+        metaData.put(Set.of(Types.NODE.name(), labelName), labelMeta.nodeMeta);
+        labelMeta.relMeta.forEach((typeName, items) -> {
+            Map<String, MetaItem> typeMeta = metaData.get(Set.of(typeName, Types.RELATIONSHIP.name()));
+            if (typeMeta != null) {
+                items.forEach(typeMeta::putIfAbsent);
+            }
+        });
+    }
+
+    /**
+     * The indexes and constraints, as the cached metadata depends on them
+     */
+    private String schemaSignature() {
+        Schema schema = transaction.schema();
+        List<String> definitions = new ArrayList<>();
+        schema.getIndexes().forEach(index -> definitions.add(index.toString()));
+        schema.getConstraints().forEach(constraint -> definitions.add(constraint.toString()));
+        Collections.sort(definitions);
+        return String.join(",", definitions);
+    }
+
     private Set<String> getIndexedProperties(Iterable<IndexDefinition> indexes) {
         return Iterables.stream(indexes)
                 .map(IndexDefinition::getPropertyKeys)
@@ -854,49 +1031,43 @@ public class Meta {
                 .stream().filter(entity -> !entity.equals(suffix)).findFirst().get();
     }
 
-    private void addProperties(
-            Map<String, MetaItem> properties,
+    private void addNode(
+            LabelMeta labelMeta,
             String labelName,
-            Iterable<ConstraintDefinition> constraints,
-            Set<String> indexed,
-            Entity pc,
-            Node node) {
+            Node node,
+            EntitySchema labelSchema,
+            Map<String, EntitySchema> relSchemas) {
+        addRelationships(labelMeta, labelName, node, relSchemas);
+        addProperties(labelMeta.nodeMeta, labelName, labelSchema, node, node);
+    }
+
+    private void addProperties(
+            Map<String, MetaItem> properties, String labelName, EntitySchema schema, Entity pc, Node node) {
         for (String prop : pc.getPropertyKeys()) {
             if (properties.containsKey(prop)) continue;
             MetaItem res = metaResultForProp(pc, labelName, prop);
             res.elementType(Types.of(pc).name());
-            addSchemaInfo(res, prop, constraints, indexed, node);
+            addSchemaInfo(res, prop, schema, node);
             properties.put(prop, res);
         }
     }
 
     private void addRelationships(
-            Map<Set<String>, Map<String, MetaItem>> metaData,
-            Map<String, MetaItem> nodeMeta,
-            String labelName,
-            Node node,
-            Map<String, Iterable<ConstraintDefinition>> relConstraints,
-            Set<RelationshipType> types,
-            Map<String, Set<String>> relIndexes) {
-        StreamSupport.stream(node.getRelationshipTypes().spliterator(), false)
-                .filter(type -> types.contains(type))
-                .forEach(type -> {
-                    int out = node.getDegree(type, Direction.OUTGOING);
-                    if (out == 0) return;
-
-                    String typeName = type.name();
-                    // workaround in case of duplicated keys
-
-                    Iterable<ConstraintDefinition> constraints = relConstraints.get(typeName);
-                    Set<String> indexes = relIndexes.get(typeName);
-                    if (!nodeMeta.containsKey(typeName)) nodeMeta.put(typeName, new MetaItem(labelName, typeName));
-                    int in = node.getDegree(type, Direction.INCOMING);
-
-                    Map<String, MetaItem> typeMeta = metaData.get(Set.of(typeName, Types.RELATIONSHIP.name()));
-                    if (!typeMeta.containsKey(labelName)) typeMeta.put(labelName, new MetaItem(typeName, labelName));
-                    MetaItem relMeta = nodeMeta.get(typeName);
-                    addOtherNodeInfo(node, labelName, out, in, type, relMeta, typeMeta, constraints, indexes);
-                });
+            LabelMeta labelMeta, String labelName, Node node, Map<String, EntitySchema> relSchemas) {
+        for (RelationshipType type : node.getRelationshipTypes()) {
+            String typeName = type.name();
+            EntitySchema schema = relSchemas.get(typeName);
+            if (schema == null) continue;
+            int out = node.getDegree(type, Direction.OUTGOING);
+            if (out == 0) continue;
+
+            MetaItem relMeta = labelMeta.nodeMeta.computeIfAbsent(typeName, k -> new MetaItem(labelName, typeName));
+            int in = node.getDegree(type, Direction.INCOMING);
+
+            Map<String, MetaItem> typeMeta = labelMeta.relMeta.computeIfAbsent(typeName, k -> new LinkedHashMap<>());
+            typeMeta.computeIfAbsent(labelName, k -> new MetaItem(typeName, labelName));
+            addOtherNodeInfo(node, labelName, out, in, type, relMeta, typeMeta, schema);
+        }
     }
 
     private void addOtherNodeInfo(
@@ -907,8 +1078,7 @@ public class Meta {
             RelationshipType type,
             MetaItem relMeta,
             Map<String, MetaItem> typeMeta,
-            Iterable<ConstraintDefinition> relConstraints,
-            Set<String> indexes) {
+            EntitySchema schema) {
         MetaItem relNodeMeta = typeMeta.get(labelName);
         relMeta.elementType(Types.of(node).name());
         relMeta.inc().rel(out, in);
@@ -918,32 +1088,27 @@ public class Meta {
             List<String> labels = toStrings(endNode.getLabels());
             relMeta.other(labels);
             relNodeMeta.other(labels);
-            addProperties(typeMeta, type.name(), relConstraints, indexes, rel, node);
+            addProperties(typeMeta, type.name(), schema, rel, node);
             relNodeMeta.elementType(Types.RELATIONSHIP.name());
         }
     }
 
-    private void addSchemaInfo(
-            MetaItem res, String prop, Iterable<ConstraintDefinition> constraints, Set<String> indexed, Node node) {
-
-        if (indexed.contains(prop)) {
+    private void addSchemaInfo(MetaItem res, String prop, EntitySchema schema, Node node) {
+        if (schema.indexed.contains(prop)) {
             res.index = true;
         }
-        if (constraints == null) return;
-        for (ConstraintDefinition constraint : constraints) {
-            for (String key : constraint.getPropertyKeys()) {
-                if (key.equals(prop)) {
-                    switch (constraint.getConstraintType()) {
-                        case UNIQUENESS -> {
-                            res.unique = true;
-                            node.getLabels().forEach(l -> {
-                                if (res.label != l.name()) res.addLabel(l.name());
-                            });
-                        }
-                        case RELATIONSHIP_UNIQUENESS -> res.unique = true;
-                        case NODE_PROPERTY_EXISTENCE, RELATIONSHIP_PROPERTY_EXISTENCE -> res.existence = true;
-                    }
+        Set<ConstraintType> constraintTypes = schema.constraints.get(prop);
+        if (constraintTypes == null) return;
+        for (ConstraintType constraintType : constraintTypes) {
+            switch (constraintType) {
+                case UNIQUENESS -> {
+                    res.unique = true;
+                    node.getLabels().forEach(l -> {
+                        if (res.label != l.name()) res.addLabel(l.name());
+                    });
                 }
+                case RELATIONSHIP_UNIQUENESS -> res.unique = true;
+                case NODE_PROPERTY_EXISTENCE, RELATIONSHIP_PROPERTY_EXISTENCE -> res.existence = true;
             }
         }
     }
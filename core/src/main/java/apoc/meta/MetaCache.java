@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.meta;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.LabelEntry;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventListener;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.kernel.lifecycle.LifecycleAdapter;
+import org.neo4j.logging.Log;
+
+/**
+ * The metadata sampled by `apoc.meta.data` and `apoc.meta.schema` for each label of a database.
+ *
+ * Once used, the cache listens to the committed transactions and marks as stale the labels they touch:
+ * the labels of the nodes with changed labels or properties, of the nodes pointing to them,
+ * and of the start and end nodes of the changed relationships.
+ * Only the stale labels are sampled again, the cache is emptied when the sample or the schema change.
+ */
+public class MetaCache extends LifecycleAdapter implements TransactionEventListener<Set<String>> {
+    // above this degree a node with changed labels makes every label stale, instead of reading its neighbours
+    private static final int MAX_NEIGHBOURS = 100;
+
+    private final GraphDatabaseAPI db;
+    private final DatabaseManagementService databaseManagementService;
+    private final Log log;
+
+    private final Map<String, Meta.LabelMeta> labelMetas = new ConcurrentHashMap<>();
+    private final Set<String> stale = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean registeredWithKernel = new AtomicBoolean(false);
+    private volatile String key;
+
+    public MetaCache(GraphDatabaseAPI db, DatabaseManagementService databaseManagementService, Log log) {
+        this.db = db;
+        this.databaseManagementService = databaseManagementService;
+        this.log = log;
+    }
+
+    /**
+     * Empties the cache if it was filled with another key, i.e. another sample or schema
+     */
+    synchronized void validate(String key) {
+        if (!key.equals(this.key)) {
+            labelMetas.clear();
+            this.key = key;
+        }
+        if (registeredWithKernel.compareAndSet(false, true)) {
+            databaseManagementService.registerTransactionEventListener(db.databaseName(), this);
+        }
+    }
+
+    /**
+     * @return a copy of the metadata of the label, or null if it isn't cached or it is stale
+     */
+    Meta.LabelMeta get(String label) {
+        if (stale.contains(label)) {
+            return null;
+        }
+        Meta.LabelMeta labelMeta = labelMetas.get(label);
+        return labelMeta == null ? null : labelMeta.copy();
+    }
+
+    /**
+     * To be called before sampling the label, the changes committed from then on make the sample stale
+     */
+    void sampling(String label) {
+        stale.remove(label);
+    }
+
+    void put(String label, String key, Meta.LabelMeta labelMeta) {
+        if (key.equals(this.key) && !stale.contains(label)) {
+            labelMetas.put(label, labelMeta.copy());
+        }
+    }
+
+    @Override
+    public Set<String> beforeCommit(
+            TransactionData data, Transaction transaction, GraphDatabaseService databaseService) {
+        try {
+            Set<String> labels = new HashSet<>();
+            for (LabelEntry entry : data.assignedLabels()) {
+                labels.add(entry.label().name());
+                if (!addNeighbourLabels(data, entry.node(), labels)) return null;
+            }
+            for (LabelEntry entry : data.removedLabels()) {
+                labels.add(entry.label().name());
+                if (!addNeighbourLabels(data, entry.node(), labels)) return null;
+            }
+            for (PropertyEntry<Node> entry : data.assignedNodeProperties()) {
+                addLabels(data, entry.entity(), labels);
+            }
+            for (PropertyEntry<Node> entry : data.removedNodeProperties()) {
+                addLabels(data, entry.entity(), labels);
+            }
+            for (Relationship rel : data.createdRelationships()) {
+                addLabels(data, rel.getStartNode(), labels);
+                addLabels(data, rel.getEndNode(), labels);
+            }
+            for (Relationship rel : data.deletedRelationships()) {
+                addLabels(data, rel.getStartNode(), labels);
+                addLabels(data, rel.getEndNode(), labels);
+            }
+            for (PropertyEntry<Relationship> entry : data.assignedRelationshipProperties()) {
+                addLabels(data, entry.entity().getStartNode(), labels);
+            }
+            for (PropertyEntry<Relationship> entry : data.removedRelationshipProperties()) {
+                addLabels(data, entry.entity().getStartNode(), labels);
+            }
+            return labels;
+        } catch (Exception e) {
+            log.debug("Unable to find the labels changed by the transaction, the meta cache will be emptied", e);
+            return null;
+        }
+    }
+
+    @Override
+    public void afterCommit(TransactionData data, Set<String> labels, GraphDatabaseService databaseService) {
+        if (labels == null) {
+            key = null;
+            labelMetas.clear();
+            return;
+        }
+        stale.addAll(labels);
+        labels.forEach(labelMetas::remove);
+    }
+
+    @Override
+    public void afterRollback(TransactionData data, Set<String> labels, GraphDatabaseService databaseService) {}
+
+    @Override
+    public void stop() {
+        if (registeredWithKernel.compareAndSet(true, false)) {
+            databaseManagementService.unregisterTransactionEventListener(db.databaseName(), this);
+        }
+        labelMetas.clear();
+    }
+
+    private static void addLabels(TransactionData data, Node node, Set<String> labels) {
+        // the labels of the deleted nodes are reported as removed
+        if (!data.isDeleted(node)) {
+            for (Label label : node.getLabels()) {
+                labels.add(label.name());
+            }
+        }
+    }
+
+    /**
+     * The labels of the nodes pointing to the node, as their metadata lists the labels of the end nodes
+     *
+     * @return false if the node has too many relationships to look at
+     */
+    private static boolean addNeighbourLabels(TransactionData data, Node node, Set<String> labels) {
+        if (data.isDeleted(node)) {
+            return true;
+        }
+        if (node.getDegree(Direction.INCOMING) > MAX_NEIGHBOURS) {
+            return false;
+        }
+        for (Relationship rel : node.getRelationships(Direction.INCOMING)) {
+            addLabels(data, rel.getStartNode(), labels);
+        }
+        return true;
+    }
+}
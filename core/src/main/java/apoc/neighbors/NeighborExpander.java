@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.neighbors;
+
+import apoc.util.Util;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.apache.commons.lang3.tuple.Pair;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.internal.kernel.api.CursorFactory;
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.Read;
+import org.neo4j.internal.kernel.api.RelationshipTraversalCursor;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.io.pagecache.context.CursorContext;
+import org.neo4j.kernel.api.ExecutionContext;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.storageengine.api.RelationshipSelection;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+/**
+ * Expands a frontier of internal node ids by one hop through the kernel cursors,
+ * with the relationship types resolved to token ids once for the whole traversal.
+ *
+ * With `parallel: true` the frontiers with at least `parallelThreshold` nodes are split in chunks
+ * expanded on the CPU pool, each chunk by its own {@link ExecutionContext} and bitmap, merged afterwards.
+ */
+class NeighborExpander implements AutoCloseable {
+    static final int DEFAULT_PARALLEL_THRESHOLD = 10_000;
+    private static final int MIN_CHUNK_SIZE = 1_000;
+
+    private final KernelTransaction ktx;
+    private final RelationshipSelection[] selections;
+    private final ExecutorService executorService;
+    private final int concurrency;
+    private final int parallelThreshold;
+
+    private NodeCursor nodeCursor;
+    private RelationshipTraversalCursor relationshipCursor;
+
+    NeighborExpander(
+            KernelTransaction ktx,
+            List<Pair<RelationshipType, Direction>> typesAndDirections,
+            ExecutorService executorService,
+            int concurrency,
+            int parallelThreshold) {
+        this.ktx = ktx;
+        this.selections = selections(ktx.tokenRead(), typesAndDirections);
+        this.executorService = executorService;
+        this.concurrency = concurrency;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Resolves the types once and merges them in one selection per direction.
+     * As policy a pair with neither a type nor a direction selects nothing.
+     */
+    private static RelationshipSelection[] selections(
+            TokenRead tokenRead, List<Pair<RelationshipType, Direction>> typesAndDirections) {
+        List<RelationshipSelection> selections = new ArrayList<>();
+        for (Direction direction : Direction.values()) {
+            int[] types = new int[typesAndDirections.size()];
+            int count = 0;
+            boolean allTypes = false;
+            for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
+                Direction pairDirection = pair.getRight() == null ? Direction.BOTH : pair.getRight();
+                if (pairDirection != direction || (pair.getLeft() == null && pair.getRight() == null)) {
+                    continue;
+                }
+                if (pair.getLeft() == null) {
+                    allTypes = true;
+                    continue;
+                }
+                int type = tokenRead.relationshipType(pair.getLeft().name());
+                if (type != TokenRead.NO_TOKEN) {
+                    types[count++] = type;
+                }
+            }
+            if (allTypes) {
+                selections.add(RelationshipSelection.selection(direction));
+            } else if (count > 0) {
+                selections.add(RelationshipSelection.selection(Arrays.copyOf(types, count), direction));
+            }
+        }
+        return selections.toArray(new RelationshipSelection[0]);
+    }
+
+    Roaring64NavigableMap expand(long nodeId) {
+        Roaring64NavigableMap next = new Roaring64NavigableMap();
+        ensureCursors();
+        expand(nodeId, ktx.dataRead(), nodeCursor, relationshipCursor, next);
+        return next;
+    }
+
+    Roaring64NavigableMap expand(Roaring64NavigableMap frontier) {
+        long size = frontier.getLongCardinality();
+        if (executorService != null && size >= parallelThreshold && !ktx.dataRead().transactionStateHasChanges()) {
+            // an execution context doesn't see the changes of the transaction, so they force the sequential path
+            return expandInParallel(frontier.toArray());
+        }
+        Roaring64NavigableMap next = new Roaring64NavigableMap();
+        ensureCursors();
+        Read read = ktx.dataRead();
+        frontier.forEach(nodeId -> expand(nodeId, read, nodeCursor, relationshipCursor, next));
+        return next;
+    }
+
+    private Roaring64NavigableMap expandInParallel(long[] frontier) {
+        int chunks = Math.max(1, Math.min(concurrency, frontier.length / MIN_CHUNK_SIZE));
+        int chunkSize = (frontier.length + chunks - 1) / chunks;
+        List<ExecutionContext> contexts = new ArrayList<>(chunks);
+        List<Future<Roaring64NavigableMap>> futures = new ArrayList<>(chunks);
+        try {
+            for (int start = 0; start < frontier.length; start += chunkSize) {
+                // the contexts are created and closed by the transaction thread, the workers only complete them
+                ExecutionContext context = ktx.createExecutionContext();
+                contexts.add(context);
+                int from = start;
+                int to = Math.min(frontier.length, start + chunkSize);
+                futures.add(executorService.submit(() -> expandChunk(context, frontier, from, to)));
+            }
+            Roaring64NavigableMap next = new Roaring64NavigableMap();
+            for (Future<Roaring64NavigableMap> future : futures) {
+                next.or(future.get());
+            }
+            return next;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error while expanding the neighbors", e.getCause());
+        } finally {
+            for (Future<Roaring64NavigableMap> future : futures) {
+                try {
+                    future.get();
+                } catch (Exception ignored) {
+                    // already reported above, here we only wait for the context to be completed
+                }
+            }
+            contexts.forEach(Util::close);
+        }
+    }
+
+    private Roaring64NavigableMap expandChunk(ExecutionContext context, long[] frontier, int from, int to) {
+        Roaring64NavigableMap next = new Roaring64NavigableMap();
+        CursorFactory cursors = context.cursors();
+        CursorContext cursorContext = context.cursorContext();
+        try (NodeCursor nodes = cursors.allocateNodeCursor(cursorContext);
+                RelationshipTraversalCursor relationships =
+                        cursors.allocateRelationshipTraversalCursor(cursorContext)) {
+            Read read = context.dataRead();
+            for (int i = from; i < to; i++) {
+                expand(frontier[i], read, nodes, relationships, next);
+            }
+        } finally {
+            context.complete();
+        }
+        return next;
+    }
+
+    private void expand(
+            long nodeId,
+            Read read,
+            NodeCursor nodes,
+            RelationshipTraversalCursor relationships,
+            Roaring64NavigableMap next) {
+        read.singleNode(nodeId, nodes);
+        if (!nodes.next()) {
+            return;
+        }
+        for (RelationshipSelection selection : selections) {
+            nodes.relationships(relationships, selection);
+            while (relationships.next()) {
+                next.addLong(relationships.otherNodeReference());
+            }
+        }
+    }
+
+    private void ensureCursors() {
+        if (nodeCursor == null) {
+            CursorFactory cursors = ktx.cursors();
+            nodeCursor = cursors.allocateNodeCursor(ktx.cursorContext());
+            relationshipCursor = cursors.allocateRelationshipTraversalCursor(ktx.cursorContext());
+        }
+    }
+
+    @Override
+    public void close() {
+        Util.close(nodeCursor);
+        Util.close(relationshipCursor);
+    }
+}
@@ -19,19 +19,26 @@
 package apoc.neighbors;
 
 import static apoc.path.RelationshipTypeAndDirections.parse;
-import static apoc.util.Util.getNodeElementId;
-import static apoc.util.Util.getNodeId;
 
+import apoc.Pools;
 import apoc.result.ListResult;
 import apoc.result.LongResult;
 import apoc.result.NodeListResult;
 import apoc.result.NodeResult;
-import java.util.*;
+import apoc.util.Util;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
-import org.apache.commons.lang3.tuple.Pair;
-import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.api.KernelTransaction;
 import org.neo4j.kernel.impl.coreapi.InternalTransaction;
 import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Description;
@@ -44,20 +51,72 @@ public class Neighbors {
     @Context
     public Transaction tx;
 
-    private Iterable<Relationship> getRelationshipsByTypeAndDirection(
-            Node node, Pair<RelationshipType, Direction> typesAndDirection) {
-        // as policy if both elements in the pair are null we return an empty result
-        if (typesAndDirection.getLeft() == null) {
-            return typesAndDirection.getRight() == null
-                    ? Collections.emptyList()
-                    : node.getRelationships(typesAndDirection.getRight());
+    @Context
+    public KernelTransaction ktx;
+
+    @Context
+    public Pools pools;
+
+    private NeighborExpander expander(String types, Map<String, Object> config) {
+        Map<String, Object> cfg = config == null ? Collections.emptyMap() : config;
+        boolean parallel = Util.toBoolean(cfg.getOrDefault("parallel", false));
+        int parallelThreshold = Util.toInteger(
+                cfg.getOrDefault("parallelThreshold", NeighborExpander.DEFAULT_PARALLEL_THRESHOLD));
+        return new NeighborExpander(
+                ktx,
+                parse(types),
+                parallel ? pools.getCpuExecutorService() : null,
+                pools.getCpuThreads(),
+                parallelThreshold);
+    }
+
+    private long nodeId(Node node) {
+        return Util.getNodeId((InternalTransaction) tx, node.getElementId());
+    }
+
+    /**
+     * All the nodes within the distance, the start node excluded
+     */
+    private Roaring64NavigableMap withinDistance(Node node, String types, long distance, Map<String, Object> config) {
+        final long startNodeId = nodeId(node);
+        Roaring64NavigableMap seen = new Roaring64NavigableMap();
+        seen.addLong(startNodeId);
+        try (NeighborExpander expander = expander(types, config)) {
+            Roaring64NavigableMap frontier = expander.expand(startNodeId);
+            for (int i = 1; i < distance && !frontier.isEmpty(); i++) {
+                frontier.andNot(seen);
+                seen.or(frontier);
+                frontier = expander.expand(frontier);
+            }
+            seen.or(frontier);
         }
-        if (typesAndDirection.getRight() == null) {
-            return typesAndDirection.getLeft() == null
-                    ? Collections.emptyList()
-                    : node.getRelationships(typesAndDirection.getLeft());
+        // remove starting node
+        seen.removeLong(startNodeId);
+        return seen;
+    }
+
+    /**
+     * The nodes first reached at each hop, i.e. the i-th bitmap excludes the nodes of the previous hops
+     */
+    private Roaring64NavigableMap[] byHop(Node node, String types, long distance, Map<String, Object> config) {
+        final long startNodeId = nodeId(node);
+        Roaring64NavigableMap[] seen = new Roaring64NavigableMap[(int) distance];
+        try (NeighborExpander expander = expander(types, config)) {
+            seen[0] = expander.expand(startNodeId);
+            for (int i = 1; i < distance; i++) {
+                seen[i] = expander.expand(seen[i - 1]);
+                for (int j = 0; j < i; j++) {
+                    seen[i].andNot(seen[j]);
+                }
+                seen[i].removeLong(startNodeId);
+            }
         }
-        return node.getRelationships(typesAndDirection.getRight(), typesAndDirection.getLeft());
+        return seen;
+    }
+
+    private Stream<Node> toNodes(Roaring64NavigableMap ids) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(ids.iterator(), Spliterator.SORTED), false)
+                .map(id -> tx.getNodeById(id));
     }
 
     @Procedure("apoc.neighbors.tohop")
@@ -67,78 +126,12 @@ public class Neighbors {
     public Stream<NodeResult> neighbors(
             @Name("node") Node node,
             @Name(value = "relTypes", defaultValue = "") String types,
-            @Name(value = "distance", defaultValue = "1") Long distance) {
+            @Name(value = "distance", defaultValue = "1") Long distance,
+            @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
         if (distance < 1) return Stream.empty();
         if (types == null || types.isEmpty()) return Stream.empty();
 
-        final long startNodeId = getNodeId((InternalTransaction) tx, node.getElementId());
-
-        // Initialize bitmaps for iteration
-        Roaring64NavigableMap seen = new Roaring64NavigableMap();
-        Roaring64NavigableMap nextA = new Roaring64NavigableMap();
-        Roaring64NavigableMap nextB = new Roaring64NavigableMap();
-        String nodeElementId = node.getElementId();
-        long nodeId = getNodeId((InternalTransaction) tx, nodeElementId);
-        seen.addLong(nodeId);
-        Iterator<Long> iterator;
-
-        List<Pair<RelationshipType, Direction>> typesAndDirections = parse(types);
-
-        // First Hop
-        for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
-            for (Relationship r : getRelationshipsByTypeAndDirection(node, pair)) {
-                nextB.addLong(
-                        getNodeId((InternalTransaction) tx, r.getOtherNode(node).getElementId()));
-            }
-        }
-
-        for (int i = 1; i < distance; i++) {
-            // next even Hop
-            nextB.andNot(seen);
-            seen.or(nextB);
-            nextA.clear();
-            iterator = nextB.iterator();
-            while (iterator.hasNext()) {
-                nodeElementId = getNodeElementId((InternalTransaction) tx, iterator.next());
-                node = tx.getNodeByElementId(nodeElementId);
-                for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
-                    for (Relationship r : getRelationshipsByTypeAndDirection(node, pair)) {
-                        nextA.add(getNodeId(
-                                (InternalTransaction) tx, r.getOtherNode(node).getElementId()));
-                    }
-                }
-            }
-
-            i++;
-            if (i < distance) {
-                // next odd Hop
-                nextA.andNot(seen);
-                seen.or(nextA);
-                nextB.clear();
-                iterator = nextA.iterator();
-                while (iterator.hasNext()) {
-                    nodeElementId = getNodeElementId((InternalTransaction) tx, iterator.next());
-                    node = tx.getNodeByElementId(nodeElementId);
-                    for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
-                        for (Relationship r : getRelationshipsByTypeAndDirection(node, pair)) {
-                            nextB.add(getNodeId(
-                                    (InternalTransaction) tx,
-                                    r.getOtherNode(node).getElementId()));
-                        }
-                    }
-                }
-            }
-        }
-        if ((distance % 2) == 0) {
-            seen.or(nextA);
-        } else {
-            seen.or(nextB);
-        }
-        // remove starting node
-        seen.removeLong(startNodeId);
-
-        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(seen.iterator(), Spliterator.SORTED), false)
-                .map(x -> new NodeResult(tx.getNodeByElementId(getNodeElementId((InternalTransaction) tx, x))));
+        return toNodes(withinDistance(node, types, distance, config)).map(NodeResult::new);
     }
 
     @Procedure("apoc.neighbors.tohop.count")
@@ -147,76 +140,12 @@ public class Neighbors {
     public Stream<LongResult> neighborsCount(
             @Name("node") Node node,
             @Name(value = "relTypes", defaultValue = "") String types,
-            @Name(value = "distance", defaultValue = "1") Long distance) {
+            @Name(value = "distance", defaultValue = "1") Long distance,
+            @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
         if (distance < 1) return Stream.empty();
         if (types == null || types.isEmpty()) return Stream.empty();
 
-        final long startNodeId = getNodeId((InternalTransaction) tx, node.getElementId());
-
-        // Initialize bitmaps for iteration
-        Roaring64NavigableMap seen = new Roaring64NavigableMap();
-        Roaring64NavigableMap nextA = new Roaring64NavigableMap();
-        Roaring64NavigableMap nextB = new Roaring64NavigableMap();
-        String nodeElementId = node.getElementId();
-        long nodeId = getNodeId((InternalTransaction) tx, nodeElementId);
-        seen.add(nodeId);
-        Iterator<Long> iterator;
-
-        List<Pair<RelationshipType, Direction>> typesAndDirections = parse(types);
-        // First Hop
-        for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
-            for (Relationship r : getRelationshipsByTypeAndDirection(node, pair)) {
-                nextB.add(
-                        getNodeId((InternalTransaction) tx, r.getOtherNode(node).getElementId()));
-            }
-        }
-
-        for (int i = 1; i < distance; i++) {
-            // next even Hop
-            nextB.andNot(seen);
-            seen.or(nextB);
-            nextA.clear();
-            iterator = nextB.iterator();
-            while (iterator.hasNext()) {
-                nodeElementId = getNodeElementId((InternalTransaction) tx, iterator.next());
-                node = tx.getNodeByElementId(nodeElementId);
-                for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
-                    for (Relationship r : getRelationshipsByTypeAndDirection(node, pair)) {
-                        nextA.add(getNodeId(
-                                (InternalTransaction) tx, r.getOtherNode(node).getElementId()));
-                    }
-                }
-            }
-
-            i++;
-            if (i < distance) {
-                // next odd Hop
-                nextA.andNot(seen);
-                seen.or(nextA);
-                nextB.clear();
-                iterator = nextA.iterator();
-                while (iterator.hasNext()) {
-                    nodeElementId = getNodeElementId((InternalTransaction) tx, iterator.next());
-                    node = tx.getNodeByElementId(nodeElementId);
-                    for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
-                        for (Relationship r : getRelationshipsByTypeAndDirection(node, pair)) {
-                            nextB.add(getNodeId(
-                                    (InternalTransaction) tx,
-                                    r.getOtherNode(node).getElementId()));
-                        }
-                    }
-                }
-            }
-        }
-        if ((distance % 2) == 0) {
-            seen.or(nextA);
-        } else {
-            seen.or(nextB);
-        }
-        // remove starting node
-        seen.removeLong(startNodeId);
-
-        return Stream.of(new LongResult(seen.getLongCardinality()));
+        return Stream.of(new LongResult(withinDistance(node, types, distance, config).getLongCardinality()));
     }
 
     @Procedure("apoc.neighbors.byhop")
@@ -225,52 +154,13 @@ public class Neighbors {
     public Stream<NodeListResult> neighborsByHop(
             @Name("node") Node node,
             @Name(value = "relTypes", defaultValue = "") String types,
-            @Name(value = "distance", defaultValue = "1") Long distance) {
+            @Name(value = "distance", defaultValue = "1") Long distance,
+            @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
         if (distance < 1) return Stream.empty();
         if (types == null || types.isEmpty()) return Stream.empty();
 
-        // Initialize bitmaps for iteration
-        Roaring64NavigableMap[] seen = new Roaring64NavigableMap[distance.intValue()];
-        for (int i = 0; i < distance; i++) {
-            seen[i] = new Roaring64NavigableMap();
-        }
-        String nodeElementId = node.getElementId();
-        long nodeId = getNodeId((InternalTransaction) tx, nodeElementId);
-
-        Iterator<Long> iterator;
-
-        List<Pair<RelationshipType, Direction>> typesAndDirections = parse(types);
-        // First Hop
-        for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
-            for (Relationship r : getRelationshipsByTypeAndDirection(node, pair)) {
-                seen[0].add(
-                        getNodeId((InternalTransaction) tx, r.getOtherNode(node).getElementId()));
-            }
-        }
-
-        for (int i = 1; i < distance; i++) {
-            iterator = seen[i - 1].iterator();
-            while (iterator.hasNext()) {
-                nodeElementId = getNodeElementId((InternalTransaction) tx, iterator.next());
-                node = tx.getNodeByElementId(nodeElementId);
-                for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
-                    for (Relationship r : getRelationshipsByTypeAndDirection(node, pair)) {
-                        seen[i].add(getNodeId(
-                                (InternalTransaction) tx, r.getOtherNode(node).getElementId()));
-                    }
-                }
-            }
-            for (int j = 0; j < i; j++) {
-                seen[i].andNot(seen[j]);
-                seen[i].removeLong(nodeId);
-            }
-        }
-
-        return Arrays.stream(seen)
-                .map(x -> new NodeListResult(StreamSupport.stream(
-                                Spliterators.spliteratorUnknownSize(x.iterator(), Spliterator.SORTED), false)
-                        .map(y -> tx.getNodeByElementId(getNodeElementId((InternalTransaction) tx, y)))
-                        .collect(Collectors.toList())));
+        return Arrays.stream(byHop(node, types, distance, config))
+                .map(x -> new NodeListResult(toNodes(x).collect(Collectors.toList())));
     }
 
     @Procedure("apoc.neighbors.byhop.count")
@@ -279,50 +169,15 @@ public class Neighbors {
     public Stream<ListResult> neighborsByHopCount(
             @Name("node") Node node,
             @Name(value = "relTypes", defaultValue = "") String types,
-            @Name(value = "distance", defaultValue = "1") Long distance) {
+            @Name(value = "distance", defaultValue = "1") Long distance,
+            @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
         if (distance < 1) return Stream.empty();
         if (types == null || types.isEmpty()) return Stream.empty();
 
-        // Initialize bitmaps for iteration
-        Roaring64NavigableMap[] seen = new Roaring64NavigableMap[distance.intValue()];
-        for (int i = 0; i < distance; i++) {
-            seen[i] = new Roaring64NavigableMap();
-        }
-        String nodeElementId = node.getElementId();
-        long nodeId = getNodeId((InternalTransaction) tx, nodeElementId);
-
-        Iterator<Long> iterator;
-
-        List<Pair<RelationshipType, Direction>> typesAndDirections = parse(types);
-        // First Hop
-        for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
-            for (Relationship r : getRelationshipsByTypeAndDirection(node, pair)) {
-                seen[0].add(
-                        getNodeId((InternalTransaction) tx, r.getOtherNode(node).getElementId()));
-            }
-        }
-
-        for (int i = 1; i < distance; i++) {
-            iterator = seen[i - 1].iterator();
-            while (iterator.hasNext()) {
-                nodeElementId = getNodeElementId((InternalTransaction) tx, iterator.next());
-                node = tx.getNodeByElementId(nodeElementId);
-                for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
-                    for (Relationship r : getRelationshipsByTypeAndDirection(node, pair)) {
-                        seen[i].add(getNodeId(
-                                (InternalTransaction) tx, r.getOtherNode(node).getElementId()));
-                    }
-                }
-            }
-            for (int j = 0; j < i; j++) {
-                seen[i].andNot(seen[j]);
-                seen[i].removeLong(nodeId);
-            }
-        }
-
-        ArrayList counts = new ArrayList<Long>();
-        for (int i = 0; i < distance; i++) {
-            counts.add(seen[i].getLongCardinality());
+        Roaring64NavigableMap[] seen = byHop(node, types, distance, config);
+        List<Long> counts = new ArrayList<>(seen.length);
+        for (Roaring64NavigableMap hop : seen) {
+            counts.add(hop.getLongCardinality());
         }
 
         return Stream.of(new ListResult(counts));
@@ -333,52 +188,13 @@ public class Neighbors {
     public Stream<NodeResult> neighborsAtHop(
             @Name("node") Node node,
             @Name(value = "relTypes", defaultValue = "") String types,
-            @Name(value = "distance", defaultValue = "1") Long distance) {
+            @Name(value = "distance", defaultValue = "1") Long distance,
+            @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
         if (distance < 1) return Stream.empty();
         if (types == null || types.isEmpty()) return Stream.empty();
 
-        // Initialize bitmaps for iteration
-        Roaring64NavigableMap[] seen = new Roaring64NavigableMap[distance.intValue()];
-        for (int i = 0; i < distance; i++) {
-            seen[i] = new Roaring64NavigableMap();
-        }
-        String nodeElementId = node.getElementId();
-        long nodeId = getNodeId((InternalTransaction) tx, nodeElementId);
-
-        Iterator<Long> iterator;
-
-        List<Pair<RelationshipType, Direction>> typesAndDirections = parse(types);
-        // First Hop
-        for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
-            for (Relationship r : getRelationshipsByTypeAndDirection(node, pair)) {
-                seen[0].add(
-                        getNodeId((InternalTransaction) tx, r.getOtherNode(node).getElementId()));
-            }
-        }
-
-        for (int i = 1; i < distance; i++) {
-            iterator = seen[i - 1].iterator();
-            while (iterator.hasNext()) {
-                nodeElementId = getNodeElementId((InternalTransaction) tx, iterator.next());
-                node = tx.getNodeByElementId(nodeElementId);
-                for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
-                    for (Relationship r : getRelationshipsByTypeAndDirection(node, pair)) {
-                        seen[i].add(getNodeId(
-                                (InternalTransaction) tx, r.getOtherNode(node).getElementId()));
-                    }
-                }
-            }
-            for (int j = 0; j < i; j++) {
-                seen[i].andNot(seen[j]);
-                seen[i].removeLong(nodeId);
-            }
-        }
-
-        return StreamSupport.stream(
-                        Spliterators.spliteratorUnknownSize(
-                                seen[distance.intValue() - 1].iterator(), Spliterator.SORTED),
-                        false)
-                .map(y -> new NodeResult(tx.getNodeByElementId(getNodeElementId((InternalTransaction) tx, y))));
+        Roaring64NavigableMap[] seen = byHop(node, types, distance, config);
+        return toNodes(seen[seen.length - 1]).map(NodeResult::new);
     }
 
     @Procedure("apoc.neighbors.athop.count")
@@ -387,47 +203,12 @@ public class Neighbors {
     public Stream<LongResult> neighborsAtHopCount(
             @Name("node") Node node,
             @Name(value = "relTypes", defaultValue = "") String types,
-            @Name(value = "distance", defaultValue = "1") Long distance) {
+            @Name(value = "distance", defaultValue = "1") Long distance,
+            @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
         if (distance < 1) return Stream.empty();
         if (types == null || types.isEmpty()) return Stream.empty();
 
-        // Initialize bitmaps for iteration
-        Roaring64NavigableMap[] seen = new Roaring64NavigableMap[distance.intValue()];
-        for (int i = 0; i < distance; i++) {
-            seen[i] = new Roaring64NavigableMap();
-        }
-        String nodeElementId = node.getElementId();
-        long nodeId = getNodeId((InternalTransaction) tx, nodeElementId);
-
-        Iterator<Long> iterator;
-
-        List<Pair<RelationshipType, Direction>> typesAndDirections = parse(types);
-        // First Hop
-        for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
-            for (Relationship r : getRelationshipsByTypeAndDirection(node, pair)) {
-                seen[0].add(
-                        getNodeId((InternalTransaction) tx, r.getOtherNode(node).getElementId()));
-            }
-        }
-
-        for (int i = 1; i < distance; i++) {
-            iterator = seen[i - 1].iterator();
-            while (iterator.hasNext()) {
-                nodeElementId = getNodeElementId((InternalTransaction) tx, iterator.next());
-                node = tx.getNodeByElementId(nodeElementId);
-                for (Pair<RelationshipType, Direction> pair : typesAndDirections) {
-                    for (Relationship r : getRelationshipsByTypeAndDirection(node, pair)) {
-                        seen[i].add(getNodeId(
-                                (InternalTransaction) tx, r.getOtherNode(node).getElementId()));
-                    }
-                }
-            }
-            for (int j = 0; j < i; j++) {
-                seen[i].andNot(seen[j]);
-                seen[i].removeLong(nodeId);
-            }
-        }
-
-        return Stream.of(new LongResult(seen[distance.intValue() - 1].getLongCardinality()));
+        Roaring64NavigableMap[] seen = byHop(node, types, distance, config);
+        return Stream.of(new LongResult(seen[seen.length - 1].getLongCardinality()));
     }
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.nodes;
+
+import java.util.Arrays;
+
+/**
+ * The group ordinal of each grouped node, by node id.
+ *
+ * The ordinals are kept in pages of ints, a page being allocated with the first grouped node of its id range,
+ * so that a grouped node costs 4 bytes instead of an entry in a set of nodes.
+ * The ordinals are set by one thread, once they are all set the lookups are safe from any thread.
+ */
+class GroupOrdinals {
+    static final int NONE = -1;
+
+    private static final int PAGE_SHIFT = 16;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    // ordinal + 1 of each node, 0 is a node without group
+    private int[][] pages = new int[0][];
+
+    void set(long nodeId, int ordinal) {
+        int page = (int) (nodeId >>> PAGE_SHIFT);
+        if (page >= pages.length) {
+            pages = Arrays.copyOf(pages, Math.max(page + 1, pages.length * 2));
+        }
+        if (pages[page] == null) {
+            pages[page] = new int[PAGE_SIZE];
+        }
+        pages[page][(int) (nodeId & PAGE_MASK)] = ordinal + 1;
+    }
+
+    /**
+     * @return the group ordinal of the node, or {@link #NONE} if it isn't grouped
+     */
+    int get(long nodeId) {
+        long page = nodeId >>> PAGE_SHIFT;
+        if (page >= pages.length || pages[(int) page] == null) {
+            return NONE;
+        }
+        return pages[(int) page][(int) (nodeId & PAGE_MASK)] - 1;
+    }
+}
@@ -25,19 +25,28 @@ import apoc.result.VirtualNode;
 import apoc.result.VirtualRelationship;
 import apoc.util.Util;
 import apoc.util.collection.Iterables;
+import apoc.util.kernel.MultiThreadedGlobalGraphOperations;
+import apoc.util.kernel.MultiThreadedGlobalGraphOperations.ScanOptions;
+import apoc.util.kernel.ScanSource;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.schema.IndexDefinition;
+import org.neo4j.graphdb.schema.IndexType;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Description;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.NotThreadSafe;
 import org.neo4j.procedure.Procedure;
+import org.neo4j.procedure.TerminationGuard;
+import org.roaringbitmap.longlong.LongIterator;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
 
 /**
  * @author mh
@@ -48,7 +57,7 @@ public class Grouping {
     private static final int BATCHSIZE = 10000;
 
     @Context
-    public GraphDatabaseService db;
+    public GraphDatabaseAPI db;
 
     @Context
     public Transaction tx;
@@ -59,6 +68,9 @@ public class Grouping {
     @Context
     public Pools pools;
 
+    @Context
+    public TerminationGuard terminationGuard;
+
     public static class GroupResult {
         public List<Node> nodes;
         public List<Relationship> relationships;
@@ -112,7 +124,6 @@ public class Grouping {
                 (aggregations.size() > 1) ? toStringListMap(aggregations.get(1)) : emptyMap();
         String[] relAggKeys = keyArray(relAggNames, "*");
 
-        // todo bitset
         Set<String> includeRels = computeIncludedRels(config);
 
         /*
@@ -129,111 +140,30 @@ public class Grouping {
         // also filter (esp. max) during aggregation?
         Map<String, Number> filter = configuredFilter(config);
 
-        Map<NodeKey, Set<Node>> grouped = new ConcurrentHashMap<>();
-        Map<NodeKey, VirtualNode> virtualNodes = new ConcurrentHashMap<>();
-        Map<RelKey, VirtualRelationship> virtualRels = new ConcurrentHashMap<>();
-
-        List<Future> futures = new ArrayList<>(1000);
-
-        ExecutorService pool = pools.getDefaultExecutorService();
-        for (String labelName : labels) {
-            Label label = Label.label(labelName);
-            Label[] singleLabel = {label};
-
-            try (ResourceIterator<Node> nodes =
-                    (labelName.equals("*")) ? tx.getAllNodes().iterator() : tx.findNodes(label)) {
-                while (nodes.hasNext()) {
-                    List<Node> batch = Util.take(nodes, BATCHSIZE);
-                    futures.add(Util.inTxFuture(pool, db, txInThread -> {
-                        try {
-                            for (Node node : batch) {
-                                final Node boundNode = Util.rebind(txInThread, node);
-                                NodeKey key = keyFor(boundNode, labelName, keys);
-                                grouped.compute(key, (k, v) -> {
-                                    if (v == null) v = new HashSet<>();
-                                    v.add(boundNode);
-                                    return v;
-                                });
-                                virtualNodes.compute(key, (k, v) -> {
-                                    if (v == null) {
-                                        v = new VirtualNode(singleLabel, propertiesFor(boundNode, keys));
-                                    }
-                                    VirtualNode vn = v;
-                                    if (!nodeAggNames.isEmpty()) {
-                                        aggregate(
-                                                vn,
-                                                nodeAggNames,
-                                                nodeAggKeys.length > 0
-                                                        ? boundNode.getProperties(nodeAggKeys)
-                                                        : Collections.emptyMap());
-                                    }
-                                    return vn;
-                                });
-                            }
-                        } catch (Exception e) {
-                            log.error("Error grouping nodes", e);
-                        }
-                        return null;
-                    }));
-                    Util.removeFinished(futures);
-                }
+        // the groups only keep the ids of their nodes, which are then turned into an ordinal per node and label
+        List<VirtualNode> virtualNodes = new ArrayList<>();
+        Map<String, GroupOrdinals> ordinals = new HashMap<>();
+        groupNodes(labels, keys, nodeAggNames, nodeAggKeys).forEach((key, group) -> {
+            int ordinal = virtualNodes.size();
+            Map<String, Object> props = new HashMap<>(key.values);
+            props.putAll(group.aggregates);
+            virtualNodes.add(new VirtualNode(new Label[] {Label.label(key.label)}, props).compactProperties());
+            GroupOrdinals labelOrdinals = ordinals.computeIfAbsent(key.label, k -> new GroupOrdinals());
+            LongIterator nodeIds = group.nodeIds.getLongIterator();
+            while (nodeIds.hasNext()) {
+                labelOrdinals.set(nodeIds.next(), ordinal);
             }
-        }
-        Util.waitForFutures(futures);
-        futures.clear();
-        Iterator<Map.Entry<NodeKey, Set<Node>>> entries = grouped.entrySet().iterator();
-        int size = 0;
-        List<Map.Entry<NodeKey, Set<Node>>> batch = new ArrayList<>();
-        while (entries.hasNext()) {
-            Map.Entry<NodeKey, Set<Node>> outerEntry = entries.next();
-            batch.add(outerEntry);
-            size += outerEntry.getValue().size();
-            if (size > BATCHSIZE || !entries.hasNext()) {
-                ArrayList<Map.Entry<NodeKey, Set<Node>>> submitted = new ArrayList<>(batch);
-                batch.clear();
-                size = 0;
-                futures.add(Util.inTxFuture(pool, db, txInThread -> {
-                    try {
-                        for (Map.Entry<NodeKey, Set<Node>> entry : submitted) {
-                            for (Node node : entry.getValue()) {
-                                node = Util.rebind(txInThread, node);
-                                NodeKey startKey = entry.getKey();
-                                VirtualNode v1 = virtualNodes.get(startKey);
-                                for (Relationship rel : node.getRelationships(Direction.OUTGOING)) {
-                                    if (includeRels != null
-                                            && !includeRels.contains(
-                                                    rel.getType().name())) continue;
-                                    Node endNode = rel.getEndNode();
-                                    for (NodeKey endKey : keysFor(endNode, labels, keys)) {
-                                        VirtualNode v2 = virtualNodes.get(endKey);
-                                        if (v2 == null) continue;
-                                        if (!selfRels && startKey.equals(endKey)) continue;
-                                        virtualRels.compute(new RelKey(startKey, endKey, rel), (rk, vRel) -> {
-                                            if (vRel == null) vRel = v1.createRelationshipTo(v2, rel.getType());
-                                            if (!relAggNames.isEmpty()) {
-                                                aggregate(
-                                                        vRel,
-                                                        relAggNames,
-                                                        relAggKeys.length > 0
-                                                                ? rel.getProperties(relAggKeys)
-                                                                : Collections.emptyMap());
-                                            }
-                                            return vRel;
-                                        });
-                                    }
-                                }
-                            }
-                        }
-                    } catch (Exception e) {
-                        log.error("Error grouping relationships", e);
-                    }
-                    return null;
-                }));
-                Util.removeFinished(futures);
-            }
-        }
-        Util.waitForFutures(futures);
-        Stream<VirtualNode> stream = fixAggregates(virtualNodes.values()).stream();
+        });
+        groupRelationships(ordinals, includeRels, selfRels, relAggNames, relAggKeys)
+                .forEach((key, props) -> {
+                    VirtualRelationship vRel = virtualNodes
+                            .get(key.start)
+                            .createRelationshipTo(virtualNodes.get(key.end), RelationshipType.withName(key.type));
+                    props.forEach(vRel::setProperty);
+                    vRel.compactProperties();
+                });
+
+        Stream<VirtualNode> stream = fixAggregates(virtualNodes).stream();
         // apply filter
         if (filter != null) stream = stream.filter(n -> filter(n.getLabels(), n.getAllProperties(), filter));
         if (limitNodes > -1) stream = stream.limit(limitNodes);
@@ -249,6 +179,148 @@ public class Grouping {
         return groupResultStream;
     }
 
+    /**
+     * First pass, a parallel scan of the nodes of each label.
+     * Each worker aggregates its nodes in its own groups, which are merged once the scans are over.
+     */
+    private Map<NodeKey, Group> groupNodes(
+            Set<String> labels, String[] keys, Map<String, List<String>> nodeAggNames, String[] nodeAggKeys) {
+        Map<Thread, Map<NodeKey, Group>> workerGroups = new ConcurrentHashMap<>();
+        for (String labelName : labels) {
+            MultiThreadedGlobalGraphOperations.BatchJobResult result = scanLabel(labelName, (workerTx, nodeId) -> {
+                Node node = workerTx.getNodeById(nodeId);
+                Group group = workerGroups
+                        .computeIfAbsent(Thread.currentThread(), t -> new HashMap<>())
+                        .computeIfAbsent(keyFor(node, labelName, keys), k -> new Group());
+                group.nodeIds.addLong(nodeId);
+                if (!nodeAggNames.isEmpty()) {
+                    aggregate(
+                            group.aggregates,
+                            nodeAggNames,
+                            nodeAggKeys.length > 0 ? node.getProperties(nodeAggKeys) : emptyMap());
+                }
+            });
+            if (result.getFailures() > 0) {
+                log.error("Error grouping " + result.getFailures() + " nodes of label " + labelName);
+            }
+        }
+        // same map as before the workers, so that the groups keep their order
+        Map<NodeKey, Group> grouped = new ConcurrentHashMap<>();
+        for (Map<NodeKey, Group> groups : workerGroups.values()) {
+            groups.forEach((key, group) -> grouped.merge(key, group, (merged, other) -> {
+                merged.nodeIds.or(other.nodeIds);
+                mergeAggregates(merged.aggregates, other.aggregates, nodeAggNames);
+                return merged;
+            }));
+        }
+        return grouped;
+    }
+
+    /**
+     * Second pass, a parallel scan of the grouped nodes and of their outgoing relationships.
+     * The groups of both ends are looked up by node id, each worker aggregates its relationships by pair of groups.
+     */
+    private Map<RelKey, Map<String, Object>> groupRelationships(
+            Map<String, GroupOrdinals> ordinals,
+            Set<String> includeRels,
+            boolean selfRels,
+            Map<String, List<String>> relAggNames,
+            String[] relAggKeys) {
+        Map<RelKey, Map<String, Object>> grouped = new LinkedHashMap<>();
+        if (includeRels != null && includeRels.isEmpty()) {
+            return grouped;
+        }
+        RelationshipType[] types = includeRels == null
+                ? null
+                : includeRels.stream().map(RelationshipType::withName).toArray(RelationshipType[]::new);
+        GroupOrdinals[] endOrdinals = ordinals.values().toArray(new GroupOrdinals[0]);
+        Map<Thread, Map<RelKey, Map<String, Object>>> workerRels = new ConcurrentHashMap<>();
+        ordinals.forEach((labelName, labelOrdinals) -> {
+            MultiThreadedGlobalGraphOperations.BatchJobResult result = scanLabel(labelName, (workerTx, nodeId) -> {
+                int start = labelOrdinals.get(nodeId);
+                if (start == GroupOrdinals.NONE) {
+                    // labeled after the first pass
+                    return;
+                }
+                Map<RelKey, Map<String, Object>> rels =
+                        workerRels.computeIfAbsent(Thread.currentThread(), t -> new HashMap<>());
+                Node node = workerTx.getNodeById(nodeId);
+                Iterable<Relationship> outgoing = types == null
+                        ? node.getRelationships(Direction.OUTGOING)
+                        : node.getRelationships(Direction.OUTGOING, types);
+                for (Relationship rel : outgoing) {
+                    long endNodeId = rel.getEndNode().getId();
+                    Map<String, Object> properties = null;
+                    for (GroupOrdinals labelEndOrdinals : endOrdinals) {
+                        int end = labelEndOrdinals.get(endNodeId);
+                        if (end == GroupOrdinals.NONE) continue;
+                        if (!selfRels && start == end) continue;
+                        Map<String, Object> aggregates = rels.computeIfAbsent(
+                                new RelKey(start, end, rel.getType().name()), k -> new HashMap<>());
+                        if (!relAggNames.isEmpty()) {
+                            if (properties == null) {
+                                properties = relAggKeys.length > 0 ? rel.getProperties(relAggKeys) : emptyMap();
+                            }
+                            aggregate(aggregates, relAggNames, properties);
+                        }
+                    }
+                }
+            });
+            if (result.getFailures() > 0) {
+                log.error("Error grouping the relationships of " + result.getFailures() + " nodes of label "
+                        + labelName);
+            }
+        });
+        for (Map<RelKey, Map<String, Object>> rels : workerRels.values()) {
+            rels.forEach((key, aggregates) -> grouped.merge(key, aggregates, (merged, other) -> {
+                mergeAggregates(merged, other, relAggNames);
+                return merged;
+            }));
+        }
+        return grouped;
+    }
+
+    /**
+     * The nodes of the label through the label lookup index, or a scan of all the nodes filtered by label without it
+     */
+    private MultiThreadedGlobalGraphOperations.BatchJobResult scanLabel(String labelName, NodeConsumer consumer) {
+        if (hasNodeLookupIndex()) {
+            return MultiThreadedGlobalGraphOperations.scan(
+                    db,
+                    pools.getCpuExecutorService(),
+                    ScanSource.nodesByLabel(labelName),
+                    scanOptions(),
+                    (workerTx, cursor) -> consumer.accept(workerTx, cursor.nodeReference()));
+        }
+        int labelId = ((InternalTransaction) tx).kernelTransaction().tokenRead().nodeLabel(labelName);
+        if (labelId == TokenRead.NO_TOKEN) {
+            return new MultiThreadedGlobalGraphOperations.BatchJobResult();
+        }
+        return MultiThreadedGlobalGraphOperations.scan(
+                db, pools.getCpuExecutorService(), ScanSource.allNodes(), scanOptions(), (workerTx, cursor) -> {
+                    if (cursor.hasLabel(labelId)) {
+                        consumer.accept(workerTx, cursor.nodeReference());
+                    }
+                });
+    }
+
+    private boolean hasNodeLookupIndex() {
+        for (IndexDefinition index : tx.schema().getIndexes()) {
+            if (index.getIndexType() == IndexType.LOOKUP && index.isNodeIndex()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private interface NodeConsumer {
+        void accept(Transaction workerTx, long nodeId);
+    }
+
+    private ScanOptions scanOptions() {
+        return new ScanOptions().batchSize(BATCHSIZE).terminationGuard(terminationGuard);
+    }
+
     private Map<String, Number> configuredFilter(Map<String, Object> config) {
         Map<String, Number> filter = (Map<String, Number>) config.get("filter");
         if (filter == null || filter.isEmpty()) return null;
@@ -344,47 +416,36 @@ public class Grouping {
         return pcs;
     }
 
-    private void aggregate(Entity pc, Map<String, List<String>> aggregations, Map<String, Object> properties) {
+    private void aggregate(
+            Map<String, Object> aggregates, Map<String, List<String>> aggregations, Map<String, Object> properties) {
         aggregations.forEach((k2, aggNames) -> {
             for (String aggName : aggNames) {
                 String key = aggName + "_" + k2;
                 if ("count_*".equals(key)) {
-                    pc.setProperty(key, ((Number) pc.getProperty(key, 0)).longValue() + 1);
+                    aggregates.merge(key, 1L, (a, b) -> (long) a + (long) b);
                 } else {
                     Object value = properties.get(k2);
                     if (value != null) {
                         switch (aggName) {
                             case "collect":
-                                List<Object> existing = (List<Object>) pc.getProperty(key, new ArrayList<>());
-                                existing.add(value);
-                                pc.setProperty(key, existing);
+                                ((List<Object>) aggregates.computeIfAbsent(key, k -> new ArrayList<>())).add(value);
                                 break;
                             case "count":
-                                pc.setProperty(key, ((Number) pc.getProperty(key, 0)).longValue() + 1);
+                                aggregates.merge(key, 1L, (a, b) -> (long) a + (long) b);
                                 break;
                             case "sum":
-                                pc.setProperty(
-                                        key, ((Number) pc.getProperty(key, 0)).doubleValue() + Util.toDouble(value));
+                                aggregates.merge(key, Util.toDouble(value), (a, b) -> (double) a + (double) b);
                                 break;
                             case "min":
-                                pc.setProperty(
-                                        key,
-                                        Math.min(
-                                                ((Number) pc.getProperty(key, Double.MAX_VALUE)).doubleValue(),
-                                                Util.toDouble(value)));
+                                aggregates.merge(key, Util.toDouble(value), (a, b) -> Math.min((double) a, (double) b));
                                 break;
                             case "max":
-                                pc.setProperty(
-                                        key,
-                                        Math.max(
-                                                ((Number) pc.getProperty(key, Double.MIN_VALUE)).doubleValue(),
-                                                Util.toDouble(value)));
+                                aggregates.merge(key, Util.toDouble(value), (a, b) -> Math.max((double) a, (double) b));
                                 break;
                             case "avg": {
-                                double[] avg = (double[]) pc.getProperty(key, new double[2]);
+                                double[] avg = (double[]) aggregates.computeIfAbsent(key, k -> new double[2]);
                                 avg[0] += Util.toDouble(value);
                                 avg[1] += 1;
-                                pc.setProperty(key, avg);
                                 break;
                             }
                         }
@@ -394,6 +455,47 @@ public class Grouping {
         });
     }
 
+    /**
+     * Adds the aggregates of another worker to the given ones
+     */
+    private void mergeAggregates(
+            Map<String, Object> aggregates, Map<String, Object> other, Map<String, List<String>> aggregations) {
+        aggregations.forEach((k2, aggNames) -> {
+            for (String aggName : aggNames) {
+                String key = aggName + "_" + k2;
+                Object value = other.get(key);
+                if (value == null) continue;
+                switch (aggName) {
+                    case "collect":
+                        aggregates.merge(key, value, (a, b) -> {
+                            ((List<Object>) a).addAll((List<Object>) b);
+                            return a;
+                        });
+                        break;
+                    case "count":
+                        aggregates.merge(key, value, (a, b) -> (long) a + (long) b);
+                        break;
+                    case "sum":
+                        aggregates.merge(key, value, (a, b) -> (double) a + (double) b);
+                        break;
+                    case "min":
+                        aggregates.merge(key, value, (a, b) -> Math.min((double) a, (double) b));
+                        break;
+                    case "max":
+                        aggregates.merge(key, value, (a, b) -> Math.max((double) a, (double) b));
+                        break;
+                    case "avg":
+                        aggregates.merge(key, value, (a, b) -> {
+                            ((double[]) a)[0] += ((double[]) b)[0];
+                            ((double[]) a)[1] += ((double[]) b)[1];
+                            return a;
+                        });
+                        break;
+                }
+            }
+        });
+    }
+
     /**
      * Returns the properties for the given node according to the specified keys. If a node does not have a property
      * assigned to given key, the value is set to {@code null}.
@@ -424,29 +526,6 @@ public class Grouping {
         return new NodeKey(label, propertiesFor(node, keys));
     }
 
-    /**
-     * Creates a grouping key for each specified label.
-     *
-     * @param node   node
-     * @param labels node labels
-     * @param keys   property keys
-     * @return grouping keys
-     */
-    private Collection<NodeKey> keysFor(Node node, Collection<String> labels, String[] keys) {
-        Map<String, Object> props = propertiesFor(node, keys);
-        List<NodeKey> result = new ArrayList<>(labels.size());
-        if (labels.contains("*")) {
-            result.add(new NodeKey("*", props));
-        } else {
-            for (Label label : node.getLabels()) {
-                if (labels.contains(label.name())) {
-                    result.add(new NodeKey(label.name(), props));
-                }
-            }
-        }
-        return result;
-    }
-
     /**
      * Represents a grouping key for nodes.
      */
@@ -475,21 +554,28 @@ public class Grouping {
             return hash;
         }
     }
+    /**
+     * The aggregates and the node ids of a group, the nodes themselves are not kept.
+     */
+    private static class Group {
+        private final Roaring64NavigableMap nodeIds = new Roaring64NavigableMap();
+        private final Map<String, Object> aggregates = new HashMap<>();
+    }
 
     /**
-     * Represents a grouping key for relationships.
+     * Represents a grouping key for relationships, between the ordinals of the groups of both ends.
      */
     private static class RelKey {
         private final int hash;
-        private final NodeKey startKey;
-        private final NodeKey endKey;
+        private final int start;
+        private final int end;
         private final String type;
 
-        RelKey(NodeKey startKey, NodeKey endKey, Relationship rel) {
-            this.startKey = startKey;
-            this.endKey = endKey;
-            this.type = rel.getType().name();
-            hash = 31 * (31 * startKey.hashCode() + endKey.hashCode()) + type.hashCode();
+        RelKey(int start, int end, String type) {
+            this.start = start;
+            this.end = end;
+            this.type = type;
+            hash = 31 * (31 * start + end) + type.hashCode();
         }
 
         @Override
@@ -499,7 +585,7 @@ public class Grouping {
 
             RelKey relKey = (RelKey) o;
 
-            return startKey.equals(relKey.startKey) && endKey.equals(relKey.endKey) && type.equals(relKey.type);
+            return start == relKey.start && end == relKey.end && type.equals(relKey.type);
         }
 
         @Override
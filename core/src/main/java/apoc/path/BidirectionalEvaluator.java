@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.path;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.lang3.tuple.Pair;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.ResourceIterable;
+import org.neo4j.graphdb.traversal.Evaluation;
+import org.neo4j.graphdb.traversal.Evaluator;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+/**
+ * Evaluator for the `bidirectional` option of the path expanders, when end or terminator nodes are given.
+ *
+ * Before the traversal, a breadth-first search from the start nodes and one from the end and terminator nodes,
+ * following the relationship filter in reverse, are expanded in turn, on the side with the smaller frontier,
+ * until their depths add up to `maxLevel` or one of them is exhausted. They meet in the middle: the end side knows
+ * the distance to the closest end node of the nodes up to its depth, and the other nodes are further away.
+ * So past the depth of the start side, the traversal only follows the nodes found by the end side,
+ * and everywhere it prunes the paths that can't reach an end node within `maxLevel`.
+ *
+ * The searches ignore the label filters, the node filters and the uniqueness, and follow the relationships of all the
+ * steps of a sequence at each depth, so the distances are lower bounds and only paths that couldn't end on
+ * an end or terminator node are pruned: the traversal returns the same paths as without the evaluator.
+ */
+class BidirectionalEvaluator implements Evaluator {
+    private final List<Pair<RelationshipType, Direction>> relationships;
+    private final int maxLevel;
+
+    // the nodes found by the end side, and the ones at each distance to the closest end node
+    private final Roaring64NavigableMap endVisited = new Roaring64NavigableMap();
+    private final List<Roaring64NavigableMap> endLevels = new ArrayList<>();
+    private int endDepth;
+    private boolean endSideExhausted;
+
+    /**
+     * @return the evaluator, or null if the relationship filters can't be followed in reverse,
+     * then the traversal runs without it
+     */
+    static BidirectionalEvaluator of(
+            Iterable<Node> startNodes, List<Node> endNodes, List<String> relationshipFilters, int maxLevel) {
+        List<Pair<RelationshipType, Direction>> relationships = new ArrayList<>();
+        for (String relationshipFilter : relationshipFilters) {
+            for (String step : relationshipFilter.trim().split("\\|")) {
+                // a step with both directions has no single reverse
+                if (step.contains("<") && step.contains(">")) {
+                    return null;
+                }
+            }
+            for (Pair<RelationshipType, Direction> pair :
+                    RelationshipTypeAndDirections.parse(relationshipFilter.trim())) {
+                if (!relationships.contains(pair)) {
+                    relationships.add(pair);
+                }
+            }
+        }
+        if (relationships.isEmpty()) {
+            return null;
+        }
+        return new BidirectionalEvaluator(startNodes, endNodes, relationships, maxLevel);
+    }
+
+    private BidirectionalEvaluator(
+            Iterable<Node> startNodes,
+            List<Node> endNodes,
+            List<Pair<RelationshipType, Direction>> relationships,
+            int maxLevel) {
+        this.relationships = relationships;
+        this.maxLevel = maxLevel;
+
+        Roaring64NavigableMap startVisited = new Roaring64NavigableMap();
+        List<Node> startFrontier = new ArrayList<>();
+        for (Node node : startNodes) {
+            if (visit(startVisited, node)) {
+                startFrontier.add(node);
+            }
+        }
+        Roaring64NavigableMap endLevel = new Roaring64NavigableMap();
+        List<Node> endFrontier = new ArrayList<>();
+        for (Node node : endNodes) {
+            if (visit(endVisited, node)) {
+                endLevel.addLong(node.getId());
+                endFrontier.add(node);
+            }
+        }
+        endLevels.add(endLevel);
+
+        int startDepth = 0;
+        while (startDepth + endDepth < maxLevel && !startFrontier.isEmpty() && !endFrontier.isEmpty()) {
+            if (startFrontier.size() < endFrontier.size()) {
+                startFrontier = expand(startFrontier, false, startVisited, null);
+                startDepth++;
+            } else {
+                endLevel = new Roaring64NavigableMap();
+                endFrontier = expand(endFrontier, true, endVisited, endLevel);
+                endLevels.add(endLevel);
+                endDepth++;
+            }
+        }
+        endSideExhausted = endFrontier.isEmpty();
+    }
+
+    private static boolean visit(Roaring64NavigableMap visited, Node node) {
+        long id = node.getId();
+        if (visited.contains(id)) {
+            return false;
+        }
+        visited.addLong(id);
+        return true;
+    }
+
+    private List<Node> expand(
+            List<Node> frontier, boolean reverse, Roaring64NavigableMap visited, Roaring64NavigableMap level) {
+        List<Node> next = new ArrayList<>();
+        for (Node node : frontier) {
+            for (Pair<RelationshipType, Direction> pair : relationships) {
+                RelationshipType type = pair.getLeft();
+                Direction direction = reverse ? pair.getRight().reverse() : pair.getRight();
+                try (ResourceIterable<Relationship> rels = type == null
+                        ? node.getRelationships(direction)
+                        : node.getRelationships(direction, type)) {
+                    for (Relationship rel : rels) {
+                        Node other = rel.getOtherNode(node);
+                        if (visit(visited, other)) {
+                            if (level != null) {
+                                level.addLong(other.getId());
+                            }
+                            next.add(other);
+                        }
+                    }
+                }
+            }
+        }
+        return next;
+    }
+
+    @Override
+    public Evaluation evaluate(Path path) {
+        long id = path.endNode().getId();
+        int remaining = maxLevel - path.length();
+        for (int distance = 0; distance <= Math.min(remaining, endDepth); distance++) {
+            if (endLevels.get(distance).contains(id)) {
+                return Evaluation.INCLUDE_AND_CONTINUE;
+            }
+        }
+        // the nodes not found by the end side are further than its depth, if it isn't exhausted
+        boolean canReachEndNode = !endVisited.contains(id) && !endSideExhausted && remaining > endDepth;
+        return canReachEndNode ? Evaluation.INCLUDE_AND_CONTINUE : Evaluation.EXCLUDE_AND_PRUNE;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.path;
+
+import java.util.Arrays;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.internal.kernel.api.TokenSet;
+
+/**
+ * The labels referenced by the label filters of a traversal, resolved once to their token ids.
+ * Each of them is given a bit of a `long`, so the labels of a node read from the node cursor become a mask,
+ * and the {@link LabelMatcher}s compare masks instead of label names.
+ */
+class LabelMasks {
+    private final TokenRead tokenRead;
+
+    // bit + 1 of each label token, 0 for the labels not referenced by the filters
+    private int[] bits = new int[0];
+    private int size;
+    private boolean overflow;
+
+    LabelMasks(TokenRead tokenRead) {
+        this.tokenRead = tokenRead;
+    }
+
+    /**
+     * @return the bit of the label, or -1 if the label doesn't exist or the mask is full
+     */
+    int bit(String label) {
+        int token = tokenRead.nodeLabel(label);
+        if (token == TokenRead.NO_TOKEN) {
+            return -1;
+        }
+        if (token >= bits.length) {
+            bits = Arrays.copyOf(bits, token + 1);
+        }
+        if (bits[token] == 0) {
+            if (size == Long.SIZE) {
+                overflow = true;
+                return -1;
+            }
+            bits[token] = ++size;
+        }
+        return bits[token] - 1;
+    }
+
+    /**
+     * @return true if the filters reference more labels than a mask can hold
+     */
+    boolean isOverflow() {
+        return overflow;
+    }
+
+    long mask(TokenSet labels) {
+        long mask = 0L;
+        for (int i = 0; i < labels.numberOfTokens(); i++) {
+            int token = labels.token(i);
+            if (token < bits.length && bits[token] != 0) {
+                mask |= 1L << (bits[token] - 1);
+            }
+        }
+        return mask;
+    }
+}
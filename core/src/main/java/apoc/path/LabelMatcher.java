@@ -33,10 +33,13 @@ import java.util.*;
  * Also accepts a special `*` label, indicating that the matcher will always return a positive match.
  * LabelMatchers hold no context about what a match means, and do not handle labels prefixed with filter symbols (+, -, /, &gt;).
  * Please strip these symbols from the start of each label before adding to the matcher.
+ * Once resolved against the {@link LabelMasks} of a traversal, the matcher also matches node label masks.
  */
 public class LabelMatcher {
     private List<String> labels = new ArrayList<>();
     private List<List<String>> compoundLabels;
+    private long labelMask;
+    private long[] compoundLabelMasks = new long[0];
 
     private static LabelMatcher ACCEPTS_ALL_LABEL_MATCHER = new LabelMatcher() {
         @Override
@@ -44,11 +47,21 @@ public class LabelMatcher {
             return true;
         }
 
+        @Override
+        boolean matchesLabels(long nodeLabelMask) {
+            return true;
+        }
+
         @Override
         public LabelMatcher addLabel(String label) {
             return this; // no-op
         }
 
+        @Override
+        void resolve(LabelMasks masks) {
+            // no-op
+        }
+
         @Override
         public boolean isEmpty() {
             return false;
@@ -105,6 +118,53 @@ public class LabelMatcher {
         return false;
     }
 
+    /**
+     * Resolves the labels of the matcher to masks, the labels that don't exist can't match any node
+     */
+    void resolve(LabelMasks masks) {
+        labelMask = 0L;
+        for (String label : labels) {
+            int bit = masks.bit(label);
+            if (bit >= 0) {
+                labelMask |= 1L << bit;
+            }
+        }
+
+        List<Long> compoundMasks = new ArrayList<>();
+        if (compoundLabels != null) {
+            for (List<String> compoundLabel : compoundLabels) {
+                long compoundMask = 0L;
+                boolean exists = true;
+                for (String label : compoundLabel) {
+                    int bit = masks.bit(label);
+                    if (bit < 0) {
+                        exists = false;
+                        break;
+                    }
+                    compoundMask |= 1L << bit;
+                }
+                if (exists) {
+                    compoundMasks.add(compoundMask);
+                }
+            }
+        }
+        compoundLabelMasks = compoundMasks.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    boolean matchesLabels(long nodeLabelMask) {
+        if ((nodeLabelMask & labelMask) != 0) {
+            return true;
+        }
+
+        for (long compoundLabelMask : compoundLabelMasks) {
+            if ((nodeLabelMask & compoundLabelMask) == compoundLabelMask) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     public boolean isEmpty() {
         return labels.isEmpty() && (compoundLabels == null || compoundLabels.isEmpty());
     }
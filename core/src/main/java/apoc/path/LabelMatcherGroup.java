@@ -110,6 +110,39 @@ public class LabelMatcherGroup {
         return EXCLUDE_AND_PRUNE;
     }
 
+    /**
+     * Resolves the labels of the matchers, so the group can evaluate node label masks
+     */
+    void resolve(LabelMasks masks) {
+        allowlistMatcher.resolve(masks);
+        denylistMatcher.resolve(masks);
+        endNodeMatcher.resolve(masks);
+        terminatorNodeMatcher.resolve(masks);
+    }
+
+    /**
+     * Same as {@link #evaluate(Node, boolean)}, for the label mask of the node
+     */
+    Evaluation evaluate(long nodeLabelMask, boolean belowMinLevel) {
+        if (denylistMatcher.matchesLabels(nodeLabelMask)) {
+            return EXCLUDE_AND_PRUNE;
+        }
+
+        if (terminatorNodeMatcher.matchesLabels(nodeLabelMask)) {
+            return belowMinLevel ? EXCLUDE_AND_CONTINUE : INCLUDE_AND_PRUNE;
+        }
+
+        if (endNodeMatcher.matchesLabels(nodeLabelMask)) {
+            return belowMinLevel ? EXCLUDE_AND_CONTINUE : INCLUDE_AND_CONTINUE;
+        }
+
+        if (allowlistMatcher.isEmpty() || allowlistMatcher.matchesLabels(nodeLabelMask)) {
+            return endNodesOnly || belowMinLevel ? EXCLUDE_AND_CONTINUE : INCLUDE_AND_CONTINUE;
+        }
+
+        return EXCLUDE_AND_PRUNE;
+    }
+
     public boolean isEndNodesOnly() {
         return endNodesOnly;
     }
@@ -26,9 +26,12 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.traversal.Evaluation;
 import org.neo4j.graphdb.traversal.Evaluator;
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.kernel.api.KernelTransaction;
 
 // when no commas present, acts as a pathwide label filter
 public class LabelSequenceEvaluator implements Evaluator {
@@ -40,6 +43,11 @@ public class LabelSequenceEvaluator implements Evaluator {
     private boolean beginSequenceAtStart;
     private long minLevel = -1;
 
+    private KernelTransaction ktx;
+    private LabelMasks labelMasks;
+
+    private LabelSequenceEvaluator() {}
+
     public LabelSequenceEvaluator(
             String labelSequence, boolean filterStartNode, boolean beginSequenceAtStart, int minLevel) {
         List<String> labelSequenceList;
@@ -82,6 +90,43 @@ public class LabelSequenceEvaluator implements Evaluator {
         allowlistAllowedEvaluation = endNodesOnly ? EXCLUDE_AND_CONTINUE : INCLUDE_AND_CONTINUE;
     }
 
+    /**
+     * Matches the labels of the nodes by token id, reading them from a node cursor of the transaction
+     * instead of building a set of label names per node.
+     * Keeps matching by name if the filters reference more labels than a {@link LabelMasks} can hold.
+     */
+    public LabelSequenceEvaluator withLabelTokens(KernelTransaction ktx) {
+        LabelMasks masks = new LabelMasks(ktx.tokenRead());
+        for (LabelMatcherGroup group : sequenceMatchers) {
+            group.resolve(masks);
+        }
+
+        if (!masks.isOverflow()) {
+            this.ktx = ktx;
+            this.labelMasks = masks;
+        }
+        return this;
+    }
+
+    /**
+     * The same evaluator, reading the labels of the nodes in another transaction
+     */
+    LabelSequenceEvaluator inTransaction(KernelTransaction ktx) {
+        if (labelMasks == null) {
+            return this;
+        }
+        LabelSequenceEvaluator evaluator = new LabelSequenceEvaluator();
+        evaluator.sequenceMatchers = sequenceMatchers;
+        evaluator.allowlistAllowedEvaluation = allowlistAllowedEvaluation;
+        evaluator.endNodesOnly = endNodesOnly;
+        evaluator.filterStartNode = filterStartNode;
+        evaluator.beginSequenceAtStart = beginSequenceAtStart;
+        evaluator.minLevel = minLevel;
+        evaluator.ktx = ktx;
+        evaluator.labelMasks = labelMasks;
+        return evaluator;
+    }
+
     @Override
     public Evaluation evaluate(Path path) {
         int depth = path.length();
@@ -99,6 +144,20 @@ public class LabelSequenceEvaluator implements Evaluator {
         LabelMatcherGroup matcherGroup =
                 sequenceMatchers.get((beginSequenceAtStart ? depth : depth - 1) % sequenceMatchers.size());
 
-        return matcherGroup.evaluate(node, belowMinLevel);
+        return labelMasks == null
+                ? matcherGroup.evaluate(node, belowMinLevel)
+                : matcherGroup.evaluate(labelMask(node), belowMinLevel);
+    }
+
+    private long labelMask(Node node) {
+        // the evaluator has no point where it's closed, the cursor is closed after each lookup
+        // (the cursors are pooled by the transaction, so that it's cheap to allocate one per node)
+        try (NodeCursor nodeCursor = ktx.cursors().allocateNodeCursor(ktx.cursorContext())) {
+            ktx.dataRead().singleNode(node.getId(), nodeCursor);
+            if (!nodeCursor.next()) {
+                throw new NotFoundException("Node " + node.getElementId() + " not found");
+            }
+            return labelMasks.mask(nodeCursor.labels());
+        }
     }
 }
@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.path;
+
+import apoc.util.Util;
+import apoc.util.collection.Iterators;
+import apoc.util.collection.PrefetchingIterator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+import org.neo4j.graphdb.Entity;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpander;
+import org.neo4j.graphdb.PathExpanders;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.ResourceIterable;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.traversal.BranchState;
+import org.neo4j.graphdb.traversal.Evaluation;
+import org.neo4j.graphdb.traversal.Evaluator;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.procedure.TerminationGuard;
+
+/**
+ * Breadth-first traversal with `NODE_GLOBAL` uniqueness for the `parallel` option of the subgraph procedures.
+ *
+ * The start nodes form the first frontier, and each level is expanded at once: the frontier is split in chunks
+ * expanded on the pool, each in its own transaction, with the expander and evaluators of the sequential traversal.
+ * A node is visited by the first worker that claims it in a concurrent bitmap of the node ids,
+ * and the paths of a level are streamed once the level is complete, before the next one is expanded.
+ *
+ * The nodes are the ones the sequential traversal returns, but when several nodes of a level reach the same node,
+ * which of them claims it isn't deterministic, so the returned paths can differ (e.g. the branches of a spanning tree).
+ * The branches keep the element ids of their nodes and relationships, which each transaction looks up again.
+ * As they run in their own transactions, the workers don't see the uncommitted changes of the calling transaction,
+ * which then uses the sequential traversal.
+ * The termination of the calling procedure is checked before each level and by each chunk.
+ */
+class ParallelTraversal {
+    private static final int MIN_CHUNK_SIZE = 100;
+
+    private final GraphDatabaseService db;
+    private final ExecutorService pool;
+    private final int concurrency;
+    private final TerminationGuard terminationGuard;
+    private final Transaction tx;
+    private final PathExpander expander;
+    private final PathExplorer.Expansion expansion;
+    private final VisitedNodes visited = new VisitedNodes();
+
+    ParallelTraversal(
+            GraphDatabaseService db,
+            ExecutorService pool,
+            int concurrency,
+            TerminationGuard terminationGuard,
+            Transaction tx,
+            PathExplorer.Expansion expansion) {
+        this.db = db;
+        this.pool = pool;
+        this.concurrency = Math.max(1, concurrency);
+        this.terminationGuard = terminationGuard;
+        this.tx = tx;
+        this.expansion = expansion;
+        this.expander = expansion.expander == null ? PathExpanders.allTypesAndDirections() : expansion.expander;
+    }
+
+    Stream<Path> traverse(Iterable<Node> startNodes) {
+        Iterator<List<Path>> levels = new PrefetchingIterator<>() {
+            private List<Branch> frontier;
+
+            @Override
+            protected List<Path> fetchNextOrNull() {
+                while (frontier == null || !frontier.isEmpty()) {
+                    terminationGuard.check();
+                    Level level = frontier == null ? start(startNodes) : expand(frontier);
+                    frontier = level.frontier;
+                    if (!level.included.isEmpty()) {
+                        List<Path> paths = new ArrayList<>(level.included.size());
+                        for (Branch branch : level.included) {
+                            paths.add(new BranchPath(branch, tx));
+                        }
+                        return paths;
+                    }
+                }
+                return null;
+            }
+        };
+        return Iterators.stream(levels).flatMap(List::stream);
+    }
+
+    private Level start(Iterable<Node> startNodes) {
+        List<Evaluator> evaluators = expansion.evaluators;
+        Level level = new Level();
+        for (Node node : startNodes) {
+            if (visited.add(node.getId())) {
+                level.add(new Branch(node.getElementId(), null, null), evaluators, tx);
+            }
+        }
+        return level;
+    }
+
+    private Level expand(List<Branch> frontier) {
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, (frontier.size() + concurrency - 1) / concurrency);
+        List<Future<Level>> futures = new ArrayList<>();
+        for (int from = 0; from < frontier.size(); from += chunkSize) {
+            List<Branch> chunk = frontier.subList(from, Math.min(from + chunkSize, frontier.size()));
+            futures.add(Util.inTxFuture(pool, db, workerTx -> expand(workerTx, chunk)));
+        }
+
+        Level level = new Level();
+        try {
+            for (Future<Level> future : futures) {
+                Level chunkLevel = future.get();
+                level.included.addAll(chunkLevel.included);
+                level.frontier.addAll(chunkLevel.frontier);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            throw new RuntimeException("Interrupted while expanding the paths", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw new RuntimeException("Error expanding the paths: " + e.getCause().getMessage(), e.getCause());
+        }
+        return level;
+    }
+
+    private Level expand(Transaction workerTx, List<Branch> chunk) {
+        terminationGuard.check();
+        List<Evaluator> evaluators = expansion.evaluators(((InternalTransaction) workerTx).kernelTransaction());
+        Level level = new Level();
+        for (Branch branch : chunk) {
+            BranchPath path = new BranchPath(branch, workerTx);
+            Node node = path.endNode();
+            try (ResourceIterable<Relationship> relationships = expander.expand(path, BranchState.NO_STATE)) {
+                for (Relationship relationship : relationships) {
+                    Node other = relationship.getOtherNode(node);
+                    if (visited.add(other.getId())) {
+                        level.add(
+                                new Branch(other.getElementId(), relationship.getElementId(), branch),
+                                evaluators,
+                                workerTx);
+                    }
+                }
+            }
+        }
+        return level;
+    }
+
+    /**
+     * The branches of a level returned by the traversal, and the ones to expand
+     */
+    private static class Level {
+        final List<Branch> included = new ArrayList<>();
+        final List<Branch> frontier = new ArrayList<>();
+
+        void add(Branch branch, List<Evaluator> evaluators, Transaction tx) {
+            // same as the MultiEvaluator of a traversal description
+            boolean includes = true;
+            boolean continues = true;
+            Path path = new BranchPath(branch, tx);
+            for (Evaluator evaluator : evaluators) {
+                Evaluation evaluation = evaluator.evaluate(path);
+                includes &= evaluation.includes();
+                continues &= evaluation.continues();
+            }
+            if (includes) {
+                included.add(branch);
+            }
+            if (continues) {
+                frontier.add(branch);
+            }
+        }
+    }
+
+    private static class Branch {
+        final String nodeId;
+        final String relationshipId;
+        final Branch parent;
+        final int length;
+
+        Branch(String nodeId, String relationshipId, Branch parent) {
+            this.nodeId = nodeId;
+            this.relationshipId = relationshipId;
+            this.parent = parent;
+            this.length = parent == null ? 0 : parent.length + 1;
+        }
+    }
+
+    /**
+     * A branch as a path of the given transaction, the nodes and relationships are only read when asked for
+     */
+    private static class BranchPath implements Path {
+        private final Branch branch;
+        private final Transaction tx;
+        private Node endNode;
+        private List<Node> nodes;
+        private List<Relationship> relationships;
+
+        BranchPath(Branch branch, Transaction tx) {
+            this.branch = branch;
+            this.tx = tx;
+        }
+
+        @Override
+        public Node startNode() {
+            return nodes().get(0);
+        }
+
+        @Override
+        public Node endNode() {
+            if (endNode == null) {
+                endNode = tx.getNodeByElementId(branch.nodeId);
+            }
+            return endNode;
+        }
+
+        @Override
+        public Relationship lastRelationship() {
+            return branch.parent == null ? null : relationships().get(branch.length - 1);
+        }
+
+        @Override
+        public List<Relationship> relationships() {
+            if (relationships == null) {
+                Relationship[] path = new Relationship[branch.length];
+                for (Branch current = branch; current.parent != null; current = current.parent) {
+                    path[current.length - 1] = tx.getRelationshipByElementId(current.relationshipId);
+                }
+                relationships = List.of(path);
+            }
+            return relationships;
+        }
+
+        @Override
+        public Iterable<Relationship> reverseRelationships() {
+            List<Relationship> reversed = new ArrayList<>(relationships());
+            Collections.reverse(reversed);
+            return reversed;
+        }
+
+        @Override
+        public List<Node> nodes() {
+            if (nodes == null) {
+                Node[] path = new Node[branch.length + 1];
+                for (Branch current = branch; current != null; current = current.parent) {
+                    path[current.length] = current == branch ? endNode() : tx.getNodeByElementId(current.nodeId);
+                }
+                nodes = List.of(path);
+            }
+            return nodes;
+        }
+
+        @Override
+        public Iterable<Node> reverseNodes() {
+            List<Node> reversed = new ArrayList<>(nodes());
+            Collections.reverse(reversed);
+            return reversed;
+        }
+
+        @Override
+        public int length() {
+            return branch.length;
+        }
+
+        @Override
+        public Iterator<Entity> iterator() {
+            List<Entity> entities = new ArrayList<>(2 * branch.length + 1);
+            List<Node> pathNodes = nodes();
+            List<Relationship> pathRelationships = relationships();
+            for (int i = 0; i < branch.length; i++) {
+                entities.add(pathNodes.get(i));
+                entities.add(pathRelationships.get(i));
+            }
+            entities.add(endNode());
+            return entities.iterator();
+        }
+
+        @Override
+        public String toString() {
+            return org.neo4j.graphdb.traversal.Paths.defaultPathToString(this);
+        }
+    }
+
+    /**
+     * The visited node ids, a bitmap split in pages of atomic longs allocated on first use
+     */
+    private static class VisitedNodes {
+        private static final int PAGE_SHIFT = 16;
+        private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+        private final ConcurrentHashMap<Long, AtomicLongArray> pages = new ConcurrentHashMap<>();
+
+        /**
+         * @return true if the node wasn't visited yet
+         */
+        boolean add(long nodeId) {
+            AtomicLongArray page =
+                    pages.computeIfAbsent(nodeId >>> PAGE_SHIFT, k -> new AtomicLongArray(1 << (PAGE_SHIFT - 6)));
+            int index = (int) (nodeId & PAGE_MASK);
+            long bit = 1L << (index & 63);
+            long word;
+            do {
+                word = page.get(index >>> 6);
+                if ((word & bit) != 0) {
+                    return false;
+                }
+            } while (!page.compareAndSet(index >>> 6, word, word | bit));
+            return true;
+        }
+    }
+}
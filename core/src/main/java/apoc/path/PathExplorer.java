@@ -20,6 +20,7 @@ package apoc.path;
 
 import static apoc.path.PathExplorer.NodeFilter.*;
 
+import apoc.Pools;
 import apoc.algo.Cover;
 import apoc.result.GraphResult;
 import apoc.result.NodeResult;
@@ -30,17 +31,21 @@ import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
+import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpander;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.traversal.*;
+import org.neo4j.kernel.api.KernelTransaction;
 import org.neo4j.kernel.impl.coreapi.InternalTransaction;
 import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Description;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.NotThreadSafe;
 import org.neo4j.procedure.Procedure;
+import org.neo4j.procedure.TerminationGuard;
 
 public class PathExplorer {
     public static final Uniqueness UNIQUENESS = Uniqueness.RELATIONSHIP_PATH;
@@ -49,6 +54,15 @@ public class PathExplorer {
     @Context
     public Transaction tx;
 
+    @Context
+    public GraphDatabaseService db;
+
+    @Context
+    public Pools pools;
+
+    @Context
+    public TerminationGuard terminationGuard;
+
     @NotThreadSafe
     @Procedure("apoc.path.expand")
     @Description(
@@ -72,7 +86,9 @@ public class PathExplorer {
                         -1,
                         null,
                         null,
-                        true)
+                        true,
+                        false,
+                        false)
                 .map(PathResult::new);
     }
 
@@ -166,6 +182,8 @@ public class PathExplorer {
         boolean optional = Util.toBoolean(config.getOrDefault("optional", false));
         String sequence = (String) config.getOrDefault("sequence", null);
         boolean beginSequenceAtStart = Util.toBoolean(config.getOrDefault("beginSequenceAtStart", true));
+        boolean bidirectional = Util.toBoolean(config.getOrDefault("bidirectional", false));
+        boolean parallel = Util.toBoolean(config.getOrDefault("parallel", false));
 
         List<Node> endNodes = Util.nodeList((InternalTransaction) tx, config.get("endNodes"));
         List<Node> terminatorNodes = Util.nodeList((InternalTransaction) tx, config.get("terminatorNodes"));
@@ -211,7 +229,9 @@ public class PathExplorer {
                 limit,
                 nodeFilter,
                 sequence,
-                beginSequenceAtStart);
+                beginSequenceAtStart,
+                bidirectional,
+                parallel);
 
         if (optional) {
             return optionalStream(results);
@@ -232,26 +252,55 @@ public class PathExplorer {
             long limit,
             EnumMap<NodeFilter, List<Node>> nodeFilter,
             String sequence,
-            boolean beginSequenceAtStart) {
-
-        Traverser traverser = traverse(
-                tx.traversalDescription(),
-                startNodes,
-                pathFilter,
-                labelFilter,
-                minLevel,
-                maxLevel,
-                uniqueness,
-                bfs,
-                filterStartNode,
-                nodeFilter,
-                sequence,
-                beginSequenceAtStart);
+            boolean beginSequenceAtStart,
+            boolean bidirectional,
+            boolean parallel) {
+        KernelTransaction ktx = ((InternalTransaction) tx).kernelTransaction();
+        Stream<Path> paths;
+
+        // a level-synchronous expansion visits the same nodes as a breadth-first traversal with a global uniqueness,
+        // its workers run in their own transactions, which don't see the changes of this one
+        if (parallel && bfs && uniqueness == Uniqueness.NODE_GLOBAL && !ktx.dataRead().transactionStateHasChanges()) {
+            Expansion expansion = new Expansion(
+                    startNodes,
+                    pathFilter,
+                    labelFilter,
+                    minLevel,
+                    maxLevel,
+                    uniqueness,
+                    bfs,
+                    filterStartNode,
+                    nodeFilter,
+                    sequence,
+                    beginSequenceAtStart,
+                    bidirectional,
+                    ktx);
+            paths = new ParallelTraversal(
+                            db, pools.getCpuExecutorService(), pools.getCpuThreads(), terminationGuard, tx, expansion)
+                    .traverse(startNodes);
+        } else {
+            Traverser traverser = traverse(
+                    tx.traversalDescription(),
+                    startNodes,
+                    pathFilter,
+                    labelFilter,
+                    minLevel,
+                    maxLevel,
+                    uniqueness,
+                    bfs,
+                    filterStartNode,
+                    nodeFilter,
+                    sequence,
+                    beginSequenceAtStart,
+                    bidirectional,
+                    ktx);
+            paths = Iterables.stream(traverser);
+        }
 
         if (limit == -1) {
-            return Iterables.stream(traverser);
+            return paths;
         } else {
-            return Iterables.stream(traverser).limit(limit);
+            return paths.limit(limit);
         }
     }
 
@@ -287,74 +336,196 @@ public class PathExplorer {
             EnumMap<NodeFilter, List<Node>> nodeFilter,
             String sequence,
             boolean beginSequenceAtStart) {
-        // based on the pathFilter definition now the possible relationships and directions must be shown
-
-        td = bfs ? td.breadthFirst() : td.depthFirst();
-
-        // if `sequence` is present, it overrides `labelFilter` and `relationshipFilter`
-        if (sequence != null && !sequence.trim().isEmpty()) {
-            String[] sequenceSteps = sequence.split(",");
-            List<String> labelSequenceList = new ArrayList<>();
-            List<String> relSequenceList = new ArrayList<>();
-
-            for (int index = 0; index < sequenceSteps.length; index++) {
-                List<String> seq =
-                        (beginSequenceAtStart ? index : index - 1) % 2 == 0 ? labelSequenceList : relSequenceList;
-                seq.add(sequenceSteps[index]);
-            }
+        return traverse(
+                td,
+                startNodes,
+                pathFilter,
+                labelFilter,
+                minLevel,
+                maxLevel,
+                uniqueness,
+                bfs,
+                filterStartNode,
+                nodeFilter,
+                sequence,
+                beginSequenceAtStart,
+                false,
+                null);
+    }
 
-            td = td.expand(new RelationshipSequenceExpander(relSequenceList, beginSequenceAtStart));
-            td = td.evaluator(new LabelSequenceEvaluator(
-                    labelSequenceList, filterStartNode, beginSequenceAtStart, (int) minLevel));
-        } else {
-            if (pathFilter != null && !pathFilter.trim().isEmpty()) {
-                td = td.expand(new RelationshipSequenceExpander(pathFilter.trim(), beginSequenceAtStart));
-            }
+    /**
+     * Same as above, when the transaction is given the label filters are matched by label token id.
+     * With `bidirectional`, the end and terminator nodes guide the traversal (see {@link BidirectionalEvaluator})
+     */
+    public static Traverser traverse(
+            TraversalDescription td,
+            Iterable<Node> startNodes,
+            String pathFilter,
+            String labelFilter,
+            long minLevel,
+            long maxLevel,
+            Uniqueness uniqueness,
+            boolean bfs,
+            boolean filterStartNode,
+            EnumMap<NodeFilter, List<Node>> nodeFilter,
+            String sequence,
+            boolean beginSequenceAtStart,
+            boolean bidirectional,
+            KernelTransaction ktx) {
+        Expansion expansion = new Expansion(
+                startNodes,
+                pathFilter,
+                labelFilter,
+                minLevel,
+                maxLevel,
+                uniqueness,
+                bfs,
+                filterStartNode,
+                nodeFilter,
+                sequence,
+                beginSequenceAtStart,
+                bidirectional,
+                ktx);
 
-            if (labelFilter != null && sequence == null && !labelFilter.trim().isEmpty()) {
-                td = td.evaluator(new LabelSequenceEvaluator(
-                        labelFilter.trim(), filterStartNode, beginSequenceAtStart, (int) minLevel));
-            }
+        td = bfs ? td.breadthFirst() : td.depthFirst();
+        if (expansion.expander != null) {
+            td = td.expand(expansion.expander);
+        }
+        for (Evaluator evaluator : expansion.evaluators) {
+            td = td.evaluator(evaluator);
         }
 
-        if (minLevel != -1) td = td.evaluator(Evaluators.fromDepth((int) minLevel));
-        if (maxLevel != -1) td = td.evaluator(Evaluators.toDepth((int) maxLevel));
-
-        if (nodeFilter != null && !nodeFilter.isEmpty()) {
-            List<Node> endNodes = nodeFilter.getOrDefault(END_NODES, Collections.EMPTY_LIST);
-            List<Node> terminatorNodes = nodeFilter.getOrDefault(TERMINATOR_NODES, Collections.EMPTY_LIST);
-            List<Node> denylistNodes = nodeFilter.getOrDefault(DENYLIST_NODES, Collections.EMPTY_LIST);
-            List<Node> allowlistNodes;
+        td = td.uniqueness(uniqueness); // this is how Cypher works !! Uniqueness.RELATIONSHIP_PATH
+        // uniqueness should be set as last on the TraversalDescription
+        return td.traverse(startNodes);
+    }
 
-            if (nodeFilter.containsKey(ALLOWLIST_NODES)) {
-                // need to add to new list since we may need to add to it later
-                // encounter "can't add to abstractList" error if we don't do this
-                allowlistNodes = new ArrayList<>(nodeFilter.get(ALLOWLIST_NODES));
+    /**
+     * The expander and the evaluators of a traversal, built from the config of the procedures
+     */
+    static class Expansion {
+        final PathExpander expander;
+        final List<Evaluator> evaluators = new ArrayList<>();
+
+        Expansion(
+                Iterable<Node> startNodes,
+                String pathFilter,
+                String labelFilter,
+                long minLevel,
+                long maxLevel,
+                Uniqueness uniqueness,
+                boolean bfs,
+                boolean filterStartNode,
+                EnumMap<NodeFilter, List<Node>> nodeFilter,
+                String sequence,
+                boolean beginSequenceAtStart,
+                boolean bidirectional,
+                KernelTransaction ktx) {
+            // based on the pathFilter definition now the possible relationships and directions must be shown
+            List<String> relationshipFilters;
+
+            // if `sequence` is present, it overrides `labelFilter` and `relationshipFilter`
+            if (sequence != null && !sequence.trim().isEmpty()) {
+                String[] sequenceSteps = sequence.split(",");
+                List<String> labelSequenceList = new ArrayList<>();
+                List<String> relSequenceList = new ArrayList<>();
+
+                for (int index = 0; index < sequenceSteps.length; index++) {
+                    List<String> seq =
+                            (beginSequenceAtStart ? index : index - 1) % 2 == 0 ? labelSequenceList : relSequenceList;
+                    seq.add(sequenceSteps[index]);
+                }
+
+                expander = new RelationshipSequenceExpander(relSequenceList, beginSequenceAtStart);
+                relationshipFilters = relSequenceList;
+                evaluators.add(labelSequenceEvaluator(
+                        new LabelSequenceEvaluator(
+                                labelSequenceList, filterStartNode, beginSequenceAtStart, (int) minLevel),
+                        ktx));
             } else {
-                allowlistNodes = Collections.EMPTY_LIST;
-            }
-
-            if (!denylistNodes.isEmpty()) {
-                td = td.evaluator(NodeEvaluators.denylistNodeEvaluator(filterStartNode, denylistNodes));
+                if (pathFilter != null && !pathFilter.trim().isEmpty()) {
+                    expander = new RelationshipSequenceExpander(pathFilter.trim(), beginSequenceAtStart);
+                    relationshipFilters = Arrays.asList(pathFilter.trim().split(","));
+                } else {
+                    expander = null;
+                    relationshipFilters = List.of("");
+                }
+
+                if (labelFilter != null && sequence == null && !labelFilter.trim().isEmpty()) {
+                    evaluators.add(labelSequenceEvaluator(
+                            new LabelSequenceEvaluator(
+                                    labelFilter.trim(), filterStartNode, beginSequenceAtStart, (int) minLevel),
+                            ktx));
+                }
             }
 
-            Evaluator endAndTerminatorNodeEvaluator = NodeEvaluators.endAndTerminatorNodeEvaluator(
-                    filterStartNode, (int) minLevel, endNodes, terminatorNodes);
-            if (endAndTerminatorNodeEvaluator != null) {
-                td = td.evaluator(endAndTerminatorNodeEvaluator);
+            if (minLevel != -1) evaluators.add(Evaluators.fromDepth((int) minLevel));
+            if (maxLevel != -1) evaluators.add(Evaluators.toDepth((int) maxLevel));
+
+            if (nodeFilter != null && !nodeFilter.isEmpty()) {
+                List<Node> endNodes = nodeFilter.getOrDefault(END_NODES, Collections.EMPTY_LIST);
+                List<Node> terminatorNodes = nodeFilter.getOrDefault(TERMINATOR_NODES, Collections.EMPTY_LIST);
+                List<Node> denylistNodes = nodeFilter.getOrDefault(DENYLIST_NODES, Collections.EMPTY_LIST);
+                List<Node> allowlistNodes;
+
+                if (nodeFilter.containsKey(ALLOWLIST_NODES)) {
+                    // need to add to new list since we may need to add to it later
+                    // encounter "can't add to abstractList" error if we don't do this
+                    allowlistNodes = new ArrayList<>(nodeFilter.get(ALLOWLIST_NODES));
+                } else {
+                    allowlistNodes = Collections.EMPTY_LIST;
+                }
+
+                if (!denylistNodes.isEmpty()) {
+                    evaluators.add(NodeEvaluators.denylistNodeEvaluator(filterStartNode, denylistNodes));
+                }
+
+                Evaluator endAndTerminatorNodeEvaluator = NodeEvaluators.endAndTerminatorNodeEvaluator(
+                        filterStartNode, (int) minLevel, endNodes, terminatorNodes);
+                if (endAndTerminatorNodeEvaluator != null) {
+                    evaluators.add(endAndTerminatorNodeEvaluator);
+                }
+
+                if (!allowlistNodes.isEmpty()) {
+                    // ensure endNodes and terminatorNodes are allowlisted
+                    allowlistNodes.addAll(endNodes);
+                    allowlistNodes.addAll(terminatorNodes);
+                    evaluators.add(NodeEvaluators.allowlistNodeEvaluator(filterStartNode, allowlistNodes));
+                }
+
+                // the pruning only keeps the same results if the nodes and relationships of the pruned paths
+                // can't be claimed by a global uniqueness before a later path reaches them
+                boolean pathUniqueness = uniqueness == Uniqueness.NODE_PATH
+                        || uniqueness == Uniqueness.RELATIONSHIP_PATH
+                        || uniqueness == Uniqueness.NONE;
+                if (bidirectional && maxLevel != -1 && (bfs || pathUniqueness)) {
+                    List<Node> targetNodes = new ArrayList<>(endNodes);
+                    targetNodes.addAll(terminatorNodes);
+                    BidirectionalEvaluator bidirectionalEvaluator = targetNodes.isEmpty()
+                            ? null
+                            : BidirectionalEvaluator.of(startNodes, targetNodes, relationshipFilters, (int) maxLevel);
+                    if (bidirectionalEvaluator != null) {
+                        evaluators.add(bidirectionalEvaluator);
+                    }
+                }
             }
+        }
 
-            if (!allowlistNodes.isEmpty()) {
-                // ensure endNodes and terminatorNodes are allowlisted
-                allowlistNodes.addAll(endNodes);
-                allowlistNodes.addAll(terminatorNodes);
-                td = td.evaluator(NodeEvaluators.allowlistNodeEvaluator(filterStartNode, allowlistNodes));
+        /**
+         * The evaluators for another transaction, the label filters read the node labels in that transaction
+         */
+        List<Evaluator> evaluators(KernelTransaction ktx) {
+            List<Evaluator> txEvaluators = new ArrayList<>(evaluators.size());
+            for (Evaluator evaluator : evaluators) {
+                txEvaluators.add(
+                        evaluator instanceof LabelSequenceEvaluator labels ? labels.inTransaction(ktx) : evaluator);
             }
+            return txEvaluators;
         }
 
-        td = td.uniqueness(uniqueness); // this is how Cypher works !! Uniqueness.RELATIONSHIP_PATH
-        // uniqueness should be set as last on the TraversalDescription
-        return td.traverse(startNodes);
+        private static Evaluator labelSequenceEvaluator(LabelSequenceEvaluator evaluator, KernelTransaction ktx) {
+            return ktx == null ? evaluator : evaluator.withLabelTokens(ktx);
+        }
     }
 
     // keys to node filter map
@@ -18,11 +18,12 @@
  */
 package apoc.path;
 
-import apoc.util.collection.Iterables;
-import apoc.util.collection.Iterators;
+import apoc.util.collection.AbstractResourceIterable;
 import apoc.util.collection.NestingResourceIterator;
 import apoc.util.collection.ResourceClosingIterator;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import org.apache.commons.lang3.tuple.Pair;
 import org.neo4j.graphdb.Direction;
@@ -52,26 +53,7 @@ public class RelationshipSequenceExpander implements PathExpander {
     private List<Pair<RelationshipType, Direction>> initialRels = null;
 
     public RelationshipSequenceExpander(String relSequenceString, boolean beginSequenceAtStart) {
-        int index = 0;
-
-        for (String sequenceStep : relSequenceString.split(",")) {
-            sequenceStep = sequenceStep.trim();
-            Iterable<Pair<RelationshipType, Direction>> relDirIterable =
-                    RelationshipTypeAndDirections.parse(sequenceStep);
-
-            List<Pair<RelationshipType, Direction>> stepRels = new ArrayList<>();
-            for (Pair<RelationshipType, Direction> pair : relDirIterable) {
-                stepRels.add(pair);
-            }
-
-            if (!beginSequenceAtStart && index == 0) {
-                initialRels = stepRels;
-            } else {
-                relSequences.add(stepRels);
-            }
-
-            index++;
-        }
+        this(Arrays.asList(relSequenceString.split(",")), beginSequenceAtStart);
     }
 
     public RelationshipSequenceExpander(List<String> relSequenceList, boolean beginSequenceAtStart) {
@@ -109,23 +91,37 @@ public class RelationshipSequenceExpander implements PathExpander {
             stepRels = relSequences.get((initialRels == null ? depth : depth - 1) % relSequences.size());
         }
 
-        return Iterables.asResourceIterable(Iterators.asList(new NestingResourceIterator<>(stepRels.iterator()) {
+        // the relationships are streamed to the traversal, a pair is only iterated once the previous one is exhausted
+        return new AbstractResourceIterable<>() {
             @Override
-            protected ResourceIterator<Relationship> createNestedIterator(Pair<RelationshipType, Direction> entry) {
-                RelationshipType type = entry.getLeft();
-                Direction dir = entry.getRight();
-
-                ResourceIterable<Relationship> relationships1;
-                if (type == null) {
-                    relationships1 = (dir == Direction.BOTH) ? node.getRelationships() : node.getRelationships(dir);
-                } else {
-                    relationships1 =
-                            (dir == Direction.BOTH) ? node.getRelationships(type) : node.getRelationships(dir, type);
-                }
-
-                return ResourceClosingIterator.fromResourceIterable(relationships1);
+            protected ResourceIterator<Relationship> newIterator() {
+                return new NestingResourceIterator<>(stepRels.iterator()) {
+                    @Override
+                    protected ResourceIterator<Relationship> createNestedIterator(
+                            Pair<RelationshipType, Direction> entry) {
+                        return relationships(node, entry.getLeft(), entry.getRight(), stepRels.size() > 1);
+                    }
+                };
             }
-        }));
+        };
+    }
+
+    private static ResourceIterator<Relationship> relationships(
+            Node node, RelationshipType type, Direction dir, boolean checkDegree) {
+        // with several pairs in the step, the degrees (kept per type and direction by the dense nodes)
+        // let us skip the empty pairs without opening a relationship cursor
+        if (checkDegree && (type == null ? node.getDegree(dir) : node.getDegree(type, dir)) == 0) {
+            return ResourceClosingIterator.newResourceIterator(Collections.emptyIterator());
+        }
+
+        ResourceIterable<Relationship> relationships;
+        if (type == null) {
+            relationships = (dir == Direction.BOTH) ? node.getRelationships() : node.getRelationships(dir);
+        } else {
+            relationships = (dir == Direction.BOTH) ? node.getRelationships(type) : node.getRelationships(dir, type);
+        }
+
+        return ResourceClosingIterator.fromResourceIterable(relationships);
     }
 
     @Override
@@ -25,19 +25,23 @@ import static apoc.periodic.PeriodicUtils.wrapTask;
 import static apoc.util.Util.merge;
 import static org.neo4j.graphdb.QueryExecutionType.QueryType;
 
+import apoc.PoolMetrics;
 import apoc.Pools;
 import apoc.periodic.PeriodicUtils.JobInfo;
+import apoc.util.RetryPolicy;
 import apoc.util.Util;
 import apoc.util.collection.Iterables;
 import apoc.util.collection.Iterators;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 import org.apache.commons.lang3.tuple.Pair;
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.QueryStatistics;
 import org.neo4j.graphdb.Result;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.schema.ConstraintDefinition;
@@ -99,6 +103,12 @@ public class Periodic {
         return pools.getJobList().entrySet().stream().map((e) -> e.getKey().update(e.getValue()));
     }
 
+    @Procedure("apoc.periodic.pools")
+    @Description("Returns the queue depth, active tasks, blocked submissions and task latencies of the APOC job pools.")
+    public Stream<PoolMetrics.PoolInfo> pools() {
+        return pools.getMetrics();
+    }
+
     @Procedure(name = "apoc.periodic.commit", mode = Mode.WRITE)
     @Description("Runs the given statement in separate batched transactions.")
     public Stream<RundownResult> commit(
@@ -196,10 +206,17 @@ public class Periodic {
 
     private long executeNumericResultStatement(
             @Name("statement") String statement, @Name("params") Map<String, Object> parameters) {
-        return db.executeTransactionally(statement, parameters, result -> {
-            String column = Iterables.single(result.columns());
-            return result.columnAs(column).stream().mapToLong(o -> (long) o).sum();
-        });
+        // only the transient errors are retried, a batch that failed otherwise is rolled back and fails the commit
+        return Util.retryInTx(
+                log,
+                db,
+                tx -> {
+                    Result result = tx.execute(statement, parameters);
+                    String column = Iterables.single(result.columns());
+                    return result.columnAs(column).stream().mapToLong(o -> (long) o).sum();
+                },
+                RetryPolicy.DEFAULT,
+                retry -> {});
     }
 
     @Procedure("apoc.periodic.cancel")
@@ -303,9 +320,14 @@ public class Periodic {
             throw new IllegalArgumentException("concurrency parameter must be > 0");
         }
         boolean parallel = Util.toBoolean(config.getOrDefault("parallel", false));
-        long retries = Util.toLong(config.getOrDefault(
-                "retries", 0)); // todo sleep/delay or push to end of batch to try again or immediate ?
+        RetryPolicy retryPolicy = RetryPolicy.fromConfig(config);
         int failedParams = Util.toInteger(config.getOrDefault("failedParams", -1));
+        IterateScheduler scheduler = IterateScheduler.fromConfig(config, (int) batchSize, concurrency, parallel);
+        String partitionBy = (String) config.get("partitionBy");
+        if (partitionBy != null && (!parallel || scheduler.isAdaptive())) {
+            throw new IllegalArgumentException(
+                    "partitionBy requires parallel: true and can't be used with adaptive: true");
+        }
 
         BatchMode batchMode = BatchMode.fromConfig(config);
         Map<String, Object> params = (Map<String, Object>) config.getOrDefault("params", Collections.emptyMap());
@@ -322,22 +344,37 @@ public class Periodic {
                         "Starting periodic iterate from `%s` operation using iteration `%s` in separate thread with id: `%s`",
                         cypherIterate, cypherAction, periodicId);
             }
+            BiFunction<Transaction, Map<String, Object>, QueryStatistics> consumer = (tx, p) -> {
+                final Result r = tx.execute(innerStatement, merge(params, p));
+                Iterators.count(r); // XXX: consume all results
+                return r.getQueryStatistics();
+            };
+            if (partitionBy != null) {
+                return PeriodicUtils.iterateAndExecutePartitionedInSeparateThread(
+                        db,
+                        terminationGuard,
+                        log,
+                        pools,
+                        (int) batchSize,
+                        iterateList,
+                        retryPolicy,
+                        result,
+                        consumer,
+                        concurrency,
+                        failedParams,
+                        periodicId,
+                        PeriodicUtils.partitionKey(partitionBy, result.columns()));
+            }
             return PeriodicUtils.iterateAndExecuteBatchedInSeparateThread(
                     db,
                     terminationGuard,
                     log,
                     pools,
-                    (int) batchSize,
-                    parallel,
+                    scheduler,
                     iterateList,
-                    retries,
+                    retryPolicy,
                     result,
-                    (tx, p) -> {
-                        final Result r = tx.execute(innerStatement, merge(params, p));
-                        Iterators.count(r); // XXX: consume all results
-                        return r.getQueryStatistics();
-                    },
-                    concurrency,
+                    consumer,
                     failedParams,
                     periodicId);
         }
@@ -27,6 +27,7 @@ import apoc.Pools;
 import apoc.algo.Cover;
 import apoc.refactor.util.PropertiesManager;
 import apoc.refactor.util.RefactorConfig;
+import apoc.refactor.util.RelationshipMerger;
 import apoc.result.GraphResult;
 import apoc.result.NodeResult;
 import apoc.result.RelationshipResult;
@@ -317,14 +318,9 @@ public class GraphRefactoring {
         nodesSet.stream().sorted(Comparator.comparing(Node::getElementId)).forEach(tx::acquireWriteLock);
 
         final Node first = nodes.get(0);
-        final List<String> existingSelfRelIds = conf.isPreservingExistingSelfRels()
-                ? StreamSupport.stream(first.getRelationships().spliterator(), false)
-                        .filter(Util::isSelfRel)
-                        .map(Entity::getElementId)
-                        .collect(Collectors.toList())
-                : Collections.emptyList();
-
-        nodesSet.stream().skip(1).forEach(node -> mergeNodes(node, first, conf, existingSelfRelIds));
+        try (RelationshipMerger relationshipMerger = new RelationshipMerger((InternalTransaction) tx, first, conf)) {
+            nodesSet.stream().skip(1).forEach(node -> mergeNodes(node, first, conf, relationshipMerger));
+        }
         return Stream.of(new NodeResult(first));
     }
 
@@ -637,16 +633,12 @@ public class GraphRefactoring {
         });
     }
 
-    private void mergeNodes(Node source, Node target, RefactorConfig conf, List<String> excludeRelIds) {
+    private void mergeNodes(Node source, Node target, RefactorConfig conf, RelationshipMerger relationshipMerger) {
         try {
             Map<String, Object> properties = source.getAllProperties();
             final Iterable<Label> labels = source.getLabels();
 
-            copyRelationships(source, target, true, conf.isCreatingNewSelfRel());
-            if (conf.getMergeRelsAllowed()) {
-                mergeRelationshipsWithSameTypeAndDirection(target, conf, Direction.OUTGOING, excludeRelIds);
-                mergeRelationshipsWithSameTypeAndDirection(target, conf, Direction.INCOMING, excludeRelIds);
-            }
+            relationshipMerger.moveRelationships(source);
             source.delete();
             labels.forEach(target::addLabel);
             PropertiesManager.mergeProperties(properties, target, conf);
@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.refactor.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.neo4j.exceptions.KernelException;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.internal.kernel.api.CursorFactory;
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.PropertyCursor;
+import org.neo4j.internal.kernel.api.RelationshipTraversalCursor;
+import org.neo4j.internal.kernel.api.Write;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.storageengine.api.PropertySelection;
+import org.neo4j.storageengine.api.RelationshipSelection;
+import org.neo4j.values.storable.Value;
+
+/**
+ * Moves the relationships of the nodes merged by `apoc.refactor.mergeNodes` onto the target node.
+ *
+ * The relationships of each merged node are read with kernel cursors one type and direction at a time,
+ * and copied with their property values as they are stored, without going through property maps.
+ * With `mergeRels` the relationships of the target are indexed once by type, start and end node,
+ * so a moved relationship is folded into the one it duplicates instead of being created and merged afterwards,
+ * and the target isn't scanned again for each merged node.
+ */
+public class RelationshipMerger implements AutoCloseable {
+    private static final Direction[] DIRECTIONS = {Direction.OUTGOING, Direction.INCOMING};
+
+    private final InternalTransaction tx;
+    private final KernelTransaction ktx;
+    private final RefactorConfig config;
+    private final long target;
+    private final NodeCursor nodeCursor;
+    private final RelationshipTraversalCursor relCursor;
+    private final PropertyCursor propertyCursor;
+    // the merge mode of each property key, as the config matches the names with regular expressions
+    private final Map<Integer, String> mergeModes = new HashMap<>();
+    // the relationships of the target by type, start and end node, when merging them
+    private Map<RelKey, Long> targetRels;
+
+    public RelationshipMerger(InternalTransaction tx, Node target, RefactorConfig config) {
+        this.tx = tx;
+        this.ktx = tx.kernelTransaction();
+        this.config = config;
+        this.target = target.getId();
+        CursorFactory cursors = ktx.cursors();
+        this.nodeCursor = cursors.allocateNodeCursor(ktx.cursorContext());
+        this.relCursor = cursors.allocateRelationshipTraversalCursor(ktx.cursorContext());
+        this.propertyCursor = cursors.allocatePropertyCursor(ktx.cursorContext(), ktx.memoryTracker());
+    }
+
+    /**
+     * Moves the relationships of the node onto the target and deletes them
+     */
+    public void moveRelationships(Node source) {
+        try {
+            if (config.getMergeRelsAllowed() && targetRels == null) {
+                indexTargetRelationships();
+            }
+            long sourceId = source.getId();
+            ktx.dataRead().singleNode(sourceId, nodeCursor);
+            if (!nodeCursor.next()) {
+                return;
+            }
+            int[] types = nodeCursor.relationshipTypes();
+            for (int type : types) {
+                for (Direction direction : DIRECTIONS) {
+                    ktx.dataRead().singleNode(sourceId, nodeCursor);
+                    nodeCursor.next();
+                    nodeCursor.relationships(relCursor, RelationshipSelection.selection(type, direction));
+                    moveRelationships(sourceId, type, direction);
+                }
+            }
+        } catch (KernelException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void moveRelationships(long sourceId, int type, Direction direction) throws KernelException {
+        Write write = ktx.dataWrite();
+        while (relCursor.next()) {
+            long relId = relCursor.relationshipReference();
+            long start = relCursor.sourceNodeReference();
+            long end = relCursor.targetNodeReference();
+            boolean selfRel = start == end;
+            if (selfRel && direction == Direction.INCOMING) {
+                // already moved with the outgoing ones
+                continue;
+            }
+            if (targetRels != null) {
+                // a relationship between the node and the target
+                targetRels.remove(new RelKey(type, start, end), relId);
+            }
+            if (!selfRel || config.isCreatingNewSelfRel()) {
+                moveRelationship(write, type, start == sourceId ? target : start, end == sourceId ? target : end);
+            }
+            write.relationshipDelete(relId);
+        }
+    }
+
+    private void moveRelationship(Write write, int type, long start, long end) throws KernelException {
+        if (targetRels == null) {
+            copyProperties(write, write.relationshipCreate(start, type, end));
+            return;
+        }
+        if (start == end && !config.isCreatingNewSelfRel()) {
+            // the merge would delete it
+            return;
+        }
+        RelKey key = new RelKey(type, start, end);
+        Long existing = targetRels.get(key);
+        if (existing == null) {
+            long created = write.relationshipCreate(start, type, end);
+            copyProperties(write, created);
+            targetRels.put(key, created);
+        } else {
+            mergeProperties(write, existing);
+        }
+    }
+
+    /**
+     * Merges the duplicated relationships the target already has, as with `apoc.refactor.mergeRelationships`
+     */
+    private void indexTargetRelationships() throws KernelException {
+        targetRels = new HashMap<>();
+        List<long[]> duplicates = new ArrayList<>();
+        List<Long> selfRels = new ArrayList<>();
+        ktx.dataRead().singleNode(target, nodeCursor);
+        if (!nodeCursor.next()) {
+            return;
+        }
+        nodeCursor.relationships(relCursor, RelationshipSelection.selection(Direction.BOTH));
+        while (relCursor.next()) {
+            long relId = relCursor.relationshipReference();
+            long start = relCursor.sourceNodeReference();
+            long end = relCursor.targetNodeReference();
+            if (start == end) {
+                if (config.isPreservingExistingSelfRels()) {
+                    // neither merged nor deleted
+                    continue;
+                }
+                if (!config.isCreatingNewSelfRel()) {
+                    selfRels.add(relId);
+                    continue;
+                }
+            }
+            Long first = targetRels.putIfAbsent(new RelKey(relCursor.type(), start, end), relId);
+            if (first != null) {
+                duplicates.add(new long[] {relId, first});
+            }
+        }
+        Write write = ktx.dataWrite();
+        for (long selfRel : selfRels) {
+            write.relationshipDelete(selfRel);
+        }
+        for (long[] duplicate : duplicates) {
+            Relationship relationship = tx.getRelationshipById(duplicate[0]);
+            RefactorUtil.mergeRels(relationship, tx.getRelationshipById(duplicate[1]), true, config);
+        }
+    }
+
+    private void copyProperties(Write write, long relId) throws KernelException {
+        relCursor.properties(propertyCursor, PropertySelection.ALL_PROPERTIES);
+        while (propertyCursor.next()) {
+            write.relationshipSetProperty(relId, propertyCursor.propertyKey(), propertyCursor.propertyValue());
+        }
+    }
+
+    /**
+     * Merges the properties of the current relationship into the existing one, as {@link PropertiesManager} does
+     */
+    private void mergeProperties(Write write, long relId) throws KernelException {
+        Relationship existing = null;
+        relCursor.properties(propertyCursor, PropertySelection.ALL_PROPERTIES);
+        while (propertyCursor.next()) {
+            int key = propertyCursor.propertyKey();
+            Value value = propertyCursor.propertyValue();
+            String mergeMode = mergeMode(key);
+            switch (mergeMode) {
+                case RefactorConfig.OVERWRITE, RefactorConfig.OVERRIDE -> write.relationshipSetProperty(
+                        relId, key, value);
+                case RefactorConfig.DISCARD, RefactorConfig.COMBINE -> {
+                    if (existing == null) {
+                        existing = tx.getRelationshipById(relId);
+                    }
+                    String name = ktx.tokenRead().propertyKeyName(key);
+                    if (RefactorConfig.COMBINE.equals(mergeMode)) {
+                        PropertiesManager.combineProperties(Map.entry(name, value.asObjectCopy()), existing, config);
+                    } else if (!existing.hasProperty(name)) {
+                        write.relationshipSetProperty(relId, key, value);
+                    }
+                }
+            }
+        }
+    }
+
+    private String mergeMode(int key) throws KernelException {
+        String mergeMode = mergeModes.get(key);
+        if (mergeMode == null) {
+            mergeMode = config.getMergeMode(ktx.tokenRead().propertyKeyName(key), true);
+            mergeModes.put(key, mergeMode);
+        }
+        return mergeMode;
+    }
+
+    @Override
+    public void close() {
+        propertyCursor.close();
+        relCursor.close();
+        nodeCursor.close();
+    }
+
+    private static class RelKey {
+        private final int type;
+        private final long start;
+        private final long end;
+
+        RelKey(int type, long start, long end) {
+            this.type = type;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            RelKey relKey = (RelKey) o;
+
+            return type == relKey.type && start == relKey.start && end == relKey.end;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * type + Long.hashCode(start)) + Long.hashCode(end);
+        }
+    }
+}
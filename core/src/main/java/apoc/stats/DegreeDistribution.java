@@ -23,17 +23,25 @@ import static org.neo4j.internal.kernel.api.TokenRead.ANY_RELATIONSHIP_TYPE;
 
 import apoc.Pools;
 import apoc.path.RelationshipTypeAndDirections;
+import apoc.util.Util;
 import apoc.util.kernel.MultiThreadedGlobalGraphOperations;
+import apoc.util.kernel.MultiThreadedGlobalGraphOperations.ScanOptions;
+import apoc.util.kernel.MultiThreadedGlobalGraphOperations.ScanWorker;
+import apoc.util.kernel.ScanSource;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
-import org.HdrHistogram.AtomicHistogram;
+import org.HdrHistogram.Histogram;
 import org.apache.commons.lang3.tuple.Pair;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.internal.kernel.api.CursorFactory;
 import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.PropertyCursor;
 import org.neo4j.internal.kernel.api.Read;
+import org.neo4j.internal.kernel.api.RelationshipTraversalCursor;
 import org.neo4j.internal.kernel.api.TokenRead;
 import org.neo4j.kernel.api.KernelTransaction;
 import org.neo4j.kernel.internal.GraphDatabaseAPI;
@@ -42,7 +50,13 @@ import org.neo4j.procedure.Description;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.NotThreadSafe;
 import org.neo4j.procedure.Procedure;
+import org.neo4j.procedure.TerminationGuard;
+import org.neo4j.storageengine.api.PropertySelection;
+import org.neo4j.storageengine.api.RelationshipSelection;
 import org.neo4j.token.api.NamedToken;
+import org.neo4j.values.storable.IntegralValue;
+import org.neo4j.values.storable.NumberValue;
+import org.neo4j.values.storable.Value;
 
 /**
  * @author mh
@@ -51,13 +65,14 @@ import org.neo4j.token.api.NamedToken;
 public class DegreeDistribution {
 
     private static final int BATCHSIZE = 10_000;
+    public static final String SAMPLING_RATE = "samplingRate";
 
     public static class DegreeStats {
         public final String typeName;
         public final long total;
         private final int type;
         private final Direction direction;
-        private transient AtomicHistogram histogram;
+        private final ThreadHistograms histograms;
 
         public void computeDegree(NodeCursor nodeCursor) {
             int degree = DegreeUtil.degree(nodeCursor, type, direction);
@@ -77,14 +92,16 @@ public class DegreeDistribution {
             this.type = type;
             this.direction = direction;
             this.total = total;
-            this.histogram = new AtomicHistogram(total, 3);
+            // a degree never exceeds the number of relationships
+            this.histograms = new ThreadHistograms(() -> new Histogram(Math.max(2, total), 3));
         }
 
         public void record(long value) {
-            histogram.recordValue(value);
+            histograms.record(value);
         }
 
         public Result done() {
+            Histogram histogram = histograms.merge();
             Result result = new Result();
             result.type = typeName;
             result.direction = direction.name();
@@ -98,8 +115,96 @@ public class DegreeDistribution {
             result.p95 = histogram.getValueAtPercentile(95);
             result.p99 = histogram.getValueAtPercentile(99);
             result.p999 = histogram.getValueAtPercentile(99.9);
-            this.histogram.reset();
-            this.histogram = null;
+            return result;
+        }
+    }
+
+    public static class PropertyStats {
+        public final String typeName;
+        public final String propertyKey;
+        public final long total;
+        private final int type;
+        private final int property;
+        private final ThreadHistograms histograms = new ThreadHistograms(() -> new Histogram(3));
+
+        public static class Result {
+            public String type;
+            public String property;
+            public long total;
+            public long count;
+            public long p50, p75, p90, p95, p99, p999, max, min;
+            public double mean;
+        }
+
+        public PropertyStats(String typeName, int type, String propertyKey, int property, long total) {
+            this.typeName = typeName;
+            this.type = type;
+            this.propertyKey = propertyKey;
+            this.property = property;
+            this.total = total;
+        }
+
+        /**
+         * A worker of the scan recording the values of the outgoing relationships of the sampled nodes,
+         * so that each relationship is seen once, with cursors allocated once for all its nodes
+         */
+        public ScanWorker<NodeCursor> worker(KernelTransaction ktx, double samplingRate) {
+            CursorFactory cursors = ktx.cursors();
+            RelationshipTraversalCursor relationships =
+                    cursors.allocateRelationshipTraversalCursor(ktx.cursorContext());
+            PropertyCursor properties = cursors.allocatePropertyCursor(ktx.cursorContext(), ktx.memoryTracker());
+            return new ScanWorker<>() {
+                @Override
+                public void accept(NodeCursor nodeCursor) {
+                    if (!isSampled(nodeCursor.nodeReference(), samplingRate)) {
+                        return;
+                    }
+                    nodeCursor.relationships(relationships, RelationshipSelection.selection(type, Direction.OUTGOING));
+                    while (relationships.next()) {
+                        relationships.properties(properties, PropertySelection.selection(property));
+                        if (properties.next()) {
+                            record(properties.propertyValue());
+                        }
+                    }
+                }
+
+                @Override
+                public void close() {
+                    relationships.close();
+                    properties.close();
+                }
+            };
+        }
+
+        /**
+         * Only the non-negative numbers are recorded, the floating point ones rounded
+         */
+        private void record(Value value) {
+            if (value instanceof NumberValue number) {
+                long longValue =
+                        number instanceof IntegralValue ? number.longValue() : Math.round(number.doubleValue());
+                if (longValue >= 0) {
+                    histograms.record(longValue);
+                }
+            }
+        }
+
+        public Result done() {
+            Histogram histogram = histograms.merge();
+            Result result = new Result();
+            result.type = typeName;
+            result.property = propertyKey;
+            result.total = total;
+            result.count = histogram.getTotalCount();
+            result.max = histogram.getMaxValue();
+            result.min = histogram.getMinValue();
+            result.mean = histogram.getMean();
+            result.p50 = histogram.getValueAtPercentile(50);
+            result.p75 = histogram.getValueAtPercentile(75);
+            result.p90 = histogram.getValueAtPercentile(90);
+            result.p95 = histogram.getValueAtPercentile(95);
+            result.p99 = histogram.getValueAtPercentile(99);
+            result.p999 = histogram.getValueAtPercentile(99.9);
             return result;
         }
     }
@@ -113,21 +218,79 @@ public class DegreeDistribution {
     @Context
     public Pools pools;
 
+    @Context
+    public TerminationGuard terminationGuard;
+
     @NotThreadSafe
     @Procedure("apoc.stats.degrees")
     @Description(
             "Returns the percentile groupings of the degrees on the `NODE` values connected by the given `RELATIONSHIP` types.")
-    public Stream<DegreeStats.Result> degrees(@Name(value = "relTypes", defaultValue = "") String types) {
+    public Stream<DegreeStats.Result> degrees(
+            @Name(value = "relTypes", defaultValue = "") String types,
+            @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
         List<DegreeStats> stats = prepareStats(types);
+        double samplingRate = samplingRate(config);
 
-        MultiThreadedGlobalGraphOperations.forAllNodes(
-                db,
-                pools.getDefaultExecutorService(),
-                BATCHSIZE,
-                nodeCursor -> stats.forEach((s) -> s.computeDegree(nodeCursor)));
+        MultiThreadedGlobalGraphOperations.scan(
+                db, pools.getCpuExecutorService(), ScanSource.allNodes(), scanOptions(), (workerTx, nodeCursor) -> {
+                    if (isSampled(nodeCursor.nodeReference(), samplingRate)) {
+                        stats.forEach((s) -> s.computeDegree(nodeCursor));
+                    }
+                });
         return stats.stream().map(DegreeStats::done);
     }
 
+    @NotThreadSafe
+    @Procedure("apoc.stats.relationshipPropertyDistribution")
+    @Description(
+            "Returns the percentile groupings of a numeric property on the `RELATIONSHIP` values of the given type.")
+    public Stream<PropertyStats.Result> relationshipPropertyDistribution(
+            @Name("relType") String relType,
+            @Name("propertyKey") String propertyKey,
+            @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        TokenRead tokenRead = tx.tokenRead();
+        int type = tokenRead.relationshipType(relType);
+        int property = tokenRead.propertyKey(propertyKey);
+        long total = type == TokenRead.NO_TOKEN ? 0 : tx.dataRead().countsForRelationship(ANY_LABEL, type, ANY_LABEL);
+        PropertyStats stats = new PropertyStats(relType, type, propertyKey, property, total);
+        if (total > 0 && property != TokenRead.NO_TOKEN) {
+            double samplingRate = samplingRate(config);
+            MultiThreadedGlobalGraphOperations.scanPerWorker(
+                    db,
+                    pools.getCpuExecutorService(),
+                    ScanSource.allNodes(),
+                    scanOptions(),
+                    workerTx -> stats.worker(workerTx.kernelTransaction(), samplingRate));
+        }
+        return Stream.of(stats.done());
+    }
+
+    private ScanOptions scanOptions() {
+        return new ScanOptions().batchSize(BATCHSIZE).terminationGuard(terminationGuard);
+    }
+
+    private static double samplingRate(Map<String, Object> config) {
+        double samplingRate = Util.toDouble(config == null ? null : config.getOrDefault(SAMPLING_RATE, 1));
+        if (samplingRate <= 0 || samplingRate > 1) {
+            throw new IllegalArgumentException("The " + SAMPLING_RATE + " must be in (0, 1], but is " + samplingRate);
+        }
+        return samplingRate;
+    }
+
+    /**
+     * Picks the nodes by a hash of their id, so a sample doesn't depend on the threads scanning the nodes
+     */
+    static boolean isSampled(long nodeId, double samplingRate) {
+        if (samplingRate >= 1) {
+            return true;
+        }
+        long hash = nodeId * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 32;
+        hash *= 0xD6E8FEB86659FD93L;
+        hash ^= hash >>> 32;
+        return (hash >>> 11) * 0x1.0p-53 < samplingRate;
+    }
+
     public List<DegreeStats> prepareStats(String types) {
         List<DegreeStats> stats = new ArrayList<>();
         TokenRead tokenRead = tx.tokenRead();
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.stats;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import org.HdrHistogram.Histogram;
+
+/**
+ * One histogram per recording thread, merged once the recording is over,
+ * so the scan threads never contend on the same counts.
+ */
+class ThreadHistograms {
+    private final Supplier<Histogram> factory;
+    private final Map<Thread, Histogram> histograms = new ConcurrentHashMap<>();
+
+    ThreadHistograms(Supplier<Histogram> factory) {
+        this.factory = factory;
+    }
+
+    void record(long value) {
+        histograms.computeIfAbsent(Thread.currentThread(), t -> factory.get()).recordValue(value);
+    }
+
+    /**
+     * @return the sum of the histograms of all the threads, which are released
+     */
+    Histogram merge() {
+        Histogram merged = factory.get();
+        histograms.values().forEach(merged::add);
+        histograms.clear();
+        return merged;
+    }
+}
@@ -138,6 +138,13 @@ public class Trigger {
                         (Boolean) e.getValue().getOrDefault("paused", false)));
     }
 
+    @Admin
+    @Procedure(name = "apoc.trigger.afterAsyncMetrics", mode = Mode.READ)
+    @Description("Returns the queue depth, lag and counters of the afterAsync triggers for the session database.")
+    public Stream<TriggerAsyncMetrics> afterAsyncMetrics() {
+        return Stream.of(triggerHandler.asyncMetrics());
+    }
+
     @Admin
     @Deprecated
     @Procedure(name = "apoc.trigger.pause", mode = Mode.WRITE, deprecatedBy = "apoc.trigger.stop")
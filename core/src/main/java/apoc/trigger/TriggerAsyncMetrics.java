@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.trigger;
+
+public class TriggerAsyncMetrics {
+    public final String database;
+    public final boolean running;
+    public final long queueDepth;
+    public final long queueCapacity;
+    public final long batchSize;
+    public final long enqueued;
+    public final long processed;
+    public final long failed;
+    public final long dropped;
+    public final long executions;
+    public final long lastLagMillis;
+    public final long maxLagMillis;
+    public final long oldestPendingMillis;
+
+    public TriggerAsyncMetrics(
+            String database,
+            boolean running,
+            long queueDepth,
+            long queueCapacity,
+            long batchSize,
+            long enqueued,
+            long processed,
+            long failed,
+            long dropped,
+            long executions,
+            long lastLagMillis,
+            long maxLagMillis,
+            long oldestPendingMillis) {
+        this.database = database;
+        this.running = running;
+        this.queueDepth = queueDepth;
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+        this.enqueued = enqueued;
+        this.processed = processed;
+        this.failed = failed;
+        this.dropped = dropped;
+        this.executions = executions;
+        this.lastLagMillis = lastLagMillis;
+        this.maxLagMillis = maxLagMillis;
+        this.oldestPendingMillis = oldestPendingMillis;
+    }
+}
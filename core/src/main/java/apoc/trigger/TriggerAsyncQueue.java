@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.trigger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.neo4j.logging.Log;
+
+/**
+ * Pipeline of the `afterAsync` triggers of a database.
+ *
+ * The committed transactions are queued, up to `capacity` of them. When the queue is full the committing thread
+ * waits until there is room, so that the slow triggers apply backpressure to the commits instead of losing work.
+ * With an `offerTimeoutMillis` >= 0, it only waits that long and then drops the transaction with a warning.
+ * A dedicated thread takes up to `batchSize` queued transactions at a time, merges the {@link TriggerMetadata}
+ * of the transactions matched by the same trigger and executes each trigger once per batch,
+ * so the triggers see the changes in commit order and a burst of small transactions turns into a few executions.
+ */
+class TriggerAsyncQueue {
+    static final int DEFAULT_CAPACITY = 10_000;
+    static final int DEFAULT_BATCH_SIZE = 100;
+    // wait for room in the queue, without dropping
+    static final long DEFAULT_OFFER_TIMEOUT_MILLIS = -1;
+
+    private static final long POLL_MILLIS = 100;
+    private static final long STOP_TIMEOUT_MILLIS = 10_000;
+
+    static class Execution {
+        final TriggerDispatchIndex.Entry trigger;
+        final TriggerMetadata metadata;
+
+        Execution(TriggerDispatchIndex.Entry trigger, TriggerMetadata metadata) {
+            this.trigger = trigger;
+            this.metadata = metadata;
+        }
+    }
+
+    private static class Pending {
+        final List<TriggerDispatchIndex.Entry> triggers;
+        final TriggerMetadata metadata;
+        final long queuedAt;
+
+        Pending(List<TriggerDispatchIndex.Entry> triggers, TriggerMetadata metadata, long queuedAt) {
+            this.triggers = triggers;
+            this.metadata = metadata;
+            this.queuedAt = queuedAt;
+        }
+    }
+
+    private final String databaseName;
+    private final Log log;
+    private final int batchSize;
+    private final long offerTimeoutMillis;
+    private final Consumer<List<Execution>> executor;
+    private final BlockingQueue<Pending> queue;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong lastLagMillis = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread worker;
+
+    TriggerAsyncQueue(
+            String databaseName,
+            Log log,
+            int capacity,
+            int batchSize,
+            long offerTimeoutMillis,
+            Consumer<List<Execution>> executor) {
+        this.databaseName = databaseName;
+        this.log = log;
+        this.batchSize = Math.max(1, batchSize);
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.executor = executor;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    }
+
+    synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::run, "apoc-trigger-afterAsync-" + databaseName);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Executes what is still queued, waiting at most {@link #STOP_TIMEOUT_MILLIS}
+     */
+    synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            worker.join(STOP_TIMEOUT_MILLIS);
+            if (worker.isAlive()) {
+                worker.interrupt();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        worker = null;
+    }
+
+    /**
+     * Queues a committed transaction, waiting while the queue is full, at most `offerTimeoutMillis` if it's >= 0.
+     * When the queue isn't running, the triggers are executed by the calling thread.
+     */
+    void add(List<TriggerDispatchIndex.Entry> triggers, TriggerMetadata metadata) {
+        Pending pending = new Pending(triggers, metadata, System.currentTimeMillis());
+        if (!running) {
+            enqueued.incrementAndGet();
+            execute(List.of(pending));
+            return;
+        }
+        try {
+            if (offerTimeoutMillis < 0) {
+                queue.put(pending);
+                enqueued.incrementAndGet();
+            } else if (queue.offer(pending, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                enqueued.incrementAndGet();
+            } else {
+                dropped.incrementAndGet();
+                log.warn(
+                        "The afterAsync queue of the database %s is full, skipping %s."
+                                + " Increase apoc.trigger.afterAsync.queueCapacity if the triggers can't keep up",
+                        databaseName,
+                        triggers);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dropped.incrementAndGet();
+            log.warn("Interrupted while queueing the afterAsync triggers %s", triggers);
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                execute(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void execute(List<Pending> batch) {
+        // the transactions of each trigger, in commit order, the triggers in order of first appearance
+        Map<TriggerDispatchIndex.Entry, List<TriggerMetadata>> byTrigger = new LinkedHashMap<>();
+        for (Pending pending : batch) {
+            for (TriggerDispatchIndex.Entry trigger : pending.triggers) {
+                byTrigger.computeIfAbsent(trigger, k -> new ArrayList<>()).add(pending.metadata);
+            }
+        }
+        List<Execution> merged = new ArrayList<>(byTrigger.size());
+        byTrigger.forEach(
+                (trigger, metadata) -> merged.add(new Execution(trigger, TriggerMetadata.merge(metadata))));
+        try {
+            executor.accept(merged);
+            executions.addAndGet(merged.size());
+        } catch (Exception e) {
+            failed.addAndGet(batch.size());
+            log.error(
+                    "Error executing the afterAsync triggers " + byTrigger.keySet() + " for " + batch.size()
+                            + " transactions",
+                    e);
+        } finally {
+            processed.addAndGet(batch.size());
+            long lag = Math.max(0, System.currentTimeMillis() - batch.get(0).queuedAt);
+            lastLagMillis.set(lag);
+            maxLagMillis.accumulateAndGet(lag, Math::max);
+        }
+    }
+
+    TriggerAsyncMetrics metrics() {
+        Pending oldest = queue.peek();
+        long oldestPendingMillis = oldest == null ? 0 : Math.max(0, System.currentTimeMillis() - oldest.queuedAt);
+        return new TriggerAsyncMetrics(
+                databaseName,
+                running,
+                queue.size(),
+                queue.remainingCapacity() + queue.size(),
+                batchSize,
+                enqueued.get(),
+                processed.get(),
+                failed.get(),
+                dropped.get(),
+                executions.get(),
+                lastLagMillis.get(),
+                maxLagMillis.get(),
+                oldestPendingMillis);
+    }
+}
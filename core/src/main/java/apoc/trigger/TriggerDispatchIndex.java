@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.trigger;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.event.LabelEntry;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+
+/**
+ * Dispatch table of the installed triggers, built once per snapshot of the triggers.
+ *
+ * The active (i.e. not paused) triggers are grouped by phase, and the ones with a filter in their selector
+ * (`labels`, `relTypes` and `propertyKeys`, all of which must be satisfied) are indexed by the names they care about,
+ * so that a transaction touching none of them doesn't pay for the trigger metadata nor the trigger execution.
+ */
+class TriggerDispatchIndex {
+    static final String LABELS = "labels";
+    static final String REL_TYPES = "relTypes";
+    static final String PROPERTY_KEYS = "propertyKeys";
+
+    static final TriggerDispatchIndex EMPTY = new TriggerDispatchIndex(Map.of());
+
+    private static final BitSet EMPTY_BITS = new BitSet();
+
+    static class Entry {
+        final String name;
+        final String statement;
+        final Map<String, Object> params;
+
+        Entry(String name, String statement, Map<String, Object> params) {
+            this.name = name;
+            this.statement = statement;
+            this.params = params;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private static class PhaseIndex {
+        private final List<Entry> entries = new ArrayList<>();
+        private final BitSet unfiltered = new BitSet();
+        // the filtered triggers without a filter of the kind, which that kind of filter always lets through
+        private final BitSet noLabels = new BitSet();
+        private final BitSet noRelTypes = new BitSet();
+        private final BitSet noPropertyKeys = new BitSet();
+        private final Map<String, BitSet> byLabel = new HashMap<>();
+        private final Map<String, BitSet> byRelType = new HashMap<>();
+        private final Map<String, BitSet> byPropertyKey = new HashMap<>();
+
+        void add(Entry entry, Map<String, Object> selector) {
+            int ordinal = entries.size();
+            entries.add(entry);
+            Set<String> labels = names(selector, LABELS);
+            Set<String> relTypes = names(selector, REL_TYPES);
+            Set<String> propertyKeys = names(selector, PROPERTY_KEYS);
+            if (labels.isEmpty() && relTypes.isEmpty() && propertyKeys.isEmpty()) {
+                unfiltered.set(ordinal);
+                return;
+            }
+            noLabels.set(ordinal, labels.isEmpty());
+            noRelTypes.set(ordinal, relTypes.isEmpty());
+            noPropertyKeys.set(ordinal, propertyKeys.isEmpty());
+            labels.forEach(label -> byLabel.computeIfAbsent(label, k -> new BitSet()).set(ordinal));
+            relTypes.forEach(type -> byRelType.computeIfAbsent(type, k -> new BitSet()).set(ordinal));
+            propertyKeys.forEach(key -> byPropertyKey.computeIfAbsent(key, k -> new BitSet()).set(ordinal));
+        }
+
+        /**
+         * A filtered trigger matches if the transaction satisfies each of its filters:
+         * `labels` a changed node (i.e. created, deleted, with a label or a property changed) with one of the labels,
+         * `relTypes` a created or deleted relationship, or a relationship with a property changed, of one of the types,
+         * and `propertyKeys` a changed property with one of the keys, of an entity passing the other filters.
+         */
+        List<Entry> matching(TransactionData txData) {
+            BitSet matching = (BitSet) unfiltered.clone();
+            if (matching.cardinality() < entries.size()) {
+                Matcher matcher = new Matcher();
+                matcher.match(txData);
+                matching.or(matcher.matching());
+            }
+            if (matching.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<Entry> result = new ArrayList<>(matching.cardinality());
+            matching.stream().forEach(ordinal -> result.add(entries.get(ordinal)));
+            return result;
+        }
+
+        /**
+         * The filters satisfied by the changes of one transaction
+         */
+        private class Matcher {
+            private final BitSet labelsMatched = new BitSet();
+            private final BitSet relTypesMatched = new BitSet();
+            private final BitSet propertyKeysMatched = new BitSet();
+            // the triggers whose labels filter each changed node passes
+            private final Map<String, BitSet> nodeLabelTriggers = new HashMap<>();
+            // the same from the assigned and removed labels, the only labels left of a deleted node
+            private final Map<String, BitSet> labelEntryTriggers = new HashMap<>();
+
+            void match(TransactionData txData) {
+                if (!byLabel.isEmpty()) {
+                    // the labels of the created and deleted nodes are reported as assigned and removed
+                    matchLabels(txData.assignedLabels());
+                    matchLabels(txData.removedLabels());
+                }
+                if (!byRelType.isEmpty()) {
+                    matchRelTypes(txData.createdRelationships());
+                    matchRelTypes(txData.deletedRelationships());
+                }
+                if (!byLabel.isEmpty() || !byPropertyKey.isEmpty()) {
+                    matchNodeProperties(txData.assignedNodeProperties());
+                    matchNodeProperties(txData.removedNodeProperties());
+                }
+                if (!byRelType.isEmpty() || !byPropertyKey.isEmpty()) {
+                    matchRelationshipProperties(txData.assignedRelationshipProperties());
+                    matchRelationshipProperties(txData.removedRelationshipProperties());
+                }
+            }
+
+            BitSet matching() {
+                BitSet matching = or(noLabels, labelsMatched);
+                matching.and(or(noRelTypes, relTypesMatched));
+                matching.and(or(noPropertyKeys, propertyKeysMatched));
+                matching.andNot(unfiltered);
+                return matching;
+            }
+
+            private void matchLabels(Iterable<LabelEntry> labelEntries) {
+                for (LabelEntry entry : labelEntries) {
+                    BitSet triggers = byLabel.get(entry.label().name());
+                    if (triggers != null) {
+                        labelsMatched.or(triggers);
+                        labelEntryTriggers
+                                .computeIfAbsent(entry.node().getElementId(), k -> new BitSet())
+                                .or(triggers);
+                    }
+                }
+            }
+
+            private void matchRelTypes(Iterable<Relationship> relationships) {
+                for (Relationship relationship : relationships) {
+                    BitSet triggers = byRelType.get(relationship.getType().name());
+                    if (triggers != null) {
+                        relTypesMatched.or(triggers);
+                    }
+                }
+            }
+
+            private void matchNodeProperties(Iterable<PropertyEntry<Node>> propertyEntries) {
+                for (PropertyEntry<Node> entry : propertyEntries) {
+                    BitSet labelTriggers = labelTriggers(entry.entity());
+                    labelsMatched.or(labelTriggers);
+                    BitSet keyTriggers = byPropertyKey.get(entry.key());
+                    if (keyTriggers != null) {
+                        BitSet triggers = or(noLabels, labelTriggers);
+                        triggers.and(keyTriggers);
+                        propertyKeysMatched.or(triggers);
+                    }
+                }
+            }
+
+            private void matchRelationshipProperties(Iterable<PropertyEntry<Relationship>> propertyEntries) {
+                for (PropertyEntry<Relationship> entry : propertyEntries) {
+                    BitSet typeTriggers = typeTriggers(entry.entity());
+                    relTypesMatched.or(typeTriggers);
+                    BitSet keyTriggers = byPropertyKey.get(entry.key());
+                    if (keyTriggers != null) {
+                        BitSet triggers = or(noRelTypes, typeTriggers);
+                        triggers.and(keyTriggers);
+                        propertyKeysMatched.or(triggers);
+                    }
+                }
+            }
+
+            /**
+             * The triggers whose labels filter the node passes, read once per node
+             */
+            private BitSet labelTriggers(Node node) {
+                return nodeLabelTriggers.computeIfAbsent(node.getElementId(), k -> {
+                    BitSet triggers = new BitSet();
+                    if (byLabel.isEmpty()) {
+                        return triggers;
+                    }
+                    try {
+                        for (Label label : node.getLabels()) {
+                            BitSet labelTriggers = byLabel.get(label.name());
+                            if (labelTriggers != null) {
+                                triggers.or(labelTriggers);
+                            }
+                        }
+                    } catch (NotFoundException e) {
+                        // a deleted node, its labels are among the removed ones
+                        triggers.or(labelEntryTriggers.getOrDefault(k, EMPTY_BITS));
+                    }
+                    return triggers;
+                });
+            }
+
+            private BitSet typeTriggers(Relationship relationship) {
+                try {
+                    return byRelType.getOrDefault(relationship.getType().name(), EMPTY_BITS);
+                } catch (NotFoundException e) {
+                    // a deleted relationship, already matched by its type among the deleted ones
+                    return EMPTY_BITS;
+                }
+            }
+        }
+
+        private static BitSet or(BitSet first, BitSet second) {
+            BitSet result = (BitSet) first.clone();
+            result.or(second);
+            return result;
+        }
+    }
+
+    final Map<String, Map<String, Object>> source;
+    private final Map<TriggerHandler.Phase, PhaseIndex> phases = new EnumMap<>(TriggerHandler.Phase.class);
+
+    TriggerDispatchIndex(Map<String, Map<String, Object>> triggers) {
+        this.source = triggers;
+        triggers.forEach((name, data) -> {
+            if ((boolean) data.getOrDefault("paused", false)) {
+                return;
+            }
+            Map<String, Object> selector = (Map<String, Object>) data.get("selector");
+            TriggerHandler.Phase phase = TriggerHandler.Phase.of(selector);
+            if (phase == null) {
+                // an unknown phase never fires
+                return;
+            }
+            Entry entry = new Entry(name, (String) data.get("statement"), (Map<String, Object>) data.get("params"));
+            phases.computeIfAbsent(phase, k -> new PhaseIndex()).add(entry, selector);
+        });
+    }
+
+    boolean hasPhase(TriggerHandler.Phase phase) {
+        return phases.containsKey(phase);
+    }
+
+    /**
+     * The active triggers of the phase interested in the changes of the transaction
+     */
+    List<Entry> matching(TriggerHandler.Phase phase, TransactionData txData) {
+        PhaseIndex phaseIndex = phases.get(phase);
+        return phaseIndex == null ? Collections.emptyList() : phaseIndex.matching(txData);
+    }
+
+    private static Set<String> names(Map<String, Object> selector, String key) {
+        Object value = selector == null ? null : selector.get(key);
+        if (value == null) {
+            return Collections.emptySet();
+        }
+        if (value instanceof Collection<?> collection) {
+            return collection.stream().map(String::valueOf).collect(Collectors.toSet());
+        }
+        return Set.of(value.toString());
+    }
+}
@@ -27,9 +27,13 @@ import apoc.Pools;
 import apoc.SystemLabels;
 import apoc.SystemPropertyKeys;
 import apoc.util.MapUtil;
+import apoc.util.RetryPolicy;
 import apoc.util.Util;
 import apoc.util.collection.Iterators;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -52,19 +56,34 @@ import org.neo4j.scheduler.JobScheduler;
 
 public class TriggerHandler extends LifecycleAdapter implements TransactionEventListener<Void> {
 
-    private enum Phase {
+    enum Phase {
         before,
         after,
         rollback,
-        afterAsync
+        afterAsync;
+
+        static Phase of(Map<String, Object> selector) {
+            if (selector == null) return before;
+            try {
+                return valueOf(selector.getOrDefault("phase", "before").toString());
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
     }
 
     private static final Map<String, Object> TRIGGER_META = Map.of("apoc.trigger", true);
 
     public static final String TRIGGER_REFRESH = "apoc.trigger.refresh";
+    public static final String TRIGGER_AFTER_ASYNC_RETRIES = "apoc.trigger.afterAsync.retries";
+    public static final String TRIGGER_AFTER_ASYNC_QUEUE_CAPACITY = "apoc.trigger.afterAsync.queueCapacity";
+    public static final String TRIGGER_AFTER_ASYNC_BATCH_SIZE = "apoc.trigger.afterAsync.batchSize";
+    public static final String TRIGGER_AFTER_ASYNC_QUEUE_TIMEOUT = "apoc.trigger.afterAsync.queueTimeout";
 
     // Snapshot of installed triggers. The containing map is immutable.
     private final AtomicReference<Map<String, Map<String, Object>>> triggersSnapshot = new AtomicReference<>(Map.of());
+    // Dispatch table of the snapshot above, rebuilt when the snapshot changes
+    private volatile TriggerDispatchIndex dispatchIndex = TriggerDispatchIndex.EMPTY;
 
     private final Log log;
     private final GraphDatabaseService db;
@@ -77,6 +96,8 @@ public class TriggerHandler extends LifecycleAdapter implements TransactionEvent
 
     private JobHandle restoreTriggerHandler;
 
+    private volatile TriggerAsyncQueue asyncQueue;
+
     private final AtomicBoolean registeredWithKernel = new AtomicBoolean(false);
 
     public static final String NOT_ENABLED_ERROR = "Triggers have not been enabled."
@@ -252,8 +273,9 @@ public class TriggerHandler extends LifecycleAdapter implements TransactionEvent
 
     @Override
     public Void beforeCommit(TransactionData txData, Transaction transaction, GraphDatabaseService databaseService) {
-        if (hasPhase(Phase.before)) {
-            executeTriggers(transaction, txData, Phase.before);
+        List<TriggerDispatchIndex.Entry> triggers = matching(Phase.before, txData);
+        if (!triggers.isEmpty()) {
+            executeTriggers(transaction, TriggerMetadata.from(txData, false), triggers, Phase.before);
         }
         return null;
     }
@@ -267,10 +289,11 @@ public class TriggerHandler extends LifecycleAdapter implements TransactionEvent
             return;
         }
 
-        if (hasPhase(Phase.after)) {
+        List<TriggerDispatchIndex.Entry> triggers = matching(Phase.after, txData);
+        if (!triggers.isEmpty()) {
             try (Transaction tx = db.beginTx()) {
                 setTriggerMetadata(tx);
-                executeTriggers(tx, txData, Phase.after);
+                executeTriggers(tx, TriggerMetadata.from(txData, false), triggers, Phase.after);
                 tx.commit();
             }
         }
@@ -283,71 +306,135 @@ public class TriggerHandler extends LifecycleAdapter implements TransactionEvent
     }
 
     private void afterAsync(TransactionData txData) {
-        if (hasPhase(Phase.afterAsync)) {
-            TriggerMetadata triggerMetadata = TriggerMetadata.from(txData, true);
-            Util.inTxFuture(pools.getDefaultExecutorService(), db, (inner) -> {
-                setTriggerMetadata(inner);
-                executeTriggers(inner, triggerMetadata.rebind(inner), Phase.afterAsync);
-                return null;
-            });
+        List<TriggerDispatchIndex.Entry> triggers = matching(Phase.afterAsync, txData);
+        TriggerAsyncQueue queue = asyncQueue;
+        if (!triggers.isEmpty() && queue != null) {
+            queue.add(triggers, TriggerMetadata.from(txData, true));
+        }
+    }
+
+    /**
+     * Executes a batch of the afterAsync queue, every trigger with the merged metadata of the transactions it matched.
+     * Each trigger runs and retries in its own transaction, so a failing trigger doesn't roll back the others.
+     */
+    private void executeAsync(List<TriggerAsyncQueue.Execution> executions, RetryPolicy retryPolicy) {
+        Map<String, String> exceptions = new LinkedHashMap<>();
+        RuntimeException firstException = null;
+        for (TriggerAsyncQueue.Execution execution : executions) {
+            try {
+                Util.retryInTx(
+                        log,
+                        db,
+                        (inner) -> {
+                            setTriggerMetadata(inner);
+                            Map<String, Object> metadataParams =
+                                    execution.metadata.rebind(inner).toMap();
+                            executeTriggers(
+                                    inner, List.of(execution.trigger), trigger -> metadataParams, Phase.afterAsync);
+                            return null;
+                        },
+                        retryPolicy,
+                        retry -> {});
+            } catch (RuntimeException e) {
+                exceptions.put(execution.trigger.name, e.getMessage());
+                if (firstException == null) {
+                    firstException = e;
+                }
+            }
+        }
+        if (!exceptions.isEmpty()) {
+            throw new RuntimeException("Error executing afterAsync triggers " + exceptions, firstException);
         }
     }
 
+    public TriggerAsyncMetrics asyncMetrics() {
+        checkEnabled();
+        TriggerAsyncQueue queue = asyncQueue;
+        return queue == null
+                ? new TriggerAsyncMetrics(db.databaseName(), false, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0)
+                : queue.metrics();
+    }
+
     private static void setTriggerMetadata(Transaction tx) {
         tx.execute("CALL tx.setMetaData($data)", Map.of("data", TRIGGER_META));
     }
 
     @Override
     public void afterRollback(TransactionData txData, Void state, GraphDatabaseService databaseService) {
-        if (hasPhase(Phase.rollback)) {
+        List<TriggerDispatchIndex.Entry> triggers = matching(Phase.rollback, txData);
+        if (!triggers.isEmpty()) {
             try (Transaction tx = db.beginTx()) {
-                executeTriggers(tx, txData, Phase.rollback);
+                executeTriggers(tx, TriggerMetadata.from(txData, false), triggers, Phase.rollback);
                 tx.commit();
             }
         }
     }
 
-    private boolean hasPhase(Phase phase) {
-        return triggersSnapshot.get().values().stream()
-                .map(data -> (Map<String, Object>) data.get("selector"))
-                .anyMatch(selector -> when(selector, phase));
+    private TriggerDispatchIndex dispatchIndex() {
+        TriggerDispatchIndex index = dispatchIndex;
+        Map<String, Map<String, Object>> triggers = triggersSnapshot.get();
+        if (index.source != triggers) {
+            index = new TriggerDispatchIndex(triggers);
+            dispatchIndex = index;
+        }
+        return index;
     }
 
-    private void executeTriggers(Transaction tx, TransactionData txData, Phase phase) {
-        executeTriggers(tx, TriggerMetadata.from(txData, false), phase);
+    /**
+     * The triggers of the phase interested in the transaction, most transactions stop here with an empty list
+     */
+    private List<TriggerDispatchIndex.Entry> matching(Phase phase, TransactionData txData) {
+        TriggerDispatchIndex index = dispatchIndex();
+        return index.hasPhase(phase) ? index.matching(phase, txData) : Collections.emptyList();
     }
 
-    private void executeTriggers(Transaction tx, TriggerMetadata triggerMetadata, Phase phase) {
+    private void executeTriggers(
+            Transaction tx, TriggerMetadata triggerMetadata, List<TriggerDispatchIndex.Entry> triggers, Phase phase) {
+        // the metadata is converted once and shared by all the triggers
+        Map<String, Object> metadataParams = triggerMetadata.toMap();
+        executeTriggers(tx, triggers, trigger -> metadataParams, phase);
+    }
+
+    private void executeTriggers(
+            Transaction tx,
+            List<TriggerDispatchIndex.Entry> triggers,
+            Function<TriggerDispatchIndex.Entry, Map<String, Object>> metadataParams,
+            Phase phase) {
         Map<String, String> exceptions = new LinkedHashMap<>();
-        triggersSnapshot.get().forEach((name, data) -> {
-            Map<String, Object> params = triggerMetadata.toMap();
-            if (data.get("params") != null) {
-                params.putAll((Map<String, Object>) data.get("params"));
+        AtomicReference<Exception> firstException = new AtomicReference<>();
+        for (TriggerDispatchIndex.Entry trigger : triggers) {
+            Map<String, Object> params = new HashMap<>(metadataParams.apply(trigger));
+            if (trigger.params != null) {
+                params.putAll(trigger.params);
             }
-            Map<String, Object> selector = (Map<String, Object>) data.get("selector");
-            if ((!(boolean) data.get("paused")) && when(selector, phase)) {
-                try {
-                    params.put("trigger", name);
-                    Result result = tx.execute((String) data.get("statement"), params);
-                    Iterators.count(result);
-                } catch (Exception e) {
-                    log.warn("Error executing trigger " + name + " in phase " + phase, e);
-                    exceptions.put(name, e.getMessage());
-                }
+            try {
+                params.put("trigger", trigger.name);
+                Result result = tx.execute(trigger.statement, params);
+                Iterators.count(result);
+            } catch (Exception e) {
+                log.warn("Error executing trigger " + trigger.name + " in phase " + phase, e);
+                exceptions.put(trigger.name, e.getMessage());
+                // keep the cause, so that transient failures can be retried
+                firstException.compareAndSet(null, e);
             }
-        });
+        }
         if (!exceptions.isEmpty()) {
-            throw new RuntimeException("Error executing triggers " + exceptions.toString());
+            throw new RuntimeException("Error executing triggers " + exceptions.toString(), firstException.get());
         }
     }
 
-    private boolean when(Map<String, Object> selector, Phase phase) {
-        if (selector == null) return phase == Phase.before;
-        return Phase.valueOf(selector.getOrDefault("phase", "before").toString()) == phase;
-    }
-
     @Override
     public void start() {
+        RetryPolicy retryPolicy = RetryPolicy.retries(apocConfig.getInt(TRIGGER_AFTER_ASYNC_RETRIES, 0));
+        asyncQueue = new TriggerAsyncQueue(
+                db.databaseName(),
+                log,
+                apocConfig.getInt(TRIGGER_AFTER_ASYNC_QUEUE_CAPACITY, TriggerAsyncQueue.DEFAULT_CAPACITY),
+                apocConfig.getInt(TRIGGER_AFTER_ASYNC_BATCH_SIZE, TriggerAsyncQueue.DEFAULT_BATCH_SIZE),
+                apocConfig.getInt(
+                        TRIGGER_AFTER_ASYNC_QUEUE_TIMEOUT, (int) TriggerAsyncQueue.DEFAULT_OFFER_TIMEOUT_MILLIS),
+                executions -> executeAsync(executions, retryPolicy));
+        asyncQueue.start();
         updateCache();
         long refreshInterval = apocConfig().getInt(TRIGGER_REFRESH, 60000);
         restoreTriggerHandler = jobScheduler.scheduleRecurring(
@@ -370,6 +457,10 @@ public class TriggerHandler extends LifecycleAdapter implements TransactionEvent
         if (restoreTriggerHandler != null) {
             restoreTriggerHandler.cancel();
         }
+        if (asyncQueue != null) {
+            // the transactions already committed still get their afterAsync triggers
+            asyncQueue.stop();
+        }
     }
 
     private <T> T withSystemDb(Function<Transaction, T> action) {
@@ -30,10 +30,12 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.neo4j.graphdb.Entity;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.event.LabelEntry;
@@ -136,6 +138,51 @@ public class TriggerMetadata {
                 txData.metaData());
     }
 
+    /**
+     * Merges the metadata of consecutive transactions, in commit order, into one:
+     * the created/deleted entities and the label and property changes are concatenated,
+     * while `transactionId`, `commitTime` and `metaData` are the ones of the last transaction
+     */
+    public static TriggerMetadata merge(List<TriggerMetadata> metadata) {
+        if (metadata.size() == 1) {
+            return metadata.get(0);
+        }
+        TriggerMetadata last = metadata.get(metadata.size() - 1);
+        return new TriggerMetadata(
+                last.transactionId,
+                last.commitTime,
+                concat(metadata, m -> m.createdNodes),
+                concat(metadata, m -> m.createdRelationships),
+                concat(metadata, m -> m.deletedNodes),
+                concat(metadata, m -> m.deletedRelationships),
+                concatByKey(metadata, m -> m.removedLabels),
+                concatByKey(metadata, m -> m.removedNodeProperties),
+                concatByKey(metadata, m -> m.removedRelationshipProperties),
+                concatByKey(metadata, m -> m.assignedLabels),
+                concatByKey(metadata, m -> m.assignedNodeProperties),
+                concatByKey(metadata, m -> m.assignedRelationshipProperties),
+                last.metaData);
+    }
+
+    private static <T> List<T> concat(List<TriggerMetadata> metadata, Function<TriggerMetadata, List<T>> getter) {
+        List<T> result = new ArrayList<>();
+        for (TriggerMetadata m : metadata) {
+            result.addAll(getter.apply(m));
+        }
+        return result;
+    }
+
+    private static <T> Map<String, List<T>> concatByKey(
+            List<TriggerMetadata> metadata, Function<TriggerMetadata, Map<String, List<T>>> getter) {
+        Map<String, List<T>> result = new HashMap<>();
+        for (TriggerMetadata m : metadata) {
+            for (Map.Entry<String, List<T>> entry : getter.apply(m).entrySet()) {
+                result.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).addAll(entry.getValue());
+            }
+        }
+        return result;
+    }
+
     private static <T extends Entity> Map<String, List<PropertyEntryContainer<T>>> rebindPropsEntries(
             TransactionData txData, Map<String, List<PropertyEntryContainer<T>>> removedNodeProperties) {
         return removedNodeProperties.entrySet().stream()
@@ -172,8 +219,8 @@ public class TriggerMetadata {
     }
 
     public TriggerMetadata rebind(Transaction tx) {
-        final List<Node> createdNodes = Util.rebind(this.createdNodes, tx);
-        final List<Relationship> createdRelationships = Util.rebind(this.createdRelationships, tx);
+        final List<Node> createdNodes = rebindExisting(this.createdNodes, tx);
+        final List<Relationship> createdRelationships = rebindExisting(this.createdRelationships, tx);
         //        final List<Node> deletedNodes = Util.rebind(this.deletedNodes, tx);
         //        final List<Relationship> deletedRelationships = Util.rebind(this.deletedRelationships, tx);
         final Map<String, List<Node>> removedLabels = rebindMap(this.removedLabels, tx);
@@ -206,11 +253,36 @@ public class TriggerMetadata {
             Map<String, List<PropertyEntryContainer<T>>> map, Transaction tx) {
         return map.entrySet().stream().collect(Collectors.toMap(e -> e.getKey(), e -> e.getValue().stream()
                 .map(p -> p.rebind(tx))
+                .filter(p -> p != null)
                 .collect(Collectors.toList())));
     }
 
     private <T extends Entity> Map<String, List<T>> rebindMap(Map<String, List<T>> map, Transaction tx) {
-        return map.entrySet().stream().collect(Collectors.toMap(e -> e.getKey(), e -> Util.rebind(e.getValue(), tx)));
+        return map.entrySet().stream()
+                .collect(Collectors.toMap(e -> e.getKey(), e -> rebindExisting(e.getValue(), tx)));
+    }
+
+    /**
+     * The entities deleted in the meantime (e.g. by a later transaction merged into the same afterAsync batch)
+     * are left out
+     */
+    private static <T extends Entity> List<T> rebindExisting(List<T> entities, Transaction tx) {
+        List<T> result = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            T rebound = rebindOrNull(tx, entity);
+            if (rebound != null) {
+                result.add(rebound);
+            }
+        }
+        return result;
+    }
+
+    private static <T extends Entity> T rebindOrNull(Transaction tx, T entity) {
+        try {
+            return Util.rebind(tx, entity);
+        } catch (NotFoundException e) {
+            return null;
+        }
     }
 
     private <T extends Entity> Map<String, List<Map<String, Object>>> convertMapOfPropertyEntryContainers(
@@ -277,7 +349,8 @@ public class TriggerMetadata {
         }
 
         PropertyEntryContainer<T> rebind(Transaction tx) {
-            return new PropertyEntryContainer<T>(key, Util.rebind(tx, entity), oldVal, newVal);
+            T rebound = rebindOrNull(tx, entity);
+            return rebound == null ? null : new PropertyEntryContainer<T>(key, rebound, oldVal, newVal);
         }
 
         PropertyEntryContainer<T> copy(T entity) {
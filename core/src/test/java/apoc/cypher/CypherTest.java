@@ -35,6 +35,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
 import apoc.text.Strings;
@@ -48,6 +49,8 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -165,6 +168,26 @@ public class CypherTest {
                 r -> assertEquals(10L, (r.get("s"))));
     }
 
+    @Test
+    public void testRunFirstColumnSingleReusesTheRewrittenStatement() {
+        long hits = statementCacheHits();
+        testCall(
+                db,
+                "UNWIND range(1, 10) AS i "
+                        + "WITH CASE WHEN i % 2 = 0 THEN {a: i, b: 1} ELSE {b: 1, a: i} END AS params "
+                        + "RETURN sum(apoc.cypher.runFirstColumnSingle('RETURN  a +\n b AS c', params)) AS s",
+                r -> assertEquals(65L, r.get("s")));
+        assertTrue(statementCacheHits() - hits >= 9);
+
+        assertEquals(
+                "MATCH (n) WHERE n.name = 'a  b' // x\n RETURN n",
+                CypherStatementCache.normalize("MATCH  (n)\n WHERE n.name = 'a  b' // x\n  RETURN n"));
+    }
+
+    private long statementCacheHits() {
+        return TestUtil.singleResultFirstColumn(db, "CALL apoc.cypher.statementCacheStats() YIELD hits RETURN hits");
+    }
+
     @Test
     public void testRunFirstColumnMany() {
         testCall(
@@ -288,17 +311,73 @@ public class CypherTest {
         assertEquals(1, count);
     }
 
+    @Test
+    public void testRunManyWithSemicolonsInStringsAndComments() {
+        String statements = "CREATE (:Node {name: 'a;b'}); // the first one; with a comment\n"
+                + "/* a block comment;\n over two lines */ CREATE (:Node {name: \"c;\\\";d\"});"
+                + "CREATE (:`No;de` {name: 'e'}) RETURN 1;\n"
+                + "// nothing else;";
+        testResult(db, "CALL apoc.cypher.runMany($statements, {})", map("statements", statements), r -> {
+            assertEquals(1L, toLong(((Map) r.next().get("result")).get("nodesCreated")));
+            assertEquals(1L, toLong(((Map) r.next().get("result")).get("nodesCreated")));
+            assertEquals(map("1", 1L), r.next().get("result"));
+            assertEquals(1L, toLong(((Map) r.next().get("result")).get("nodesCreated")));
+            assertFalse(r.hasNext());
+        });
+        testResult(db, "MATCH (n) RETURN n.name AS name ORDER BY name", r -> {
+            assertEquals("a;b", r.next().get("name"));
+            assertEquals("c;\";d", r.next().get("name"));
+            assertEquals("e", r.next().get("name"));
+            assertFalse(r.hasNext());
+        });
+    }
+
+    @Test
+    public void testRunManyStatisticsOnlyInBatches() {
+        String statements = IntStream.range(0, 10)
+                .mapToObj(i -> "CREATE (n:Node {id: " + i + "}) RETURN n;\n")
+                .collect(Collectors.joining());
+        testResult(
+                db,
+                "CALL apoc.cypher.runMany($statements, {}, {statisticsOnly: true, batchSize: 4})",
+                map("statements", statements),
+                r -> {
+                    for (int i = 0; i < 10; i++) {
+                        Map<String, Object> row = r.next();
+                        assertEquals(-1L, row.get("row"));
+                        Map result = (Map) row.get("result");
+                        assertEquals(1L, toLong(result.get("rows")));
+                        assertEquals(1L, toLong(result.get("nodesCreated")));
+                    }
+                    assertFalse(r.hasNext());
+                });
+        testCall(db, "MATCH (n:Node) RETURN count(n) AS count", r -> assertEquals(10L, r.get("count")));
+    }
+
+    @Test
+    public void testRunManyBatchFailureFailsWithoutRolledBackRows() {
+        testFail(
+                db,
+                "CALL apoc.cypher.runMany('CREATE (n:RolledBack) RETURN n;\nUNWIND [1, 0] AS x RETURN 1 / x AS y;\n', "
+                        + "{}, {batchSize: 2})",
+                QueryExecutionException.class);
+        testCall(db, "MATCH (n:RolledBack) RETURN count(n) AS count", r -> assertEquals(0L, r.get("count")));
+    }
+
     @Test
     public void testRunManyReadOnlyShouldFail() {
         final Map<String, Object> map = map("name", "John", "name2", "Doe");
-        db.executeTransactionally(
-                "CALL apoc.cypher.runManyReadOnly('" + "CREATE (n:Node {name:$name});\n"
-                        + "MATCH (n {name:$name}) "
-                        + "CREATE (n)-[:X {name:$name2}]->(n) "
-                        + "RETURN *;"
-                        + "', $params)",
-                map("params", map),
-                Result::resultAsString);
+        // the write of the first statement is refused, so the call fails
+        assertThrows(
+                QueryExecutionException.class,
+                () -> db.executeTransactionally(
+                        "CALL apoc.cypher.runManyReadOnly('" + "CREATE (n:Node {name:$name});\n"
+                                + "MATCH (n {name:$name}) "
+                                + "CREATE (n)-[:X {name:$name2}]->(n) "
+                                + "RETURN *;"
+                                + "', $params)",
+                        map("params", map),
+                        Result::resultAsString));
         final long count = (long) db.executeTransactionally(
                         "MATCH p = (n:Node {name : $name})-[r:X {name: $name2}]->(n) RETURN count(p) AS count",
                         map,
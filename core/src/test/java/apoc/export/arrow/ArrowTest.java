@@ -26,9 +26,7 @@ import static org.junit.Assert.assertEquals;
 import apoc.graph.Graphs;
 import apoc.load.LoadArrow;
 import apoc.meta.Meta;
-import apoc.util.JsonUtil;
 import apoc.util.TestUtil;
-import com.fasterxml.jackson.core.JsonProcessingException;
 import java.io.File;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
@@ -47,6 +45,9 @@ import org.neo4j.configuration.GraphDatabaseSettings;
 import org.neo4j.graphdb.Result;
 import org.neo4j.test.rule.DbmsRule;
 import org.neo4j.test.rule.ImpermanentDbmsRule;
+import org.neo4j.values.storable.CoordinateReferenceSystem;
+import org.neo4j.values.storable.DurationValue;
+import org.neo4j.values.storable.Values;
 
 public class ArrowTest {
 
@@ -74,9 +75,7 @@ public class ArrowTest {
                     put("male", true);
                     put("<type>", null);
                     put("kids", List.of("Sam", "Anna", "Grace"));
-                    put(
-                            "place",
-                            Map.of("crs", "wgs-84-3d", "longitude", 33.46789D, "latitude", 13.1D, "height", 100.0D));
+                    put("place", Values.pointValue(CoordinateReferenceSystem.WGS_84_3D, 33.46789D, 13.1D, 100.0D));
                     put("<target.id>", null);
                     put("since", null);
                     put(
@@ -106,7 +105,7 @@ public class ArrowTest {
             new HashMap<>() {
                 {
                     put("name", null);
-                    put("bffSince", "P5M1DT12H");
+                    put("bffSince", DurationValue.duration(5, 1, 43200, 0));
                     put("<source.id>", 0L);
                     put("<id>", 0L);
                     put("age", null);
@@ -147,15 +146,6 @@ public class ArrowTest {
         return result.<String>columnAs("file").next();
     }
 
-    private <T> T readValue(String json, Class<T> clazz) {
-        if (json == null) return null;
-        try {
-            return JsonUtil.OBJECT_MAPPER.readValue(json, clazz);
-        } catch (JsonProcessingException e) {
-            return null;
-        }
-    }
-
     @Test
     public void testStreamRoundtripArrowQuery() {
         // given - when
@@ -184,7 +174,7 @@ public class ArrowTest {
             assertEquals(Arrays.asList(1.1D, 2.2D, 3.3), row.get("doubleArray"));
             assertEquals(Arrays.asList(true, false, true), row.get("boolArray"));
             assertEquals(Arrays.asList("1", "2", "true", null), row.get("mixedArray"));
-            assertEquals("{\"foo\":\"bar\"}", row.get("mapData"));
+            assertEquals(Map.of("foo", "bar"), row.get("mapData"));
             assertEquals(
                     LocalDateTime.parse("2015-05-18T19:32:24.000")
                             .atOffset(ZoneOffset.UTC)
@@ -224,7 +214,7 @@ public class ArrowTest {
             assertEquals(Arrays.asList(1.1D, 2.2D, 3.3), row.get("doubleArray"));
             assertEquals(Arrays.asList(true, false, true), row.get("boolArray"));
             assertEquals(Arrays.asList("1", "2", "true", null), row.get("mixedArray"));
-            assertEquals("{\"foo\":\"bar\"}", row.get("mapData"));
+            assertEquals(Map.of("foo", "bar"), row.get("mapData"));
             assertEquals(
                     LocalDateTime.parse("2015-05-18T19:32:24.000")
                             .atOffset(ZoneOffset.UTC)
@@ -256,14 +246,7 @@ public class ArrowTest {
     }
 
     private List<Map<String, Object>> getActual(Result result) {
-        return result.stream()
-                .map(m -> (Map<String, Object>) m.get("value"))
-                .map(m -> {
-                    final Map<String, Object> newMap = new HashMap(m);
-                    newMap.put("place", readValue((String) m.get("place"), Map.class));
-                    return newMap;
-                })
-                .collect(Collectors.toList());
+        return result.stream().map(m -> (Map<String, Object>) m.get("value")).collect(Collectors.toList());
     }
 
     @Test
@@ -378,6 +361,100 @@ public class ArrowTest {
         db.executeTransactionally("MATCH (n:ArrowNode) DELETE n");
     }
 
+    @Test
+    public void testFileVolumeArrowBatchRows() {
+        // given - when
+        db.executeTransactionally("UNWIND range(0, 10000 - 1) AS id CREATE (:ArrowNode{id:id})");
+
+        String file = db.executeTransactionally(
+                "CALL apoc.export.arrow.query('volume_batch_test.arrow', 'MATCH (n:ArrowNode) RETURN n.id AS id', {batchSize: 3000}) YIELD file ",
+                Map.of(),
+                this::extractFileName);
+
+        // then
+        final String query = "CALL apoc.load.arrow($file, {batchRows: true}) YIELD value "
+                + "RETURN size(value.rows) AS size, [row IN value.rows | row.id] AS ids";
+        db.executeTransactionally(query, Map.of("file", file), result -> {
+            final List<Map<String, Object>> batches = result.stream().collect(Collectors.toList());
+            // one row per record batch
+            assertEquals(4, batches.size());
+            final List<Long> actual = batches.stream()
+                    .flatMap(m -> ((List<Long>) m.get("ids")).stream())
+                    .sorted()
+                    .collect(Collectors.toList());
+            assertEquals(LongStream.range(0, 10000).boxed().collect(Collectors.toList()), actual);
+            return null;
+        });
+
+        db.executeTransactionally("MATCH (n:ArrowNode) DELETE n");
+    }
+
+    @Test
+    public void testFileVolumeArrowParallelKeepsOrder() {
+        // given - when
+        db.executeTransactionally("UNWIND range(0, 10000 - 1) AS id CREATE (:ArrowNode{id:id})");
+
+        String file = db.executeTransactionally(
+                "CALL apoc.export.arrow.query('volume_parallel_test.arrow', 'MATCH (n:ArrowNode) RETURN n.id AS id ORDER BY id', {batchSize: 100, concurrency: 4}) YIELD file ",
+                Map.of(),
+                this::extractFileName);
+
+        // then
+        final String query = "CALL apoc.load.arrow($file) YIELD value " + "RETURN value.id AS id";
+        db.executeTransactionally(query, Map.of("file", file), result -> {
+            final List<Long> actual = result.stream().map(m -> (Long) m.get("id")).collect(Collectors.toList());
+            assertEquals(LongStream.range(0, 10000).boxed().collect(Collectors.toList()), actual);
+            return null;
+        });
+
+        db.executeTransactionally("MATCH (n:ArrowNode) DELETE n");
+    }
+
+    @Test
+    public void testFileRoundtripArrowQueryEntities() {
+        // given - when
+        final String returnQuery = "MATCH (n:User {name: 'Adam'})-[r:KNOWS]->(m) "
+                + "RETURN n AS node, r AS rel, n.place AS place, r.bffSince AS duration";
+        String file = db.executeTransactionally(
+                "CALL apoc.export.arrow.query('query_entities_test.arrow', $query) YIELD file",
+                Map.of("query", returnQuery),
+                this::extractFileName);
+
+        // then
+        final String query = "CALL apoc.load.arrow($file) YIELD value " + "RETURN value";
+        db.executeTransactionally(query, Map.of("file", file), result -> {
+            final Map<String, Object> row = (Map<String, Object>) result.next().get("value");
+            final Map<String, Object> node = (Map<String, Object>) row.get("node");
+            assertEquals(0L, node.get("<id>"));
+            assertEquals(List.of("User"), node.get("labels"));
+            final Map<String, Object> properties = (Map<String, Object>) node.get("properties");
+            assertEquals("Adam", properties.get("name"));
+            assertEquals(42L, properties.get("age"));
+            assertEquals(true, properties.get("male"));
+            assertEquals(List.of("Sam", "Anna", "Grace"), properties.get("kids"));
+            assertEquals(
+                    LocalDateTime.parse("2015-05-18T19:32:24.000")
+                            .atOffset(ZoneOffset.UTC)
+                            .toZonedDateTime(),
+                    properties.get("born"));
+            assertEquals(
+                    Values.pointValue(CoordinateReferenceSystem.WGS_84_3D, 33.46789D, 13.1D, 100.0D),
+                    properties.get("place"));
+            final Map<String, Object> rel = (Map<String, Object>) row.get("rel");
+            assertEquals("KNOWS", rel.get("<type>"));
+            assertEquals(0L, rel.get("<source.id>"));
+            assertEquals(1L, rel.get("<target.id>"));
+            assertEquals(
+                    Map.of("since", 1993L, "bffSince", DurationValue.duration(5, 1, 43200, 0)),
+                    rel.get("properties"));
+            assertEquals(
+                    Values.pointValue(CoordinateReferenceSystem.WGS_84_3D, 33.46789D, 13.1D, 100.0D),
+                    row.get("place"));
+            assertEquals(DurationValue.duration(5, 1, 43200, 0), row.get("duration"));
+            return true;
+        });
+    }
+
     @Test
     public void testValidNonStorableQuery() {
         final List<byte[]> list = db.executeTransactionally(
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.export.csv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CsvIdMappingTest {
+
+    @Test
+    public void testIdSpaces() {
+        CsvIdMapping mapping = new CsvIdMapping();
+        mapping.idSpace("Person").put("1", 10L);
+        mapping.idSpace("Movie").put("1", 20L);
+
+        assertEquals(10L, mapping.get("Person", "1"));
+        assertEquals(20L, mapping.get("Movie", "1"));
+        assertEquals(CsvIdMapping.NOT_FOUND, mapping.get("Person", "2"));
+        assertEquals(CsvIdMapping.NOT_FOUND, mapping.get("Unknown", "1"));
+    }
+
+    @Test
+    public void testDuplicatesAndReservedIds() {
+        CsvIdMapping.IdSpace idSpace = new CsvIdMapping().idSpace("Person");
+        int ordinal = idSpace.reserve("äöü");
+        assertTrue(ordinal >= 0);
+        assertEquals(-1, idSpace.reserve("äöü"));
+        // reserved, but the node hasn't been created yet
+        assertEquals(CsvIdMapping.NOT_FOUND, idSpace.get("äöü"));
+
+        idSpace.set(ordinal, 42L);
+        assertEquals(42L, idSpace.get("äöü"));
+        assertEquals(1, idSpace.size());
+    }
+
+    @Test
+    public void testManyIds() {
+        CsvIdMapping.IdSpace idSpace = new CsvIdMapping().idSpace("Person");
+        int count = 200_000;
+        for (int i = 0; i < count; i++) {
+            // long enough ids to fill more than one page of keys
+            assertTrue(idSpace.reserve("person-with-a-long-id-" + i) >= 0);
+        }
+        for (int i = 0; i < count; i++) {
+            idSpace.set(i, i * 2L);
+        }
+        assertEquals(count, idSpace.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i * 2L, idSpace.get("person-with-a-long-id-" + i));
+        }
+        assertEquals(CsvIdMapping.NOT_FOUND, idSpace.get("person-with-a-long-id-" + count));
+    }
+}
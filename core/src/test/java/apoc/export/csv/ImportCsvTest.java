@@ -323,6 +323,43 @@ public class ImportCsvTest {
                 (r) -> assertEquals(664850L, r.get("nodes")));
     }
 
+    @Test
+    public void testImportCsvLargeFileParallel() {
+        TestUtil.testCall(
+                db,
+                "CALL apoc.import.csv([{fileName: $nodeFile, labels: ['Person']}], [], $config)",
+                map("nodeFile", "file:/largeFile.csv", "config", map("batchSize", 1000L, "parallel", true)),
+                (r) -> assertEquals(664850L, r.get("nodes")));
+        TestUtil.testCall(
+                db, "MATCH (n:Person) RETURN count(n) AS count", (r) -> assertEquals(664850L, r.get("count")));
+    }
+
+    @Test
+    public void testCustomRelationshipTypesParallel() {
+        TestUtil.testCall(
+                db,
+                "CALL apoc.import.csv([{fileName: $nodeFile, labels: ['Person']}], [{fileName: $relFile, type: 'KNOWS'}], $config)",
+                map(
+                        "nodeFile", "file:/id.csv",
+                        "relFile", "file:/rel-type.csv",
+                        "config", map("delimiter", '|', "batchSize", 1L, "parallel", true, "concurrency", 2L)),
+                (r) -> {
+                    assertEquals(2L, r.get("nodes"));
+                    assertEquals(2L, r.get("relationships"));
+                });
+
+        Assert.assertEquals(
+                "John Jane",
+                TestUtil.singleResultFirstColumn(
+                        db,
+                        "MATCH (p1:Person)-[:FRIENDS_WITH]->(p2:Person) RETURN p1.name + ' ' + p2.name AS pair ORDER BY pair"));
+        Assert.assertEquals(
+                "Jane John",
+                TestUtil.singleResultFirstColumn(
+                        db,
+                        "MATCH (p1:Person)-[:KNOWS]->(p2:Person) RETURN p1.name + ' ' + p2.name AS pair ORDER BY pair"));
+    }
+
     @Test
     public void testImportCsvTerminate() {
         checkTerminationGuard(
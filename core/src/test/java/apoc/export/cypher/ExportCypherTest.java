@@ -988,6 +988,32 @@ public class ExportCypherTest {
                         || EXPECTED_QUERY_CYPHER_SHELL_OPTIMIZED4.equals(actual));
     }
 
+    @Test
+    public void testExportQueryCypherShellUnwindBatchWithManyBatches() {
+        db.executeTransactionally("UNWIND range(0, 999) AS id CREATE (:Item {id: id})");
+        String fileName = "manyBatches.cypher";
+        TestUtil.testCall(
+                db,
+                "CALL apoc.export.cypher.query('MATCH (n:Item) RETURN n', $file, {format:'cypher-shell', useOptimizations: {type: 'unwind_batch', unwindBatchSize: 7}, batchSize: 100})",
+                map("file", fileName),
+                (r) -> {
+                    assertEquals(1000L, r.get("nodes"));
+                    assertEquals(1000L, r.get("properties"));
+                });
+        db.executeTransactionally("MATCH (n:Item) DELETE n");
+        String actual = readFile(fileName);
+        // 10 transactions, each one with 14 full UNWIND of 7 rows and the remaining 2 rows
+        assertEquals(150, countMatches(actual, "UNWIND ["));
+        assertEquals(1000, countMatches(actual, "{_id:"));
+        for (int id = 0; id < 1000; id++) {
+            assertTrue(actual.contains("properties:{id:" + id + "}}"));
+        }
+    }
+
+    private static int countMatches(String text, String value) {
+        return text.split(Pattern.quote(value), -1).length - 1;
+    }
+
     @Test
     public void testExportQueryCypherShellUnwindBatchParamsWithOddBatchSizeOddDataset() {
         db.executeTransactionally("CREATE (:Bar {name:'bar3',age:35}), (:Bar {name:'bar4',age:36})");
@@ -42,6 +42,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.neo4j.graphdb.QueryExecutionException;
+import org.neo4j.graphdb.Transaction;
 import org.neo4j.test.rule.DbmsRule;
 import org.neo4j.test.rule.ImpermanentDbmsRule;
 
@@ -129,6 +130,29 @@ public class FingerprintingTest {
         assertNotEquals(valueAfter, valueWithExclude);
     }
 
+    @Test
+    public void fingerprintGraphShouldNotDependOnCreationOrder() {
+        db.executeTransactionally(
+                "UNWIND range(1, 5000) AS id CREATE (:Person {id: id})-[:KNOWS {id: id}]->(:Person {id: id + 1})");
+        String ascending = TestUtil.singleResultFirstColumn(db, "return apoc.hashing.fingerprintGraph()");
+        db.executeTransactionally("match (n) detach delete n");
+        db.executeTransactionally(
+                "UNWIND range(5000, 1, -1) AS id CREATE (:Person {id: id})-[:KNOWS {id: id}]->(:Person {id: id + 1})");
+        String descending = TestUtil.singleResultFirstColumn(db, "return apoc.hashing.fingerprintGraph()");
+        assertEquals(ascending, descending);
+
+        // with uncommitted changes the graph is fingerprinted in the current transaction
+        try (Transaction tx = db.beginTx()) {
+            tx.execute("match (n) detach delete n");
+            tx.execute("UNWIND range(1, 5000) AS id "
+                    + "CREATE (:Person {id: id})-[:KNOWS {id: id}]->(:Person {id: id + 1})");
+            String uncommitted = (String) tx.execute("return apoc.hashing.fingerprintGraph() AS hash")
+                    .next()
+                    .get("hash");
+            assertEquals(ascending, uncommitted);
+        }
+    }
+
     @Test
     public void testExcludes() {
         compareGraph("CREATE (:Person{name:'ABC', created:timestamp()})", singletonList("created"), true);
@@ -343,6 +343,35 @@ public class SchemaIndexTest {
         });
     }
 
+    @Test
+    public void testDistinctCountStreamsInIndexOrder() {
+        testResult(db, "CALL apoc.schema.properties.distinctCount('Person', 'name')", (result) -> {
+            assertDistinctCountProperties("Person", "name", personNames, 1L, result);
+            assertFalse(result.hasNext());
+        });
+    }
+
+    @Test
+    public void testDistinctCountWithLimitAndPrefix() {
+        testResult(db, "CALL apoc.schema.properties.distinctCount('Person', 'name', {limit: 3})", (result) -> {
+            assertDistinctCountProperties("Person", "name", personNames.subList(0, 3), 1L, result);
+            assertFalse(result.hasNext());
+        });
+
+        List<String> withPrefix =
+                personNames.stream().filter(name -> name.startsWith("name2")).collect(Collectors.toList());
+        assertEquals(12, withPrefix.size());
+        testResult(db, "CALL apoc.schema.properties.distinctCount('Person', 'name', {prefix: 'name2'})", (result) -> {
+            assertDistinctCountProperties("Person", "name", withPrefix, 1L, result);
+            assertFalse(result.hasNext());
+        });
+
+        testResult(db, "CALL apoc.schema.properties.distinctCount('Person', 'age', {limit: 2})", (result) -> {
+            assertDistinctCountProperties("Person", "age", personAges.subList(0, 2), 2L, result);
+            assertFalse(result.hasNext());
+        });
+    }
+
     @Test
     public void testDistinctCountPropertiesOnEmptyLabel() {
         String key = "name";
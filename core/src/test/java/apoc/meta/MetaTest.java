@@ -521,6 +521,49 @@ public class MetaTest {
         assertEquals(type.name(), row.get("type"));
     }
 
+    @Test
+    public void testMetaDataFollowsCommittedChanges() {
+        db.executeTransactionally("CREATE (:Person {name:'Tom'})-[:LIVES_IN]->(:City {name:'Rome'})");
+        String query = "CALL apoc.meta.data($config) YIELD label, property, other "
+                + "WHERE label = 'Person' RETURN property, other ORDER BY property";
+        Map<String, Object> params = map("config", emptyMap());
+        testResult(db, query, params, r -> {
+            assertEquals(map("property", "LIVES_IN", "other", List.of("City")), r.next());
+            assertEquals(map("property", "name", "other", List.of()), r.next());
+            assertFalse(r.hasNext());
+        });
+
+        // a property of the sampled nodes
+        db.executeTransactionally("MATCH (p:Person) SET p.age = 42");
+        testResult(db, query, params, r -> {
+            assertEquals(map("property", "LIVES_IN", "other", List.of("City")), r.next());
+            assertEquals(map("property", "age", "other", List.of()), r.next());
+            assertEquals(map("property", "name", "other", List.of()), r.next());
+            assertFalse(r.hasNext());
+        });
+
+        // a label of the nodes they point to
+        db.executeTransactionally("MATCH (c:City) SET c:Capital");
+        testResult(db, query, params, r -> {
+            assertEquals(map("property", "LIVES_IN", "other", List.of("City", "Capital")), r.next());
+            assertEquals(map("property", "age", "other", List.of()), r.next());
+            assertEquals(map("property", "name", "other", List.of()), r.next());
+            assertFalse(r.hasNext());
+        });
+
+        db.executeTransactionally("MATCH (p:Person)-[r:LIVES_IN]->() DELETE r");
+        testResult(db, query, map("config", map("useCache", false)), r -> {
+            assertEquals(map("property", "age", "other", List.of()), r.next());
+            assertEquals(map("property", "name", "other", List.of()), r.next());
+            assertFalse(r.hasNext());
+        });
+        testResult(db, query, params, r -> {
+            assertEquals(map("property", "age", "other", List.of()), r.next());
+            assertEquals(map("property", "name", "other", List.of()), r.next());
+            assertFalse(r.hasNext());
+        });
+    }
+
     @Test
     public void testMetaSchema() {
         db.executeTransactionally("create index for (n:Movie) on (n.title)");
@@ -211,4 +211,34 @@ public class NeighborsTest {
                         + "RETURN number",
                 (row) -> assertEquals(1L, row.get("number")));
     }
+
+    @Test
+    public void getNeighborsParallel() {
+        db.executeTransactionally("CREATE (hub:Hub) WITH hub UNWIND range(1, 200) AS i "
+                + "CREATE (hub)-[:LINK]->(leaf:Leaf {id: i})-[:LINK]->(:Leaf {id: i + 1000})");
+
+        for (String config : List.of("{}", "{parallel: true, parallelThreshold: 1}")) {
+            TestUtil.testCall(
+                    db,
+                    "MATCH (n:Hub) CALL apoc.neighbors.byhop.count(n, 'LINK>', 3, " + config + ") YIELD value "
+                            + "RETURN value",
+                    (row) -> assertEquals(List.of(200L, 200L, 0L), row.get("value")));
+            TestUtil.testCall(
+                    db,
+                    "MATCH (n:Hub) CALL apoc.neighbors.tohop(n, 'LINK', 2, " + config + ") YIELD node "
+                            + "RETURN count(DISTINCT node) AS count",
+                    (row) -> assertEquals(400L, row.get("count")));
+        }
+    }
+
+    @Test
+    public void getNeighborsParallelWithTransactionChanges() {
+        // the changes of the transaction can't be read in parallel, so the expansion falls back to the sequential one
+        TestUtil.testCall(
+                db,
+                "MATCH (n:First) CREATE (n)-[:KNOWS]->(:Neighbor {name: 'e'}) WITH n "
+                        + "CALL apoc.neighbors.tohop.count(n, 'KNOWS>', 3, {parallel: true, parallelThreshold: 1}) "
+                        + "YIELD value RETURN value",
+                (row) -> assertEquals(4L, row.get("value")));
+    }
 }
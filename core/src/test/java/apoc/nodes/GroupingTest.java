@@ -33,6 +33,9 @@ import org.junit.Test;
 import org.neo4j.driver.internal.util.Iterables;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.schema.IndexDefinition;
+import org.neo4j.graphdb.schema.IndexType;
 import org.neo4j.test.rule.DbmsRule;
 import org.neo4j.test.rule.ImpermanentDbmsRule;
 
@@ -115,6 +118,39 @@ public class GroupingTest {
                 });
     }
 
+    @Test
+    public void testGroupManyNodesInParallel() {
+        // more nodes than a scan partition, so that the groups of several workers are merged
+        db.executeTransactionally("UNWIND range(0, 12499) AS i "
+                + "CREATE (:Customer {country: (2 * i) % 5, amount: 2 * i})-[:REFERS {weight: 1}]->"
+                + "(:Customer {country: (2 * i + 1) % 5, amount: 2 * i + 1})");
+
+        testResult(
+                db,
+                "CALL apoc.nodes.group(['Customer'],['country'],"
+                        + "[{`*`:'count', amount:['sum', 'min', 'max']},{`*`:'count', weight:'sum'}])",
+                (result) -> {
+                    int rows = 0;
+                    while (result.hasNext()) {
+                        Map<String, Object> row = result.next();
+                        Node node = (Node) row.get("node");
+                        long country = (long) node.getProperty("country");
+                        assertEquals(5000L, node.getProperty("count_*"));
+                        assertEquals(5000L * country + 62487500L, node.getProperty("sum_amount"));
+                        assertEquals(country, node.getProperty("min_amount"));
+                        assertEquals(24995L + country, node.getProperty("max_amount"));
+
+                        Relationship rel = (Relationship) row.get("relationship");
+                        assertEquals("REFERS", rel.getType().name());
+                        assertEquals(2500L, rel.getProperty("count_*"));
+                        assertEquals(2500L, rel.getProperty("sum_weight"));
+                        assertEquals((country + 1) % 5, rel.getEndNode().getProperty("country"));
+                        rows++;
+                    }
+                    assertEquals(5, rows);
+                });
+    }
+
     @Test
     public void testGroupNode() {
         createGraph();
@@ -159,6 +195,28 @@ public class GroupingTest {
         TestUtil.testCallCount(db, "CALL apoc.nodes.group(['User'],['gender'],null,{orphans:true})", 1);
     }
 
+    @Test
+    public void testGroupWithoutTheLabelLookupIndex() {
+        createGraph();
+        String query = "CALL apoc.nodes.group(['Person'],['gender'],[{`*`:'count'},{`*`:'count'}]) "
+                + "YIELD node, relationship "
+                + "RETURN node.gender AS gender, node.`count_*` AS count, type(relationship) AS type, "
+                + "relationship.`count_*` AS rels ORDER BY gender, type";
+        List<Map<String, Object>> expected = db.executeTransactionally(query, Map.of(), Iterators::asList);
+        assertFalse(expected.isEmpty());
+
+        try (Transaction tx = db.beginTx()) {
+            for (IndexDefinition index : tx.schema().getIndexes()) {
+                if (index.getIndexType() == IndexType.LOOKUP && index.isNodeIndex()) {
+                    index.drop();
+                }
+            }
+            tx.commit();
+        }
+        // the nodes are then found by a scan of all the nodes
+        assertEquals(expected, db.executeTransactionally(query, Map.of(), Iterators::asList));
+    }
+
     @Test
     public void testSelfRels() {
         db.executeTransactionally("CREATE (u:User {gender:'male'})-[:REL]->(u)");
@@ -164,4 +164,19 @@ public class LabelSequenceTest {
             assertTrue(names.containsAll(Arrays.asList("ac")));
         });
     }
+
+    @Test
+    public void testCompoundAndMissingLabels() {
+        String query =
+                "MATCH (s:Start {name: 'start'}) CALL apoc.path.expandConfig(s,{labelFilter:'A|B|-D:A|-Missing'}) yield path return collect(distinct last(nodes(path)).name) as nodes";
+        TestUtil.testCall(db, query, (row) -> {
+            List<String> names = (List<String>) row.get("nodes");
+            assertEquals(5L, names.size());
+            assertTrue(names.containsAll(Arrays.asList("start", "a", "b", "ac", "ba")));
+        });
+
+        query =
+                "MATCH (s:Start {name: 'start'}) CALL apoc.path.expandConfig(s,{labelFilter:'>A:C|>Missing:A|A|B'}) yield path return collect(distinct last(nodes(path)).name) as nodes";
+        TestUtil.testCall(db, query, (row) -> assertEquals(List.of("ac"), row.get("nodes")));
+    }
 }
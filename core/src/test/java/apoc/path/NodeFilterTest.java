@@ -19,10 +19,13 @@
 package apoc.path;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 
 import apoc.util.TestUtil;
 import apoc.util.Util;
 import apoc.util.collection.Iterators;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import org.junit.After;
@@ -30,7 +33,9 @@ import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
 import org.junit.Test;
+import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.test.rule.DbmsRule;
 import org.neo4j.test.rule.ImpermanentDbmsRule;
@@ -487,4 +492,55 @@ public class NodeFilterTest {
                     assertEquals("Gene Hackman", node.getProperty("name"));
                 });
     }
+
+    @Test
+    public void testBidirectionalReturnsTheSamePaths() {
+        String query =
+                "MATCH (k:Person {name:'Keanu Reeves'}), (gene:Person {name:'Gene Hackman'}), (clint:Person {name:'Clint Eastwood'}) "
+                        + "CALL apoc.path.expandConfig(k, {relationshipFilter:'ACTED_IN|DIRECTED>|<PRODUCED', labelFilter:'+Person|+Movie', "
+                        + "maxLevel:4, endNodes:[gene], terminatorNodes:[clint], bidirectional:%s}) yield path "
+                        + "return [n IN nodes(path) | coalesce(n.name, n.title)] as names";
+
+        List<Object> oneSided = TestUtil.firstColumn(db, String.format(query, false));
+        List<Object> bidirectional = TestUtil.firstColumn(db, String.format(query, true));
+        assertFalse(oneSided.isEmpty());
+        assertEquals(oneSided, bidirectional);
+    }
+
+    @Test
+    public void testBidirectionalPrunesThePathsTooFarFromTheEndNodes() {
+        db.executeTransactionally("CREATE (s:Bidirectional {name:'s'})-[:NEXT]->(a:Bidirectional {name:'a'}), "
+                + "(a)-[:NEXT]->(b:Bidirectional {name:'b'})-[:NEXT]->(:Bidirectional {name:'e'}), "
+                + "(s)-[:NEXT]->(:Bidirectional {name:'c'})-[:NEXT]->(a), "
+                + "(:Bidirectional {name:'y1'})-[:NEXT]->(b)<-[:NEXT]-(:Bidirectional {name:'y2'}), "
+                + "(s)-[:NEXT]->(:Bidirectional {name:'x1'})-[:NEXT]->(:Bidirectional {name:'x2'})");
+        try {
+            try (Transaction tx = db.beginTx()) {
+                Label label = Label.label("Bidirectional");
+                Node start = tx.findNode(label, "name", "s");
+                Node end = tx.findNode(label, "name", "e");
+                // the end side reaches `a`, `y1` and `y2` at depth 2, then the smaller start side `c` and `x1`:
+                // `c` leads to `e` in 3 hops but is pruned at depth 1, `x1` never reaches it
+                BidirectionalEvaluator evaluator =
+                        BidirectionalEvaluator.of(List.of(start), List.of(end), List.of("NEXT>"), 3);
+                List<Object> names = new ArrayList<>();
+                for (Path path : tx.traversalDescription().breadthFirst().evaluator(evaluator).traverse(start)) {
+                    names.add(path.endNode().getProperty("name"));
+                }
+                assertEquals(List.of("s", "a", "b", "e"), names);
+
+                // a step in both directions can't be followed in reverse, the traversal then runs without pruning
+                assertNull(BidirectionalEvaluator.of(List.of(start), List.of(end), List.of("<NEXT>"), 3));
+            }
+
+            String query = "MATCH (s:Bidirectional {name:'s'}), (e:Bidirectional {name:'e'}) "
+                    + "CALL apoc.path.expandConfig(s, {relationshipFilter:'NEXT>', maxLevel:3, endNodes:[e], bidirectional:%s}) "
+                    + "YIELD path RETURN [n IN nodes(path) | n.name] AS names";
+            List<Object> oneSided = TestUtil.firstColumn(db, String.format(query, false));
+            assertEquals(List.of(List.of("s", "a", "b", "e")), oneSided);
+            assertEquals(oneSided, TestUtil.firstColumn(db, String.format(query, true)));
+        } finally {
+            db.executeTransactionally("MATCH (n:Bidirectional) DETACH DELETE n");
+        }
+    }
 }
@@ -193,4 +193,17 @@ public class RelSequenceTest {
                     assertTrue(names.containsAll(expectedNames));
                 });
     }
+
+    @Test
+    public void testRelSequenceSkipsTheEmptyPairsOfAStep() {
+        long actedIn = TestUtil.singleResultFirstColumn(
+                db, "MATCH (:Person {name: 'Tom Hanks'})-[:ACTED_IN]->(m:Movie) RETURN count(m)");
+        String query =
+                "MATCH (t:Person {name: 'Tom Hanks'}) CALL apoc.path.expandConfig(t,{relationshipFilter:'UNKNOWN>|ACTED_IN>|<DIRECTED|REVIEWED', minLevel:1, maxLevel:1}) yield path return collect(last(nodes(path)).title) as titles";
+        TestUtil.testCall(db, query, (row) -> {
+            List<String> titles = (List<String>) row.get("titles");
+            assertEquals(actedIn, titles.size());
+            assertTrue(titles.contains("Cast Away"));
+        });
+    }
 }
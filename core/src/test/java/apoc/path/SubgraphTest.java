@@ -622,6 +622,41 @@ public class SubgraphTest {
                 (row) -> assertEquals(136L, row.get("cnt")));
     }
 
+    @Test
+    public void testParallelSubgraphSeesTheChangesOfTheTransaction() {
+        // the workers can't see the uncommitted nodes, so the sequential traversal runs instead
+        TestUtil.testCall(
+                db,
+                "CREATE (n:Uncommitted)-[:NEXT]->(:Uncommitted)-[:NEXT]->(:Uncommitted) "
+                        + "WITH n CALL apoc.path.subgraphNodes(n, {parallel:true}) YIELD node "
+                        + "RETURN count(node) AS count",
+                row -> assertEquals(3L, row.get("count")));
+        db.executeTransactionally("MATCH (n:Uncommitted) DETACH DELETE n");
+    }
+
+    @Test
+    public void testParallelSubgraphVisitsTheSameNodes() {
+        String query =
+                """
+				MATCH (m:Movie) WHERE m.released < 1995
+				WITH collect(m) AS movies
+				CALL apoc.path.subgraphNodes(movies, {relationshipFilter:'ACTED_IN|DIRECTED', labelFilter:'-BigBrother', maxLevel:3, parallel:%s})
+				YIELD node RETURN coalesce(node.name, node.title) AS name ORDER BY name""";
+        List<String> sequential = TestUtil.firstColumn(db, String.format(query, false));
+        List<String> parallel = TestUtil.firstColumn(db, String.format(query, true));
+        assertTrue(sequential.size() > 10);
+        assertEquals(sequential, parallel);
+
+        query =
+                """
+				MATCH (m:Movie) WHERE m.released < 1995
+				WITH collect(m) AS movies
+				CALL apoc.path.spanningTree(movies, {minLevel:1, maxLevel:3, parallel:%s})
+				YIELD path RETURN count(distinct last(nodes(path))) AS cnt""";
+        Object sequentialCount = TestUtil.singleResultFirstColumn(db, String.format(query, false));
+        TestUtil.testCall(db, String.format(query, true), (row) -> assertEquals(sequentialCount, row.get("cnt")));
+    }
+
     public class RootCauseMatcher<T> extends TypeSafeMatcher<Throwable> {
         private final Class<T> rootCause;
         private final String message;
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.periodic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.neo4j.procedure.TerminationGuard;
+
+public class IterateSchedulerTest {
+    private static final TerminationGuard NOT_TERMINATED = () -> {};
+
+    @Test
+    public void staticSchedulerKeepsBatchSizeAndConcurrency() {
+        IterateScheduler scheduler = IterateScheduler.fromConfig(Map.of(), 100, 4, true);
+        assertFalse(scheduler.isAdaptive());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(scheduler.acquire(NOT_TERMINATED));
+            scheduler.release(100, TimeUnit.SECONDS.toNanos(10), 3);
+        }
+        assertEquals(100, scheduler.nextBatchSize());
+        assertEquals(4, scheduler.getConcurrency());
+    }
+
+    @Test
+    public void acquireBlocksUntilABatchIsReleased() throws Exception {
+        IterateScheduler scheduler = new IterateScheduler(10, 1, true);
+        assertTrue(scheduler.acquire(NOT_TERMINATED));
+
+        CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(() -> scheduler.acquire(NOT_TERMINATED));
+        Thread.sleep(200);
+        assertFalse(second.isDone());
+
+        scheduler.release(10, 0, 0);
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void adaptiveSchedulerBacksOffOnRetries() {
+        IterateScheduler scheduler = IterateScheduler.fromConfig(Map.of("adaptive", true), 1000, 8, true);
+        assertTrue(scheduler.acquire(NOT_TERMINATED));
+        scheduler.release(1000, TimeUnit.MILLISECONDS.toNanos(100), 2);
+
+        assertEquals(500, scheduler.nextBatchSize());
+        assertEquals(4, scheduler.getConcurrency());
+    }
+
+    @Test
+    public void adaptiveSchedulerAdjustsBatchSizeToTargetLatency() {
+        IterateScheduler scheduler = IterateScheduler.fromConfig(
+                Map.of("adaptive", true, "targetBatchMillis", 1000, "maxBatchSize", 150), 100, 1, true);
+
+        assertTrue(scheduler.acquire(NOT_TERMINATED));
+        scheduler.release(100, TimeUnit.MILLISECONDS.toNanos(10), 0);
+        assertEquals(125, scheduler.nextBatchSize());
+
+        assertTrue(scheduler.acquire(NOT_TERMINATED));
+        scheduler.release(125, TimeUnit.MILLISECONDS.toNanos(10), 0);
+        assertEquals(150, scheduler.nextBatchSize());
+
+        assertTrue(scheduler.acquire(NOT_TERMINATED));
+        scheduler.release(150, TimeUnit.SECONDS.toNanos(5), 0);
+        assertEquals(113, scheduler.nextBatchSize());
+    }
+}
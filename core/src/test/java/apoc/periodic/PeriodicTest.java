@@ -49,7 +49,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import java.util.stream.LongStream;
 import java.util.stream.Stream;
 import org.apache.commons.lang3.exception.ExceptionUtils;
@@ -66,6 +69,7 @@ import org.neo4j.graphdb.TransientTransactionFailureException;
 import org.neo4j.graphdb.schema.ConstraintDefinition;
 import org.neo4j.graphdb.schema.IndexDefinition;
 import org.neo4j.graphdb.schema.Schema;
+import org.neo4j.kernel.DeadlockDetectedException;
 import org.neo4j.kernel.api.KernelTransactionHandle;
 import org.neo4j.kernel.impl.api.KernelTransactions;
 import org.neo4j.kernel.internal.GraphDatabaseAPI;
@@ -88,6 +92,17 @@ public class PeriodicTest {
         }
     }
 
+    public static class TransientFailure {
+        static final AtomicInteger failures = new AtomicInteger();
+
+        @Procedure("apoc.failTransiently")
+        public void failTransiently() {
+            if (failures.getAndDecrement() > 0) {
+                throw new DeadlockDetectedException("simulated deadlock");
+            }
+        }
+    }
+
     public static final long RUNDOWN_COUNT = 1000;
     public static final int BATCH_SIZE = 399;
 
@@ -98,7 +113,8 @@ public class PeriodicTest {
 
     @Before
     public void initDb() {
-        TestUtil.registerProcedure(db, Periodic.class, Schemas.class, Cypher.class, Utils.class, MockLogger.class);
+        TestUtil.registerProcedure(
+                db, Periodic.class, Schemas.class, Cypher.class, Utils.class, MockLogger.class, TransientFailure.class);
         db.executeTransactionally(
                 "call apoc.periodic.list() yield name call apoc.periodic.cancel(name) yield name as name2 return count(*)");
     }
@@ -485,6 +501,88 @@ public class PeriodicTest {
                 row -> assertEquals(100L, row.get("count")));
     }
 
+    @Test
+    public void testIterateAdaptive() {
+        db.executeTransactionally("UNWIND range(1,1000) AS x CREATE (:Person{name:'Person_'+x})");
+
+        testResult(
+                db,
+                "CALL apoc.periodic.iterate('match (p:Person) return p', 'SET p.lastname =p.name REMOVE p.name', {batchSize:10, parallel:true, concurrency:4, adaptive:true, maxBatchSize:100})",
+                result -> {
+                    Map<String, Object> row = Iterators.single(result);
+                    assertEquals(1000L, row.get("total"));
+                    assertEquals(0L, row.get("failedBatches"));
+                });
+
+        testCall(
+                db,
+                "MATCH (p:Person) where p.lastname is not null return count(p) as count",
+                row -> assertEquals(1000L, row.get("count")));
+    }
+
+    @Test
+    public void testIteratePartitionBy() {
+        db.executeTransactionally("UNWIND range(1,10) AS x CREATE (:Hub{id:x})");
+        db.executeTransactionally("UNWIND range(1,1000) AS x CREATE (:Person{id:x, hub: x % 10 + 1})");
+
+        testResult(
+                db,
+                "CALL apoc.periodic.iterate('MATCH (p:Person) MATCH (h:Hub {id: p.hub}) RETURN p, h', 'MERGE (p)-[:MEMBER_OF]->(h) SET h.count = coalesce(h.count, 0) + 1', {batchSize:10, parallel:true, concurrency:4, partitionBy:'h'})",
+                result -> {
+                    Map<String, Object> row = Iterators.single(result);
+                    assertEquals(1000L, row.get("total"));
+                    assertEquals(0L, row.get("failedBatches"));
+                    assertEquals(0L, row.get("retries"));
+                });
+
+        testCall(
+                db,
+                "MATCH (h:Hub) RETURN sum(h.count) AS count, count{ ()-[:MEMBER_OF]->() } AS rels",
+                row -> {
+                    assertEquals(1000L, row.get("count"));
+                    assertEquals(1000L, row.get("rels"));
+                });
+    }
+
+    @Test
+    public void testIteratePartitionByProperty() {
+        db.executeTransactionally("UNWIND range(1,100) AS x CREATE (:Person{name:'Person_'+x, group: x % 3})");
+
+        testResult(
+                db,
+                "CALL apoc.periodic.iterate('match (p:Person) return p', 'SET p.lastname =p.name REMOVE p.name', {batchSize:10, parallel:true, partitionBy:'p.group'})",
+                result -> assertEquals(100L, Iterators.single(result).get("total")));
+
+        testCall(
+                db,
+                "MATCH (p:Person) where p.lastname is not null return count(p) as count",
+                row -> assertEquals(100L, row.get("count")));
+
+        assertThrows(
+                RuntimeException.class,
+                () -> testCall(
+                        db,
+                        "CALL apoc.periodic.iterate('match (p:Person) return p', 'SET p.x = 1', {parallel:true, partitionBy:'q'})",
+                        row -> {}));
+    }
+
+    @Test
+    public void testPools() {
+        db.executeTransactionally("UNWIND range(1,100) AS x CREATE (:Person{name:'Person_'+x})");
+        db.executeTransactionally(
+                "CALL apoc.periodic.iterate('match (p:Person) return p', 'SET p.lastname = p.name', {batchSize:10, parallel:true})");
+
+        testResult(db, "CALL apoc.periodic.pools()", result -> {
+            Map<String, Map<String, Object>> pools = Iterators.stream(result)
+                    .collect(Collectors.toMap(row -> (String) row.get("name"), row -> row));
+            assertEquals(Set.of("single", "default"), pools.keySet());
+            Map<String, Object> defaultPool = pools.get("default");
+            assertEquals("platform", defaultPool.get("threads"));
+            assertTrue((long) defaultPool.get("completed") >= 10L);
+            assertTrue(((Map<String, Object>) defaultPool.get("latencyMillis")).containsKey("p99"));
+        });
+    }
+
     @Test
     public void testIterateWithQueryPlanner() {
         db.executeTransactionally("UNWIND range(1,100) AS x CREATE (:Person{name:'Person_'+x})");
@@ -682,12 +780,46 @@ public class PeriodicTest {
 
     @Test
     public void testIterateRetries() {
+        TransientFailure.failures.set(1);
         testResult(
-                db, "CALL apoc.periodic.iterate('return 1', 'CREATE (n {prop: 1/$_retry})', {retries:1})", result -> {
+                db,
+                "CALL apoc.periodic.iterate('return 1', 'CALL apoc.failTransiently() CREATE (n {prop: 1})', {retries:2})",
+                result -> {
                     Map<String, Object> row = Iterators.single(result);
                     assertEquals(1L, row.get("batches"));
                     assertEquals(1L, row.get("total"));
                     assertEquals(1L, row.get("retries"));
+                    assertEquals(0L, row.get("failedBatches"));
+                });
+        testCall(db, "MATCH (n {prop: 1}) RETURN count(n) AS count", row -> assertEquals(1L, row.get("count")));
+    }
+
+    @Test
+    public void testCommitRetriesTransientErrors() {
+        TransientFailure.failures.set(1);
+        db.executeTransactionally("UNWIND range(1, 10) AS id CREATE (:Retried {id: id})");
+        String query = "MATCH (n:Retried) WITH n LIMIT $limit CALL apoc.failTransiently() DELETE n RETURN count(*)";
+
+        testCall(
+                db,
+                "CALL apoc.periodic.commit($query, $params)",
+                map("query", query, "params", map("limit", 4)),
+                row -> {
+                    assertEquals(10L, row.get("updates"));
+                    assertEquals(0L, row.get("failedBatches"));
+                });
+        testCall(db, "MATCH (n:Retried) RETURN count(n) AS count", row -> assertEquals(0L, row.get("count")));
+    }
+
+    @Test
+    public void testIterateDoesNotRetryPermanentErrors() {
+        testResult(
+                db, "CALL apoc.periodic.iterate('return 1', 'CREATE (n {prop: 1/$_retry})', {retries:1})", result -> {
+                    Map<String, Object> row = Iterators.single(result);
+                    assertEquals(1L, row.get("batches"));
+                    assertEquals(1L, row.get("total"));
+                    assertEquals(0L, row.get("retries"));
+                    assertEquals(1L, row.get("failedBatches"));
                 });
     }
 
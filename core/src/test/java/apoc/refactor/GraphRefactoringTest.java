@@ -1676,6 +1676,31 @@ public class GraphRefactoringTest {
                 });
     }
 
+    @Test
+    public void testMergeHubsWithMergeRels() {
+        db.executeTransactionally("CREATE (a:Hub {id: 1}), (b:Hub {id: 2}) WITH a, b "
+                + "UNWIND range(1, 1000) AS i CREATE (n:Leaf {id: i}) "
+                + "CREATE (a)-[:LINK {w: i}]->(n), (b)-[:LINK {w: 0, x: i}]->(n), (n)-[:BACK]->(b)");
+        testCall(
+                db,
+                "MATCH (a:Hub {id: 1}), (b:Hub {id: 2}) "
+                        + "CALL apoc.refactor.mergeNodes([a,b], {mergeRels: true, properties: 'discard'}) "
+                        + "YIELD node RETURN node",
+                (r) -> assertEquals(2000, ((Node) r.get("node")).getDegree()));
+        testCall(
+                db,
+                "MATCH (:Hub)-[r:LINK]->(n:Leaf) RETURN count(r) AS count, "
+                        + "sum(CASE WHEN r.w = n.id AND r.x = n.id THEN 1 ELSE 0 END) AS merged",
+                (r) -> {
+                    assertEquals(1000L, r.get("count"));
+                    assertEquals(1000L, r.get("merged"));
+                });
+        testCall(db, "MATCH (:Leaf)-[r:BACK]->(h:Hub) RETURN count(r) AS count, collect(DISTINCT h.id) AS ids", (r) -> {
+            assertEquals(1000L, r.get("count"));
+            assertEquals(List.of(1L), r.get("ids"));
+        });
+    }
+
     @Test
     public void issue2797WithCloneNodes() {
         issue2797Common(CLONE_NODES_QUERY);
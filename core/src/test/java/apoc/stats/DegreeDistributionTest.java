@@ -20,13 +20,19 @@ package apoc.stats;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
 
 import apoc.util.TestUtil;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
 import org.junit.Test;
+import org.neo4j.graphdb.QueryExecutionException;
 import org.neo4j.test.rule.DbmsRule;
 import org.neo4j.test.rule.ImpermanentDbmsRule;
 
@@ -43,7 +49,7 @@ public class DegreeDistributionTest {
     public static void setUp() {
         TestUtil.registerProcedure(db, DegreeDistribution.class);
         db.executeTransactionally(
-                "UNWIND range(1,10) as rels CREATE (f:Foo) WITH * UNWIND range(1,rels) as r CREATE (f)-[:BAR]->(f)");
+                "UNWIND range(1,10) as rels CREATE (f:Foo) WITH * UNWIND range(1,rels) as r CREATE (f)-[:BAR {weight: r}]->(f)");
     }
 
     @AfterClass
@@ -75,6 +81,70 @@ public class DegreeDistributionTest {
         });
     }
 
+    @Test
+    public void degreesWithSampling() {
+        List<Long> sampledDegrees = sampledDegrees(0.5);
+        // the sample skips some of the nodes, but not all of them
+        assertTrue(sampledDegrees.size() > 0 && sampledDegrees.size() < 10);
+        TestUtil.testCall(db, "CALL apoc.stats.degrees('BAR>', {samplingRate: 0.5})", row -> {
+            assertEquals("BAR", row.get("type"));
+            assertEquals(55L, row.get("total"));
+            assertEquals(Collections.max(sampledDegrees), row.get("max"));
+            assertEquals(Collections.min(sampledDegrees), row.get("min"));
+            assertEquals(
+                    sampledDegrees.stream().mapToLong(Long::longValue).average().orElseThrow(),
+                    (double) row.get("mean"),
+                    0.0001d);
+        });
+        QueryExecutionException e = assertThrows(
+                QueryExecutionException.class,
+                () -> TestUtil.testCall(db, "CALL apoc.stats.degrees('BAR>', {samplingRate: 2})", row -> {}));
+        TestUtil.assertError(
+                e,
+                "The samplingRate must be in (0, 1], but is 2.0",
+                IllegalArgumentException.class,
+                "apoc.stats.degrees");
+    }
+
+    @Test
+    public void relationshipPropertyDistribution() {
+        TestUtil.testCall(db, "CALL apoc.stats.relationshipPropertyDistribution('BAR', 'weight')", row -> {
+            assertEquals("BAR", row.get("type"));
+            assertEquals("weight", row.get("property"));
+            assertEquals(55L, row.get("total"));
+            assertEquals(55L, row.get("count"));
+            assertEquals(10L, row.get("max"));
+            assertEquals(1L, row.get("min"));
+            assertEquals(4L, row.get("p50"));
+        });
+        TestUtil.testCall(db, "CALL apoc.stats.relationshipPropertyDistribution('BAR', 'unknown')", row -> {
+            assertEquals(55L, row.get("total"));
+            assertEquals(0L, row.get("count"));
+        });
+    }
+
+    @Test
+    public void relationshipPropertyDistributionWithSampling() {
+        // each node has as many relationships as its degree, the sampled ones are counted
+        long sampledRelationships = sampledDegrees(0.5).stream().mapToLong(Long::longValue).sum();
+        assertTrue(sampledRelationships > 0 && sampledRelationships < 55);
+        TestUtil.testCall(
+                db, "CALL apoc.stats.relationshipPropertyDistribution('BAR', 'weight', {samplingRate: 0.5})", row -> {
+                    assertEquals(55L, row.get("total"));
+                    assertEquals(sampledRelationships, row.get("count"));
+                });
+    }
+
+    private static List<Long> sampledDegrees(double samplingRate) {
+        return db.executeTransactionally(
+                "MATCH (f:Foo) RETURN id(f) AS id, count { (f)-[:BAR]->() } AS degree",
+                Map.of(),
+                result -> result.stream()
+                        .filter(row -> DegreeDistribution.isSampled((long) row.get("id"), samplingRate))
+                        .map(row -> (Long) row.get("degree"))
+                        .collect(Collectors.toList()));
+    }
+
     @Test
     public void allDegrees() {
         TestUtil.testResult(db, "CALL apoc.stats.degrees('*')", result -> {
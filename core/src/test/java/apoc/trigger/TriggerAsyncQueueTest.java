@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) "Neo4j"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apoc.trigger;
+
+import static org.junit.Assert.assertEquals;
+
+import apoc.util.Util;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.neo4j.logging.NullLog;
+
+public class TriggerAsyncQueueTest {
+
+    @Test
+    public void shouldWaitForRoomInsteadOfDroppingByDefault() {
+        TriggerAsyncQueue queue = new TriggerAsyncQueue(
+                "neo4j",
+                NullLog.getInstance(),
+                1,
+                1,
+                TriggerAsyncQueue.DEFAULT_OFFER_TIMEOUT_MILLIS,
+                executions -> Util.sleep(10));
+        queue.start();
+        for (int i = 0; i < 20; i++) {
+            queue.add(List.of(), null);
+        }
+        queue.stop();
+
+        TriggerAsyncMetrics metrics = queue.metrics();
+        assertEquals(20, metrics.processed);
+        assertEquals(0, metrics.dropped);
+    }
+
+    @Test
+    public void shouldDropOnlyWithAnOfferTimeout() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        TriggerAsyncQueue queue = new TriggerAsyncQueue("neo4j", NullLog.getInstance(), 1, 1, 0, executions -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        queue.start();
+        queue.add(List.of(), null);
+        // the worker is blocked on the first transaction, the second one fills the queue
+        while (queue.metrics().queueDepth > 0) {
+            Thread.sleep(10);
+        }
+        queue.add(List.of(), null);
+        queue.add(List.of(), null);
+        release.countDown();
+        queue.stop();
+
+        TriggerAsyncMetrics metrics = queue.metrics();
+        assertEquals(2, metrics.processed);
+        assertEquals(1, metrics.dropped);
+    }
+
+    @Test
+    public void shouldExecuteOnTheCallingThreadWhenNotRunning() {
+        AtomicInteger batches = new AtomicInteger();
+        TriggerAsyncQueue queue = new TriggerAsyncQueue(
+                "neo4j",
+                NullLog.getInstance(),
+                1,
+                1,
+                TriggerAsyncQueue.DEFAULT_OFFER_TIMEOUT_MILLIS,
+                executions -> batches.incrementAndGet());
+        queue.add(List.of(), null);
+
+        assertEquals(1, batches.get());
+        assertEquals(0, queue.metrics().dropped);
+    }
+}
@@ -28,6 +28,7 @@ import static org.neo4j.configuration.GraphDatabaseSettings.procedure_unrestrict
 
 import apoc.nodes.Nodes;
 import apoc.util.TestUtil;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -197,6 +198,23 @@ public class TriggerTest {
                 TimeUnit.SECONDS);
     }
 
+    @Test
+    public void testFailingAfterAsyncTriggerDoesNotRollbackTheOthers() {
+        db.executeTransactionally(
+                "CALL apoc.trigger.add('failing','UNWIND $createdNodes AS n RETURN 1 / 0',{phase:'afterAsync'})");
+        db.executeTransactionally(
+                "CALL apoc.trigger.add('marking','UNWIND $createdNodes AS n SET n.marked = true',{phase:'afterAsync'})");
+        db.executeTransactionally("CREATE (:Isolated)");
+        org.neo4j.test.assertion.Assert.assertEventually(
+                () -> db.executeTransactionally(
+                        "MATCH (n:Isolated) RETURN n.marked AS marked",
+                        Map.of(),
+                        result -> Boolean.TRUE.equals(result.next().get("marked"))),
+                (value) -> value,
+                30L,
+                TimeUnit.SECONDS);
+    }
+
     @Test
     public void testTxId() {
         db.executeTransactionally("CREATE (f:Another)");
@@ -421,4 +439,113 @@ public class TriggerTest {
                 30L,
                 TimeUnit.SECONDS);
     }
+
+    @Test
+    public void testTriggerWithLabelsFilter() {
+        db.executeTransactionally("CREATE (:Counter {count:0})");
+        db.executeTransactionally(
+                "CALL apoc.trigger.add('count-persons','MATCH (c:Counter) SET c.count = c.count + size($createdNodes)', {phase: 'before', labels: ['Person']})");
+        db.executeTransactionally("CREATE (:Other)");
+        db.executeTransactionally("CREATE (:Person), (:Other)");
+        db.executeTransactionally("CREATE (:Other)");
+        TestUtil.testCall(db, "MATCH (c:Counter) RETURN c.count as count", (row) -> {
+            assertEquals(2L, row.get("count"));
+        });
+    }
+
+    @Test
+    public void testTriggerWithRelTypesAndPropertyKeysFilters() {
+        db.executeTransactionally("CREATE (:Counter {rels:0, props:0})");
+        db.executeTransactionally(
+                "CALL apoc.trigger.add('count-rels','MATCH (c:Counter) SET c.rels = c.rels + 1', {phase: 'before', relTypes: 'KNOWS'})");
+        db.executeTransactionally(
+                "CALL apoc.trigger.add('count-props','MATCH (c:Counter) SET c.props = c.props + 1', {phase: 'before', propertyKeys: ['name']})");
+        db.executeTransactionally("CREATE (:A)-[:LIKES]->(:B)");
+        db.executeTransactionally("CREATE (:A)-[:KNOWS]->(:B)");
+        db.executeTransactionally("CREATE (:A {age: 42})");
+        db.executeTransactionally("CREATE (:A {name: 'foo'})");
+        TestUtil.testCall(db, "MATCH (c:Counter) RETURN c.rels as rels, c.props as props", (row) -> {
+            assertEquals(1L, row.get("rels"));
+            assertEquals(1L, row.get("props"));
+        });
+    }
+
+    @Test
+    public void testTriggerWithLabelsAndPropertyKeysFilters() {
+        db.executeTransactionally("CREATE (:Counter {count:0}), (:Person {age: 42}), (:Other {age: 42})");
+        db.executeTransactionally(
+                "CALL apoc.trigger.add('count-person-names','MATCH (c:Counter) SET c.count = c.count + 1', {phase: 'before', labels: ['Person'], propertyKeys: ['name']})");
+        // a name change on another label, and a change of another property on a person
+        db.executeTransactionally("MATCH (n:Other) SET n.name = 'foo'");
+        db.executeTransactionally("MATCH (n:Person) SET n.age = 43");
+        // a name change on an existing person
+        db.executeTransactionally("MATCH (n:Person) SET n.name = 'bar'");
+        TestUtil.testCall(db, "MATCH (c:Counter) RETURN c.count as count", (row) -> {
+            assertEquals(1L, row.get("count"));
+        });
+    }
+
+    @Test
+    public void testTriggerWithLabelsAndPropertyKeysFiltersAfter() {
+        testTriggerWithLabelsAndPropertyKeysFiltersOnDeletedNode("after");
+    }
+
+    @Test
+    public void testTriggerWithLabelsAndPropertyKeysFiltersAfterAsync() {
+        testTriggerWithLabelsAndPropertyKeysFiltersOnDeletedNode("afterAsync");
+    }
+
+    private void testTriggerWithLabelsAndPropertyKeysFiltersOnDeletedNode(String phase) {
+        db.executeTransactionally("CREATE (:Log {fired: 0, names: []}), "
+                + "(:Person {name: 'kept'}), (:Person {name: 'deleted'}), (:Other {name: 'other'})");
+        db.executeTransactionally(
+                "CALL apoc.trigger.add('log-person-names', $query, {phase: $phase, labels: ['Person'], propertyKeys: ['name']})",
+                map(
+                        "query",
+                        "MATCH (l:Log) SET l.fired = l.fired + 1, "
+                                + "l.names = l.names + [n IN $deletedNodes | apoc.any.property(n, 'name')]",
+                        "phase",
+                        phase));
+        // a deleted node with another label, and a change of another property on a person
+        db.executeTransactionally("MATCH (n:Other) DELETE n");
+        db.executeTransactionally("MATCH (n:Person {name: 'kept'}) SET n.age = 42");
+        // a deleted person, whose labels are only known from the removed ones after the commit
+        db.executeTransactionally("MATCH (n:Person {name: 'deleted'}) DELETE n");
+
+        org.neo4j.test.assertion.Assert.assertEventually(
+                () -> db.executeTransactionally(
+                        "MATCH (l:Log) RETURN l.fired = 1 AND l.names = ['deleted'] AS logged",
+                        Map.of(),
+                        result -> (boolean) result.next().get("logged")),
+                (value) -> value,
+                30L,
+                TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testAfterAsyncKeepsCommitOrder() {
+        db.executeTransactionally("CREATE (:Counter {ids: []})");
+        db.executeTransactionally(
+                "CALL apoc.trigger.add('collect-ids','UNWIND $createdNodes AS n MATCH (c:Counter) SET c.ids = c.ids + n.idx', {phase: 'afterAsync'})");
+        List<Long> expected = new ArrayList<>();
+        for (long i = 0; i < 50; i++) {
+            db.executeTransactionally("CREATE (:Item {idx: $idx})", Map.of("idx", i));
+            expected.add(i);
+        }
+
+        org.neo4j.test.assertion.Assert.assertEventually(
+                () -> db.executeTransactionally(
+                        "MATCH (c:Counter) RETURN c.ids AS ids",
+                        Map.of(),
+                        result -> result.next().get("ids")),
+                expected::equals,
+                30L,
+                TimeUnit.SECONDS);
+
+        TestUtil.testCall(db, "CALL apoc.trigger.afterAsyncMetrics()", (row) -> {
+            assertEquals(true, row.get("running"));
+            assertEquals(50L, row.get("enqueued"));
+            assertEquals(0L, row.get("failed"));
+        });
+    }
 }
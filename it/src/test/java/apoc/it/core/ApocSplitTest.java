@@ -36,6 +36,7 @@ public class ApocSplitTest {
     public static final Set<String> CORE_PROCEDURES = Set.of(
             "apoc.periodic.truncate",
             "apoc.periodic.list",
+            "apoc.periodic.pools",
             "apoc.periodic.commit",
             "apoc.periodic.cancel",
             "apoc.periodic.submit",
@@ -46,6 +47,7 @@ public class ApocSplitTest {
             "apoc.trigger.remove",
             "apoc.trigger.removeAll",
             "apoc.trigger.list",
+            "apoc.trigger.afterAsyncMetrics",
             "apoc.trigger.pause",
             "apoc.trigger.resume",
             "apoc.trigger.install",
@@ -112,6 +114,7 @@ public class ApocSplitTest {
             "apoc.cypher.doIt",
             "apoc.cypher.runWrite",
             "apoc.cypher.runSchema",
+            "apoc.cypher.statementCacheStats",
             "apoc.when",
             "apoc.do.when",
             "apoc.case",
@@ -198,6 +201,7 @@ public class ApocSplitTest {
             "apoc.create.uuids",
             "apoc.warmup.run",
             "apoc.stats.degrees",
+            "apoc.stats.relationshipPropertyDistribution",
             "apoc.help",
             "apoc.refactor.rename.label",
             "apoc.refactor.rename.type",